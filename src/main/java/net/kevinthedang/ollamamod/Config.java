@@ -1,6 +1,8 @@
 package net.kevinthedang.ollamamod;
 
 import net.kevinthedang.ollamamod.chat.OllamaSettings;
+import net.kevinthedang.ollamamod.ollama.OllamaModelResidency;
+import net.kevinthedang.ollamamod.vectorstore.VectorStoreSettings;
 import net.minecraft.resources.ResourceLocation;
 import net.minecraft.world.item.Item;
 import net.minecraftforge.common.ForgeConfigSpec;
@@ -9,7 +11,9 @@ import net.minecraftforge.fml.common.Mod;
 import net.minecraftforge.fml.event.config.ModConfigEvent;
 import net.minecraftforge.registries.ForgeRegistries;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -39,6 +43,42 @@ public class Config {
             .comment("The Ollama model used for higher-effort conversations")
             .define("toolModel", OllamaSettings.DEFAULT_TOOL_MODEL);
 
+    private static final ForgeConfigSpec.ConfigValue<String> EMBEDDING_MODEL = BUILDER
+            .comment("The Ollama model used for retrieval embeddings. Changing it re-embeds stored vectors in the background.")
+            .define("embeddingModel", VectorStoreSettings.DEFAULT_EMBEDDING_MODEL);
+
+    private static final ForgeConfigSpec.ConfigValue<String> KNOWLEDGE_DIRECTORY = BUILDER
+            .comment("Directory of .json/.txt knowledge files ingested live while the server runs (relative to the server directory). Empty disables it.")
+            .define("knowledgeDirectory", "");
+
+    private static final ForgeConfigSpec.BooleanValue REGISTRY_INGEST = BUILDER
+            .comment("Embed a knowledge document for every item, mob and biome of installed mods when a world loads (unchanged entries are skipped).")
+            .define("indexModRegistries", true);
+
+    private static final ForgeConfigSpec.BooleanValue REGISTRY_INCLUDE_VANILLA = BUILDER
+            .comment("Also document vanilla registry entries (already covered by the bundled knowledge base).")
+            .define("indexVanillaRegistries", false);
+
+    private static final ForgeConfigSpec.ConfigValue<List<? extends String>> OLLAMA_ENDPOINTS = BUILDER
+            .comment("Ollama base URLs to balance requests across. The first entry is the primary host.")
+            .defineListAllowEmpty("ollamaEndpoints", List.of(OllamaSettings.baseUrl), Config::validateEndpoint);
+
+    private static final ForgeConfigSpec.IntValue MAX_REQUESTS_PER_ENDPOINT = BUILDER
+            .comment("Requests each Ollama host runs at once; further requests wait, chat replies first.")
+            .defineInRange("ollamaMaxRequestsPerEndpoint", OllamaSettings.maxRequestsPerEndpoint, 1, 64);
+
+    private static final ForgeConfigSpec.IntValue MAX_BACKGROUND_REQUESTS_PER_ENDPOINT = BUILDER
+            .comment("How many of those requests may be memory writes or knowledge ingestion, keeping the rest free for chat.")
+            .defineInRange("ollamaMaxBackgroundRequestsPerEndpoint", OllamaSettings.maxBackgroundRequestsPerEndpoint, 1, 64);
+
+    private static final ForgeConfigSpec.ConfigValue<List<? extends String>> ENDPOINT_REQUEST_LIMITS = BUILDER
+            .comment("Per-host overrides of ollamaMaxRequestsPerEndpoint, as \"<base URL>=<requests>\" (e.g. \"http://gpu-box:11434=8\").")
+            .defineListAllowEmpty("ollamaEndpointRequestLimits", List.of(), Config::validateEndpointLimit);
+
+    private static final ForgeConfigSpec.ConfigValue<String> KEEP_ALIVE = BUILDER
+            .comment("How long Ollama keeps a model loaded after a request (e.g. \"30m\", \"-1\" for always). Empty uses the server's default.")
+            .define("ollamaKeepAlive", OllamaModelResidency.DEFAULT_KEEP_ALIVE);
+
     // a list of strings that are treated as resource locations for items
     private static final ForgeConfigSpec.ConfigValue<List<? extends String>> ITEM_STRINGS = BUILDER
             .comment("A list of items to log on common setup.")
@@ -55,6 +95,17 @@ public class Config {
         return obj instanceof final String itemName && ForgeRegistries.ITEMS.containsKey(ResourceLocation.tryParse(itemName));
     }
 
+    private static boolean validateEndpoint(final Object obj) {
+        return obj instanceof final String url && (url.startsWith("http://") || url.startsWith("https://"));
+    }
+
+    private static boolean validateEndpointLimit(final Object obj) {
+        if (!(obj instanceof final String entry)) return false;
+        int separator = entry.lastIndexOf('=');
+        return separator > 0 && validateEndpoint(entry.substring(0, separator).trim())
+                && entry.substring(separator + 1).trim().matches("[1-9][0-9]*");
+    }
+
     @SubscribeEvent
     static void onLoad(final ModConfigEvent event) {
         logDirtBlock = LOG_DIRT_BLOCK.get();
@@ -65,6 +116,36 @@ public class Config {
         OllamaSettings.chatModel = CHAT_MODEL.get();
         OllamaSettings.toolModel = TOOL_MODEL.get();
 
+        // Switch embedding spaces if the configured model changed
+        VectorStoreSettings.embeddingModel = EMBEDDING_MODEL.get();
+        OllamaMod.VECTOR_STORE.setEmbeddingModel(VectorStoreSettings.embeddingModel);
+        VectorStoreSettings.knowledgeDirectory = KNOWLEDGE_DIRECTORY.get();
+        VectorStoreSettings.registryIngestEnabled = REGISTRY_INGEST.get();
+        VectorStoreSettings.registryIncludeVanilla = REGISTRY_INCLUDE_VANILLA.get();
+
+        // Sync the Ollama host pool; an empty list keeps the default host
+        List<String> endpoints = List.copyOf(OLLAMA_ENDPOINTS.get());
+        if (!endpoints.isEmpty()) {
+            OllamaSettings.endpoints = endpoints;
+            OllamaSettings.baseUrl = endpoints.get(0);
+            OllamaMod.OLLAMA_ENDPOINTS.reconfigure(endpoints);
+        }
+
+        // Sync the per-host concurrency limits of the Ollama request scheduler
+        Map<String, Integer> limits = new LinkedHashMap<>();
+        for (String entry : ENDPOINT_REQUEST_LIMITS.get()) {
+            int separator = entry.lastIndexOf('=');
+            limits.put(entry.substring(0, separator).trim(), Integer.parseInt(entry.substring(separator + 1).trim()));
+        }
+        OllamaSettings.maxRequestsPerEndpoint = MAX_REQUESTS_PER_ENDPOINT.get();
+        OllamaSettings.maxBackgroundRequestsPerEndpoint = MAX_BACKGROUND_REQUESTS_PER_ENDPOINT.get();
+        OllamaSettings.endpointRequestLimits = Map.copyOf(limits);
+        OllamaMod.OLLAMA_ENDPOINTS.scheduler().configure(OllamaSettings.maxRequestsPerEndpoint,
+                OllamaSettings.maxBackgroundRequestsPerEndpoint, OllamaSettings.endpointRequestLimits);
+
+        // Sync how long Ollama keeps models loaded; empty leaves it to the server
+        OllamaMod.OLLAMA_ENDPOINTS.residency().setKeepAlive(KEEP_ALIVE.get());
+
         // convert the list of strings into a set of items
         items = ITEM_STRINGS.get().stream()
                 .map(itemName -> ForgeRegistries.ITEMS.getValue(ResourceLocation.tryParse(itemName)))
@@ -9,6 +9,7 @@ import net.minecraft.client.gui.screens.inventory.MerchantScreen;
 import net.minecraft.network.chat.Component;
 import net.minecraft.server.level.ServerLevel;
 import net.minecraft.world.entity.player.Player;
+import net.minecraft.world.level.Level;
 import net.minecraft.world.level.block.Blocks;
 import net.minecraft.world.level.storage.LevelResource;
 import net.minecraftforge.api.distmarker.Dist;
@@ -27,7 +28,14 @@ import org.slf4j.Logger;
 
 import net.kevinthedang.ollamamod.chat.ChatHistoryManager;
 import net.kevinthedang.ollamamod.chat.AgenticRagVillagerBrain;
+import net.kevinthedang.ollamamod.chat.OllamaSettings;
 import net.kevinthedang.ollamamod.chat.VillagerChatService;
+import net.kevinthedang.ollamamod.ollama.OllamaEndpointPool;
+import net.kevinthedang.ollamamod.ollama.OllamaModelResidency;
+import net.kevinthedang.ollamamod.knowledge.ForgeRegistryExtractor;
+import net.kevinthedang.ollamamod.vectorstore.KnowledgeWatcher;
+import net.kevinthedang.ollamamod.vectorstore.RegistryIngestor;
+import net.kevinthedang.ollamamod.vectorstore.VectorStoreSettings;
 import net.kevinthedang.ollamamod.vectorstore.embedding.CachingEmbeddingService;
 import net.kevinthedang.ollamamod.vectorstore.embedding.OllamaEmbeddingService;
 import net.kevinthedang.ollamamod.vectorstore.store.LangChain4jVectorStore;
@@ -44,12 +52,15 @@ public final class OllamaMod {
 
     // Global access points for chat/LLM bridge
     public static final ChatHistoryManager CHAT_HISTORY = new ChatHistoryManager();
-    public static final AgenticRagVillagerBrain VILLAGER_BRAIN = new AgenticRagVillagerBrain();
+    public static final OllamaEndpointPool OLLAMA_ENDPOINTS = new OllamaEndpointPool(OllamaSettings.endpoints);
+    public static final AgenticRagVillagerBrain VILLAGER_BRAIN = new AgenticRagVillagerBrain(OLLAMA_ENDPOINTS);
     public static final VillagerChatService CHAT_SERVICE = new VillagerChatService(CHAT_HISTORY, VILLAGER_BRAIN);
     public static final VectorStoreService VECTOR_STORE = new VectorStoreService(
-        new CachingEmbeddingService(new OllamaEmbeddingService()),
+        new CachingEmbeddingService(new OllamaEmbeddingService(OLLAMA_ENDPOINTS, VectorStoreSettings.embeddingModel)),
         new LangChain4jVectorStore(),
         new TextChunker(), new JsonChunker(), new ConversationChunker());
+    public static final KnowledgeWatcher KNOWLEDGE_WATCHER = new KnowledgeWatcher(VECTOR_STORE);
+    public static final RegistryIngestor REGISTRY_INGESTOR = new RegistryIngestor(VECTOR_STORE);
 
     // Initialize the mod and register configuration + setup hooks.
     public OllamaMod(FMLJavaModLoadingContext context) {
@@ -73,6 +84,11 @@ public final class OllamaMod {
         LOGGER.info(Config.magicNumberIntroduction + Config.magicNumber);
 
         Config.items.forEach((item) -> LOGGER.info("ITEM >> {}", item.toString()));
+
+        // Keep Ollama health cached in the background so chat never blocks on a probe
+        OLLAMA_ENDPOINTS.startHealthProbing(OllamaEndpointPool.DEFAULT_PROBE_INTERVAL);
+        // Track which models the hosts keep loaded, so routing can avoid model swaps
+        OLLAMA_ENDPOINTS.residency().startPolling(OllamaModelResidency.DEFAULT_POLL_INTERVAL);
     }
 
 
@@ -139,10 +155,11 @@ public final class OllamaMod {
 
     @Mod.EventBusSubscriber(modid = MOD_ID, bus = Mod.EventBusSubscriber.Bus.FORGE)
     public static class WorldEventHandler {
-        // Persist vector store data and chat history when the world is saved.
+        // Persist vector store data and chat history when the world is saved. Both belong to the whole
+        // world rather than a dimension, so every handler here acts for the overworld only.
         @SubscribeEvent
         public static void onWorldSave(LevelEvent.Save event) {
-            if (event.getLevel() instanceof ServerLevel serverLevel) {
+            if (event.getLevel() instanceof ServerLevel serverLevel && serverLevel.dimension() == Level.OVERWORLD) {
                 java.nio.file.Path root = serverLevel.getServer().getWorldPath(LevelResource.ROOT);
                 VECTOR_STORE.persistAll(root);
                 CHAT_HISTORY.persistAll(root);
@@ -153,13 +170,17 @@ public final class OllamaMod {
         // Load vector store data and chat history when the world loads.
         @SubscribeEvent
         public static void onWorldLoad(LevelEvent.Load event) {
-            if (event.getLevel() instanceof ServerLevel serverLevel) {
+            if (event.getLevel() instanceof ServerLevel serverLevel && serverLevel.dimension() == Level.OVERWORLD) {
                 java.nio.file.Path root = serverLevel.getServer().getWorldPath(LevelResource.ROOT);
                 VECTOR_STORE.loadAll(root);
                 CHAT_HISTORY.loadAll(root);
-                if (VECTOR_STORE.count(net.kevinthedang.ollamamod.vectorstore.model.MetadataFilter.all()) == 0) {
-                    VECTOR_STORE.loadSeedData();
-                }
+                // The seed is not part of the save: map it under the loaded store every time
+                VECTOR_STORE.loadSeedData(serverLevel.getServer().getServerDirectory()
+                    .resolve(VectorStoreSettings.seedCacheDirectory));
+                VECTOR_STORE.calibrateTokenEstimator();
+                startKnowledgeWatcher(serverLevel);
+                syncRegistryKnowledge(serverLevel);
+                prewarmModels();
                 LOGGER.debug("Vector store and chat history loaded");
             }
         }
@@ -167,10 +188,40 @@ public final class OllamaMod {
         // Clear in-memory chat history when a world unloads — data is already on disk.
         @SubscribeEvent
         public static void onWorldUnload(LevelEvent.Unload event) {
-            if (event.getLevel() instanceof ServerLevel) {
+            if (event.getLevel() instanceof ServerLevel serverLevel && serverLevel.dimension() == Level.OVERWORLD) {
                 CHAT_HISTORY.clearAll();
+                KNOWLEDGE_WATCHER.stop();
+                REGISTRY_INGESTOR.cancel();
                 LOGGER.debug("Chat history cleared on world unload");
             }
         }
+
+        // Document the installed mods' items, mobs and biomes; only new or changed entries are embedded,
+        // in the background.
+        private static void syncRegistryKnowledge(ServerLevel serverLevel) {
+            if (!VectorStoreSettings.registryIngestEnabled) return;
+            REGISTRY_INGESTOR.sync(ForgeRegistryExtractor.extract(serverLevel.getServer(),
+                VectorStoreSettings.registryIncludeVanilla));
+        }
+
+        // Load both chat models in the background so the first villager turn does not wait for a model load.
+        private static void prewarmModels() {
+            OLLAMA_ENDPOINTS.residency().prewarm(java.util.List.of(OllamaSettings.toolModel, OllamaSettings.chatModel));
+        }
+
+        // Watch the configured knowledge directory (relative paths resolve against the server directory).
+        private static void startKnowledgeWatcher(ServerLevel serverLevel) {
+            if (VectorStoreSettings.knowledgeDirectory.isBlank()) {
+                KNOWLEDGE_WATCHER.stop();
+                return;
+            }
+            java.nio.file.Path directory = serverLevel.getServer().getServerDirectory()
+                .resolve(VectorStoreSettings.knowledgeDirectory);
+            try {
+                KNOWLEDGE_WATCHER.start(directory);
+            } catch (java.io.IOException exception) {
+                LOGGER.warn("Could not watch knowledge directory {}: {}", directory, exception.getMessage());
+            }
+        }
     }
 }
@@ -6,142 +6,158 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import net.kevinthedang.ollamamod.OllamaMod;
+import net.kevinthedang.ollamamod.knowledge.RecipeBook;
+import net.kevinthedang.ollamamod.ollama.OllamaChatStreamDecoder;
+import net.kevinthedang.ollamamod.ollama.OllamaEndpoint;
+import net.kevinthedang.ollamamod.ollama.OllamaEndpointPool;
+import net.kevinthedang.ollamamod.ollama.OllamaScheduler;
+import net.kevinthedang.ollamamod.ollama.OllamaStreamExecutor;
+import net.kevinthedang.ollamamod.ollama.OllamaUnavailableException;
 import net.kevinthedang.ollamamod.vectorstore.VectorStoreSettings;
 import net.kevinthedang.ollamamod.vectorstore.model.VectorDocument;
+import net.kevinthedang.ollamamod.vectorstore.tokenizer.BpeTokenEstimator;
 
-import java.io.BufferedReader;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 public class AgenticRagVillagerBrain implements VillagerBrain {
 
 	private static final int MAX_TOOL_ITERATIONS = 3;
+	// Text of a tool-enabled reply held back in case a tool call follows it; longer text is the answer
+	private static final int TOOL_CALL_HOLD_CHARS = 160;
 	private static final List<String> INNER_ARG_KEYS = List.of("content", "value", "query", "text");
+	// Prompt budget per retrieved snippet, in estimated tokens (chunks themselves are sized in tokens)
+	private static final int MEMORY_SNIPPET_TOKENS = 96;
+	private static final int KNOWLEDGE_SNIPPET_TOKENS = 192;
+	// Most items whose recipes are pre-fetched into one prompt
+	private static final int MAX_RECIPE_ITEMS = 3;
+
+	private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(60);
+	// Shortest wait for a first token, so a nearly spent budget still gives the primary model a chance
+	private static final Duration MIN_FIRST_TOKEN_TIMEOUT = Duration.ofSeconds(2);
+	// Queue waits for an Ollama slot worth logging
+	private static final long QUEUE_WAIT_LOG_MILLIS = 250;
 
 	private final HttpClient client;
-	private final URI chatUri;
+	private final OllamaEndpointPool endpointPool;
 	private final Gson gson = new Gson();
 
 	private final RouterPolicy router;
 	private final WorldContextTool worldContextTool;
 	private final PromptComposer promptComposer;
+	private final RecipeBook recipeBook;
 
-	// Per-turn pre-fetch state for short-circuiting redundant tool calls
-	private volatile String prefetchedQuery;
-	private volatile List<VectorDocument> prefetchedDocs;
-	private volatile List<VectorDocument> prefetchedMemories;
+	private final TurnScheduler turnScheduler;
+	private final PromptPrefixTracker prefixTracker = new PromptPrefixTracker();
+	private final Map<String, Long> firstTokenMillis = new ConcurrentHashMap<>();
 
 	public AgenticRagVillagerBrain() {
 		this(new RuleBasedRouterPolicy(), new ForgeWorldContextTool(), new PromptComposerV1());
 	}
 
+	public AgenticRagVillagerBrain(OllamaEndpointPool endpointPool) {
+		this(new RuleBasedRouterPolicy(), new ForgeWorldContextTool(), new PromptComposerV1(), endpointPool);
+	}
+
 	public AgenticRagVillagerBrain(RouterPolicy router, WorldContextTool worldContextTool, PromptComposer promptComposer) {
+		this(router, worldContextTool, promptComposer, OllamaEndpointPool.single(OllamaSettings.baseUrl));
+	}
+
+	public AgenticRagVillagerBrain(RouterPolicy router, WorldContextTool worldContextTool, PromptComposer promptComposer,
+			OllamaEndpointPool endpointPool) {
+		this(router, worldContextTool, promptComposer, endpointPool, RecipeBook.shared());
+	}
+
+	public AgenticRagVillagerBrain(RouterPolicy router, WorldContextTool worldContextTool, PromptComposer promptComposer,
+			OllamaEndpointPool endpointPool, RecipeBook recipeBook) {
 		this.client = HttpClient.newBuilder()
 				.connectTimeout(Duration.ofSeconds(3))
 				.build();
-		this.chatUri = URI.create(OllamaSettings.baseUrl + "/api/chat");
+		this.endpointPool = endpointPool;
 
 		this.router = router;
 		this.worldContextTool = worldContextTool;
 		this.promptComposer = promptComposer;
+		this.recipeBook = recipeBook;
+		this.turnScheduler = new TurnScheduler(OllamaSettings.maxConcurrentTurns, OllamaSettings.maxQueuedTurns);
 	}
 
 	@Override
 	public CompletableFuture<String> getReply(Context context, List<ChatMessage> history, String playerMessage) {
-		OllamaMod.VECTOR_STORE.clearEmbeddingCache();
-		this.prefetchedQuery = null;
-		this.prefetchedDocs = null;
-		this.prefetchedMemories = null;
-
-		WorldFactBundle worldFacts = worldContextTool.collect(context, history, playerMessage);
-		RoutePlan plan = router.plan(context, history, playerMessage);
-		String retrievalQuery = plan.effectiveQuery(playerMessage);
-		System.out.println("[AgenticRAG] facts=" + worldFacts.facts().size());
-		worldFacts.facts().forEach(f -> System.out.println("[AgenticRAG]   fact: " + f.factText()));
-		System.out.println("[AgenticRAG] Route: useRetriever=" + plan.useRetriever() + " useMemory=" + plan.useMemory());
-		if (!retrievalQuery.equals(playerMessage)) {
-			System.out.println("[AgenticRAG] Augmented retrieval query: " + retrievalQuery);
-		}
+		CancellationScope cancellation = new CancellationScope();
+		CompletableFuture<String> reply = schedule(context, history, playerMessage, cancellation, false, prepared -> {
+			TurnContext turn = prepared.turn();
+			List<Map<String, Object>> messages = prepared.messages();
+
+			if (!turn.plan().useRetriever()) {
+				// Fast path: FACTS + history + memories, no tools, fast model
+				String model = replyModel(OllamaSettings.chatModel, OllamaSettings.toolModel, turn);
+				System.out.println("[AgenticRAG] Fast path (" + model + ", no tools, memories=" + turn.memories().size() + ")");
+				return sendWithFallback(messages, model, otherModel(model), turn);
+			}
 
-		List<Map<String, Object>> messages = toObjectMaps(
-				promptComposer.buildMessages(context, history, playerMessage, worldFacts));
-
-		CompletableFuture<List<VectorDocument>> memFut = plan.useMemory()
-				? OllamaMod.VECTOR_STORE.queryMemories(retrievalQuery, context.conversationId().toString(), VectorStoreSettings.defaultTopK)
-						.exceptionally(e -> List.of())
-				: CompletableFuture.completedFuture(List.of());
-
-		if (!plan.useRetriever()) {
-			// Fast path: FACTS + history + memories, no tools, fast model
-			return memFut.thenCompose(memories -> {
-				this.prefetchedMemories = memories;
-				injectPrefetchedContext(messages, List.of(), memories);
-				System.out.println("[AgenticRAG] Fast path (chatModel, no tools, memories=" + memories.size() + ")");
-				return sendNonStreaming(messages, false, OllamaSettings.chatModel)
-						.thenApply(responseBody -> {
-							JsonObject root = JsonParser.parseString(responseBody).getAsJsonObject();
-							return extractContent(root.getAsJsonObject("message"));
-						})
-						.exceptionallyCompose(e -> {
-							OllamaMod.LOGGER.warn("[AgenticRAG] chatModel unavailable, retrying with toolModel: {}", e.getMessage());
-							return sendNonStreaming(messages, false, OllamaSettings.toolModel).thenApply(responseBody -> {
-								JsonObject root = JsonParser.parseString(responseBody).getAsJsonObject();
-								return extractContent(root.getAsJsonObject("message"));
-							});
-						});
-			});
-		}
-
-		// Retriever path: pre-fetch docs + memories
-		CompletableFuture<List<VectorDocument>> docsFut = OllamaMod.VECTOR_STORE
-				.queryDocuments(retrievalQuery, VectorStoreSettings.defaultTopK)
-				.exceptionally(e -> List.of());
+			if (turn.hasRetrievedContext()) {
+				// Docs or recipes found — respond directly, no tools needed
+				String model = replyModel(OllamaSettings.toolModel, OllamaSettings.chatModel, turn);
+				System.out.println("[AgenticRAG] Retriever path: direct reply (" + model + ", docs=" + turn.docs().size()
+						+ ", recipes=" + !turn.recipeFacts().isEmpty() + ", memories=" + turn.memories().size() + ")");
+				return sendWithFallback(messages, model, otherModel(model), turn);
+			}
 
-		return CompletableFuture.allOf(docsFut, memFut).thenCompose(v -> {
-			this.prefetchedQuery = retrievalQuery;
-			this.prefetchedDocs = docsFut.join();
-			this.prefetchedMemories = memFut.join();
-			injectPrefetchedContext(messages, prefetchedDocs, prefetchedMemories);
-
-			if (!prefetchedDocs.isEmpty()) {
-				// Docs found — respond directly, no tools needed
-				System.out.println("[AgenticRAG] Retriever path: direct reply (docs=" + prefetchedDocs.size()
-						+ ", memories=" + prefetchedMemories.size() + ")");
-				return sendNonStreaming(messages, false, OllamaSettings.toolModel)
-						.thenApply(responseBody -> {
-							JsonObject root = JsonParser.parseString(responseBody).getAsJsonObject();
-							return extractContent(root.getAsJsonObject("message"));
-						})
-						.exceptionallyCompose(e -> {
-							OllamaMod.LOGGER.warn("[AgenticRAG] toolModel unavailable, retrying with chatModel: {}", e.getMessage());
-							return sendNonStreaming(messages, false, OllamaSettings.chatModel).thenApply(responseBody -> {
-								JsonObject root = JsonParser.parseString(responseBody).getAsJsonObject();
-								return extractContent(root.getAsJsonObject("message"));
-							});
-						});
+			if (!toolLoopFits(turn)) {
+				String model = replyModel(OllamaSettings.chatModel, OllamaSettings.toolModel, turn);
+				return sendWithFallback(messages, model, otherModel(model), turn);
 			}
 
 			// No docs found — fall back to tool loop for accuracy
 			System.out.println("[AgenticRAG] Retriever path: tool fallback (no docs found, memories="
-					+ prefetchedMemories.size() + ")");
-			return toolLoop(messages, context, 0);
+					+ turn.memories().size() + ")");
+			return toolLoop(messages, turn, 0);
+		});
+		// Cancelling the returned future aborts whatever the turn is waiting on
+		reply.whenComplete((fullReply, e) -> {
+			if (reply.isCancelled()) cancellation.cancel();
 		});
+		return reply;
+	}
+
+	// Non-streaming reply without tools; if the model fails, retries once with the fallback model.
+	private CompletableFuture<String> sendWithFallback(List<Map<String, Object>> messages, String model, String fallbackModel,
+			TurnContext turn) {
+		return sendNonStreaming(messages, false, model, turn.affinityKey(), turn.cancellation())
+				.thenApply(responseBody -> {
+					JsonObject root = JsonParser.parseString(responseBody).getAsJsonObject();
+					return extractContent(root.getAsJsonObject("message"));
+				})
+				.exceptionallyCompose(e -> {
+					OllamaMod.LOGGER.warn("[AgenticRAG] {} unavailable, retrying with {}: {}", model, fallbackModel, e.getMessage());
+					return sendNonStreaming(messages, false, fallbackModel, turn.affinityKey(), turn.cancellation()).thenApply(responseBody -> {
+						JsonObject root = JsonParser.parseString(responseBody).getAsJsonObject();
+						return extractContent(root.getAsJsonObject("message"));
+					});
+				});
 	}
 
 	// Recursive tool-calling loop: sends messages to Ollama, executes any tool calls, and repeats.
-	private CompletableFuture<String> toolLoop(List<Map<String, Object>> messages, Context context, int iteration) {
-		return sendNonStreaming(messages, true, OllamaSettings.toolModel).thenCompose(responseBody -> {
+	private CompletableFuture<String> toolLoop(List<Map<String, Object>> messages, TurnContext turn, int iteration) {
+		return sendNonStreaming(messages, true, OllamaSettings.toolModel, turn.affinityKey(), turn.cancellation()).thenCompose(responseBody -> {
 			JsonObject root = JsonParser.parseString(responseBody).getAsJsonObject();
 			JsonObject message = root.getAsJsonObject("message");
 
@@ -149,13 +165,13 @@ public class AgenticRagVillagerBrain implements VillagerBrain {
 				messages.add(assistantMessageFromJson(message));
 
 				JsonArray toolCalls = message.getAsJsonArray("tool_calls");
-				return executeToolCalls(toolCalls, context).thenCompose(toolResults -> {
+				return executeToolCalls(toolCalls, turn).thenCompose(toolResults -> {
 					for (Map<String, Object> toolResult : toolResults) {
 						messages.add(toolResult);
 					}
 					System.out.println("[AgenticRAG] Tool iteration " + (iteration + 1)
 							+ ", tool calls: " + toolCalls.size());
-					return toolLoop(messages, context, iteration + 1);
+					return toolLoop(messages, turn, iteration + 1);
 				});
 			}
 
@@ -166,150 +182,342 @@ public class AgenticRagVillagerBrain implements VillagerBrain {
 	}
 
 	@Override
-	public void getReplyStreaming(Context context, List<ChatMessage> history, String playerMessage, StreamCallbacks callbacks) {
-		OllamaMod.VECTOR_STORE.clearEmbeddingCache();
-		this.prefetchedQuery = null;
-		this.prefetchedDocs = null;
-		this.prefetchedMemories = null;
-
-		WorldFactBundle worldFacts = worldContextTool.collect(context, history, playerMessage);
-		RoutePlan plan = router.plan(context, history, playerMessage);
-		String retrievalQuery = plan.effectiveQuery(playerMessage);
-		System.out.println("[AgenticRAG] facts=" + worldFacts.facts().size());
-		worldFacts.facts().forEach(f -> System.out.println("[AgenticRAG]   fact: " + f.factText()));
-		System.out.println("[AgenticRAG] Route: useRetriever=" + plan.useRetriever() + " useMemory=" + plan.useMemory());
-		if (!retrievalQuery.equals(playerMessage)) {
-			System.out.println("[AgenticRAG] Augmented retrieval query: " + retrievalQuery);
-		}
-
-		List<Map<String, Object>> messages = toObjectMaps(
-				promptComposer.buildMessages(context, history, playerMessage, worldFacts));
+	public Cancellable getReplyStreaming(Context context, List<ChatMessage> history, String playerMessage, StreamCallbacks callbacks) {
+		CancellationScope cancellation = new CancellationScope();
+		StreamCallbacks live = cancellation.guard(callbacks);
+		schedule(context, history, playerMessage, cancellation, OllamaSettings.speculativeReplies, prepared -> {
+			// The turn keeps its scheduler slot until the reply has finished streaming
+			TrackedCallbacks tracked = new TrackedCallbacks(live);
+			return streamTurn(prepared, tracked).thenCompose(v -> tracked.finished());
+		}).exceptionally(e -> {
+			live.onError(e);
+			return null;
+		});
+		return cancellation;
+	}
 
-		CompletableFuture<List<VectorDocument>> memFut = plan.useMemory()
-				? OllamaMod.VECTOR_STORE.queryMemories(retrievalQuery, context.conversationId().toString(), VectorStoreSettings.defaultTopK)
-						.exceptionally(e -> List.of())
-				: CompletableFuture.completedFuture(List.of());
+	// Streams one prepared turn; errors before streaming starts fail the returned future.
+	private CompletableFuture<Void> streamTurn(PreparedTurn prepared, StreamCallbacks callbacks) {
+		TurnContext turn = prepared.turn();
+		List<Map<String, Object>> messages = prepared.messages();
+
+		SpeculativeReply speculation = prepared.speculation();
+		if (speculation != null) {
+			// Nothing retrieved means the grounded prompt equals the speculative one, so keep its reply
+			if (!turn.hasRetrievedContext() && turn.memories().isEmpty()) {
+				int ahead = speculation.heldLength();
+				if (speculation.commit(callbacks)) {
+					System.out.println("[AgenticRAG] Retrieval found nothing, committing speculative reply (" + ahead + " chars ahead)");
+					return CompletableFuture.completedFuture(null);
+				}
+				System.out.println("[AgenticRAG] Speculative reply failed, continuing without it");
+			} else {
+				System.out.println("[AgenticRAG] Retrieval found context, dropping speculative reply");
+			}
+			speculation.discard();
+		}
 
-		if (!plan.useRetriever()) {
+		if (!turn.plan().useRetriever()) {
 			// Fast path: FACTS + history + memories, no tools, stream directly with fast model
-			memFut.thenAccept(memories -> {
-				this.prefetchedMemories = memories;
-				injectPrefetchedContext(messages, List.of(), memories);
-				System.out.println("[AgenticRAG] Fast path (chatModel, no tools, streaming, memories=" + memories.size() + ")");
-				streamFinalReply(messages, callbacks, OllamaSettings.chatModel, OllamaSettings.toolModel);
-			}).exceptionally(e -> {
-				callbacks.onError(e);
-				return null;
-			});
-			return;
+			String model = replyModel(OllamaSettings.chatModel, OllamaSettings.toolModel, turn);
+			System.out.println("[AgenticRAG] Fast path (" + model + ", no tools, streaming, memories=" + turn.memories().size() + ")");
+			streamFinalReply(messages, callbacks, model, otherModel(model), turn.affinityKey(), turn.cancellation(), turn.budget());
+			return CompletableFuture.completedFuture((Void) null);
 		}
 
-		// Retriever path: pre-fetch docs + memories
-		CompletableFuture<List<VectorDocument>> docsFut = OllamaMod.VECTOR_STORE
-				.queryDocuments(retrievalQuery, VectorStoreSettings.defaultTopK)
-				.exceptionally(e -> List.of());
+		if (turn.hasRetrievedContext()) {
+			// Docs or recipes found — stream directly, no tools needed
+			String model = replyModel(OllamaSettings.toolModel, OllamaSettings.chatModel, turn);
+			System.out.println("[AgenticRAG] Retriever path: streaming (" + model + ", docs=" + turn.docs().size()
+					+ ", recipes=" + !turn.recipeFacts().isEmpty() + ", memories=" + turn.memories().size() + ")");
+			streamFinalReply(messages, callbacks, model, otherModel(model), turn.affinityKey(), turn.cancellation(), turn.budget());
+			return CompletableFuture.completedFuture((Void) null);
+		}
 
-		CompletableFuture.allOf(docsFut, memFut).thenCompose(v -> {
-			List<VectorDocument> docs = docsFut.join();
-			List<VectorDocument> memories = memFut.join();
-
-			this.prefetchedQuery = retrievalQuery;
-			this.prefetchedDocs = docs;
-			this.prefetchedMemories = memories;
-			injectPrefetchedContext(messages, docs, memories);
-
-			if (!docs.isEmpty()) {
-				// Docs found — stream directly, no tools needed
-				System.out.println("[AgenticRAG] Retriever path: streaming (docs=" + docs.size()
-						+ ", memories=" + memories.size() + ")");
-				streamFinalReply(messages, callbacks, OllamaSettings.toolModel, OllamaSettings.chatModel);
-				return CompletableFuture.completedFuture((Void) null);
-			}
+		if (!toolLoopFits(turn)) {
+			String model = replyModel(OllamaSettings.chatModel, OllamaSettings.toolModel, turn);
+			streamFinalReply(messages, callbacks, model, otherModel(model), turn.affinityKey(), turn.cancellation(), turn.budget());
+			return CompletableFuture.completedFuture((Void) null);
+		}
 
-			// No docs found — fall back to tool loop for accuracy
-			System.out.println("[AgenticRAG] Retriever path: tool fallback (no docs found, memories="
-					+ memories.size() + ")");
-
-			return sendNonStreaming(messages, true, OllamaSettings.toolModel).thenCompose(responseBody -> {
-				JsonObject root = JsonParser.parseString(responseBody).getAsJsonObject();
-				JsonObject message = root.getAsJsonObject("message");
-
-				if (!hasToolCalls(message)) {
-					String content = extractContent(message);
-					System.out.println("[AgenticRAG] Tool fallback: direct reply (no tool calls)");
-					callbacks.onDelta(content);
-					callbacks.onCompleted(content);
-					return CompletableFuture.completedFuture((Void) null);
-				}
+		// No docs found — fall back to tool loop for accuracy
+		System.out.println("[AgenticRAG] Retriever path: tool fallback (no docs found, memories="
+				+ turn.memories().size() + ")");
 
-				messages.add(assistantMessageFromJson(message));
-				JsonArray toolCalls = message.getAsJsonArray("tool_calls");
-				System.out.println("[AgenticRAG] Tool iteration 1, tool calls: " + toolCalls.size());
+		return streamToolLoop(messages, callbacks, turn, new StringBuilder(), 0);
+	}
 
-				return executeToolCalls(toolCalls, context).thenCompose(toolResults -> {
-					for (Map<String, Object> toolResult : toolResults) {
-						messages.add(toolResult);
+	// Streaming tool loop: every request streams with tools enabled, so the iteration that answers
+	// needs no further request; tool calls found in the stream are run and the loop continues with
+	// their results. Text a model writes before calling a tool is not part of the answer: each
+	// tool-enabled iteration holds its text back until the stream ends without a tool call, or until
+	// it is too long to be narration. Held text of an iteration that calls a tool is never shown, and
+	// shown narration is left out of the completed reply (and so out of the chat history).
+	private CompletableFuture<Void> streamToolLoop(List<Map<String, Object>> messages, StreamCallbacks callbacks,
+			TurnContext turn, StringBuilder shown, int iteration) {
+		boolean includeTools = iteration < MAX_TOOL_ITERATIONS;
+		StringBuilder reply = new StringBuilder();
+		StringBuilder held = new StringBuilder();
+		AtomicBoolean holding = new AtomicBoolean(includeTools);
+		// Keep narration shown before a tool call apart from the answer that follows it
+		AtomicBoolean separate = new AtomicBoolean(shown.length() > 0 && !Character.isWhitespace(shown.charAt(shown.length() - 1)));
+		Consumer<String> show = text -> {
+			if (text.isEmpty()) return;
+			if (separate.getAndSet(false) && !Character.isWhitespace(text.charAt(0))) {
+				text = "\n" + text;
+			}
+			shown.append(text);
+			callbacks.onDelta(text);
+		};
+		Consumer<String> onDelta = delta -> {
+			reply.append(delta);
+			if (!holding.get()) {
+				show.accept(delta);
+				return;
+			}
+			held.append(delta);
+			if (held.length() >= TOOL_CALL_HOLD_CHARS) {
+				holding.set(false);
+				show.accept(held.toString());
+			}
+		};
+
+		return streamChat(messages, includeTools, OllamaSettings.toolModel, turn.affinityKey(), turn.cancellation(), REQUEST_TIMEOUT,
+				onDelta)
+				.thenCompose(streamed -> {
+					JsonArray toolCalls = streamed.toolCalls();
+					if (!includeTools || toolCalls == null || toolCalls.isEmpty()) {
+						if (holding.get()) show.accept(held.toString());
+						System.out.println("[AgenticRAG] Final reply streamed after " + iteration + " tool iterations");
+						callbacks.onCompleted(reply.toString());
+						return CompletableFuture.completedFuture((Void) null);
 					}
-					return toolLoopNonStreaming(messages, context, 1);
-				}).thenAccept(resolvedMessages -> {
-					streamFinalReply(resolvedMessages, callbacks, OllamaSettings.toolModel);
+					if (!holding.get()) {
+						System.out.println("[AgenticRAG] Dropping " + reply.length() + " chars of narration before a tool call");
+					}
+
+					JsonObject message = new JsonObject();
+					message.addProperty("content", streamed.content());
+					message.add("tool_calls", toolCalls);
+					messages.add(assistantMessageFromJson(message));
+					System.out.println("[AgenticRAG] Tool iteration " + (iteration + 1) + ", tool calls: " + toolCalls.size());
+
+					return executeToolCalls(toolCalls, turn).thenCompose(toolResults -> {
+						messages.addAll(toolResults);
+						return streamToolLoop(messages, callbacks, turn, shown, iteration + 1);
+					});
 				});
-			});
-		}).exceptionally(e -> {
-			callbacks.onError(e);
-			return null;
-		});
 	}
 
-	// Runs the remaining tool loop iterations non-streaming, returning messages ready for a final call.
-	private CompletableFuture<List<Map<String, Object>>> toolLoopNonStreaming(
-			List<Map<String, Object>> messages, Context context, int iteration) {
+	// Forwards stream callbacks and records when the stream has ended, either way.
+	private static final class TrackedCallbacks implements StreamCallbacks {
+		private final StreamCallbacks delegate;
+		private final CompletableFuture<Void> finished = new CompletableFuture<>();
 
-		return sendNonStreaming(messages, true, OllamaSettings.toolModel).thenCompose(responseBody -> {
-			JsonObject root = JsonParser.parseString(responseBody).getAsJsonObject();
-			JsonObject message = root.getAsJsonObject("message");
+		TrackedCallbacks(StreamCallbacks delegate) {
+			this.delegate = delegate;
+		}
 
-			if (hasToolCalls(message) && iteration < MAX_TOOL_ITERATIONS) {
-				messages.add(assistantMessageFromJson(message));
+		CompletableFuture<Void> finished() {
+			return finished;
+		}
 
-				JsonArray toolCalls = message.getAsJsonArray("tool_calls");
-				return executeToolCalls(toolCalls, context).thenCompose(toolResults -> {
-					for (Map<String, Object> toolResult : toolResults) {
-						messages.add(toolResult);
-					}
-					System.out.println("[AgenticRAG] Tool iteration " + (iteration + 1)
-							+ ", tool calls: " + toolCalls.size());
-					return toolLoopNonStreaming(messages, context, iteration + 1);
-				});
+		@Override
+		public void onDelta(String delta) {
+			delegate.onDelta(delta);
+		}
+
+		@Override
+		public void onCompleted(String fullReply) {
+			delegate.onCompleted(fullReply);
+			finished.complete(null);
+		}
+
+		@Override
+		public void onError(Throwable t) {
+			delegate.onError(t);
+			finished.complete(null);
+		}
+	}
+
+	// A turn's retrieval results plus the prompt for its first model call.
+	// The speculation is a chatModel reply started before retrieval finished, or null if none was started.
+	private record PreparedTurn(TurnContext turn, List<Map<String, Object>> messages, SpeculativeReply speculation) {}
+
+	// Runs a turn through the scheduler. The world can only be read on the calling (client) thread:
+	// a turn that starts right away scans it inside its stage graph, while a turn that has to wait
+	// for a slot gets a snapshot taken here, before this method returns.
+	private <T> CompletableFuture<T> schedule(Context context, List<ChatMessage> history, String playerMessage,
+			CancellationScope cancellation, boolean speculate, Function<PreparedTurn, CompletableFuture<T>> reply) {
+		Thread caller = Thread.currentThread();
+		// Time spent queued counts against the turn's budget
+		TurnBudget budget = new TurnBudget(OllamaSettings.turnBudgetMillis);
+		AtomicBoolean submitting = new AtomicBoolean(true);
+		AtomicBoolean scannedInline = new AtomicBoolean();
+		CompletableFuture<WorldFactBundle> snapshot = new CompletableFuture<>();
+
+		CompletableFuture<T> result = turnScheduler.submit(affinityKey(context), () -> {
+			// A turn cancelled while queued never starts; a running one gives its slot back on cancel
+			cancellation.throwIfCancelled();
+			Supplier<CompletableFuture<WorldFactBundle>> world;
+			if (submitting.get() && Thread.currentThread() == caller) {
+				scannedInline.set(true);
+				world = () -> CompletableFuture.completedFuture(worldContextTool.collect(context, history, playerMessage));
+			} else {
+				world = () -> snapshot;
 			}
+			return cancellation.track(prepareTurn(context, history, playerMessage, world, cancellation, budget, speculate).thenCompose(reply));
+		});
+		submitting.set(false);
 
-			System.out.println("[AgenticRAG] Tool loop done after " + iteration + " iterations, streaming final reply");
-			return CompletableFuture.completedFuture(messages);
+		// A finished result without an inline scan means the turn was rejected
+		if (!scannedInline.get() && !result.isDone()) {
+			System.out.println("[AgenticRAG] Turn queued (running=" + turnScheduler.running()
+					+ ", queued=" + turnScheduler.queued() + ")");
+			try {
+				snapshot.complete(worldContextTool.collect(context, history, playerMessage));
+			} catch (RuntimeException e) {
+				snapshot.completeExceptionally(e);
+			}
+		}
+		return result;
+	}
+
+	// Runs the turn's independent stages concurrently: the query embedding and both retrievals are
+	// started first, then the world scan and prompt assembly run while retrieval is in flight. Only
+	// the final join waits for all of them.
+	private CompletableFuture<PreparedTurn> prepareTurn(Context context, List<ChatMessage> history, String playerMessage,
+			Supplier<CompletableFuture<WorldFactBundle>> worldSource, CancellationScope cancellation, TurnBudget budget,
+			boolean speculate) {
+		TurnGraph graph = new TurnGraph();
+		// Routing is a cheap rule check, and every retrieval stage needs its query
+		RoutePlan plan = graph.run("route", () -> router.plan(context, history, playerMessage)).join();
+		String retrievalQuery = plan.effectiveQuery(playerMessage);
+		System.out.println("[AgenticRAG] Route: useRetriever=" + plan.useRetriever() + " useMemory=" + plan.useMemory());
+		if (!retrievalQuery.equals(playerMessage)) {
+			System.out.println("[AgenticRAG] Augmented retrieval query: " + retrievalQuery);
+		}
+		// While the Ollama circuit is open, retrieval is answered from the local fallback index
+		if (endpointPool.circuitBreaker().isOpen()) {
+			System.out.println("[AgenticRAG] Ollama circuit open, using local retrieval");
+		}
+
+		// Each retrieval stage is bounded by its share of the turn's budget; one that overruns is skipped
+		String skipped = plan.useMemory() && plan.useRetriever() ? "skipped memories and retrieval"
+				: plan.useMemory() ? "skipped memories" : "skipped retrieval";
+		TurnGraph.Stage<float[]> embedding = plan.useMemory() || plan.useRetriever()
+				? graph.start("embed", () -> budget.bound(TurnBudget.Stage.EMBED,
+						OllamaScheduler.submitAs(OllamaScheduler.Work.of(OllamaScheduler.Priority.QUERY_EMBEDDING, affinityKey(context)),
+								() -> OllamaMod.VECTOR_STORE.embedQuery(retrievalQuery)), null, skipped))
+				: TurnGraph.Stage.of(null);
+		TurnGraph.Stage<List<VectorDocument>> memories = plan.useMemory()
+				? graph.after("memories", List.of(embedding), () -> budget.overran(TurnBudget.Stage.EMBED)
+						? CompletableFuture.completedFuture(List.of())
+						: budget.bound(TurnBudget.Stage.RETRIEVE, OllamaMod.VECTOR_STORE
+								.queryMemories(retrievalQuery, context.conversationId().toString(), VectorStoreSettings.defaultTopK)
+								.exceptionally(e -> List.of()), List.of(), "skipped memories"))
+				: TurnGraph.Stage.of(List.of());
+		TurnGraph.Stage<String> recipes = plan.useRetriever()
+				? graph.run("recipes", () -> recipeBook.describeMentioned(retrievalQuery, MAX_RECIPE_ITEMS))
+				: TurnGraph.Stage.of("");
+		TurnGraph.Stage<List<VectorDocument>> docs = plan.useRetriever()
+				? graph.after("docs", List.of(embedding, recipes), () -> budget.overran(TurnBudget.Stage.EMBED)
+						? CompletableFuture.completedFuture(List.of())
+						: budget.bound(TurnBudget.Stage.RETRIEVE, prefetchDocuments(retrievalQuery, recipes.join()),
+								List.of(), "skipped retrieval"))
+				: TurnGraph.Stage.of(List.of());
+
+		TurnGraph.Stage<WorldFactBundle> world = graph.start("world", worldSource);
+		// The prompt carries the current weather and world info, so prompt assembly follows the world scan
+		TurnGraph.Stage<List<Map<String, Object>>> prompt = graph.after("prompt", List.of(world), () -> {
+			WorldFactBundle worldFacts = world.join();
+			System.out.println("[AgenticRAG] facts=" + worldFacts.facts().size());
+			worldFacts.facts().forEach(f -> System.out.println("[AgenticRAG]   fact: " + f.factText()));
+			return CompletableFuture.completedFuture(toObjectMaps(
+					promptComposer.buildMessages(context, history, playerMessage, worldFacts)));
+		});
+		// On the retriever path the prompt is usually ready well before retrieval; start answering
+		// from facts and history right away, in case retrieval comes back empty
+		TurnGraph.Stage<SpeculativeReply> speculation = speculate && plan.useRetriever()
+				? graph.after("speculate", List.of(prompt), () -> CompletableFuture.completedFuture(
+						docs.future().isDone() && memories.future().isDone()
+								? null
+								: startSpeculation(prompt.join(), affinityKey(context), cancellation)))
+				: TurnGraph.Stage.of(null);
+
+		CompletableFuture<PreparedTurn> prepared = CompletableFuture.allOf(prompt.future(), memories.future(), docs.future(),
+				speculation.future()).thenApply(v -> {
+			TurnContext turn = new TurnContext(context, plan, retrievalQuery, docs.join(), memories.join(), recipes.join(),
+					cancellation, budget);
+			List<Map<String, Object>> messages = prompt.join();
+			injectPrefetchedContext(messages, turn.docs(), turn.memories(), turn.recipeFacts());
+			logPrefixReuse(turn.affinityKey(), messages);
+			System.out.println("[AgenticRAG] Turn stages: " + graph.summary()
+					+ (budget.degradations().isEmpty() ? "" : " degraded=" + budget.degradations()));
+			return new PreparedTurn(turn, messages, speculation.join());
 		});
+		return SpeculativeReply.discardOnFailure(prepared, speculation.future());
+	}
+
+	// Logs how much of the prompt repeats the conversation's previous prompt, i.e. prefill Ollama can skip.
+	private void logPrefixReuse(String conversationKey, List<Map<String, Object>> messages) {
+		PromptPrefixTracker.Reuse reuse = prefixTracker.record(conversationKey, messages);
+		if (!reuse.followUp()) return;
+		System.out.println("[AgenticRAG] Prompt prefix " + reuse.fingerprint() + (reuse.hit() ? " reused" : " changed")
+				+ ": " + reuse.reusedMessages() + "/" + reuse.totalMessages() + " messages, "
+				+ reuse.reusedChars() + "/" + reuse.totalChars() + " chars; " + prefixTracker.summary());
+	}
+
+	// Streams a chatModel reply from the facts-and-history prompt into a held buffer.
+	private SpeculativeReply startSpeculation(List<Map<String, Object>> messages, String affinityKey,
+			CancellationScope turnCancellation) {
+		SpeculativeReply speculation = new SpeculativeReply();
+		turnCancellation.onCancel(speculation::discard);
+		String model = residentModel(OllamaSettings.chatModel, OllamaSettings.toolModel);
+		System.out.println("[AgenticRAG] Speculating with " + model + " while retrieval runs");
+		streamFinalReply(new ArrayList<>(messages), speculation, model, otherModel(model),
+				affinityKey, speculation.cancellation(), TurnBudget.unlimited());
+		return speculation;
+	}
+
+	// Vector search for the retriever path. Skipped only when the question asks how to craft items and
+	// the exact recipes cover every one of them.
+	private CompletableFuture<List<VectorDocument>> prefetchDocuments(String retrievalQuery, String recipeFacts) {
+		if (!recipeFacts.isEmpty() && recipeBook.answersCraftingQuestion(retrievalQuery)) {
+			System.out.println("[AgenticRAG] Exact recipe match, skipping knowledge search");
+			return CompletableFuture.completedFuture(List.of());
+		}
+		return OllamaMod.VECTOR_STORE
+				.queryDocuments(retrievalQuery, VectorStoreSettings.defaultTopK)
+				.exceptionally(e -> List.of());
 	}
 
 	// Injects pre-fetched vector store results as a system message so the LLM can answer in 1 call.
-	private void injectPrefetchedContext(List<Map<String, Object>> messages, List<VectorDocument> docs, List<VectorDocument> memories) {
-		String block = formatPrefetchedBlock(docs, memories);
+	private void injectPrefetchedContext(List<Map<String, Object>> messages, List<VectorDocument> docs, List<VectorDocument> memories,
+			String recipeFacts) {
+		String block = formatPrefetchedBlock(docs, memories, recipeFacts);
 		if (!block.isEmpty()) {
 			Map<String, Object> contextMsg = new HashMap<>();
 			contextMsg.put("role", "system");
 			contextMsg.put("content", block);
-			// Insert before the last message (the user's question)
+			// Insert before the last message (the user's question), after the stable prompt prefix
 			int insertPos = Math.max(0, messages.size() - 1);
 			messages.add(insertPos, contextMsg);
 		}
 	}
 
 	// Formats pre-fetched results into a context block for the LLM.
-	private static String formatPrefetchedBlock(List<VectorDocument> docs, List<VectorDocument> memories) {
+	private static String formatPrefetchedBlock(List<VectorDocument> docs, List<VectorDocument> memories, String recipeFacts) {
 		StringBuilder sb = new StringBuilder();
+		if (!recipeFacts.isEmpty()) {
+			sb.append("CRAFTING RECIPES (exact, from the game data):\n").append(recipeFacts).append("\n\n");
+		}
 		if (!memories.isEmpty()) {
 			sb.append("CONVERSATION MEMORY (from past chats with this player):\n");
 			for (int i = 0; i < Math.min(3, memories.size()); i++) {
 				String text = memories.get(i).content();
 				if (text == null) continue;
-				sb.append("- ").append(abbreviate(text.replace('\n', ' '), 300)).append('\n');
+				sb.append("- ").append(abbreviateTokens(text.replace('\n', ' '), MEMORY_SNIPPET_TOKENS)).append('\n');
 			}
 			sb.append('\n');
 		}
@@ -318,7 +526,7 @@ public class AgenticRagVillagerBrain implements VillagerBrain {
 			for (int i = 0; i < Math.min(5, docs.size()); i++) {
 				String text = docs.get(i).content();
 				if (text == null) continue;
-				sb.append("- ").append(abbreviate(text.replace('\n', ' '), 500)).append('\n');
+				sb.append("- ").append(abbreviateTokens(text.replace('\n', ' '), KNOWLEDGE_SNIPPET_TOKENS)).append('\n');
 			}
 			sb.append('\n');
 		}
@@ -327,105 +535,280 @@ public class AgenticRagVillagerBrain implements VillagerBrain {
 			sb.append("WORLD INFO always overrides MEMORY for current world state such as weather, time, and location. MEMORY may be outdated.\n");
 			sb.append("Do NOT call tools if the answer is already in WORLD INFO or MEMORY.\n");
 			sb.append("Only use search_knowledge or recall_memory if neither WORLD INFO nor MEMORY answers the question.\n");
+			if (!recipeFacts.isEmpty()) {
+				sb.append("CRAFTING RECIPES are exact; never change their ingredients or amounts.\n");
+			}
 		}
 		return sb.toString().trim();
 	}
 
 	// Sends a final streaming call without tools to generate the synthesized response.
-	// If the primary model fails and fallbackModel is non-null, retries with the fallback.
-	private void streamFinalReply(List<Map<String, Object>> messages, StreamCallbacks callbacks, String model) {
-		streamFinalReply(messages, callbacks, model, null);
+	// If the primary model fails and fallbackModel is non-null, retries with the fallback. When the
+	// fallback is already loaded, the primary model only gets until the budget's first-token deadline
+	// to start answering; otherwise switching would mean a model load, so the primary gets the full
+	// request timeout.
+	private void streamFinalReply(List<Map<String, Object>> messages, StreamCallbacks callbacks, String model,
+			String fallbackModel, String affinityKey, CancellationScope cancellation, TurnBudget budget) {
+		Duration timeout = fallbackModel == null || !endpointPool.residency().isLoaded(fallbackModel)
+				? REQUEST_TIMEOUT
+				: firstTokenTimeout(budget);
+		streamChat(messages, false, model, affinityKey, cancellation, timeout, callbacks::onDelta).whenComplete((streamed, e) -> {
+			if (e == null) {
+				callbacks.onCompleted(streamed.content());
+			} else if (fallbackModel != null && !(e instanceof OllamaUnavailableException) && !cancellation.isCancelled()) {
+				if (isTimeout(e) && timeout.compareTo(REQUEST_TIMEOUT) < 0) {
+					// A slow first token is a budget decision, not an outage the player needs to hear about
+					budget.degrade("switched to " + fallbackModel + " (no first token from " + model + " in " + timeout.toMillis() + "ms)");
+					System.out.println("[AgenticRAG] No first token from " + model + " in " + timeout.toMillis()
+							+ "ms, switching to " + fallbackModel);
+				} else {
+					OllamaMod.LOGGER.warn("[AgenticRAG] {} unavailable, falling back to {}: {}", model, fallbackModel, e.getMessage());
+					callbacks.onDelta("[System: " + model + " unavailable, switching to " + fallbackModel + "]\n");
+				}
+				streamFinalReply(messages, callbacks, fallbackModel, null, affinityKey, cancellation, budget);
+			} else {
+				callbacks.onError(e);
+			}
+		});
 	}
 
-	private void streamFinalReply(List<Map<String, Object>> messages, StreamCallbacks callbacks, String model, String fallbackModel) {
-		Map<String, Object> requestBody = buildOllamaRequestBody(messages, true, false, model);
-		String json = gson.toJson(requestBody);
+	// What one streamed /api/chat call produced: its content and any tool calls (null if none).
+	private record StreamedReply(String content, JsonArray toolCalls) {}
 
-		HttpRequest request = HttpRequest.newBuilder()
-				.uri(chatUri)
-				.timeout(Duration.ofSeconds(60))
-				.header("Content-Type", "application/json")
-				.POST(HttpRequest.BodyPublishers.ofString(json, StandardCharsets.UTF_8))
-				.build();
+	// Streams one /api/chat call, passing content deltas on as they arrive.
+	// The affinity key pins the conversation to one Ollama host so its prompt cache is reused.
+	// The reply is read on its own virtual thread; cancelling the turn aborts the HTTP exchange.
+	private CompletableFuture<StreamedReply> streamChat(List<Map<String, Object>> messages, boolean includeTools, String model,
+			String affinityKey, CancellationScope cancellation, Duration firstTokenTimeout, Consumer<String> onDelta) {
+		Map<String, Object> requestBody = buildOllamaRequestBody(messages, true, includeTools, model);
+		String json = gson.toJson(requestBody);
+		CompletableFuture<StreamedReply> result = new CompletableFuture<>();
 
-		Thread t = new Thread(() -> {
+		OllamaStreamExecutor.submit(() -> {
+			OllamaEndpoint endpoint = null;
+			boolean released = false;
+			long sent = 0L;
 			try {
-				HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+				cancellation.throwIfCancelled();
+				// Interrupting the reader stops a reply that is already streaming
+				cancellation.onCancel(Thread.currentThread()::interrupt);
+				// Waits behind more urgent work when every host is at its concurrency limit
+				long queued = System.nanoTime();
+				endpoint = endpointPool.acquire(work(includeTools, affinityKey), affinityKey);
+				logQueueWait(queued);
+				HttpRequest request = HttpRequest.newBuilder()
+						.uri(endpoint.resolve("/api/chat"))
+						// Ollama sends the response headers with the first chunk, so this bounds time to first token
+						.timeout(firstTokenTimeout)
+						.header("Content-Type", "application/json")
+						.POST(HttpRequest.BodyPublishers.ofString(json, StandardCharsets.UTF_8))
+						.build();
+
+				sent = System.nanoTime();
+				HttpResponse<InputStream> response = cancellation.track(
+						client.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream())).join();
 				if (response.statusCode() != 200) {
 					throw new RuntimeException("Ollama HTTP " + response.statusCode());
 				}
 
-				StringBuilder fullReply = new StringBuilder();
-				try (BufferedReader reader = new BufferedReader(
-						new InputStreamReader(response.body(), StandardCharsets.UTF_8))) {
-
-					String line;
-					while ((line = reader.readLine()) != null) {
-						if (line.isBlank()) continue;
-
-						JsonObject chunk = JsonParser.parseString(line).getAsJsonObject();
-						if (chunk.has("error")) {
-							throw new RuntimeException("Ollama error: " + chunk.get("error").getAsString());
+				StringBuilder content = new StringBuilder();
+				JsonArray toolCalls = null;
+				try (InputStream body = response.body()) {
+					OllamaChatStreamDecoder decoder = new OllamaChatStreamDecoder(body);
+					int appended;
+					boolean first = true;
+					while ((appended = decoder.next(content)) >= 0) {
+						if (first) {
+							first = false;
+							recordFirstToken(model, (System.nanoTime() - sent) / 1_000_000);
 						}
-
-						if (chunk.has("message")) {
-							JsonObject msgObj = chunk.getAsJsonObject("message");
-							if (msgObj != null && msgObj.has("content")) {
-								String delta = msgObj.get("content").getAsString();
-								if (!delta.isEmpty()) {
-									fullReply.append(delta);
-									callbacks.onDelta(delta);
-								}
-							}
+						if (decoder.hasError()) {
+							throw new RuntimeException("Ollama error: " + decoder.error());
 						}
-
-						if (chunk.has("done") && chunk.get("done").getAsBoolean()) {
+						if (appended > 0) {
+							onDelta.accept(content.substring(content.length() - appended));
+						}
+						String toolCallsJson = decoder.toolCallsJson();
+						if (toolCallsJson != null) {
+							if (toolCalls == null) toolCalls = new JsonArray();
+							toolCalls.addAll(JsonParser.parseString(toolCallsJson).getAsJsonArray());
+						}
+						if (decoder.done()) {
+							if (decoder.tokensPerSecond() >= 0) {
+								System.out.println("[AgenticRAG] Streamed " + decoder.evalCount() + " tokens from " + model
+										+ String.format(" at %.1f tok/s", decoder.tokensPerSecond()));
+							}
 							break;
 						}
 					}
 				}
 
-				callbacks.onCompleted(fullReply.toString());
+				released = true;
+				endpointPool.release(endpoint, true);
+				endpointPool.residency().markLoaded(endpoint, model);
+				result.complete(new StreamedReply(content.toString(), toolCalls));
 			} catch (Exception e) {
-				if (fallbackModel != null) {
-					OllamaMod.LOGGER.warn("[AgenticRAG] {} unavailable, falling back to {}: {}", model, fallbackModel, e.getMessage());
-					callbacks.onDelta("[System: " + model + " unavailable, switching to " + fallbackModel + "]\n");
-					streamFinalReply(messages, callbacks, fallbackModel, null);
-				} else {
-					callbacks.onError(e);
+				if (sent != 0L && isTimeout(e)) {
+					// No first token before the timeout: it took at least that long, which the estimate must reflect
+					recordFirstToken(model, Math.max((System.nanoTime() - sent) / 1_000_000, firstTokenTimeout.toMillis()));
 				}
+				if (endpoint != null && !released) {
+					// Giving up early for the turn's budget is not the host's failure
+					if (cancellation.isCancelled() || isTimeout(e) && firstTokenTimeout.compareTo(REQUEST_TIMEOUT) < 0) {
+						endpointPool.abandon(endpoint);
+					} else {
+						endpointPool.release(endpoint, e);
+					}
+				}
+				result.completeExceptionally(e);
 			}
-		}, "AgenticRAG-Ollama-Streaming-Thread");
+		});
+		return result;
+	}
 
-		t.setDaemon(true);
-		t.start();
+	// Sends a non-streaming request to Ollama on the conversation's pooled host. With hedging on, a
+	// request still unanswered at its route's p95 latency is duplicated on another host, or without
+	// tools to the other model if that one is already loaded; the first answer wins.
+	private CompletableFuture<String> sendNonStreaming(List<Map<String, Object>> messages, boolean includeTools, String model,
+			String affinityKey, CancellationScope cancellation) {
+		if (cancellation.isCancelled()) {
+			return CompletableFuture.failedFuture(new CancellationException("Villager reply cancelled"));
+		}
+		Function<OllamaEndpoint, CompletableFuture<String>> call = chatCall(messages, includeTools, model, cancellation);
+		OllamaScheduler.Work work = work(includeTools, affinityKey);
+		if (!OllamaSettings.hedgeRequests) {
+			return endpointPool.execute(work, affinityKey, call);
+		}
+		String alternate = otherModel(model);
+		Function<OllamaEndpoint, CompletableFuture<String>> alternateCall =
+				!includeTools && !alternate.equals(model) && endpointPool.residency().isLoaded(alternate)
+						? chatCall(messages, false, alternate, cancellation)
+						: null;
+		return endpointPool.executeHedged("chat:" + model + (includeTools ? "+tools" : ""), work, affinityKey, call, alternateCall);
+	}
+
+	// Scheduler class of a chat request: tool-loop calls yield to replies a player is waiting on.
+	// Requests queue per conversation, so each conversation gets its turn within the class.
+	private static OllamaScheduler.Work work(boolean includeTools, String affinityKey) {
+		return OllamaScheduler.Work.of(includeTools ? OllamaScheduler.Priority.TOOL_LOOP : OllamaScheduler.Priority.INTERACTIVE,
+				affinityKey);
 	}
 
-	// Sends a non-streaming request to Ollama.
-	private CompletableFuture<String> sendNonStreaming(List<Map<String, Object>> messages, boolean includeTools, String model) {
+	// Logs a streamed request that had to wait for a slot on the Ollama hosts.
+	private void logQueueWait(long queuedNanos) {
+		long waited = (System.nanoTime() - queuedNanos) / 1_000_000;
+		if (waited >= QUEUE_WAIT_LOG_MILLIS) {
+			System.out.println("[AgenticRAG] Waited " + waited + "ms for an Ollama slot; " + endpointPool.scheduler().summary());
+		}
+	}
+
+	// One non-streaming /api/chat exchange against a given host.
+	private Function<OllamaEndpoint, CompletableFuture<String>> chatCall(List<Map<String, Object>> messages,
+			boolean includeTools, String model, CancellationScope cancellation) {
 		Map<String, Object> requestBody = buildOllamaRequestBody(messages, false, includeTools, model);
 		String json = gson.toJson(requestBody);
 
-		HttpRequest request = HttpRequest.newBuilder()
-				.uri(chatUri)
-				.timeout(Duration.ofSeconds(60))
-				.header("Content-Type", "application/json")
-				.POST(HttpRequest.BodyPublishers.ofString(json, StandardCharsets.UTF_8))
-				.build();
+		return endpoint -> {
+			HttpRequest request = HttpRequest.newBuilder()
+					.uri(endpoint.resolve("/api/chat"))
+					.timeout(REQUEST_TIMEOUT)
+					.header("Content-Type", "application/json")
+					.POST(HttpRequest.BodyPublishers.ofString(json, StandardCharsets.UTF_8))
+					.build();
 
-		long start = System.currentTimeMillis();
-		System.out.println("[AgenticRAG] Sending non-streaming request to " + model
-				+ " (tools=" + includeTools + ", messages=" + messages.size() + ")");
+			long start = System.currentTimeMillis();
+			System.out.println("[AgenticRAG] Sending non-streaming request to " + model + " @ " + endpoint
+					+ " (tools=" + includeTools + ", messages=" + messages.size() + ")");
 
-		return client.sendAsync(request, HttpResponse.BodyHandlers.ofString())
-				.thenApply(response -> {
-					long elapsed = System.currentTimeMillis() - start;
-					System.out.println("[AgenticRAG] Response from " + model + " in " + elapsed + "ms (HTTP " + response.statusCode() + ")");
-					if (response.statusCode() != 200) {
-						throw new RuntimeException("Ollama HTTP " + response.statusCode() + ": " + response.body());
-					}
-					return response.body();
-				});
+			// Cancelling the exchange stops Ollama generating for an abandoned turn or a losing hedge
+			CompletableFuture<HttpResponse<String>> exchange =
+					cancellation.track(client.sendAsync(request, HttpResponse.BodyHandlers.ofString()));
+			return OllamaEndpointPool.cancelling(exchange.thenApply(response -> {
+				long elapsed = System.currentTimeMillis() - start;
+				System.out.println("[AgenticRAG] Response from " + model + " in " + elapsed + "ms (HTTP " + response.statusCode() + ")");
+				if (response.statusCode() != 200) {
+					throw new RuntimeException("Ollama HTTP " + response.statusCode() + ": " + response.body());
+				}
+				endpointPool.residency().markLoaded(endpoint, model);
+				return response.body();
+			}), exchange);
+		};
+	}
+
+	// Model for a route that accepts either model. With residency-aware routing, a model already loaded
+	// on the hosts wins over one that would have to be swapped in.
+	private String residentModel(String preferred, String alternative) {
+		if (!OllamaSettings.residencyAwareRouting) return preferred;
+		String model = endpointPool.residency().choose(preferred, alternative);
+		if (!model.equals(preferred)) {
+			System.out.println("[AgenticRAG] " + preferred + " not loaded, using resident " + model);
+		}
+		return model;
+	}
+
+	// Model for a reply route that accepts either model: the resident one, swapped for chatModel when
+	// the chosen model's usual time to first token no longer fits in the turn's budget.
+	private String replyModel(String preferred, String alternative, TurnContext turn) {
+		String model = residentModel(preferred, alternative);
+		String fast = OllamaSettings.chatModel;
+		long expected = expectedFirstTokenMillis(model);
+		if (!model.equals(fast) && !fitsFirstToken(model, turn.budget()) && expectedFirstTokenMillis(fast) < expected) {
+			turn.budget().degrade("dropped to " + fast + " (" + model + " needs ~" + expected + "ms to first token)");
+			return fast;
+		}
+		return model;
+	}
+
+	// Whether the tool loop still fits the turn's budget. It does not when retrieval was already
+	// skipped for time (the tools would search again) or the toolModel cannot start in time.
+	private boolean toolLoopFits(TurnContext turn) {
+		if (turn.retrievalSkipped()) {
+			turn.budget().degrade("skipped tool loop (retrieval skipped)");
+			return false;
+		}
+		if (!fitsFirstToken(OllamaSettings.toolModel, turn.budget())) {
+			turn.budget().degrade("skipped tool loop (" + OllamaSettings.toolModel + " needs ~"
+					+ expectedFirstTokenMillis(OllamaSettings.toolModel) + "ms to first token)");
+			return false;
+		}
+		return true;
+	}
+
+	private boolean fitsFirstToken(String model, TurnBudget budget) {
+		return budget.remainingMillis(TurnBudget.Stage.FIRST_TOKEN) >= expectedFirstTokenMillis(model);
+	}
+
+	// Smoothed time to first token observed for a model, or 0 before its first streamed reply.
+	private long expectedFirstTokenMillis(String model) {
+		return firstTokenMillis.getOrDefault(model, 0L);
+	}
+
+	private void recordFirstToken(String model, long millis) {
+		firstTokenMillis.merge(model, millis, (previous, latest) -> (previous * 3 + latest) / 4);
+	}
+
+	// Request timeout for a primary model that has a fallback: the time left to the first-token deadline.
+	private static Duration firstTokenTimeout(TurnBudget budget) {
+		long remaining = budget.remainingMillis(TurnBudget.Stage.FIRST_TOKEN);
+		if (remaining >= REQUEST_TIMEOUT.toMillis()) return REQUEST_TIMEOUT;
+		return Duration.ofMillis(Math.max(MIN_FIRST_TOKEN_TIMEOUT.toMillis(), remaining));
+	}
+
+	private static boolean isTimeout(Throwable throwable) {
+		while (throwable instanceof CompletionException && throwable.getCause() != null) {
+			throwable = throwable.getCause();
+		}
+		return throwable instanceof HttpTimeoutException;
+	}
+
+	// The other configured model, used as the fallback.
+	private static String otherModel(String model) {
+		return model.equals(OllamaSettings.chatModel) ? OllamaSettings.toolModel : OllamaSettings.chatModel;
+	}
+
+	// Conversation id used to pin a conversation to one pooled Ollama host.
+	private static String affinityKey(Context context) {
+		return context == null || context.conversationId() == null ? null : context.conversationId().toString();
 	}
 
 	// Builds the JSON request body for the Ollama /api/chat endpoint.
@@ -434,6 +817,7 @@ public class AgenticRagVillagerBrain implements VillagerBrain {
 		Map<String, Object> body = new HashMap<>();
 		body.put("model", model);
 		body.put("stream", stream);
+		endpointPool.residency().putKeepAlive(body);
 		body.put("messages", messages);
 		if (includeTools) {
 			body.put("tools", OllamaToolDefinition.allTools());
@@ -471,16 +855,8 @@ public class AgenticRagVillagerBrain implements VillagerBrain {
 		return msg;
 	}
 
-	// Check if a tool query is similar enough to the pre-fetched query to reuse cached results.
-	private boolean isQuerySimilarToPrefetched(String toolQuery) {
-		if (prefetchedQuery == null || toolQuery == null) return false;
-		String a = prefetchedQuery.trim().toLowerCase();
-		String b = toolQuery.trim().toLowerCase();
-		return a.equals(b) || a.contains(b) || b.contains(a);
-	}
-
 	// Dispatches tool calls to the appropriate backend (vector store queries).
-	private CompletableFuture<List<Map<String, Object>>> executeToolCalls(JsonArray toolCalls, Context context) {
+	private CompletableFuture<List<Map<String, Object>>> executeToolCalls(JsonArray toolCalls, TurnContext turn) {
 		List<CompletableFuture<Map<String, Object>>> futures = new ArrayList<>();
 
 		for (JsonElement element : toolCalls) {
@@ -495,9 +871,9 @@ public class AgenticRagVillagerBrain implements VillagerBrain {
 			CompletableFuture<String> resultFut;
 			switch (name) {
 				case "search_knowledge":
-					if (isQuerySimilarToPrefetched(query) && prefetchedDocs != null) {
+					if (turn.plan().useRetriever() && turn.matchesRetrievalQuery(query)) {
 						System.out.println("[AgenticRAG] Reusing pre-fetched docs for search_knowledge");
-						resultFut = CompletableFuture.completedFuture(formatDocResults(prefetchedDocs));
+						resultFut = CompletableFuture.completedFuture(formatDocResults(turn.docs()));
 					} else {
 						resultFut = OllamaMod.VECTOR_STORE
 								.queryDocuments(query, VectorStoreSettings.defaultTopK)
@@ -505,13 +881,16 @@ public class AgenticRagVillagerBrain implements VillagerBrain {
 								.exceptionally(e -> "(knowledge search failed: " + e.getMessage() + ")");
 					}
 					break;
+				case "lookup_recipe":
+					resultFut = CompletableFuture.completedFuture(lookupRecipe(extractStringArg(arguments, "item"), query));
+					break;
 				case "recall_memory":
-					if (isQuerySimilarToPrefetched(query) && prefetchedMemories != null) {
+					if (turn.plan().useMemory() && turn.matchesRetrievalQuery(query)) {
 						System.out.println("[AgenticRAG] Reusing pre-fetched memories for recall_memory");
-						resultFut = CompletableFuture.completedFuture(formatDocResults(prefetchedMemories));
+						resultFut = CompletableFuture.completedFuture(formatDocResults(turn.memories()));
 					} else {
 						resultFut = OllamaMod.VECTOR_STORE
-								.queryMemories(query, context.conversationId().toString(), VectorStoreSettings.defaultTopK)
+								.queryMemories(query, turn.conversation().conversationId().toString(), VectorStoreSettings.defaultTopK)
 								.thenApply(AgenticRagVillagerBrain::formatDocResults)
 								.exceptionally(e -> "(memory recall failed: " + e.getMessage() + ")");
 					}
@@ -530,10 +909,25 @@ public class AgenticRagVillagerBrain implements VillagerBrain {
 			}));
 		}
 
-		return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+		return turn.cancellation().track(CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
 				.thenApply(v -> futures.stream()
 						.map(CompletableFuture::join)
-						.toList());
+						.toList()));
+	}
+
+	// Answers a lookup_recipe call from the recipe book; falls back to item names found in the query text.
+	private String lookupRecipe(String item, String query) {
+		String name = item.isBlank() ? query : item;
+		List<String> itemIds = recipeBook.resolve(name)
+				.map(List::of)
+				.orElseGet(() -> recipeBook.findItems(name));
+		if (itemIds.isEmpty()) return "(no item called \"" + name + "\" is known)";
+
+		StringBuilder sb = new StringBuilder();
+		for (String itemId : itemIds.subList(0, Math.min(MAX_RECIPE_ITEMS, itemIds.size()))) {
+			sb.append(recipeBook.describe(itemId)).append('\n');
+		}
+		return sb.toString().trim();
 	}
 
 	// Formats vector store results into a readable string for the LLM.
@@ -544,7 +938,7 @@ public class AgenticRagVillagerBrain implements VillagerBrain {
 		for (int i = 0; i < Math.min(5, docs.size()); i++) {
 			String text = docs.get(i).content();
 			if (text == null) continue;
-			sb.append("- ").append(abbreviate(text.replace('\n', ' '), 500)).append('\n');
+			sb.append("- ").append(abbreviateTokens(text.replace('\n', ' '), KNOWLEDGE_SNIPPET_TOKENS)).append('\n');
 		}
 		return sb.toString().trim();
 	}
@@ -578,6 +972,15 @@ public class AgenticRagVillagerBrain implements VillagerBrain {
 		return value.toString();
 	}
 
+	// Cut text to a token budget using the shared estimator.
+	private static String abbreviateTokens(String s, int maxTokens) {
+		if (s == null) return "";
+		BpeTokenEstimator estimator = BpeTokenEstimator.shared();
+		int end = estimator.fit(s, 0, s.length(), maxTokens);
+		if (end >= s.length()) return s;
+		return s.substring(0, end).trim() + "...";
+	}
+
 	private static String abbreviate(String s, int max) {
 		if (s == null) return "";
 		if (s.length() <= max) return s;
@@ -586,16 +989,6 @@ public class AgenticRagVillagerBrain implements VillagerBrain {
 
 	@Override
 	public boolean isHealthy() {
-		try {
-			HttpRequest request = HttpRequest.newBuilder()
-					.uri(URI.create(OllamaSettings.baseUrl + "/api/tags"))
-					.timeout(Duration.ofSeconds(2))
-					.GET()
-					.build();
-			client.send(request, HttpResponse.BodyHandlers.discarding());
-			return true;
-		} catch (Exception e) {
-			return false;
-		}
+		return endpointPool.isHealthy();
 	}
 }
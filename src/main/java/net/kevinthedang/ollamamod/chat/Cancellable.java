@@ -0,0 +1,11 @@
+package net.kevinthedang.ollamamod.chat;
+
+// Handle for aborting an in-flight villager reply.
+@FunctionalInterface
+public interface Cancellable {
+    // Handle for a reply that cannot be aborted (or has nothing left to abort).
+    Cancellable NONE = () -> { };
+
+    // Abort the reply. Safe to call more than once, and after the reply has finished.
+    void cancel();
+}
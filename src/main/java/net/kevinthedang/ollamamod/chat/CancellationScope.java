@@ -0,0 +1,90 @@
+package net.kevinthedang.ollamamod.chat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Cancellation state of one villager turn.
+ *
+ * Work started for the turn registers how to abort itself: a pending future, an HTTP exchange, a
+ * response body being read. {@link #cancel()} runs every registered hook once, so Ollama stops
+ * generating as soon as the player gives up on the reply rather than when the reply would have ended.
+ */
+public final class CancellationScope implements Cancellable {
+    private final List<Runnable> hooks = new ArrayList<>();
+    private boolean cancelled;
+
+    @Override
+    public void cancel() {
+        List<Runnable> pending;
+        synchronized (this) {
+            if (cancelled) return;
+            cancelled = true;
+            pending = new ArrayList<>(hooks);
+            hooks.clear();
+        }
+        for (Runnable hook : pending) {
+            try {
+                hook.run();
+            } catch (RuntimeException ignored) {
+                // Aborting is best effort; one failing hook must not keep the others from running
+            }
+        }
+    }
+
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    // Run a hook on cancel, or right away if the turn is already cancelled.
+    public void onCancel(Runnable hook) {
+        synchronized (this) {
+            if (!cancelled) {
+                hooks.add(hook);
+                return;
+            }
+        }
+        hook.run();
+    }
+
+    // Cancel the future when the turn is cancelled; returns the same future.
+    public <T> CompletableFuture<T> track(CompletableFuture<T> future) {
+        onCancel(() -> future.cancel(true));
+        return future;
+    }
+
+    public void throwIfCancelled() {
+        if (isCancelled()) throw new CancellationException("Villager reply cancelled");
+    }
+
+    // Callbacks that go quiet once the turn is cancelled, so an aborted reply reports nothing.
+    public VillagerBrain.StreamCallbacks guard(VillagerBrain.StreamCallbacks callbacks) {
+        return new VillagerBrain.StreamCallbacks() {
+            @Override
+            public void onDelta(String delta) {
+                if (!isCancelled()) callbacks.onDelta(delta);
+            }
+
+            @Override
+            public void onCompleted(String fullReply) {
+                if (!isCancelled()) callbacks.onCompleted(fullReply);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                if (!isCancelled()) callbacks.onError(t);
+            }
+        };
+    }
+
+    // Whether an error (possibly wrapped by a future) comes from a cancellation.
+    public static boolean isCancellation(Throwable throwable) {
+        while (throwable instanceof CompletionException && throwable.getCause() != null) {
+            throwable = throwable.getCause();
+        }
+        return throwable instanceof CancellationException;
+    }
+}
@@ -1,14 +1,46 @@
 package net.kevinthedang.ollamamod.chat;
 
+import java.util.List;
+import java.util.Map;
+
 // Temporary Ollama settings
 
 public class OllamaSettings {
 
     public static String baseUrl = "http://localhost:11434";
 
+    // All Ollama hosts to balance across; the first entry mirrors baseUrl.
+    public static List<String> endpoints = List.of(baseUrl);
+
+    // Requests each Ollama host runs at once (more wait in priority order), how many of those may be
+    // memory writes or ingestion, and per-host overrides of the first limit by base URL.
+    public static int maxRequestsPerEndpoint = 4;
+    public static int maxBackgroundRequestsPerEndpoint = 1;
+    public static Map<String, Integer> endpointRequestLimits = Map.of();
+
     public static final String DEFAULT_CHAT_MODEL = "granite4:latest";
     public static final String DEFAULT_TOOL_MODEL = "minimax-m2.5:cloud";
 
     public static String chatModel = DEFAULT_CHAT_MODEL;            // for low-effort conversations
     public static String toolModel = DEFAULT_TOOL_MODEL;            // higher-effort conversations
+
+    // Villager turns answered at once across all conversations, and how many more may wait for a slot.
+    public static int maxConcurrentTurns = 4;
+    public static int maxQueuedTurns = 16;
+
+    // Start a chatModel reply from facts and history while retrieval runs, shown only if retrieval finds nothing.
+    public static boolean speculativeReplies = true;
+
+    // Latency budget per villager turn in milliseconds (0 = none). Retrieval that overruns its share is
+    // skipped and a slow toolModel is swapped for chatModel, so replies start within the budget.
+    public static long turnBudgetMillis = 8000;
+
+    // When a route can use either model, prefer the one already loaded on the Ollama hosts over a model swap.
+    public static boolean residencyAwareRouting = true;
+
+    // Duplicate a non-streaming request that runs past its usual p95 latency, to cut rare multi-second stalls.
+    public static boolean hedgeRequests = true;
+
+    // Keep persona, rules and history as a byte-stable prompt prefix so Ollama reuses last turn's KV cache.
+    public static PromptComposerV1.Layout promptLayout = PromptComposerV1.Layout.STABLE_PREFIX;
 }
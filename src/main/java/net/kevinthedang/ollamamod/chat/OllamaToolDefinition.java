@@ -8,7 +8,28 @@ public final class OllamaToolDefinition {
 
 	// Returns the list of tool definitions in the format expected by Ollama's /api/chat `tools` field.
 	public static List<Map<String, Object>> allTools() {
-		return List.of(searchKnowledge(), recallMemory());
+		return List.of(lookupRecipe(), searchKnowledge(), recallMemory());
+	}
+
+	private static Map<String, Object> lookupRecipe() {
+		return Map.of(
+			"type", "function",
+			"function", Map.of(
+				"name", "lookup_recipe",
+				"description", "Look up the exact crafting recipe for an item and what it is used to craft. " +
+					"Use this for any question about how to craft or make a specific item.",
+				"parameters", Map.of(
+					"type", "object",
+					"properties", Map.of(
+						"item", Map.of(
+							"type", "string",
+							"description", "The item name, for example \"piston\" or \"Iron Pickaxe\""
+						)
+					),
+					"required", List.of("item")
+				)
+			)
+		);
 	}
 
 	private static Map<String, Object> searchKnowledge() {
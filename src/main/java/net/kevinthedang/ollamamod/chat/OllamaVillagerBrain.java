@@ -3,11 +3,13 @@ package net.kevinthedang.ollamamod.chat;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import net.kevinthedang.ollamamod.ollama.OllamaChatStreamDecoder;
+import net.kevinthedang.ollamamod.ollama.OllamaEndpoint;
+import net.kevinthedang.ollamamod.ollama.OllamaEndpointPool;
+import net.kevinthedang.ollamamod.ollama.OllamaScheduler;
+import net.kevinthedang.ollamamod.ollama.OllamaStreamExecutor;
 
-import java.io.BufferedReader;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
@@ -19,14 +21,18 @@ import java.util.concurrent.CompletableFuture;
 public class OllamaVillagerBrain implements VillagerBrain {
 
     private final HttpClient client;
-    private final URI chatUri;
+    private final OllamaEndpointPool endpointPool;
     private final Gson gson = new Gson();
 
     public OllamaVillagerBrain() {
+        this(OllamaEndpointPool.single(OllamaSettings.baseUrl));
+    }
+
+    public OllamaVillagerBrain(OllamaEndpointPool endpointPool) {
         this.client = HttpClient.newBuilder()
                 .connectTimeout(Duration.ofSeconds(3))
                 .build();
-        this.chatUri = URI.create(OllamaSettings.baseUrl + "/api/chat");
+        this.endpointPool = endpointPool;
     }
 
     @Override
@@ -35,29 +41,32 @@ public class OllamaVillagerBrain implements VillagerBrain {
 
         Map<String, Object> requestBody = new HashMap<>();
         requestBody.put("model", OllamaSettings.chatModel);
+        endpointPool.residency().putKeepAlive(requestBody);
         requestBody.put("stream", false); 
         requestBody.put("messages", messages);
 
         String json = gson.toJson(requestBody);
 
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(chatUri)
-                .timeout(Duration.ofSeconds(25))
-                .header("Content-Type", "application/json")
-                .POST(HttpRequest.BodyPublishers.ofString(json, StandardCharsets.UTF_8))
-                .build();
+        return endpointPool.execute(affinityKey(context), endpoint -> {
+            HttpRequest request = HttpRequest.newBuilder()
+                    .uri(endpoint.resolve("/api/chat"))
+                    .timeout(Duration.ofSeconds(25))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(json, StandardCharsets.UTF_8))
+                    .build();
 
-        return client.sendAsync(request, HttpResponse.BodyHandlers.ofString())
-                .thenApply(response -> {
-                    if (response.statusCode() != 200) {
-                        throw new RuntimeException("Ollama HTTP " + response.statusCode());
-                    }
-                    return parseReply(response.body());
-                });
+            return client.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                    .thenApply(response -> {
+                        if (response.statusCode() != 200) {
+                            throw new RuntimeException("Ollama HTTP " + response.statusCode());
+                        }
+                        return parseReply(response.body());
+                    });
+        });
     }
 
     @Override
-    public void getReplyStreaming(Context context,
+    public Cancellable getReplyStreaming(Context context,
                                 List<ChatMessage> history,
                                 String playerMessage,
                                 StreamCallbacks callbacks) {
@@ -66,71 +75,60 @@ public class OllamaVillagerBrain implements VillagerBrain {
 
         Map<String, Object> requestBody = new HashMap<>();
         requestBody.put("model", OllamaSettings.chatModel);
+        endpointPool.residency().putKeepAlive(requestBody);
         requestBody.put("stream", true);
         requestBody.put("messages", messages);
 
         String json = gson.toJson(requestBody);
-
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(chatUri)
-                .timeout(Duration.ofSeconds(60))
-                .header("Content-Type", "application/json")
-                .POST(HttpRequest.BodyPublishers.ofString(json, StandardCharsets.UTF_8))
-                .build();
-
-        // Run the streaming call on a background thread so we don’t block the client
-        Thread t = new Thread(() -> {
+        String affinityKey = affinityKey(context);
+        CancellationScope cancellation = new CancellationScope();
+        StreamCallbacks live = cancellation.guard(callbacks);
+
+        // Read the stream on its own virtual thread so we don’t block the client
+        OllamaStreamExecutor.submit(() -> {
+            OllamaEndpoint endpoint = null;
+            boolean succeeded = false;
             try {
-                HttpResponse<InputStream> response =
-                        client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+                cancellation.throwIfCancelled();
+                // Cancelling aborts the exchange, or interrupts the read once the reply is streaming
+                cancellation.onCancel(Thread.currentThread()::interrupt);
+                endpoint = endpointPool.acquire(
+                        OllamaScheduler.Work.of(OllamaScheduler.Priority.INTERACTIVE, affinityKey), affinityKey);
+                HttpRequest request = HttpRequest.newBuilder()
+                        .uri(endpoint.resolve("/api/chat"))
+                        .timeout(Duration.ofSeconds(60))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(json, StandardCharsets.UTF_8))
+                        .build();
+
+                HttpResponse<InputStream> response = cancellation.track(
+                        client.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream())).join();
 
                 if (response.statusCode() != 200) {
                     throw new RuntimeException("Ollama HTTP " + response.statusCode());
                 }
 
-                StringBuilder fullReply = new StringBuilder();
-
-                try (BufferedReader reader = new BufferedReader(
-                        new InputStreamReader(response.body(), StandardCharsets.UTF_8))) {
-
-                    String line;
-                    while ((line = reader.readLine()) != null) {
-                        if (line.isBlank()) continue;
-
-                        JsonObject chunk = JsonParser.parseString(line).getAsJsonObject();
-
-                        if (chunk.has("error")) {
-                            throw new RuntimeException("Ollama error: " + chunk.get("error").getAsString());
-                        }
-
-                        // For /api/chat streaming, each chunk includes:
-                        // { "message": { "role": "...", "content": "..." }, "done": false, ... }
-                        if (chunk.has("message")) {
-                            JsonObject msgObj = chunk.getAsJsonObject("message");
-                            if (msgObj != null && msgObj.has("content")) {
-                                String delta = msgObj.get("content").getAsString();
-                                if (!delta.isEmpty()) {
-                                    fullReply.append(delta);
-                                    callbacks.onDelta(delta);
-                                }
-                            }
-                        }
-
-                        if (chunk.has("done") && chunk.get("done").getAsBoolean()) {
-                            break;
-                        }
-                    }
+                String fullReply;
+                try (InputStream body = response.body()) {
+                    fullReply = new OllamaChatStreamDecoder(body).readReply(live::onDelta);
                 }
 
-                callbacks.onCompleted(fullReply.toString());
+                succeeded = true;
+                endpointPool.release(endpoint, true);
+                live.onCompleted(fullReply);
 
             } catch (Exception e) {
-                callbacks.onError(e);
+                if (endpoint != null && !succeeded) {
+                    if (cancellation.isCancelled()) {
+                        endpointPool.abandon(endpoint);
+                    } else {
+                        endpointPool.release(endpoint, e);
+                    }
+                }
+                live.onError(e);
             }
-        }, "Ollama-Streaming-Thread");
-
-        t.setDaemon(true);
-        t.start();
+        });
+        return cancellation;
     }
 
     // For non-streaming response parsing
@@ -185,18 +183,13 @@ public class OllamaVillagerBrain implements VillagerBrain {
         return messages;
     }
 
+    // Conversation id used to keep a conversation on one pooled Ollama host.
+    private static String affinityKey(Context context) {
+        return context == null || context.conversationId() == null ? null : context.conversationId().toString();
+    }
+
     @Override
     public boolean isHealthy() {
-        try {
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(OllamaSettings.baseUrl + "/api/tags"))
-                    .timeout(Duration.ofSeconds(2))
-                    .GET()
-                    .build();
-            client.send(request, HttpResponse.BodyHandlers.discarding());
-            return true;
-        } catch (Exception e) {
-            return false;
-        }
+        return endpointPool.isHealthy();
     }
 }
@@ -9,7 +9,31 @@ import java.util.stream.Collectors;
 
 public class PromptComposerV1 implements PromptComposer {
     private static final int MAX_HISTORY_MESSAGES = 12;
+    // STABLE_PREFIX drops old history this many messages at a time, so the window start stays put for several turns
+    private static final int HISTORY_DROP_STEP = 6;
     private static final int MAX_FACT_CHARS = 1800;
+    private static final String LANGUAGE_REMINDER = "REMINDER: The next message is the player's CURRENT message. " +
+            "You MUST reply in the same language as this message, regardless of what language was used earlier in the conversation.";
+
+    // Where volatile material goes in the prompt.
+    public enum Layout {
+        // Weather anchored in the system prompt, world info and reminder as separate messages, sliding history window.
+        LEGACY,
+        // Persona, rules and history form a byte-stable prefix that Ollama can reuse from the previous turn;
+        // weather, world info and the reminder follow it in one trailing system message.
+        STABLE_PREFIX
+    }
+
+    private final Layout layout;
+
+    // Uses OllamaSettings.promptLayout, read on every call.
+    public PromptComposerV1() {
+        this(null);
+    }
+
+    public PromptComposerV1(Layout layout) {
+        this.layout = layout;
+    }
 
     @Override
     public List<Map<String, String>> buildMessages(
@@ -19,6 +43,7 @@ public class PromptComposerV1 implements PromptComposer {
             WorldFactBundle worldFacts
     ) {
         List<Map<String, String>> messages = new ArrayList<>();
+        boolean stablePrefix = (layout == null ? OllamaSettings.promptLayout : layout) == Layout.STABLE_PREFIX;
 
         // 1. System persona + guardrails
         String name = safeOrUnknown(ctx == null ? null : ctx.villagerName());
@@ -28,13 +53,14 @@ public class PromptComposerV1 implements PromptComposer {
         String persona = professionPersona(prof);
 
         // Extract weather early so it can be anchored in the system prompt before persona/history
+        // (STABLE_PREFIX anchors it after the history instead, keeping the system prompt identical across turns)
         String weatherLine = extractWeatherFact(worldFacts);
 
         messages.add(Map.of(
                 "role", "system",
                 "content",
                 ("You are " + name + ", a " + prof + " villager in Minecraft. World: " + world + ".\n\n") +
-                        (weatherLine.isEmpty() ? "" :
+                        (weatherLine.isEmpty() || stablePrefix ? "" :
                                 "CURRENT WEATHER:\n" + weatherLine + "\n\n") +
                         "VOICE & PERSONA:\n" +
                         persona + "\n\n" +
@@ -86,7 +112,9 @@ public class PromptComposerV1 implements PromptComposer {
 
         // 2. Bounded chat history (most recent N)
         if (history != null && !history.isEmpty()) {
-            int start = Math.max(0, history.size() - MAX_HISTORY_MESSAGES);
+            int start = stablePrefix
+                    ? historyWindowStart(history.size())
+                    : Math.max(0, history.size() - MAX_HISTORY_MESSAGES);
             for (ChatMessage msg : history.subList(start, history.size())) {
                 String role = switch (msg.role()) {
                     case PLAYER -> "user";
@@ -103,20 +131,29 @@ public class PromptComposerV1 implements PromptComposer {
         // 3. Inject world/context facts immediately before the player's question so
         //    live sensor readings are the most proximate context the LLM sees.
         String factsText = formatFacts(worldFacts, playerMessage);
-        messages.add(Map.of(
-                "role", "system",
-                "content", factsText
-        ));
-
-        // 4. Language reminder — placed immediately before user message for maximum effect.
-        //    Chat history in other languages can overwhelm the system prompt language rule.
         String pm = playerMessage == null ? "" : playerMessage;
-        if (!pm.isBlank()) {
+        if (stablePrefix) {
+            // Everything that changes between turns goes in one message after the stable prefix
             messages.add(Map.of(
                     "role", "system",
-                    "content", "REMINDER: The next message is the player's CURRENT message. " +
-                            "You MUST reply in the same language as this message, regardless of what language was used earlier in the conversation."
+                    "content", (weatherLine.isEmpty() ? "" : "CURRENT WEATHER:\n" + weatherLine + "\n\n") +
+                            factsText +
+                            (pm.isBlank() ? "" : "\n" + LANGUAGE_REMINDER)
             ));
+        } else {
+            messages.add(Map.of(
+                    "role", "system",
+                    "content", factsText
+            ));
+
+            // 4. Language reminder — placed immediately before user message for maximum effect.
+            //    Chat history in other languages can overwhelm the system prompt language rule.
+            if (!pm.isBlank()) {
+                messages.add(Map.of(
+                        "role", "system",
+                        "content", LANGUAGE_REMINDER
+                ));
+            }
         }
 
         // 5. Latest player message
@@ -128,6 +165,13 @@ public class PromptComposerV1 implements PromptComposer {
         return messages;
     }
 
+    // First history message kept by STABLE_PREFIX: at most MAX_HISTORY_MESSAGES, dropping in whole steps.
+    static int historyWindowStart(int historySize) {
+        int excess = historySize - MAX_HISTORY_MESSAGES;
+        if (excess <= 0) return 0;
+        return (excess + HISTORY_DROP_STEP - 1) / HISTORY_DROP_STEP * HISTORY_DROP_STEP;
+    }
+
     // Stop words to exclude when extracting query keywords from the player message
     private static final Set<String> QUERY_STOP_WORDS = Set.of(
             "the", "a", "an", "is", "are", "was", "were", "be", "been",
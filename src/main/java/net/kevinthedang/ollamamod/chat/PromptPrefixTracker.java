@@ -0,0 +1,117 @@
+package net.kevinthedang.ollamamod.chat;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Measures how much of each prompt repeats the previous prompt of the same conversation.
+ *
+ * Ollama keeps the KV cache of the prompt it last evaluated and only prefills what follows the
+ * longest shared prefix, so leading messages identical to last turn's are prefill it can skip. A
+ * prompt's stable part is everything up to its last history message (just the system prompt while
+ * there is no history yet); a follow-up turn is a hit when it starts with the previous prompt's stable
+ * part byte for byte. Messages are compared by a chained 64-bit fingerprint, so nothing but one hash
+ * per message is kept per conversation.
+ */
+public final class PromptPrefixTracker {
+    private static final int MAX_CONVERSATIONS = 256;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    // How one prompt relates to the previous prompt of its conversation.
+    public record Reuse(String fingerprint, boolean followUp, boolean hit, int reusedMessages, int totalMessages,
+                        int reusedChars, int totalChars) {
+        // Share of the prompt's characters covered by the reused prefix.
+        public double ratio() {
+            return totalChars == 0 ? 0 : (double) reusedChars / totalChars;
+        }
+    }
+
+    private record Chain(long[] hashes, int stableLength) {}
+
+    private final Map<String, Chain> lastByConversation = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Chain> eldest) {
+            return size() > MAX_CONVERSATIONS;
+        }
+    };
+    private int followUps;
+    private int hits;
+    private long reusedChars;
+    private long totalChars;
+
+    // Compare a prompt with the conversation's previous one and remember it for the next turn.
+    public synchronized Reuse record(String conversationKey, List<? extends Map<String, ?>> messages) {
+        int size = messages.size();
+        long[] hashes = new long[size];
+        int[] chars = new int[size];
+        long hash = FNV_OFFSET;
+        for (int index = 0; index < size; index++) {
+            Map<String, ?> message = messages.get(index);
+            String role = String.valueOf(message.get("role"));
+            String content = String.valueOf(message.get("content"));
+            hash = mix(mix(hash, role), content);
+            hashes[index] = hash;
+            chars[index] = content.length();
+        }
+        int stableLength = stableLength(messages);
+
+        Chain previous = conversationKey == null ? null : lastByConversation.get(conversationKey);
+        int reused = 0;
+        if (previous != null) {
+            int limit = Math.min(previous.hashes().length, size);
+            while (reused < limit && previous.hashes()[reused] == hashes[reused]) reused++;
+        }
+        int reusedCount = 0;
+        int totalCount = 0;
+        for (int index = 0; index < size; index++) {
+            if (index < reused) reusedCount += chars[index];
+            totalCount += chars[index];
+        }
+        boolean hit = previous != null && reused >= previous.stableLength();
+        if (previous != null) {
+            followUps++;
+            if (hit) hits++;
+            reusedChars += reusedCount;
+            totalChars += totalCount;
+        }
+        if (conversationKey != null) lastByConversation.put(conversationKey, new Chain(hashes, stableLength));
+
+        String fingerprint = stableLength == 0 ? "" : String.format("%016x", hashes[stableLength - 1]);
+        return new Reuse(fingerprint, previous != null, hit, reused, size, reusedCount, totalCount);
+    }
+
+    // Share of follow-up turns whose prompt kept the previous stable part.
+    public synchronized double hitRate() {
+        return followUps == 0 ? 0 : (double) hits / followUps;
+    }
+
+    // Share of follow-up prompt characters covered by reused prefixes.
+    public synchronized double reuseRatio() {
+        return totalChars == 0 ? 0 : (double) reusedChars / totalChars;
+    }
+
+    // One-line summary, e.g. "hit rate 80% (4/5 follow-ups), 72% of prompt chars reused".
+    public synchronized String summary() {
+        return String.format("hit rate %d%% (%d/%d follow-ups), %d%% of prompt chars reused",
+                Math.round(hitRate() * 100), hits, followUps, Math.round(reuseRatio() * 100));
+    }
+
+    // Messages up to the last user or assistant message before the final one, or the first message.
+    private static int stableLength(List<? extends Map<String, ?>> messages) {
+        for (int index = messages.size() - 2; index > 0; index--) {
+            Object role = messages.get(index).get("role");
+            if ("user".equals(role) || "assistant".equals(role)) return index + 1;
+        }
+        return Math.min(1, messages.size());
+    }
+
+    private static long mix(long hash, String text) {
+        for (int index = 0; index < text.length(); index++) {
+            hash = (hash ^ text.charAt(index)) * FNV_PRIME;
+        }
+        // Separator so ("ab", "c") and ("a", "bc") differ
+        return (hash ^ 0xffff) * FNV_PRIME;
+    }
+}
@@ -0,0 +1,86 @@
+package net.kevinthedang.ollamamod.chat;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A reply streamed before retrieval has finished, held back until the turn decides whether to use it.
+ *
+ * While held, deltas are buffered and nothing reaches the player. {@link #commit} replays the
+ * buffer to the real callbacks and forwards everything after it; {@link #discard} aborts the
+ * stream when retrieval found context the reply should be grounded in.
+ */
+final class SpeculativeReply implements VillagerBrain.StreamCallbacks {
+    private final CancellationScope cancellation = new CancellationScope();
+    private final StringBuilder held = new StringBuilder();
+    private VillagerBrain.StreamCallbacks target;
+    private String completedReply;
+    private Throwable error;
+
+    // Cancelling this scope aborts the speculative stream.
+    CancellationScope cancellation() {
+        return cancellation;
+    }
+
+    // Hand the reply to the player's callbacks. Returns false, leaving the callbacks untouched,
+    // if the speculative stream already failed or was discarded.
+    synchronized boolean commit(VillagerBrain.StreamCallbacks callbacks) {
+        if (error != null || cancellation.isCancelled()) return false;
+        target = callbacks;
+        if (held.length() > 0) {
+            callbacks.onDelta(held.toString());
+            held.setLength(0);
+        }
+        if (completedReply != null) {
+            callbacks.onCompleted(completedReply);
+        }
+        return true;
+    }
+
+    // Abort the speculative stream; nothing it produced is shown.
+    void discard() {
+        cancellation.cancel();
+    }
+
+    // Discard the speculation, once started, if the turn preparing alongside it fails: a failed turn never
+    // reaches the reply stage that would otherwise commit or discard it.
+    static <T> CompletableFuture<T> discardOnFailure(CompletableFuture<T> turn, CompletableFuture<SpeculativeReply> speculation) {
+        return turn.whenComplete((value, failure) -> {
+            if (failure == null) return;
+            speculation.thenAccept(started -> {
+                if (started != null) started.discard();
+            });
+        });
+    }
+
+    // Characters generated so far but not yet shown.
+    synchronized int heldLength() {
+        return held.length();
+    }
+
+    @Override
+    public synchronized void onDelta(String delta) {
+        if (target != null) {
+            target.onDelta(delta);
+        } else {
+            held.append(delta);
+        }
+    }
+
+    @Override
+    public synchronized void onCompleted(String fullReply) {
+        if (target != null) {
+            target.onCompleted(fullReply);
+        } else {
+            completedReply = fullReply;
+        }
+    }
+
+    @Override
+    public synchronized void onError(Throwable t) {
+        if (target != null) {
+            target.onError(t);
+        } else {
+            error = t;
+        }
+    }
+}
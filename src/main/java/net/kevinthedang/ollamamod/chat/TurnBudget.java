@@ -0,0 +1,106 @@
+package net.kevinthedang.ollamamod.chat;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency budget for one villager turn, measured from when the turn was submitted.
+ *
+ * The budget is split into cumulative stage deadlines: the query embedding must be back by
+ * {@link Stage#EMBED}, memories and documents by {@link Stage#RETRIEVE}, and the reply's first token
+ * by {@link Stage#FIRST_TOKEN}, the end of the budget. A stage that misses its deadline is dropped
+ * rather than waited for, and each such degradation is recorded so the turn can report it.
+ */
+public final class TurnBudget {
+    // Stage deadlines as shares of the whole budget.
+    public enum Stage {
+        EMBED(0.20),
+        RETRIEVE(0.35),
+        FIRST_TOKEN(1.0);
+
+        private final double share;
+
+        Stage(double share) {
+            this.share = share;
+        }
+    }
+
+    private final long startNanos = System.nanoTime();
+    private final long totalMillis;
+    private final Set<Stage> overrun = EnumSet.noneOf(Stage.class);
+    private final List<String> degradations = new ArrayList<>();
+
+    // Budget of totalMillis; zero or less means no budget.
+    public TurnBudget(long totalMillis) {
+        this.totalMillis = totalMillis;
+    }
+
+    public static TurnBudget unlimited() {
+        return new TurnBudget(0);
+    }
+
+    public boolean isLimited() {
+        return totalMillis > 0;
+    }
+
+    public long elapsedMillis() {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    // Deadline of a stage, relative to the start of the turn.
+    public long deadlineMillis(Stage stage) {
+        return Math.round(totalMillis * stage.share);
+    }
+
+    // Time left until a stage's deadline (Long.MAX_VALUE without a budget).
+    public long remainingMillis(Stage stage) {
+        if (!isLimited()) return Long.MAX_VALUE;
+        return Math.max(0, deadlineMillis(stage) - elapsedMillis());
+    }
+
+    // Complete with the stage's result, or with the fallback if the stage deadline passes first. The
+    // stage itself keeps running, since other turns may share its result (the embedding cache).
+    public <T> CompletableFuture<T> bound(Stage stage, CompletableFuture<T> future, T fallback, String degradation) {
+        if (!isLimited()) return future;
+        CompletableFuture<T> bounded = new CompletableFuture<>();
+        future.whenComplete((value, error) -> {
+            if (error != null) {
+                bounded.completeExceptionally(error);
+            } else {
+                bounded.complete(value);
+            }
+        });
+        CompletableFuture.delayedExecutor(remainingMillis(stage), TimeUnit.MILLISECONDS).execute(() -> {
+            // Record the overrun first: stages waiting on this one run inside complete() and check it
+            synchronized (this) {
+                if (bounded.isDone()) return;
+                overrun.add(stage);
+            }
+            degrade(degradation + " (" + stage.name().toLowerCase(Locale.ROOT) + " deadline " + deadlineMillis(stage) + "ms)");
+            bounded.complete(fallback);
+        });
+        return bounded;
+    }
+
+    // Whether a bounded stage missed its deadline.
+    public synchronized boolean overran(Stage stage) {
+        return overrun.contains(stage);
+    }
+
+    // Record a degradation applied to keep the turn within budget.
+    public void degrade(String degradation) {
+        synchronized (this) {
+            degradations.add(degradation);
+        }
+        System.out.println("[AgenticRAG] Over budget at " + elapsedMillis() + "ms: " + degradation);
+    }
+
+    public synchronized List<String> degradations() {
+        return List.copyOf(degradations);
+    }
+}
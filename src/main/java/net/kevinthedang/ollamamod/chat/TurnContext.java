@@ -0,0 +1,54 @@
+package net.kevinthedang.ollamamod.chat;
+
+import net.kevinthedang.ollamamod.vectorstore.model.VectorDocument;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Immutable state of one villager turn, passed through the reply pipeline instead of being kept on
+ * the shared brain, so concurrent turns never see each other's retrieval results.
+ */
+public record TurnContext(
+        VillagerBrain.Context conversation,
+        RoutePlan plan,
+        String retrievalQuery,
+        List<VectorDocument> docs,
+        List<VectorDocument> memories,
+        String recipeFacts,
+        CancellationScope cancellation,
+        TurnBudget budget
+) {
+    public TurnContext {
+        docs = List.copyOf(docs);
+        memories = List.copyOf(memories);
+        recipeFacts = recipeFacts == null ? "" : recipeFacts;
+        cancellation = cancellation == null ? new CancellationScope() : cancellation;
+        budget = budget == null ? TurnBudget.unlimited() : budget;
+    }
+
+    // Conversation id used to pin the conversation to one pooled Ollama host.
+    public String affinityKey() {
+        return conversation == null || conversation.conversationId() == null
+                ? null
+                : conversation.conversationId().toString();
+    }
+
+    // Whether retrieval was dropped to stay within the turn's latency budget.
+    public boolean retrievalSkipped() {
+        return budget.overran(TurnBudget.Stage.EMBED) || budget.overran(TurnBudget.Stage.RETRIEVE);
+    }
+
+    // Whether pre-fetched docs or exact recipes can answer without tools.
+    public boolean hasRetrievedContext() {
+        return !docs.isEmpty() || !recipeFacts.isEmpty();
+    }
+
+    // Whether a tool call's query is close enough to the pre-fetched query to reuse its results.
+    public boolean matchesRetrievalQuery(String toolQuery) {
+        if (retrievalQuery == null || toolQuery == null) return false;
+        String a = retrievalQuery.trim().toLowerCase(Locale.ROOT);
+        String b = toolQuery.trim().toLowerCase(Locale.ROOT);
+        return a.equals(b) || a.contains(b) || b.contains(a);
+    }
+}
@@ -0,0 +1,98 @@
+package net.kevinthedang.ollamamod.chat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Stage graph for one villager turn: every stage starts as soon as its dependencies are done, and
+ * each stage's start offset and duration are recorded.
+ *
+ * Stages with no dependencies start when declared, so declaring the asynchronous ones (embedding,
+ * retrieval) before the synchronous ones (the world scan, which must stay on the calling thread)
+ * overlaps their latencies. A dependent stage waits for its dependencies whether they succeeded or
+ * failed; reading a failed dependency with {@link Stage#join()} rethrows its error.
+ */
+public final class TurnGraph {
+    private final long startNanos = System.nanoTime();
+    private final Map<String, Timing> timings = Collections.synchronizedMap(new LinkedHashMap<>());
+
+    // When a stage started, relative to the turn, and how long it ran (-1 while still running).
+    public record Timing(long startMillis, long durationMillis) {}
+
+    // A stage's eventual result.
+    public static final class Stage<T> {
+        private final CompletableFuture<T> future;
+
+        private Stage(CompletableFuture<T> future) {
+            this.future = future;
+        }
+
+        // Stage that is already done with a value (a skipped stage); not timed.
+        public static <T> Stage<T> of(T value) {
+            return new Stage<>(CompletableFuture.completedFuture(value));
+        }
+
+        public CompletableFuture<T> future() {
+            return future;
+        }
+
+        // Result of a finished stage (dependent stages only run once it is finished).
+        public T join() {
+            return future.join();
+        }
+    }
+
+    // Run a stage to completion now, on the calling thread.
+    public <T> Stage<T> run(String name, Supplier<T> body) {
+        return start(name, () -> CompletableFuture.completedFuture(body.get()));
+    }
+
+    // Start a stage now; the body returns a future for its asynchronous part.
+    public <T> Stage<T> start(String name, Supplier<CompletableFuture<T>> body) {
+        return new Stage<>(timed(name, body));
+    }
+
+    // Start a stage once all dependencies are done.
+    public <T> Stage<T> after(String name, List<Stage<?>> dependencies, Supplier<CompletableFuture<T>> body) {
+        CompletableFuture<?>[] settled = new CompletableFuture<?>[dependencies.size()];
+        for (int index = 0; index < settled.length; index++) {
+            settled[index] = dependencies.get(index).future.handle((result, error) -> null);
+        }
+        return new Stage<>(CompletableFuture.allOf(settled).thenCompose(ignored -> timed(name, body)));
+    }
+
+    // Timings by stage name, in start order.
+    public Map<String, Timing> timings() {
+        synchronized (timings) {
+            return new LinkedHashMap<>(timings);
+        }
+    }
+
+    // One-line timing summary, e.g. "embed=0+85ms docs=85+3ms world=0+12ms".
+    public String summary() {
+        List<String> parts = new ArrayList<>();
+        timings().forEach((name, timing) -> parts.add(name + "=" + timing.startMillis() + "+"
+            + (timing.durationMillis() < 0 ? "?" : timing.durationMillis() + "ms")));
+        return String.join(" ", parts);
+    }
+
+    private <T> CompletableFuture<T> timed(String name, Supplier<CompletableFuture<T>> body) {
+        long stageStart = System.nanoTime();
+        long startMillis = (stageStart - startNanos) / 1_000_000;
+        timings.put(name, new Timing(startMillis, -1));
+        CompletableFuture<T> future;
+        try {
+            future = body.get();
+        } catch (RuntimeException exception) {
+            future = CompletableFuture.failedFuture(exception);
+        }
+        return future.whenComplete((result, error) -> {
+            timings.put(name, new Timing(startMillis, (System.nanoTime() - stageStart) / 1_000_000));
+        });
+    }
+}
@@ -0,0 +1,118 @@
+package net.kevinthedang.ollamamod.chat;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Bounded scheduler for villager turns.
+ *
+ * Turns of different conversations run in parallel, up to maxConcurrent at a time; later turns wait
+ * in arrival order. Turns of one conversation run one after another, so a player's second message
+ * is answered after the first. At most maxConcurrent + maxQueued turns are admitted at once; beyond
+ * that a turn fails fast with a {@link RejectedExecutionException} instead of piling up behind a
+ * slow Ollama host.
+ *
+ * A turn admitted immediately starts on the calling thread before {@link #submit} returns; a
+ * waiting turn starts on the thread that finished the turn before it.
+ */
+public final class TurnScheduler {
+    private final int maxConcurrent;
+    private final int maxQueued;
+    private final Object lock = new Object();
+    private final ArrayDeque<Runnable> waiting = new ArrayDeque<>();
+    private final Map<String, CompletableFuture<Void>> lastTurnByConversation = new HashMap<>();
+    private int running;
+    private int admitted;
+
+    public TurnScheduler(int maxConcurrent, int maxQueued) {
+        if (maxConcurrent < 1) throw new IllegalArgumentException("maxConcurrent must be at least 1");
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueued = Math.max(0, maxQueued);
+    }
+
+    // Schedule a turn; the conversation key orders turns of one conversation (null for none).
+    public <T> CompletableFuture<T> submit(String conversationKey, Supplier<CompletableFuture<T>> turn) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        CompletableFuture<Void> previous;
+        synchronized (lock) {
+            if (admitted >= maxConcurrent + maxQueued) {
+                return CompletableFuture.failedFuture(
+                    new RejectedExecutionException("Too many villager conversations in progress"));
+            }
+            admitted++;
+            previous = conversationKey == null ? null : lastTurnByConversation.get(conversationKey);
+            if (conversationKey != null) {
+                CompletableFuture<Void> done = result.handle((value, error) -> null);
+                lastTurnByConversation.put(conversationKey, done);
+                done.thenRun(() -> {
+                    synchronized (lock) {
+                        lastTurnByConversation.remove(conversationKey, done);
+                    }
+                });
+            }
+        }
+
+        Runnable start = () -> {
+            CompletableFuture<T> future;
+            try {
+                future = turn.get();
+            } catch (RuntimeException exception) {
+                future = CompletableFuture.failedFuture(exception);
+            }
+            future.whenComplete((value, error) -> {
+                finished();
+                if (error != null) {
+                    result.completeExceptionally(error);
+                } else {
+                    result.complete(value);
+                }
+            });
+        };
+        if (previous == null) {
+            acquire(start);
+        } else {
+            previous.thenRun(() -> acquire(start));
+        }
+        return result;
+    }
+
+    // Turns currently running.
+    public int running() {
+        synchronized (lock) {
+            return running;
+        }
+    }
+
+    // Turns admitted but not started yet.
+    public int queued() {
+        synchronized (lock) {
+            return admitted - running;
+        }
+    }
+
+    private void acquire(Runnable start) {
+        synchronized (lock) {
+            if (running >= maxConcurrent) {
+                waiting.add(start);
+                return;
+            }
+            running++;
+        }
+        start.run();
+    }
+
+    // Hand the finished turn's slot straight to the next waiting turn.
+    private void finished() {
+        Runnable next;
+        synchronized (lock) {
+            admitted--;
+            next = waiting.poll();
+            if (next == null) running--;
+        }
+        if (next != null) next.run();
+    }
+}
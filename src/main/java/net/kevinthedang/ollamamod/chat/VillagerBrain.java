@@ -27,20 +27,26 @@ public interface VillagerBrain {
             String playerMessage
     );
 
-    default void getReplyStreaming(
+    /**
+     * Ask the brain for a reply delivered in chunks. Must be non-blocking.
+     *
+     * @return handle that aborts the reply; once cancelled, no further callbacks are made
+     */
+    default Cancellable getReplyStreaming(
             Context context,
             List<ChatMessage> history,
             String playerMessage,
             StreamCallbacks callbacks
     ) {
-        getReply(context, history, playerMessage)
-                .whenComplete((reply, throwable) -> {
-                    if (throwable != null) {
-                        callbacks.onError(throwable);
-                    } else {
-                        callbacks.onCompleted(reply);
-                    }
-                });
+        CompletableFuture<String> reply = getReply(context, history, playerMessage);
+        reply.whenComplete((fullReply, throwable) -> {
+            if (throwable == null) {
+                callbacks.onCompleted(fullReply);
+            } else if (!CancellationScope.isCancellation(throwable)) {
+                callbacks.onError(throwable);
+            }
+        });
+        return () -> reply.cancel(true);
     }
 
     interface StreamCallbacks {
@@ -49,6 +55,7 @@ public interface VillagerBrain {
         void onError(Throwable t);
     }
 
+    // Health check called on the client thread before each turn; should answer from cached state.
     default boolean isHealthy() {
         return true;
     }
@@ -1,6 +1,7 @@
 package net.kevinthedang.ollamamod.chat;
 
 import net.kevinthedang.ollamamod.OllamaMod;
+import net.kevinthedang.ollamamod.ollama.OllamaUnavailableException;
 import net.minecraft.client.Minecraft;
 import net.minecraft.sounds.SoundEvents;
 import net.minecraft.sounds.SoundSource;
@@ -9,6 +10,7 @@ import net.minecraft.world.phys.Vec3;
 
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 public class VillagerChatService {
     private final ChatHistoryManager historyManager;
@@ -31,7 +33,8 @@ public class VillagerChatService {
         this.brain = brain;
     }
 
-    public void sendPlayerMessage(
+    // Send the player's message; the returned handle aborts the villager's reply.
+    public Cancellable sendPlayerMessage(
             UUID conversationId,
             VillagerBrain.Context context,
             String messageText,
@@ -44,31 +47,44 @@ public class VillagerChatService {
         historyManager.append(conversationId, new ChatMessage(ChatRole.PLAYER, messageText));
         ui.onThinkingStarted();
 
+        // Fail fast on a known outage instead of waiting out connect timeouts
+        if (!brain.isHealthy()) {
+            OllamaMod.LOGGER.warn("Ollama circuit open, rejecting message for conversation {}", context.conversationId());
+            Minecraft mc = Minecraft.getInstance();
+            mc.execute(() -> ui.onError(describeError(new OllamaUnavailableException("Ollama is unavailable"))));
+            return Cancellable.NONE;
+        }
+
         List<ChatMessage> historySnapshot = historyManager.getHistory(conversationId);
 
         if (isStreaming == false) {
-            brain.getReply(context, historySnapshot, messageText)
-                    .whenComplete((reply, throwable) -> {
-                        // Ensure UI updates happen on the Minecraft client thread
-                        Minecraft mc = Minecraft.getInstance();
-                        mc.execute(() -> {
-                            if (throwable != null) {
-                                OllamaMod.LOGGER.error("Error getting reply from Ollama for conversation {}", context.conversationId(), throwable);
-                                ui.onError(describeError(throwable));
-                                return;
-                            }
-                            historyManager.append(conversationId,
-                                    new ChatMessage(ChatRole.VILLAGER, reply));
-                            // play once when the reply arrives
-                            if (villagerSoundPos != null && reply != null && !reply.isEmpty()) {
-                                playVillagerReplySound(villagerSoundPos);
-                            }
-                            persistMemory(messageText, reply, context);
-                            ui.onVillagerReplyFinished(reply);
-                        });
-                    });
+            CompletableFuture<String> pending = brain.getReply(context, historySnapshot, messageText);
+            pending.whenComplete((reply, throwable) -> {
+                // A cancelled reply was abandoned by the player; nothing to show
+                if (CancellationScope.isCancellation(throwable)) {
+                    return;
+                }
+                // Ensure UI updates happen on the Minecraft client thread
+                Minecraft mc = Minecraft.getInstance();
+                mc.execute(() -> {
+                    if (throwable != null) {
+                        OllamaMod.LOGGER.error("Error getting reply from Ollama for conversation {}", context.conversationId(), throwable);
+                        ui.onError(describeError(throwable));
+                        return;
+                    }
+                    historyManager.append(conversationId,
+                            new ChatMessage(ChatRole.VILLAGER, reply));
+                    // play once when the reply arrives
+                    if (villagerSoundPos != null && reply != null && !reply.isEmpty()) {
+                        playVillagerReplySound(villagerSoundPos);
+                    }
+                    persistMemory(messageText, reply, context);
+                    ui.onVillagerReplyFinished(reply);
+                });
+            });
+            return () -> pending.cancel(true);
         } else {
-            brain.getReplyStreaming(context, historySnapshot, messageText, new VillagerBrain.StreamCallbacks() {
+            return brain.getReplyStreaming(context, historySnapshot, messageText, new VillagerBrain.StreamCallbacks() {
                 private boolean startedSound = false;
 
                 @Override
@@ -147,6 +163,9 @@ public class VillagerChatService {
         Throwable cause = t.getCause() != null ? t.getCause() : t;
         String msg = cause.getMessage() != null ? cause.getMessage() : "";
 
+        if (cause instanceof OllamaUnavailableException) {
+            return "Ollama is not reachable at " + OllamaSettings.baseUrl + ". Retrying in the background; try again shortly.";
+        }
         if (cause instanceof java.net.ConnectException || msg.contains("Connection refused")) {
             return "Ollama is not running at " + OllamaSettings.baseUrl + ". Start Ollama and try again.";
         }
@@ -0,0 +1,183 @@
+package net.kevinthedang.ollamamod.knowledge;
+
+import net.minecraft.Util;
+import net.minecraft.core.Holder;
+import net.minecraft.core.Registry;
+import net.minecraft.core.component.DataComponents;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.core.registries.Registries;
+import net.minecraft.network.chat.Component;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.world.entity.EntityType;
+import net.minecraft.world.entity.MobCategory;
+import net.minecraft.world.item.BlockItem;
+import net.minecraft.world.item.Item;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.Items;
+import net.minecraft.world.item.crafting.Ingredient;
+import net.minecraft.world.item.crafting.Recipe;
+import net.minecraft.world.item.crafting.RecipeHolder;
+import net.minecraft.world.item.crafting.display.RecipeDisplay;
+import net.minecraft.world.item.crafting.display.SlotDisplay;
+import net.minecraft.world.level.biome.Biome;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Walks the live game registries and recipe manager into {@link RegistryEntry} documents.
+ *
+ * Forge registers modded content into the vanilla registries, so {@link BuiltInRegistries} and the
+ * server's dynamic registries cover every installed mod. Runs on the server thread at world load;
+ * it only reads registries and builds strings, embedding happens later in the background.
+ */
+public final class ForgeRegistryExtractor {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ForgeRegistryExtractor.class);
+
+    private static final int MAX_RECIPES_PER_ITEM = 3;
+    private static final int MAX_USES_LISTED = 8;
+
+    // Entries for everything registered outside the "minecraft" namespace, or everything when includeVanilla.
+    public static List<RegistryEntry> extract(MinecraftServer server, boolean includeVanilla) {
+        Map<ResourceLocation, List<String>> recipesByResult = new HashMap<>();
+        Map<ResourceLocation, Set<String>> usesByIngredient = new HashMap<>();
+        collectRecipes(server, recipesByResult, usesByIngredient);
+
+        List<RegistryEntry> entries = new ArrayList<>();
+        for (Item item : BuiltInRegistries.ITEM) {
+            ResourceLocation id = BuiltInRegistries.ITEM.getKey(item);
+            if (item == Items.AIR || skipped(id, includeVanilla)) continue;
+            entries.add(itemEntry(id, item, recipesByResult, usesByIngredient));
+        }
+        for (EntityType<?> type : BuiltInRegistries.ENTITY_TYPE) {
+            ResourceLocation id = BuiltInRegistries.ENTITY_TYPE.getKey(type);
+            // Same rule as the gazetteer: markers, projectiles and vehicles are not worth a document
+            if (type.getCategory() == MobCategory.MISC || skipped(id, includeVanilla)) continue;
+            entries.add(new RegistryEntry(id.toString(), "Mob", name(type.getDescription(), id), List.of(
+                "Category: " + readable(type.getCategory().getName()),
+                "Size: " + type.getWidth() + " x " + type.getHeight() + " blocks",
+                type.fireImmune() ? "Immune to fire" : "Not immune to fire")));
+        }
+        Registry<Biome> biomes = server.registryAccess().lookupOrThrow(Registries.BIOME);
+        for (ResourceLocation id : biomes.keySet()) {
+            if (skipped(id, includeVanilla)) continue;
+            Biome biome = biomes.getValue(id);
+            List<String> facts = new ArrayList<>();
+            if (biome != null) {
+                facts.add("Temperature: " + biome.getBaseTemperature());
+                facts.add(biome.hasPrecipitation() ? "Has rain or snow" : "No precipitation");
+            }
+            entries.add(new RegistryEntry(id.toString(), "Biome",
+                name(Component.translatable(Util.makeDescriptionId("biome", id)), id), facts));
+        }
+        LOGGER.info("Extracted {} registry entries", entries.size());
+        return entries;
+    }
+
+    private static RegistryEntry itemEntry(ResourceLocation id, Item item,
+                                           Map<ResourceLocation, List<String>> recipesByResult,
+                                           Map<ResourceLocation, Set<String>> usesByIngredient) {
+        ItemStack stack = new ItemStack(item);
+        List<String> facts = new ArrayList<>();
+        facts.add("Stacks to " + stack.getMaxStackSize());
+        if (item instanceof BlockItem) facts.add("Can be placed as a block");
+        if (stack.has(DataComponents.FOOD)) facts.add("Edible");
+        if (stack.isDamageableItem()) facts.add("Durability: " + stack.getMaxDamage());
+        List<String> recipes = recipesByResult.getOrDefault(id, List.of());
+        facts.addAll(recipes.subList(0, Math.min(MAX_RECIPES_PER_ITEM, recipes.size())));
+        List<String> uses = new ArrayList<>(usesByIngredient.getOrDefault(id, Set.of()));
+        if (!uses.isEmpty()) {
+            String listed = String.join(", ", uses.subList(0, Math.min(MAX_USES_LISTED, uses.size())));
+            if (uses.size() > MAX_USES_LISTED) listed += " and " + (uses.size() - MAX_USES_LISTED) + " more";
+            facts.add("Used to make: " + listed);
+        }
+        return new RegistryEntry(id.toString(), "Item", name(stack.getHoverName(), id), facts);
+    }
+
+    // Index every recipe whose result is a plain item by result and by ingredient. Recipes from mods
+    // that cannot be displayed this way are skipped rather than failing the whole extraction.
+    private static void collectRecipes(MinecraftServer server, Map<ResourceLocation, List<String>> recipesByResult,
+                                       Map<ResourceLocation, Set<String>> usesByIngredient) {
+        for (RecipeHolder<?> holder : server.getRecipeManager().getRecipes()) {
+            Recipe<?> recipe = holder.value();
+            try {
+                ResourceLocation result = null;
+                for (RecipeDisplay display : recipe.display()) {
+                    result = resultItem(display.result());
+                    if (result != null) break;
+                }
+                if (result == null) continue;
+
+                Map<ResourceLocation, Integer> ingredientCounts = new LinkedHashMap<>();
+                for (Ingredient ingredient : recipe.placementInfo().ingredients()) {
+                    Optional<Holder<Item>> option = ingredient.items().findFirst();
+                    option.flatMap(Holder::unwrapKey).ifPresent(key -> ingredientCounts.merge(key.location(), 1, Integer::sum));
+                }
+                if (ingredientCounts.isEmpty()) continue;
+
+                List<String> parts = new ArrayList<>();
+                ingredientCounts.forEach((ingredient, count) -> parts.add(count + " " + itemName(ingredient)));
+                ResourceLocation type = BuiltInRegistries.RECIPE_TYPE.getKey(recipe.getType());
+                String method = type == null ? "crafting" : type.getPath().replace('_', ' ');
+                recipesByResult.computeIfAbsent(result, ignored -> new ArrayList<>())
+                    .add("Made by " + method + " from " + String.join(", ", parts));
+                String resultName = itemName(result);
+                for (ResourceLocation ingredient : ingredientCounts.keySet()) {
+                    usesByIngredient.computeIfAbsent(ingredient, ignored -> new LinkedHashSet<>()).add(resultName);
+                }
+            } catch (RuntimeException exception) {
+                LOGGER.debug("Skipping recipe {}: {}", holder.id(), exception.toString());
+            }
+        }
+    }
+
+    private static ResourceLocation resultItem(SlotDisplay display) {
+        if (display instanceof SlotDisplay.ItemSlotDisplay(Holder<Item> item)) {
+            return item.unwrapKey().map(key -> key.location()).orElse(null);
+        }
+        if (display instanceof SlotDisplay.ItemStackSlotDisplay(ItemStack stack)) {
+            return BuiltInRegistries.ITEM.getKey(stack.getItem());
+        }
+        return null;
+    }
+
+    private static String itemName(ResourceLocation id) {
+        Item item = BuiltInRegistries.ITEM.getValue(id);
+        return name(new ItemStack(item).getHoverName(), id);
+    }
+
+    // Translated name. A dedicated server lacks mod language files and returns the raw translation
+    // key ("item.mymod.copper_wrench"), so fall back to a readable id then.
+    private static String name(Component component, ResourceLocation id) {
+        String name = component.getString();
+        if (name.isBlank() || name.indexOf(' ') < 0 && name.contains(".")) {
+            return readable(id.getPath());
+        }
+        return name;
+    }
+
+    private static String readable(String path) {
+        StringBuilder readable = new StringBuilder();
+        for (String word : path.split("[_/]")) {
+            if (word.isEmpty()) continue;
+            if (readable.length() > 0) readable.append(' ');
+            readable.append(Character.toUpperCase(word.charAt(0))).append(word.substring(1));
+        }
+        return readable.toString();
+    }
+
+    private static boolean skipped(ResourceLocation id, boolean includeVanilla) {
+        return id == null || !includeVanilla && "minecraft".equals(id.getNamespace());
+    }
+
+    private ForgeRegistryExtractor() {}
+}
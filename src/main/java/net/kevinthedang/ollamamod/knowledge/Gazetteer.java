@@ -0,0 +1,146 @@
+package net.kevinthedang.ollamamod.knowledge;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Entity dictionary over the game's items, mobs and biomes, used to tag text with what it mentions.
+ *
+ * Every known name maps to one or more tags of the form "item:&lt;id&gt;", "entity:&lt;id&gt;" or
+ * "biome:&lt;id&gt;" (a name can be several things at once, like "Acacia Boat"). Tagging a chunk at
+ * ingest and a query at search time lets retrieval score only the chunks that talk about the same
+ * things, instead of the whole store.
+ */
+public class Gazetteer {
+    private static final Logger LOGGER = LoggerFactory.getLogger(Gazetteer.class);
+
+    public static final String ENTITIES_FILE = "entities.json";
+    public static final String BIOMES_FILE = "biomes.json";
+
+    // Entity kinds that are game objects rather than creatures (markers, projectiles, the player)
+    private static final Set<String> SKIPPED_ENTITY_TYPES = Set.of("other", "projectile", "player", "living");
+
+    private final ItemNameTrie names = new ItemNameTrie();
+    private final Map<String, Set<String>> tagsByKey = new HashMap<>();
+
+    private Gazetteer() {}
+
+    private static final class Holder {
+        private static final Gazetteer SHARED = fromResources();
+    }
+
+    // Gazetteer loaded from the packaged seed data once, on first use.
+    public static Gazetteer shared() {
+        return Holder.SHARED;
+    }
+
+    // Gazetteer that tags nothing.
+    public static Gazetteer empty() {
+        return new Gazetteer();
+    }
+
+    // Load from the packaged seed JSONs; missing files contribute nothing.
+    public static Gazetteer fromResources() {
+        try (InputStream items = resource(RecipeBook.ITEMS_FILE);
+             InputStream entities = resource(ENTITIES_FILE);
+             InputStream biomes = resource(BIOMES_FILE)) {
+            return load(reader(items), reader(entities), reader(biomes));
+        } catch (IOException | RuntimeException exception) {
+            LOGGER.warn("Failed to load gazetteer data: {}", exception.getMessage());
+            return empty();
+        }
+    }
+
+    // Load from a directory laid out like tools/seed-documents.
+    public static Gazetteer fromDirectory(Path directory) throws IOException {
+        try (Reader items = reader(directory.resolve(RecipeBook.ITEMS_FILE));
+             Reader entities = reader(directory.resolve(ENTITIES_FILE));
+             Reader biomes = reader(directory.resolve(BIOMES_FILE))) {
+            return load(items, entities, biomes);
+        }
+    }
+
+    // Parse items.json, entities.json and biomes.json content.
+    public static Gazetteer load(Reader itemsJson, Reader entitiesJson, Reader biomesJson) {
+        Gazetteer gazetteer = new Gazetteer();
+        int items = gazetteer.addAll(itemsJson, "item:", null);
+        int entities = gazetteer.addAll(entitiesJson, "entity:", SKIPPED_ENTITY_TYPES);
+        int biomes = gazetteer.addAll(biomesJson, "biome:", null);
+        LOGGER.info("Gazetteer loaded: {} items, {} entities, {} biomes", items, entities, biomes);
+        return gazetteer;
+    }
+
+    // Tags for everything mentioned in text, in order of appearance. Every mention is kept: a chunk
+    // missing a tag would be invisible to queries filtered by it.
+    public List<String> tags(String text) {
+        Set<String> tags = new LinkedHashSet<>();
+        for (ItemNameTrie.Match match : names.findAll(text)) {
+            tags.addAll(tagsByKey.getOrDefault(match.itemId(), Set.of()));
+        }
+        return new ArrayList<>(tags);
+    }
+
+    public boolean isEmpty() {
+        return tagsByKey.isEmpty();
+    }
+
+    private int addAll(Reader json, String prefix, Set<String> skippedTypes) {
+        JsonReader jsonReader = new JsonReader(json);
+        jsonReader.setLenient(true);
+        JsonElement root = JsonParser.parseReader(jsonReader);
+        if (!root.isJsonArray()) return 0;
+        int added = 0;
+        for (JsonElement element : root.getAsJsonArray()) {
+            JsonObject object = element.getAsJsonObject();
+            if (!object.has("name")) continue;
+            String id = object.get("name").getAsString();
+            if ("air".equals(id)) continue;
+            if (skippedTypes != null && object.has("type") && skippedTypes.contains(object.get("type").getAsString())) {
+                continue;
+            }
+            add(id, prefix + id);
+            if (object.has("displayName")) add(object.get("displayName").getAsString(), prefix + id);
+            added++;
+        }
+        return added;
+    }
+
+    // The trie resolves a mention to its normalized name; the name then carries every tag registered for it.
+    private void add(String name, String tag) {
+        String key = String.join(" ", ItemNameTrie.words(name));
+        if (key.isEmpty()) return;
+        names.add(key, key);
+        tagsByKey.computeIfAbsent(key, ignored -> new LinkedHashSet<>()).add(tag);
+    }
+
+    private static InputStream resource(String file) {
+        return Gazetteer.class.getResourceAsStream(RecipeBook.RESOURCE_DIRECTORY + file);
+    }
+
+    private static Reader reader(InputStream stream) {
+        return stream == null ? new StringReader("[]") : new InputStreamReader(stream, StandardCharsets.UTF_8);
+    }
+
+    private static Reader reader(Path file) throws IOException {
+        return Files.exists(file) ? Files.newBufferedReader(file, StandardCharsets.UTF_8) : new StringReader("[]");
+    }
+}
@@ -0,0 +1,112 @@
+package net.kevinthedang.ollamamod.knowledge;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Word-level trie over item names, used to spot item mentions inside free text.
+ *
+ * Names and text are split into lowercase alphanumeric words, so "Sticky Piston", "sticky_piston"
+ * and "sticky-piston" are the same key. Scanning a message is one pass over its words: at each word
+ * the longest name starting there wins, and matching resumes after it. A trailing plural "s"/"es"
+ * on the last word of a mention is tolerated ("pistons", "torches").
+ */
+public class ItemNameTrie {
+    private final Node root = new Node();
+
+    // A name found in text: the item id and the word range it covered.
+    public record Match(String itemId, int startWord, int endWord) {}
+
+    private static final class Node {
+        private final Map<String, Node> children = new HashMap<>();
+        private String itemId;
+    }
+
+    // Register a name for an item; the first item registered under a name keeps it.
+    public void add(String name, String itemId) {
+        List<String> words = words(name);
+        if (words.isEmpty()) return;
+        Node node = root;
+        for (String word : words) {
+            node = node.children.computeIfAbsent(word, ignored -> new Node());
+        }
+        if (node.itemId == null) node.itemId = itemId;
+    }
+
+    // Item id for a whole name, or null.
+    public String lookup(String name) {
+        List<Match> matches = findAll(name);
+        int wordCount = words(name).size();
+        if (matches.size() == 1 && matches.get(0).startWord() == 0 && matches.get(0).endWord() == wordCount) {
+            return matches.get(0).itemId();
+        }
+        return null;
+    }
+
+    // Longest non-overlapping item mentions in text, left to right.
+    public List<Match> findAll(String text) {
+        List<String> words = words(text);
+        List<Match> matches = new ArrayList<>();
+        int position = 0;
+        while (position < words.size()) {
+            Match match = longestAt(words, position);
+            if (match == null) {
+                position++;
+            } else {
+                matches.add(match);
+                position = match.endWord();
+            }
+        }
+        return matches;
+    }
+
+    private Match longestAt(List<String> words, int start) {
+        Node node = root;
+        Match best = null;
+        for (int position = start; position < words.size(); position++) {
+            String word = words.get(position);
+            Node singular = singular(node, word);
+            Node next = node.children.get(word);
+            if (singular != null && singular.itemId != null) {
+                best = new Match(singular.itemId, start, position + 1);
+            }
+            if (next == null) break;
+            if (next.itemId != null) best = new Match(next.itemId, start, position + 1);
+            node = next;
+        }
+        return best;
+    }
+
+    // Child for the singular form of a plural word, or null.
+    private static Node singular(Node node, String word) {
+        if (word.length() > 3 && word.endsWith("es")) {
+            Node child = node.children.get(word.substring(0, word.length() - 2));
+            if (child != null) return child;
+        }
+        if (word.length() > 2 && word.endsWith("s")) {
+            return node.children.get(word.substring(0, word.length() - 1));
+        }
+        return null;
+    }
+
+    // Lowercase alphanumeric words of a name or message.
+    static List<String> words(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null) return words;
+        String lower = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int index = 0; index <= lower.length(); index++) {
+            boolean wordChar = index < lower.length() && Character.isLetterOrDigit(lower.charAt(index));
+            if (wordChar && start < 0) {
+                start = index;
+            } else if (!wordChar && start >= 0) {
+                words.add(lower.substring(start, index));
+                start = -1;
+            }
+        }
+        return words;
+    }
+}
@@ -0,0 +1,34 @@
+package net.kevinthedang.ollamamod.knowledge;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One crafting recipe from the seed data. Shaped recipes keep their grid (rows of item ids, empty
+ * string for a blank slot); shapeless recipes keep their ingredient list.
+ */
+public record Recipe(
+    String result,
+    int count,
+    boolean shaped,
+    List<List<String>> pattern,
+    List<String> ingredients
+) {
+    // How many of each ingredient one craft consumes, in first-seen order.
+    public Map<String, Integer> ingredientCounts() {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        if (shaped) {
+            for (List<String> row : pattern) {
+                for (String slot : row) {
+                    if (slot != null && !slot.isEmpty()) counts.merge(slot, 1, Integer::sum);
+                }
+            }
+        } else {
+            for (String ingredient : ingredients) {
+                counts.merge(ingredient, 1, Integer::sum);
+            }
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,373 @@
+package net.kevinthedang.ollamamod.knowledge;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Exact crafting knowledge: recipes and items from the seed data in indexed maps.
+ *
+ * Recipes are indexed by the item they produce and by every ingredient they use, and item ids and
+ * display names are loaded into an {@link ItemNameTrie} so item mentions can be picked out of a
+ * player's message. Lookups are plain map reads, so answering "how do I craft a piston" costs
+ * microseconds and no embedding or model call.
+ */
+public class RecipeBook {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RecipeBook.class);
+
+    // Classpath location of the seed JSONs (copied from tools/seed-documents at build time)
+    public static final String RESOURCE_DIRECTORY = "/ollamamod/knowledge/";
+    public static final String RECIPES_FILE = "crafting_recipes.json";
+    public static final String ITEMS_FILE = "items.json";
+
+    private static final int MAX_USES_LISTED = 8;
+    // Words and word pairs that make a message a crafting question, matched as whole words
+    private static final List<List<String>> CRAFTING_PHRASES = phrases(
+        "craft", "crafts", "crafted", "crafting", "recipe", "recipes", "make", "makes", "making", "made",
+        "ingredient", "ingredients", "need for", "needed for", "build", "create"
+    );
+    // Words that may stand between a crafting verb and the item it acts on ("make me a few torches")
+    private static final Set<String> FILLER_WORDS = Set.of("a", "an", "the", "some", "me", "i", "you", "we",
+        "to", "for", "of", "my", "few", "more", "new", "another");
+    // Words after an item that make it the thing being crafted ("piston recipe", "how is a piston made")
+    private static final Set<String> PRODUCT_SUFFIXES = Set.of("recipe", "recipes", "made", "crafted");
+    private static final Set<String> LINKING_WORDS = Set.of("is", "are", "be", "get", "gets");
+    // Words marking an item as what a recipe uses rather than makes ("what can I make with iron")
+    private static final Set<String> INGREDIENT_MARKERS = Set.of("with", "using", "from");
+    private static final int MAX_FILLER_WORDS = 3;
+
+    private final Map<String, String> displayNames;
+    private final Map<String, List<Recipe>> recipesByResult;
+    private final Map<String, List<Recipe>> usesByIngredient;
+    private final ItemNameTrie names;
+
+    private RecipeBook(Map<String, String> displayNames, List<Recipe> recipes) {
+        this.displayNames = displayNames;
+        this.recipesByResult = new HashMap<>();
+        this.usesByIngredient = new HashMap<>();
+        this.names = new ItemNameTrie();
+        for (Recipe recipe : recipes) {
+            recipesByResult.computeIfAbsent(recipe.result(), ignored -> new ArrayList<>()).add(recipe);
+            for (String ingredient : recipe.ingredientCounts().keySet()) {
+                usesByIngredient.computeIfAbsent(ingredient, ignored -> new ArrayList<>()).add(recipe);
+            }
+        }
+        // Ids first so an id always resolves to itself; display names then cover spelled-out names
+        Set<String> ids = new LinkedHashSet<>(displayNames.keySet());
+        ids.addAll(recipesByResult.keySet());
+        ids.addAll(usesByIngredient.keySet());
+        for (String id : ids) {
+            names.add(id, id);
+        }
+        displayNames.forEach((id, displayName) -> names.add(displayName, id));
+    }
+
+    private static final class Holder {
+        private static final RecipeBook SHARED = fromResources();
+    }
+
+    // Recipe book loaded from the packaged seed data once, on first use.
+    public static RecipeBook shared() {
+        return Holder.SHARED;
+    }
+
+    // Empty recipe book (nothing packaged or loading failed).
+    public static RecipeBook empty() {
+        return new RecipeBook(Map.of(), List.of());
+    }
+
+    // Load from the packaged seed JSONs; an empty book if they are missing.
+    public static RecipeBook fromResources() {
+        try (InputStream recipes = RecipeBook.class.getResourceAsStream(RESOURCE_DIRECTORY + RECIPES_FILE);
+             InputStream items = RecipeBook.class.getResourceAsStream(RESOURCE_DIRECTORY + ITEMS_FILE)) {
+            if (recipes == null) {
+                LOGGER.warn("No packaged recipe data at {}", RESOURCE_DIRECTORY + RECIPES_FILE);
+                return empty();
+            }
+            return load(new InputStreamReader(recipes, StandardCharsets.UTF_8),
+                items == null ? new StringReader("[]") : new InputStreamReader(items, StandardCharsets.UTF_8));
+        } catch (IOException | RuntimeException exception) {
+            LOGGER.warn("Failed to load recipe data: {}", exception.getMessage());
+            return empty();
+        }
+    }
+
+    // Load from a directory laid out like tools/seed-documents.
+    public static RecipeBook fromDirectory(Path directory) throws IOException {
+        Path items = directory.resolve(ITEMS_FILE);
+        try (Reader recipeReader = Files.newBufferedReader(directory.resolve(RECIPES_FILE), StandardCharsets.UTF_8);
+             Reader itemReader = Files.exists(items)
+                 ? Files.newBufferedReader(items, StandardCharsets.UTF_8)
+                 : new StringReader("[]")) {
+            return load(recipeReader, itemReader);
+        }
+    }
+
+    // Parse crafting_recipes.json and items.json content.
+    public static RecipeBook load(Reader recipesJson, Reader itemsJson) {
+        Map<String, String> displayNames = new HashMap<>();
+        for (JsonElement element : parseArray(itemsJson)) {
+            JsonObject item = element.getAsJsonObject();
+            if (item.has("name") && item.has("displayName")) {
+                displayNames.put(item.get("name").getAsString(), item.get("displayName").getAsString());
+            }
+        }
+        List<Recipe> recipes = new ArrayList<>();
+        for (JsonElement element : parseArray(recipesJson)) {
+            Recipe recipe = parseRecipe(element.getAsJsonObject());
+            if (recipe != null) recipes.add(recipe);
+        }
+        RecipeBook book = new RecipeBook(displayNames, recipes);
+        LOGGER.info("Recipe book loaded: {} recipes, {} items", recipes.size(), displayNames.size());
+        return book;
+    }
+
+    // Item id for a name or id typed by a player ("Sticky Piston", "sticky_piston", "pistons").
+    public Optional<String> resolve(String name) {
+        return Optional.ofNullable(names.lookup(name));
+    }
+
+    // Ids of items mentioned in text, in order of appearance, without duplicates.
+    public List<String> findItems(String text) {
+        Set<String> found = new LinkedHashSet<>();
+        for (ItemNameTrie.Match match : names.findAll(text)) {
+            found.add(match.itemId());
+        }
+        return new ArrayList<>(found);
+    }
+
+    // Recipes producing an item.
+    public List<Recipe> recipesFor(String itemId) {
+        return Collections.unmodifiableList(recipesByResult.getOrDefault(itemId, List.of()));
+    }
+
+    // Recipes using an item as an ingredient.
+    public List<Recipe> usesOf(String itemId) {
+        return Collections.unmodifiableList(usesByIngredient.getOrDefault(itemId, List.of()));
+    }
+
+    // Display name of an item, falling back to a readable form of its id.
+    public String displayName(String itemId) {
+        String displayName = displayNames.get(itemId);
+        if (displayName != null) return displayName;
+        StringBuilder readable = new StringBuilder();
+        for (String word : itemId.split("_")) {
+            if (word.isEmpty()) continue;
+            if (readable.length() > 0) readable.append(' ');
+            readable.append(Character.toUpperCase(word.charAt(0))).append(word.substring(1));
+        }
+        return readable.toString();
+    }
+
+    public boolean isEmpty() {
+        return recipesByResult.isEmpty();
+    }
+
+    // Whether text reads like a crafting question ("how do I make...", "recipe for..."), by whole words.
+    public static boolean isCraftingQuestion(String text) {
+        return isCraftingQuestion(ItemNameTrie.words(text));
+    }
+
+    // Items a crafting question asks how to make: those a crafting verb acts on ("how do I craft a
+    // piston", "what do I need for a bed", "piston recipe"), not ones merely mentioned alongside it.
+    public List<String> craftedItems(String text) {
+        List<String> words = ItemNameTrie.words(text);
+        Set<String> found = new LinkedHashSet<>();
+        for (ItemNameTrie.Match match : names.findAll(text)) {
+            if (role(words, match) == Role.PRODUCT) found.add(match.itemId());
+        }
+        return new ArrayList<>(found);
+    }
+
+    // Whether the exact recipes fully answer text: it asks how to craft something, and every item it
+    // asks about has a recipe. Otherwise the knowledge base is still worth searching.
+    public boolean answersCraftingQuestion(String text) {
+        List<String> crafted = craftedItems(text);
+        if (crafted.isEmpty()) return false;
+        for (String itemId : crafted) {
+            if (recipesFor(itemId).isEmpty()) return false;
+        }
+        return true;
+    }
+
+    // Recipes for every craftable item mentioned in text, one line per recipe; empty if none. Items a
+    // question crafts with ("what can I make with iron") are described with what they are used in.
+    public String describeMentioned(String text, int maxItems) {
+        List<String> words = ItemNameTrie.words(text);
+        StringBuilder block = new StringBuilder();
+        Set<String> described = new LinkedHashSet<>();
+        for (ItemNameTrie.Match match : names.findAll(text)) {
+            if (described.size() >= maxItems) break;
+            String itemId = match.itemId();
+            if (described.contains(itemId)) continue;
+            if (role(words, match) == Role.INGREDIENT && !usesOf(itemId).isEmpty()) {
+                block.append(describe(itemId)).append('\n');
+            } else if (!recipesFor(itemId).isEmpty()) {
+                block.append(describeRecipes(itemId));
+            } else {
+                continue;
+            }
+            described.add(itemId);
+        }
+        return block.toString().trim();
+    }
+
+    // Every recipe for an item plus what it is used in, as lines for a prompt or tool result.
+    public String describe(String itemId) {
+        StringBuilder block = new StringBuilder(describeRecipes(itemId));
+        List<Recipe> uses = usesOf(itemId);
+        if (!uses.isEmpty()) {
+            Set<String> products = new LinkedHashSet<>();
+            for (Recipe use : uses) {
+                products.add(displayName(use.result()));
+            }
+            List<String> listed = new ArrayList<>(products);
+            block.append("- ").append(displayName(itemId)).append(" is used to craft: ")
+                .append(String.join(", ", listed.subList(0, Math.min(MAX_USES_LISTED, listed.size()))));
+            if (listed.size() > MAX_USES_LISTED) block.append(" and ").append(listed.size() - MAX_USES_LISTED).append(" more");
+            block.append('\n');
+        }
+        if (block.length() == 0) {
+            return "- No crafting recipe uses or produces " + displayName(itemId) + ".";
+        }
+        return block.toString().trim();
+    }
+
+    private String describeRecipes(String itemId) {
+        StringBuilder block = new StringBuilder();
+        for (Recipe recipe : recipesFor(itemId)) {
+            block.append("- ").append(displayName(itemId));
+            if (recipe.count() > 1) block.append(" (makes ").append(recipe.count()).append(')');
+            block.append(": ");
+            List<String> parts = new ArrayList<>();
+            recipe.ingredientCounts().forEach((ingredient, count) -> parts.add(count + " " + displayName(ingredient)));
+            block.append(String.join(", ", parts));
+            if (recipe.shaped()) {
+                block.append(" in a crafting table, arranged ");
+                List<String> rows = new ArrayList<>();
+                for (List<String> row : recipe.pattern()) {
+                    List<String> slots = new ArrayList<>();
+                    for (String slot : row) {
+                        slots.add(slot == null || slot.isEmpty() ? "empty" : displayName(slot));
+                    }
+                    rows.add("[" + String.join(" | ", slots) + "]");
+                }
+                block.append(String.join(" / ", rows)).append(" (top to bottom)");
+            } else {
+                block.append(" (shapeless, any arrangement)");
+            }
+            block.append('\n');
+        }
+        return block.toString();
+    }
+
+    private enum Role { PRODUCT, INGREDIENT, MENTION }
+
+    // Whether an item mention is what a crafting phrase makes, what it makes something with, or neither.
+    private static Role role(List<String> words, ItemNameTrie.Match match) {
+        // Backwards over a few filler words to the crafting phrase or ingredient marker before the item
+        for (int position = match.startWord() - 1, skipped = 0; position >= 0; position--, skipped++) {
+            String word = words.get(position);
+            if (INGREDIENT_MARKERS.contains(word)) {
+                return isCraftingQuestion(words) ? Role.INGREDIENT : Role.MENTION;
+            }
+            if (craftingPhraseEndsAt(words, position)) return Role.PRODUCT;
+            if (!FILLER_WORDS.contains(word) || skipped == MAX_FILLER_WORDS) break;
+        }
+        // Forwards: "piston recipe", "how are pistons crafted"
+        int after = match.endWord();
+        if (after < words.size() && LINKING_WORDS.contains(words.get(after))) after++;
+        if (after < words.size() && PRODUCT_SUFFIXES.contains(words.get(after))) return Role.PRODUCT;
+        return Role.MENTION;
+    }
+
+    private static boolean isCraftingQuestion(List<String> words) {
+        for (int position = 0; position < words.size(); position++) {
+            if (craftingPhraseAt(words, position) > 0) return true;
+        }
+        return false;
+    }
+
+    private static boolean craftingPhraseEndsAt(List<String> words, int position) {
+        for (int start = Math.max(0, position - 1); start <= position; start++) {
+            if (craftingPhraseAt(words, start) == position - start + 1) return true;
+        }
+        return false;
+    }
+
+    // Length in words of the crafting phrase starting at a position, or 0.
+    private static int craftingPhraseAt(List<String> words, int position) {
+        for (List<String> phrase : CRAFTING_PHRASES) {
+            if (position + phrase.size() <= words.size()
+                && words.subList(position, position + phrase.size()).equals(phrase)) {
+                return phrase.size();
+            }
+        }
+        return 0;
+    }
+
+    private static List<List<String>> phrases(String... phrases) {
+        List<List<String>> split = new ArrayList<>(phrases.length);
+        for (String phrase : phrases) {
+            split.add(List.of(phrase.split(" ")));
+        }
+        return split;
+    }
+
+    private static Recipe parseRecipe(JsonObject object) {
+        JsonObject result = object.getAsJsonObject("resultingItem");
+        if (result == null || !result.has("item")) return null;
+        String resultId = result.get("item").getAsString();
+        // The extracted data maps the map-cloning recipe onto "air"; it is not a real recipe
+        if ("air".equals(resultId)) return null;
+        int count = result.has("itemCount") ? result.get("itemCount").getAsInt() : 1;
+        boolean shaped = "shaped".equals(object.has("type") ? object.get("type").getAsString() : "");
+        if (shaped && object.has("pattern")) {
+            List<List<String>> pattern = new ArrayList<>();
+            for (JsonElement row : object.getAsJsonArray("pattern")) {
+                pattern.add(strings(row.getAsJsonArray()));
+            }
+            return new Recipe(resultId, count, true, List.copyOf(pattern), List.of());
+        }
+        if (object.has("ingredients")) {
+            return new Recipe(resultId, count, false, List.of(), List.copyOf(strings(object.getAsJsonArray("ingredients"))));
+        }
+        return null;
+    }
+
+    private static List<String> strings(JsonArray array) {
+        List<String> values = new ArrayList<>(array.size());
+        for (JsonElement element : array) {
+            values.add(element.isJsonNull() ? "" : element.getAsString());
+        }
+        return values;
+    }
+
+    private static JsonArray parseArray(Reader reader) {
+        JsonReader jsonReader = new JsonReader(reader);
+        jsonReader.setLenient(true);
+        JsonElement root = JsonParser.parseReader(jsonReader);
+        return root.isJsonArray() ? root.getAsJsonArray() : new JsonArray();
+    }
+}
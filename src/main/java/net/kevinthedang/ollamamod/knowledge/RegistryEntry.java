@@ -0,0 +1,26 @@
+package net.kevinthedang.ollamamod.knowledge;
+
+import java.util.List;
+
+// One game registry entry (item, mob, biome) with the facts rendered into its knowledge document.
+public record RegistryEntry(String id, String kind, String displayName, List<String> facts) {
+    public RegistryEntry {
+        facts = facts == null ? List.of() : List.copyOf(facts);
+    }
+
+    // Namespace of the id, i.e. the mod that registered the entry ("minecraft" when unqualified).
+    public String namespace() {
+        int separator = id.indexOf(':');
+        return separator < 0 ? "minecraft" : id.substring(0, separator);
+    }
+
+    // Compact document text: a title line followed by one fact per line.
+    public String render() {
+        StringBuilder text = new StringBuilder()
+            .append(kind).append(": ").append(displayName).append(" (").append(id).append(")");
+        for (String fact : facts) {
+            text.append('\n').append(fact);
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,429 @@
+package net.kevinthedang.ollamamod.ollama;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * Decoder for a streamed /api/chat response: newline-delimited JSON objects, one per token or so.
+ *
+ * Scans the raw response bytes in a reusable buffer and picks out only the fields a reply needs:
+ * message.content, message.tool_calls, done, error and the eval counters. No line strings or JSON
+ * trees are built, and content is decoded straight into the caller's StringBuilder, so a chunk costs
+ * no allocation here; tool calls are only located, and anything else (images, unknown fields) is
+ * skipped without being decoded.
+ *
+ * Not thread-safe; one decoder reads one response.
+ */
+public final class OllamaChatStreamDecoder {
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private static final byte[] MESSAGE = ascii("message");
+    private static final byte[] CONTENT = ascii("content");
+    private static final byte[] TOOL_CALLS = ascii("tool_calls");
+    private static final byte[] DONE = ascii("done");
+    private static final byte[] ERROR = ascii("error");
+    private static final byte[] EVAL_COUNT = ascii("eval_count");
+    private static final byte[] EVAL_DURATION = ascii("eval_duration");
+    private static final byte[] PROMPT_EVAL_COUNT = ascii("prompt_eval_count");
+    private static final byte[] PROMPT_EVAL_DURATION = ascii("prompt_eval_duration");
+
+    private final InputStream in;
+    private byte[] buffer;
+    private int start;
+    private int limit;
+    private boolean endOfStream;
+
+    // Position while scanning one line
+    private int cursor;
+    private int lineEnd;
+
+    private int toolCallsStart;
+    private int toolCallsEnd;
+    private final StringBuilder error = new StringBuilder();
+    private boolean hasError;
+    private boolean done;
+    private long evalCount;
+    private long evalDurationNanos;
+    private long promptEvalCount;
+    private long promptEvalDurationNanos;
+
+    public OllamaChatStreamDecoder(InputStream in) {
+        this(in, DEFAULT_BUFFER_SIZE);
+    }
+
+    // Decoder with an explicit initial buffer size; the buffer grows to fit the longest line.
+    OllamaChatStreamDecoder(InputStream in, int bufferSize) {
+        this.in = in;
+        this.buffer = new byte[Math.max(16, bufferSize)];
+    }
+
+    /**
+     * Decode the next chunk, appending its message.content to the sink.
+     *
+     * @return number of chars appended (0 for a chunk without content), or -1 at end of stream
+     */
+    public int next(StringBuilder contentSink) throws IOException {
+        while (true) {
+            int newline = findNewline();
+            if (newline < 0) {
+                if (endOfStream) {
+                    if (start == limit) return -1;
+                    // Last line without a trailing newline
+                    newline = limit;
+                } else {
+                    fill();
+                    continue;
+                }
+            }
+            int lineStart = start;
+            start = Math.min(newline + 1, limit);
+            if (isBlank(lineStart, newline)) continue;
+            return decodeLine(lineStart, newline, contentSink);
+        }
+    }
+
+    // Read chunks until the final one, passing each content delta on; returns the whole reply.
+    // The delta strings handed to onDelta are the only per-chunk allocation.
+    public String readReply(Consumer<String> onDelta) throws IOException {
+        StringBuilder reply = new StringBuilder();
+        int appended;
+        while ((appended = next(reply)) >= 0) {
+            if (hasError) throw new IOException("Ollama error: " + error);
+            if (appended > 0) onDelta.accept(reply.substring(reply.length() - appended));
+            if (done) break;
+        }
+        return reply.toString();
+    }
+
+    // Raw JSON array of the last chunk's message.tool_calls, or null if it had none.
+    public String toolCallsJson() {
+        if (toolCallsStart < 0) return null;
+        return new String(buffer, toolCallsStart, toolCallsEnd - toolCallsStart, StandardCharsets.UTF_8);
+    }
+
+    // Whether the last chunk had "done": true.
+    public boolean done() {
+        return done;
+    }
+
+    // Whether the last chunk reported an error.
+    public boolean hasError() {
+        return hasError;
+    }
+
+    // Error text of the last chunk, or null if it had none.
+    public String error() {
+        return hasError ? error.toString() : null;
+    }
+
+    // Generated tokens, as reported by the final chunk (-1 until then).
+    public long evalCount() {
+        return evalCount;
+    }
+
+    // Generation time in nanoseconds, as reported by the final chunk (-1 until then).
+    public long evalDurationNanos() {
+        return evalDurationNanos;
+    }
+
+    // Prompt tokens evaluated, as reported by the final chunk (-1 until then).
+    public long promptEvalCount() {
+        return promptEvalCount;
+    }
+
+    // Prompt evaluation time in nanoseconds, as reported by the final chunk (-1 until then).
+    public long promptEvalDurationNanos() {
+        return promptEvalDurationNanos;
+    }
+
+    // Generation speed from the final chunk's counters, or -1 if they were not reported.
+    public double tokensPerSecond() {
+        if (evalCount < 0 || evalDurationNanos <= 0) return -1;
+        return evalCount * 1_000_000_000.0 / evalDurationNanos;
+    }
+
+    private int findNewline() {
+        for (int index = start; index < limit; index++) {
+            if (buffer[index] == '\n') return index;
+        }
+        return -1;
+    }
+
+    // Move the partial line to the front of the buffer (growing it if the line fills it) and read more.
+    private void fill() throws IOException {
+        if (start > 0) {
+            System.arraycopy(buffer, start, buffer, 0, limit - start);
+            limit -= start;
+            start = 0;
+        }
+        if (limit == buffer.length) {
+            byte[] grown = new byte[buffer.length * 2];
+            System.arraycopy(buffer, 0, grown, 0, limit);
+            buffer = grown;
+        }
+        int read = in.read(buffer, limit, buffer.length - limit);
+        if (read < 0) {
+            endOfStream = true;
+        } else {
+            limit += read;
+        }
+    }
+
+    private boolean isBlank(int from, int to) {
+        for (int index = from; index < to; index++) {
+            if (!isWhitespace(buffer[index])) return false;
+        }
+        return true;
+    }
+
+    private int decodeLine(int from, int to, StringBuilder contentSink) throws IOException {
+        cursor = from;
+        lineEnd = to;
+        hasError = false;
+        error.setLength(0);
+        toolCallsStart = -1;
+        toolCallsEnd = -1;
+        done = false;
+        evalCount = -1;
+        evalDurationNanos = -1;
+        promptEvalCount = -1;
+        promptEvalDurationNanos = -1;
+
+        int before = contentSink.length();
+        expect('{');
+        if (!consumeIf('}')) {
+            do {
+                expect('"');
+                int keyStart = cursor;
+                int keyEnd = skipStringBody();
+                expect(':');
+                skipWhitespace();
+                if (keyEquals(keyStart, keyEnd, MESSAGE) && peek() == '{') {
+                    decodeMessage(contentSink);
+                } else if (keyEquals(keyStart, keyEnd, DONE)) {
+                    done = readBoolean();
+                } else if (keyEquals(keyStart, keyEnd, ERROR) && peek() == '"') {
+                    hasError = true;
+                    readString(error);
+                } else if (keyEquals(keyStart, keyEnd, EVAL_COUNT)) {
+                    evalCount = readLong();
+                } else if (keyEquals(keyStart, keyEnd, EVAL_DURATION)) {
+                    evalDurationNanos = readLong();
+                } else if (keyEquals(keyStart, keyEnd, PROMPT_EVAL_COUNT)) {
+                    promptEvalCount = readLong();
+                } else if (keyEquals(keyStart, keyEnd, PROMPT_EVAL_DURATION)) {
+                    promptEvalDurationNanos = readLong();
+                } else {
+                    skipValue();
+                }
+            } while (consumeIf(','));
+            expect('}');
+        }
+        return contentSink.length() - before;
+    }
+
+    private void decodeMessage(StringBuilder contentSink) throws IOException {
+        expect('{');
+        if (consumeIf('}')) return;
+        do {
+            expect('"');
+            int keyStart = cursor;
+            int keyEnd = skipStringBody();
+            expect(':');
+            skipWhitespace();
+            if (keyEquals(keyStart, keyEnd, CONTENT) && peek() == '"') {
+                readString(contentSink);
+            } else if (keyEquals(keyStart, keyEnd, TOOL_CALLS) && peek() == '[') {
+                toolCallsStart = cursor;
+                skipValue();
+                toolCallsEnd = cursor;
+            } else {
+                skipValue();
+            }
+        } while (consumeIf(','));
+        expect('}');
+    }
+
+    // Keys are compared as raw bytes; the keys we look for never need escaping.
+    private boolean keyEquals(int from, int to, byte[] key) {
+        if (to - from != key.length) return false;
+        for (int index = 0; index < key.length; index++) {
+            if (buffer[from + index] != key[index]) return false;
+        }
+        return true;
+    }
+
+    // Decode a JSON string (UTF-8, with escapes) into the sink.
+    private void readString(StringBuilder sink) throws IOException {
+        expect('"');
+        while (cursor < lineEnd) {
+            int b = buffer[cursor++] & 0xFF;
+            if (b == '"') return;
+            if (b == '\\') {
+                readEscape(sink);
+            } else if (b < 0x80) {
+                sink.append((char) b);
+            } else if (b >= 0xF0) {
+                sink.appendCodePoint(((b & 0x07) << 18) | (continuation() << 12) | (continuation() << 6) | continuation());
+            } else if (b >= 0xE0) {
+                sink.append((char) (((b & 0x0F) << 12) | (continuation() << 6) | continuation()));
+            } else if (b >= 0xC0) {
+                sink.append((char) (((b & 0x1F) << 6) | continuation()));
+            } else {
+                throw malformed();
+            }
+        }
+        throw malformed();
+    }
+
+    private int continuation() throws IOException {
+        if (cursor >= lineEnd) throw malformed();
+        int b = buffer[cursor++] & 0xFF;
+        if ((b & 0xC0) != 0x80) throw malformed();
+        return b & 0x3F;
+    }
+
+    private void readEscape(StringBuilder sink) throws IOException {
+        if (cursor >= lineEnd) throw malformed();
+        byte escaped = buffer[cursor++];
+        switch (escaped) {
+            case '"', '\\', '/' -> sink.append((char) escaped);
+            case 'n' -> sink.append('\n');
+            case 't' -> sink.append('\t');
+            case 'r' -> sink.append('\r');
+            case 'b' -> sink.append('\b');
+            case 'f' -> sink.append('\f');
+            case 'u' -> {
+                // Surrogate pairs arrive as two escapes and are appended one half at a time
+                if (cursor + 4 > lineEnd) throw malformed();
+                int value = 0;
+                for (int index = 0; index < 4; index++) {
+                    value = (value << 4) | hexValue(buffer[cursor++]);
+                }
+                sink.append((char) value);
+            }
+            default -> throw malformed();
+        }
+    }
+
+    private static int hexValue(byte b) throws IOException {
+        if (b >= '0' && b <= '9') return b - '0';
+        if (b >= 'a' && b <= 'f') return b - 'a' + 10;
+        if (b >= 'A' && b <= 'F') return b - 'A' + 10;
+        throw malformed();
+    }
+
+    // Skip to just past the closing quote (the opening quote is already consumed); returns the quote's index.
+    private int skipStringBody() throws IOException {
+        while (cursor < lineEnd) {
+            byte b = buffer[cursor++];
+            if (b == '\\') {
+                cursor++;
+            } else if (b == '"') {
+                return cursor - 1;
+            }
+        }
+        throw malformed();
+    }
+
+    private boolean readBoolean() throws IOException {
+        if (matchLiteral("true")) return true;
+        if (matchLiteral("false")) return false;
+        skipValue();
+        return false;
+    }
+
+    private boolean matchLiteral(String literal) {
+        if (cursor + literal.length() > lineEnd) return false;
+        for (int index = 0; index < literal.length(); index++) {
+            if (buffer[cursor + index] != literal.charAt(index)) return false;
+        }
+        cursor += literal.length();
+        return true;
+    }
+
+    // Integer value; a fraction or exponent is skipped, anything else reads as -1.
+    private long readLong() throws IOException {
+        if (peek() < '0' || peek() > '9') {
+            skipValue();
+            return -1;
+        }
+        long value = 0;
+        while (cursor < lineEnd && buffer[cursor] >= '0' && buffer[cursor] <= '9') {
+            value = value * 10 + (buffer[cursor++] - '0');
+        }
+        skipScalar();
+        return value;
+    }
+
+    private void skipValue() throws IOException {
+        skipWhitespace();
+        byte b = peek();
+        if (b == '"') {
+            cursor++;
+            skipStringBody();
+        } else if (b == '{' || b == '[') {
+            int depth = 0;
+            while (cursor < lineEnd) {
+                byte next = buffer[cursor++];
+                if (next == '"') {
+                    skipStringBody();
+                } else if (next == '{' || next == '[') {
+                    depth++;
+                } else if (next == '}' || next == ']') {
+                    if (--depth == 0) return;
+                }
+            }
+            throw malformed();
+        } else {
+            skipScalar();
+        }
+    }
+
+    // Numbers and literals run up to the next delimiter.
+    private void skipScalar() {
+        while (cursor < lineEnd) {
+            byte b = buffer[cursor];
+            if (b == ',' || b == '}' || b == ']' || isWhitespace(b)) return;
+            cursor++;
+        }
+    }
+
+    private byte peek() throws IOException {
+        if (cursor >= lineEnd) throw malformed();
+        return buffer[cursor];
+    }
+
+    private void expect(char expected) throws IOException {
+        skipWhitespace();
+        if (cursor >= lineEnd || buffer[cursor] != expected) throw malformed();
+        cursor++;
+    }
+
+    private boolean consumeIf(char expected) {
+        skipWhitespace();
+        if (cursor < lineEnd && buffer[cursor] == expected) {
+            cursor++;
+            return true;
+        }
+        return false;
+    }
+
+    private void skipWhitespace() {
+        while (cursor < lineEnd && isWhitespace(buffer[cursor])) cursor++;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+    }
+
+    private static IOException malformed() {
+        return new IOException("Malformed chunk in Ollama response stream");
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,87 @@
+package net.kevinthedang.ollamamod.ollama;
+
+import java.time.Duration;
+
+/**
+ * Circuit breaker shared by every caller of an Ollama endpoint pool. The pool only reports failures
+ * while every host is failing; a single bad host in a larger pool is ejected instead.
+ *
+ * CLOSED lets requests through. After enough consecutive failures the circuit OPENs and requests
+ * fail immediately instead of waiting out connect timeouts. Once the cool-down elapses the circuit
+ * is HALF_OPEN: a single trial request (or a successful health probe) decides whether to close again.
+ */
+public class OllamaCircuitBreaker {
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    public static final int DEFAULT_FAILURE_THRESHOLD = 3;
+    public static final Duration DEFAULT_OPEN_DURATION = Duration.ofSeconds(10);
+
+    private final int failureThreshold;
+    private final long openMillis;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures = 0;
+    private long openUntilMillis = 0L;
+    private boolean trialInFlight = false;
+
+    // Breaker with default threshold and cool-down.
+    public OllamaCircuitBreaker() {
+        this(DEFAULT_FAILURE_THRESHOLD, DEFAULT_OPEN_DURATION);
+    }
+
+    // Breaker with explicit threshold and cool-down (useful for testing).
+    public OllamaCircuitBreaker(int failureThreshold, Duration openDuration) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openMillis = openDuration.toMillis();
+    }
+
+    // Current state; an OPEN circuit whose cool-down has elapsed reports HALF_OPEN.
+    public synchronized State state() {
+        if (state == State.OPEN && System.currentTimeMillis() >= openUntilMillis) {
+            state = State.HALF_OPEN;
+            trialInFlight = false;
+        }
+        return state;
+    }
+
+    // Whether requests are currently being rejected without trying Ollama.
+    public boolean isOpen() {
+        return state() == State.OPEN;
+    }
+
+    // Ask to send a request. Returns false if the circuit is open or a half-open trial is already running.
+    public synchronized boolean tryAcquire() {
+        switch (state()) {
+            case CLOSED:
+                return true;
+            case HALF_OPEN:
+                if (trialInFlight) return false;
+                trialInFlight = true;
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    // Record a successful request or probe; closes the circuit.
+    public synchronized void recordSuccess() {
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        trialInFlight = false;
+    }
+
+    // Record a request the caller cancelled; frees a half-open trial without judging Ollama's health.
+    public synchronized void recordAbandoned() {
+        trialInFlight = false;
+    }
+
+    // Record a failed request or probe; opens the circuit at the threshold or when a trial fails.
+    public synchronized void recordFailure() {
+        consecutiveFailures++;
+        if (state() == State.HALF_OPEN || state == State.OPEN || consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openUntilMillis = System.currentTimeMillis() + openMillis;
+            trialInFlight = false;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package net.kevinthedang.ollamamod.ollama;
+
+import java.net.URI;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// A single Ollama host tracked by OllamaEndpointPool (outstanding requests, failures, ejection state).
+public final class OllamaEndpoint {
+    private final String baseUrl;
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final AtomicInteger background = new AtomicInteger();
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile long ejectedUntilMillis = 0L;
+
+    public OllamaEndpoint(String baseUrl) {
+        this.baseUrl = stripTrailingSlash(baseUrl);
+    }
+
+    // Base URL of this host, e.g. http://localhost:11434
+    public String baseUrl() {
+        return baseUrl;
+    }
+
+    // Resolve an API path (e.g. "/api/chat") against this host.
+    public URI resolve(String path) {
+        return URI.create(baseUrl + path);
+    }
+
+    // Number of requests currently in flight against this host.
+    public int outstanding() {
+        return outstanding.get();
+    }
+
+    // Number of in-flight requests that are background work (memory writes, ingestion).
+    public int backgroundOutstanding() {
+        return background.get();
+    }
+
+    // Number of failed requests/probes since the last success.
+    public int consecutiveFailures() {
+        return consecutiveFailures.get();
+    }
+
+    // Whether this host is currently ejected from rotation.
+    public boolean isEjected(long nowMillis) {
+        return nowMillis < ejectedUntilMillis;
+    }
+
+    void begin() {
+        begin(false);
+    }
+
+    void begin(boolean backgroundWork) {
+        outstanding.incrementAndGet();
+        if (backgroundWork) background.incrementAndGet();
+    }
+
+    void end() {
+        end(false);
+    }
+
+    void end(boolean backgroundWork) {
+        outstanding.decrementAndGet();
+        if (backgroundWork) background.decrementAndGet();
+    }
+
+    // Record a success and return the host to rotation.
+    void markSuccess() {
+        consecutiveFailures.set(0);
+        ejectedUntilMillis = 0L;
+    }
+
+    // Record a failure and return the new consecutive failure count.
+    int markFailure() {
+        return consecutiveFailures.incrementAndGet();
+    }
+
+    void eject(long untilMillis) {
+        ejectedUntilMillis = untilMillis;
+    }
+
+    private static String stripTrailingSlash(String url) {
+        String trimmed = url == null ? "" : url.trim();
+        while (trimmed.endsWith("/")) {
+            trimmed = trimmed.substring(0, trimmed.length() - 1);
+        }
+        return trimmed;
+    }
+
+    @Override
+    public String toString() {
+        return baseUrl;
+    }
+}
@@ -0,0 +1,549 @@
+package net.kevinthedang.ollamamod.ollama;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Pool of Ollama hosts shared by the brains and the embedding service.
+ *
+ * Requests go to the available host with the fewest outstanding requests. A conversation id can be
+ * used as an affinity key so follow-up turns land on the same host and reuse its prompt cache.
+ * Hosts that fail repeatedly (unreachable or timing out, not HTTP errors) are ejected for a while;
+ * /api/tags probes bring them back.
+ * A shared {@link OllamaCircuitBreaker} rejects requests outright while Ollama as a whole is down,
+ * and {@link #isHealthy()} answers from the cached breaker state instead of probing on every call.
+ * {@link #residency()} tracks which models the hosts have loaded, and {@link #executeHedged} duplicates
+ * requests that run past their route's usual latency. Requests submitted with a {@link OllamaScheduler.Work}
+ * wait in {@link #scheduler()} for a free slot, so each host's concurrency limit holds and interactive
+ * requests go ahead of bulk work.
+ */
+public class OllamaEndpointPool {
+    private static final Logger LOGGER = LoggerFactory.getLogger(OllamaEndpointPool.class);
+
+    public static final int DEFAULT_MAX_FAILURES = 3;
+    public static final Duration DEFAULT_EJECTION = Duration.ofSeconds(30);
+    public static final Duration DEFAULT_PROBE_INTERVAL = Duration.ofSeconds(5);
+    private static final Duration PROBE_TIMEOUT = Duration.ofSeconds(2);
+    private static final int MAX_AFFINITY_ENTRIES = 1024;
+
+    private final HttpClient probeClient;
+    private final int maxFailures;
+    private final long ejectionMillis;
+    private final OllamaCircuitBreaker circuitBreaker;
+    private final OllamaModelResidency residency;
+    private final OllamaHedging hedging = new OllamaHedging();
+    private final OllamaScheduler scheduler;
+    private final Map<String, OllamaEndpoint> affinity = new ConcurrentHashMap<>();
+
+    private volatile List<OllamaEndpoint> endpoints;
+    private ScheduledExecutorService prober;
+    private volatile boolean healthKnown = false;
+
+    // Pool with default ejection settings.
+    public OllamaEndpointPool(List<String> baseUrls) {
+        this(baseUrls, DEFAULT_MAX_FAILURES, DEFAULT_EJECTION);
+    }
+
+    // Pool with explicit ejection settings (useful for testing).
+    public OllamaEndpointPool(List<String> baseUrls, int maxFailures, Duration ejection) {
+        this(baseUrls, maxFailures, ejection, new OllamaCircuitBreaker());
+    }
+
+    // Pool with explicit ejection settings and circuit breaker.
+    public OllamaEndpointPool(List<String> baseUrls, int maxFailures, Duration ejection, OllamaCircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+        this.probeClient = HttpClient.newBuilder()
+            .connectTimeout(PROBE_TIMEOUT)
+            .build();
+        this.maxFailures = Math.max(1, maxFailures);
+        this.ejectionMillis = ejection.toMillis();
+        this.endpoints = toEndpoints(baseUrls, Map.of());
+        this.residency = new OllamaModelResidency(this);
+        this.scheduler = new OllamaScheduler(this);
+    }
+
+    // Single-host pool, used when no pool is configured.
+    public static OllamaEndpointPool single(String baseUrl) {
+        return new OllamaEndpointPool(List.of(baseUrl));
+    }
+
+    // Replace the configured hosts, keeping state for hosts that remain.
+    public synchronized void reconfigure(List<String> baseUrls) {
+        Map<String, OllamaEndpoint> existing = new HashMap<>();
+        for (OllamaEndpoint endpoint : endpoints) {
+            existing.put(endpoint.baseUrl(), endpoint);
+        }
+        this.endpoints = toEndpoints(baseUrls, existing);
+        affinity.values().removeIf(endpoint -> !this.endpoints.contains(endpoint));
+        LOGGER.info("Ollama endpoint pool: {}", this.endpoints);
+        scheduler.dispatch();
+    }
+
+    // Circuit breaker shared by every request through this pool.
+    public OllamaCircuitBreaker circuitBreaker() {
+        return circuitBreaker;
+    }
+
+    // Models loaded on the pooled hosts, and the keep_alive hint requests send.
+    public OllamaModelResidency residency() {
+        return residency;
+    }
+
+    // Latency statistics and rate limit for executeHedged.
+    public OllamaHedging hedging() {
+        return hedging;
+    }
+
+    // Priority queues and per-host concurrency limits for scheduled requests.
+    public OllamaScheduler scheduler() {
+        return scheduler;
+    }
+
+    // Snapshot of the configured hosts.
+    public List<OllamaEndpoint> endpoints() {
+        return endpoints;
+    }
+
+    // Pick a host for a request without affinity.
+    public OllamaEndpoint acquire() {
+        return acquire(null);
+    }
+
+    // Pick a host for a request right away, bypassing the scheduler's queue and limits. Callers must
+    // pair this with release(). Throws OllamaUnavailableException without picking a host while the
+    // circuit is open.
+    public OllamaEndpoint acquire(String affinityKey) {
+        if (!circuitBreaker.tryAcquire()) {
+            throw new OllamaUnavailableException("Ollama is unavailable (circuit open)");
+        }
+        long now = System.currentTimeMillis();
+        OllamaEndpoint chosen = affinityKey == null ? null : stickyHost(affinityKey, now);
+        if (chosen == null) {
+            chosen = leastOutstanding(endpoints, now);
+            if (affinityKey != null) stick(affinityKey, chosen);
+        }
+        chosen.begin();
+        return chosen;
+    }
+
+    // Wait for a slot in the scheduler, then pick a host like acquire(). Callers must pair this with
+    // release(). Interrupting the waiting thread gives up its place in the queue.
+    public OllamaEndpoint acquire(OllamaScheduler.Work work, String affinityKey) throws InterruptedException {
+        CompletableFuture<OllamaEndpoint> slot = reserve(work, affinityKey);
+        try {
+            return slot.get();
+        } catch (InterruptedException exception) {
+            slot.cancel(true);
+            throw exception;
+        } catch (ExecutionException exception) {
+            if (exception.getCause() instanceof RuntimeException runtime) throw runtime;
+            throw new CompletionException(exception.getCause());
+        }
+    }
+
+    // Finish a request started with acquire(), recording whether it succeeded.
+    public void release(OllamaEndpoint endpoint, boolean success) {
+        release(endpoint, success, false);
+    }
+
+    // Finish a request started with acquire() that ended with the given error (null on success). Only
+    // an outage (see isOutage) counts against the host and the circuit; a host that answered with an
+    // HTTP error, e.g. a missing model, is up.
+    public void release(OllamaEndpoint endpoint, Throwable error) {
+        release(endpoint, error == null || !isOutage(error));
+    }
+
+    // Whether a request failed because Ollama could not be reached or did not answer in time, as
+    // opposed to answering with an error for this one request.
+    public static boolean isOutage(Throwable error) {
+        while ((error instanceof CompletionException || error instanceof ExecutionException) && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error instanceof IOException || error instanceof OllamaUnavailableException;
+    }
+
+    private void release(OllamaEndpoint endpoint, boolean success, boolean background) {
+        endpoint.end(background);
+        healthKnown = true;
+        if (success) {
+            endpoint.markSuccess();
+            circuitBreaker.recordSuccess();
+        } else {
+            recordFailure(endpoint);
+            // One bad host is ejected instead; the circuit only opens once no host is left answering
+            if (allHostsFailing()) {
+                circuitBreaker.recordFailure();
+            } else {
+                circuitBreaker.recordAbandoned();
+            }
+        }
+        scheduler.dispatch();
+    }
+
+    // Finish a request started with acquire() that the caller cancelled; not counted as a success or failure.
+    public void abandon(OllamaEndpoint endpoint) {
+        abandon(endpoint, false);
+    }
+
+    private void abandon(OllamaEndpoint endpoint, boolean background) {
+        endpoint.end(background);
+        circuitBreaker.recordAbandoned();
+        scheduler.dispatch();
+    }
+
+    // Run an async call against a pooled host and release it when the call completes. The call is
+    // scheduled as interactive work of the conversation unless the caller set other work (see
+    // OllamaScheduler.submitAs).
+    public <T> CompletableFuture<T> execute(String affinityKey, Function<OllamaEndpoint, CompletableFuture<T>> call) {
+        return execute(OllamaScheduler.currentWork(OllamaScheduler.Work.of(OllamaScheduler.Priority.INTERACTIVE, affinityKey)),
+            affinityKey, call);
+    }
+
+    // Run an async call once the scheduler grants the work a slot on a pooled host, and release the host
+    // when the call completes. Cancelling the returned future gives up the queued slot or cancels the call.
+    public <T> CompletableFuture<T> execute(OllamaScheduler.Work work, String affinityKey,
+                                            Function<OllamaEndpoint, CompletableFuture<T>> call) {
+        CompletableFuture<OllamaEndpoint> slot = reserve(work, affinityKey);
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicReference<CompletableFuture<T>> running = new AtomicReference<>();
+        slot.whenComplete((endpoint, error) -> {
+            if (error != null) {
+                result.completeExceptionally(error);
+                return;
+            }
+            CompletableFuture<T> attempt = run(endpoint, work.priority().isBackground(), call);
+            running.set(attempt);
+            attempt.whenComplete((value, throwable) -> {
+                if (throwable != null) {
+                    result.completeExceptionally(throwable);
+                } else {
+                    result.complete(value);
+                }
+            });
+            if (result.isCancelled()) cancel(attempt);
+        });
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                slot.cancel(true);
+                cancel(running.get());
+            }
+        });
+        return result;
+    }
+
+    // Like executeHedged with work, as interactive work of the conversation.
+    public <T> CompletableFuture<T> executeHedged(String route, String affinityKey,
+                                                  Function<OllamaEndpoint, CompletableFuture<T>> call,
+                                                  Function<OllamaEndpoint, CompletableFuture<T>> alternateCall) {
+        return executeHedged(route, OllamaScheduler.Work.of(OllamaScheduler.Priority.INTERACTIVE, affinityKey),
+            affinityKey, call, alternateCall);
+    }
+
+    // Like execute, but timed on a route: if the call has not answered within the route's p95 latency
+    // of being sent (time queued for a slot does not count), a duplicate is sent to another host, or
+    // with alternateCall (e.g. an alternate model; may be null) to the same host. The first success wins and the other attempt is cancelled. A duplicate only
+    // takes a free slot that no waiting request of the same or a more urgent class is owed.
+    public <T> CompletableFuture<T> executeHedged(String route, OllamaScheduler.Work work, String affinityKey,
+                                                  Function<OllamaEndpoint, CompletableFuture<T>> call,
+                                                  Function<OllamaEndpoint, CompletableFuture<T>> alternateCall) {
+        hedging.onRequest();
+        long delay = hedging.hedgeDelayMillis(route);
+        if (delay < 0) return execute(work, affinityKey, timed(route, call));
+
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicReference<CompletableFuture<T>> hedge = new AtomicReference<>();
+        // Attempts sent and failed so far; the call fails only once every attempt has failed
+        int[] attempts = {1, 0};
+        BiConsumer<T, Throwable> settle = (value, error) -> {
+            if (error == null) {
+                result.complete(value);
+                return;
+            }
+            synchronized (attempts) {
+                if (++attempts[1] < attempts[0]) return;
+            }
+            result.completeExceptionally(error);
+        };
+        // The hedge timer starts when the primary is sent, not while it waits in the scheduler's queue,
+        // so a request that has not been sent is never duplicated
+        Executor hedgeTimer = CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS);
+        Consumer<OllamaEndpoint> startHedgeTimer = used -> hedgeTimer.execute(() -> {
+            if (result.isDone() || circuitBreaker.state() != OllamaCircuitBreaker.State.CLOSED) return;
+            OllamaEndpoint other = otherHost(used);
+            Function<OllamaEndpoint, CompletableFuture<T>> hedgeCall = other != null ? call : alternateCall;
+            OllamaEndpoint target = other != null ? other : used;
+            if (hedgeCall == null) return;
+            boolean background = work.priority().isBackground();
+            synchronized (attempts) {
+                // A primary that already failed has settled the call
+                if (result.isDone() || !scheduler.tryClaim(target, work.priority())) return;
+                if (!hedging.tryHedge()) {
+                    target.end(background);
+                    scheduler.dispatch();
+                    return;
+                }
+                attempts[0]++;
+            }
+
+            LOGGER.debug("Hedging {} on {} after {}ms", route, target, delay);
+            CompletableFuture<T> duplicate = run(target, background, timed(route, hedgeCall));
+            hedge.set(duplicate);
+            duplicate.whenComplete((value, error) -> {
+                if (error == null && !result.isDone()) hedging.hedgeWon();
+                settle.accept(value, error);
+            });
+            if (result.isDone()) cancel(duplicate);
+        });
+        Function<OllamaEndpoint, CompletableFuture<T>> timedCall = timed(route, call);
+        CompletableFuture<T> primary = execute(work, affinityKey, endpoint -> {
+            CompletableFuture<T> attempt = timedCall.apply(endpoint);
+            if (!attempt.isDone()) startHedgeTimer.accept(endpoint);
+            return attempt;
+        });
+        primary.whenComplete(settle);
+        // Once settled, or when the caller cancels, stop whatever is still running
+        result.whenComplete((value, error) -> {
+            cancel(primary);
+            cancel(hedge.get());
+        });
+        return result;
+    }
+
+    // Make cancelling a future derived from an exchange (e.g. with thenApply) cancel the exchange too.
+    public static <T> CompletableFuture<T> cancelling(CompletableFuture<T> derived, CompletableFuture<?> exchange) {
+        derived.whenComplete((value, error) -> {
+            if (derived.isCancelled()) exchange.cancel(true);
+        });
+        return derived;
+    }
+
+    // Probe a single host with GET /api/tags and update its state.
+    public boolean probe(OllamaEndpoint endpoint) {
+        boolean healthy;
+        try {
+            HttpRequest request = HttpRequest.newBuilder()
+                .uri(endpoint.resolve("/api/tags"))
+                .timeout(PROBE_TIMEOUT)
+                .GET()
+                .build();
+            HttpResponse<Void> response = probeClient.send(request, HttpResponse.BodyHandlers.discarding());
+            healthy = response.statusCode() == 200;
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            healthy = false;
+        } catch (Exception exception) {
+            healthy = false;
+        }
+
+        if (healthy) {
+            endpoint.markSuccess();
+        } else {
+            recordFailure(endpoint);
+        }
+        return healthy;
+    }
+
+    // Probe every host and feed the result to the circuit breaker; returns true if at least one answered.
+    public boolean probeAll() {
+        boolean anyHealthy = false;
+        for (OllamaEndpoint endpoint : endpoints) {
+            anyHealthy |= probe(endpoint);
+        }
+        if (anyHealthy) {
+            circuitBreaker.recordSuccess();
+        } else {
+            circuitBreaker.recordFailure();
+        }
+        healthKnown = true;
+        return anyHealthy;
+    }
+
+    // Cached health: false only while the circuit is open. Probes synchronously if nothing is known yet.
+    public boolean isHealthy() {
+        if (!healthKnown) {
+            return probeAll();
+        }
+        return !circuitBreaker.isOpen();
+    }
+
+    // Start periodic background probing of all hosts.
+    public synchronized void startHealthProbing(Duration interval) {
+        if (prober != null) return;
+        prober = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Ollama-Endpoint-Prober");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long millis = interval.toMillis();
+        prober.scheduleWithFixedDelay(this::probeAll, 0L, millis, TimeUnit.MILLISECONDS);
+    }
+
+    // Stop background probing.
+    public synchronized void shutdown() {
+        if (prober != null) {
+            prober.shutdownNow();
+            prober = null;
+        }
+    }
+
+    // Wait for the scheduler to grant the work a host; fails at once while the circuit is open.
+    private CompletableFuture<OllamaEndpoint> reserve(OllamaScheduler.Work work, String affinityKey) {
+        if (!circuitBreaker.tryAcquire()) {
+            return CompletableFuture.failedFuture(new OllamaUnavailableException("Ollama is unavailable (circuit open)"));
+        }
+        return scheduler.reserve(work, affinityKey);
+    }
+
+    // Run a call on a host already counted as busy (begin()) and release it when the call completes.
+    private <T> CompletableFuture<T> run(OllamaEndpoint endpoint, boolean background,
+                                         Function<OllamaEndpoint, CompletableFuture<T>> call) {
+        CompletableFuture<T> future;
+        try {
+            future = call.apply(endpoint);
+        } catch (RuntimeException exception) {
+            release(endpoint, !isOutage(exception), background);
+            return CompletableFuture.failedFuture(exception);
+        }
+        // Not future.whenComplete(...): a dependent cancelled first would never run its action
+        CompletableFuture<T> result = new CompletableFuture<>();
+        future.whenComplete((value, throwable) -> {
+            if (isCancellation(throwable)) {
+                abandon(endpoint, background);
+            } else {
+                release(endpoint, throwable == null || !isOutage(throwable), background);
+            }
+            if (throwable != null) {
+                result.completeExceptionally(throwable);
+            } else {
+                result.complete(value);
+            }
+        });
+        return cancelling(result, future);
+    }
+
+    // Wrap a call so the latency of an attempt that succeeds, from when it is sent, is recorded on the route.
+    private <T> Function<OllamaEndpoint, CompletableFuture<T>> timed(String route,
+                                                                    Function<OllamaEndpoint, CompletableFuture<T>> call) {
+        return endpoint -> {
+            long start = System.nanoTime();
+            CompletableFuture<T> attempt = call.apply(endpoint);
+            attempt.whenComplete((value, error) -> {
+                if (error == null) hedging.record(route, (System.nanoTime() - start) / 1_000_000);
+            });
+            return attempt;
+        };
+    }
+
+    // Least-outstanding available host other than the given one, or null if there is none.
+    private OllamaEndpoint otherHost(OllamaEndpoint used) {
+        long now = System.currentTimeMillis();
+        OllamaEndpoint best = null;
+        for (OllamaEndpoint endpoint : endpoints) {
+            if (endpoint == used || endpoint.isEjected(now)) continue;
+            if (best == null || endpoint.outstanding() < best.outstanding()) {
+                best = endpoint;
+            }
+        }
+        return best;
+    }
+
+    // The conversation's host, if it is still configured and not ejected.
+    OllamaEndpoint stickyHost(String affinityKey, long now) {
+        OllamaEndpoint sticky = affinity.get(affinityKey);
+        return sticky != null && endpoints.contains(sticky) && !sticky.isEjected(now) ? sticky : null;
+    }
+
+    // Make the host the conversation's host.
+    void stick(String affinityKey, OllamaEndpoint endpoint) {
+        if (affinity.size() >= MAX_AFFINITY_ENTRIES) {
+            affinity.clear();
+        }
+        affinity.put(affinityKey, endpoint);
+    }
+
+    private static void cancel(CompletableFuture<?> future) {
+        if (future != null) future.cancel(true);
+    }
+
+    // Whether every host is ejected or failed its last request.
+    private boolean allHostsFailing() {
+        long now = System.currentTimeMillis();
+        for (OllamaEndpoint endpoint : endpoints) {
+            if (!endpoint.isEjected(now) && endpoint.consecutiveFailures() == 0) return false;
+        }
+        return true;
+    }
+
+    private void recordFailure(OllamaEndpoint endpoint) {
+        int failures = endpoint.markFailure();
+        if (failures >= maxFailures && !endpoint.isEjected(System.currentTimeMillis())) {
+            endpoint.eject(System.currentTimeMillis() + ejectionMillis);
+            affinity.values().removeIf(sticky -> sticky == endpoint);
+            LOGGER.warn("Ejecting Ollama endpoint {} after {} consecutive failures", endpoint, failures);
+        }
+    }
+
+    // Whether a call failed because its caller cancelled it.
+    private static boolean isCancellation(Throwable throwable) {
+        while (throwable instanceof CompletionException && throwable.getCause() != null) {
+            throwable = throwable.getCause();
+        }
+        return throwable instanceof CancellationException;
+    }
+
+    // Least-outstanding host among those not ejected; if all are ejected, consider every host.
+    private static OllamaEndpoint leastOutstanding(List<OllamaEndpoint> candidates, long now) {
+        OllamaEndpoint best = null;
+        for (OllamaEndpoint endpoint : candidates) {
+            if (endpoint.isEjected(now)) continue;
+            if (best == null || endpoint.outstanding() < best.outstanding()) {
+                best = endpoint;
+            }
+        }
+        if (best != null) return best;
+
+        for (OllamaEndpoint endpoint : candidates) {
+            if (best == null || endpoint.outstanding() < best.outstanding()) {
+                best = endpoint;
+            }
+        }
+        return best;
+    }
+
+    private static List<OllamaEndpoint> toEndpoints(List<String> baseUrls, Map<String, OllamaEndpoint> existing) {
+        Map<String, OllamaEndpoint> result = new LinkedHashMap<>();
+        for (String url : baseUrls) {
+            if (url == null || url.isBlank()) continue;
+            OllamaEndpoint endpoint = new OllamaEndpoint(url);
+            OllamaEndpoint previous = existing.get(endpoint.baseUrl());
+            result.putIfAbsent(endpoint.baseUrl(), previous != null ? previous : endpoint);
+        }
+        if (result.isEmpty()) {
+            throw new IllegalArgumentException("At least one Ollama endpoint is required");
+        }
+        return List.copyOf(result.values());
+    }
+}
@@ -0,0 +1,111 @@
+package net.kevinthedang.ollamamod.ollama;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Latency statistics and rate limit for hedged requests (see {@link OllamaEndpointPool#executeHedged}).
+ *
+ * Each route (e.g. "chat:granite4:latest" or "embed:nomic-embed-text") keeps a window of its recent
+ * successful latencies; a request still unanswered at the route's p95 gets a duplicate. Hedges are
+ * paid for from a credit that every request tops up by the hedge ratio, so at most about that share
+ * of extra requests is sent even when Ollama is slow across the board, and hedging cannot pile more
+ * load onto an overloaded host.
+ */
+public final class OllamaHedging {
+    public static final double DEFAULT_HEDGE_RATIO = 0.1;
+    private static final int WINDOW = 128;
+    private static final int MIN_SAMPLES = 20;
+    private static final int MAX_BURST = 5;
+    private static final long MIN_DELAY_MILLIS = 50;
+
+    private final Map<String, LatencyWindow> windows = new ConcurrentHashMap<>();
+    // Requests that pay for one hedge (0 disables hedging); credit is counted in requests
+    private final long requestsPerHedge;
+    private volatile boolean enabled = true;
+    private long credit;
+    private long hedgesSent;
+    private long hedgesWon;
+
+    public OllamaHedging() {
+        this(DEFAULT_HEDGE_RATIO);
+    }
+
+    // Hedging limited to hedgeRatio extra requests per request.
+    public OllamaHedging(double hedgeRatio) {
+        this.requestsPerHedge = hedgeRatio <= 0 ? 0 : Math.max(1, Math.round(1 / hedgeRatio));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    // Record a successful request's latency on a route.
+    public void record(String route, long millis) {
+        windows.computeIfAbsent(route, ignored -> new LatencyWindow()).add(millis);
+    }
+
+    // 95th percentile latency of a route, or -1 until it has enough samples.
+    public long p95Millis(String route) {
+        LatencyWindow window = windows.get(route);
+        return window == null ? -1 : window.p95();
+    }
+
+    // How long to wait before hedging a request on this route, or -1 to not hedge it.
+    public long hedgeDelayMillis(String route) {
+        if (!enabled || requestsPerHedge == 0) return -1;
+        long p95 = p95Millis(route);
+        return p95 < 0 ? -1 : Math.max(MIN_DELAY_MILLIS, p95);
+    }
+
+    // Count a request towards the hedge credit.
+    public synchronized void onRequest() {
+        credit = Math.min(MAX_BURST * requestsPerHedge, credit + 1);
+    }
+
+    // Spend credit on a hedge; false when hedging would exceed the ratio.
+    public synchronized boolean tryHedge() {
+        if (requestsPerHedge == 0 || credit < requestsPerHedge) return false;
+        credit -= requestsPerHedge;
+        hedgesSent++;
+        return true;
+    }
+
+    // Record that a hedge answered before the request it duplicated.
+    public synchronized void hedgeWon() {
+        hedgesWon++;
+    }
+
+    public synchronized long hedgesSent() {
+        return hedgesSent;
+    }
+
+    public synchronized long hedgesWon() {
+        return hedgesWon;
+    }
+
+    // Ring buffer of the most recent latencies on one route.
+    private static final class LatencyWindow {
+        private final long[] samples = new long[WINDOW];
+        private int count;
+        private int next;
+
+        synchronized void add(long millis) {
+            samples[next] = millis;
+            next = (next + 1) % WINDOW;
+            count = Math.min(WINDOW, count + 1);
+        }
+
+        synchronized long p95() {
+            if (count < MIN_SAMPLES) return -1;
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            return sorted[(int) Math.ceil(count * 0.95) - 1];
+        }
+    }
+}
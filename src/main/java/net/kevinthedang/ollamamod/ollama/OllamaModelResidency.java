@@ -0,0 +1,250 @@
+package net.kevinthedang.ollamamod.ollama;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Which models each pooled Ollama host currently holds in memory.
+ *
+ * On a single-GPU host, switching between the chat and tool models can unload one to load the other,
+ * which costs seconds per switch. This tracks residency from /api/ps (polled in the background and
+ * updated after our own requests), supplies the keep_alive hint every request sends so Ollama keeps
+ * models loaded between turns, pre-warms models before the first turn needs them, and lets routing
+ * pick the model that is already loaded when either would do.
+ *
+ * Cloud models ("...:cloud" or "...-cloud") run remotely and are always treated as loaded.
+ */
+public class OllamaModelResidency {
+    private static final Logger LOGGER = LoggerFactory.getLogger(OllamaModelResidency.class);
+
+    public static final String DEFAULT_KEEP_ALIVE = "30m";
+    public static final Duration DEFAULT_POLL_INTERVAL = Duration.ofSeconds(10);
+    private static final Duration POLL_TIMEOUT = Duration.ofSeconds(2);
+    private static final Duration WARM_TIMEOUT = Duration.ofMinutes(2);
+
+    private final OllamaEndpointPool pool;
+    private final HttpClient client;
+    private final Map<String, Set<String>> loadedByHost = new ConcurrentHashMap<>();
+
+    private volatile String keepAlive = DEFAULT_KEEP_ALIVE;
+    private volatile boolean known = false;
+    private ScheduledExecutorService poller;
+
+    public OllamaModelResidency(OllamaEndpointPool pool) {
+        this.pool = pool;
+        this.client = HttpClient.newBuilder()
+            .connectTimeout(POLL_TIMEOUT)
+            .build();
+    }
+
+    // keep_alive value to send with every request, e.g. "30m"; null sends none, so the server default applies.
+    public String keepAlive() {
+        return keepAlive;
+    }
+
+    // A null or blank value stops sending keep_alive.
+    public void setKeepAlive(String keepAlive) {
+        this.keepAlive = keepAlive == null || keepAlive.isBlank() ? null : keepAlive.trim();
+    }
+
+    // Add the keep_alive hint to a request body, if one is configured.
+    public void putKeepAlive(Map<String, Object> body) {
+        String value = keepAlive;
+        if (value != null) body.put("keep_alive", value);
+    }
+
+    // Whether any host has reported its loaded models yet.
+    public boolean isKnown() {
+        return known;
+    }
+
+    // Whether the model is loaded on any pooled host.
+    public boolean isLoaded(String model) {
+        if (model == null) return false;
+        if (isRemote(model)) return true;
+        String name = normalize(model);
+        for (Set<String> loaded : loadedByHost.values()) {
+            if (loaded.contains(name)) return true;
+        }
+        return false;
+    }
+
+    // Model to use when the route accepts either: the preferred one unless only the alternative is
+    // loaded. While residency is unknown the preferred model is used.
+    public String choose(String preferred, String alternative) {
+        if (!known || alternative == null || isLoaded(preferred)) return preferred;
+        return isLoaded(alternative) ? alternative : preferred;
+    }
+
+    // Record that a request to the model just succeeded on the host, so it is resident there now. If the
+    // host had to load it, the load may have evicted the other models there, so until the host is polled
+    // again (right away, in the background) it is the only model counted as resident on it.
+    public void markLoaded(OllamaEndpoint endpoint, String model) {
+        if (endpoint == null || model == null || isRemote(model)) return;
+        String name = normalize(model);
+        Set<String> loaded = loadedByHost.get(endpoint.baseUrl());
+        if (loaded != null && loaded.contains(name)) return;
+        Set<String> only = ConcurrentHashMap.newKeySet();
+        only.add(name);
+        loadedByHost.put(endpoint.baseUrl(), only);
+        refreshLater(endpoint);
+    }
+
+    // Poll GET /api/ps on every host and replace what is known; returns true if any host answered.
+    public boolean refresh() {
+        boolean anyAnswered = false;
+        for (OllamaEndpoint endpoint : pool.endpoints()) {
+            anyAnswered |= refresh(endpoint);
+        }
+        return anyAnswered;
+    }
+
+    // Poll GET /api/ps on one host and replace what is known of it; returns true if it answered.
+    public boolean refresh(OllamaEndpoint endpoint) {
+        Set<String> loaded = poll(endpoint);
+        if (loaded == null) return false;
+        Set<String> current = ConcurrentHashMap.newKeySet();
+        current.addAll(loaded);
+        loadedByHost.put(endpoint.baseUrl(), current);
+        known = true;
+        return true;
+    }
+
+    // Load the models on every host, in order, then refresh residency. Ollama loads a model when
+    // /api/generate is called without a prompt; models that do not fit evict earlier ones, which
+    // the refresh reveals.
+    public CompletableFuture<Void> prewarm(List<String> models) {
+        CompletableFuture<Void> chain = CompletableFuture.completedFuture(null);
+        for (OllamaEndpoint endpoint : pool.endpoints()) {
+            for (String model : models) {
+                if (model == null || model.isBlank() || isRemote(model)) continue;
+                chain = chain.thenCompose(ignored -> warm(endpoint, model));
+            }
+        }
+        return chain.thenRun(this::refresh);
+    }
+
+    // Start periodic background polling of /api/ps.
+    public synchronized void startPolling(Duration interval) {
+        if (poller != null) return;
+        poller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Ollama-Residency-Poller");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long millis = interval.toMillis();
+        poller.scheduleWithFixedDelay(this::refresh, 0L, millis, TimeUnit.MILLISECONDS);
+    }
+
+    // Stop background polling.
+    public synchronized void shutdown() {
+        if (poller != null) {
+            poller.shutdownNow();
+            poller = null;
+        }
+    }
+
+    // Poll one host off the caller's thread, on the poller when it runs.
+    private void refreshLater(OllamaEndpoint endpoint) {
+        ScheduledExecutorService executor;
+        synchronized (this) {
+            executor = poller;
+        }
+        try {
+            if (executor != null) {
+                executor.execute(() -> refresh(endpoint));
+                return;
+            }
+        } catch (RejectedExecutionException exception) {
+            // Shutting down; the next poll (if any) corrects residency
+            return;
+        }
+        CompletableFuture.runAsync(() -> refresh(endpoint));
+    }
+
+    private CompletableFuture<Void> warm(OllamaEndpoint endpoint, String model) {
+        JsonObject body = new JsonObject();
+        body.addProperty("model", model);
+        String keepAlive = this.keepAlive;
+        if (keepAlive != null) body.addProperty("keep_alive", keepAlive);
+        HttpRequest request = HttpRequest.newBuilder()
+            .uri(endpoint.resolve("/api/generate"))
+            .timeout(WARM_TIMEOUT)
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(body.toString(), StandardCharsets.UTF_8))
+            .build();
+        long start = System.nanoTime();
+        return client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+            .handle((response, error) -> {
+                if (error == null && response.statusCode() == 200) {
+                    markLoaded(endpoint, model);
+                    LOGGER.info("Pre-warmed {} on {} in {}ms", model, endpoint, (System.nanoTime() - start) / 1_000_000);
+                } else {
+                    LOGGER.warn("Could not pre-warm {} on {}: {}", model, endpoint,
+                        error != null ? error.toString() : "HTTP " + response.statusCode());
+                }
+                return null;
+            });
+    }
+
+    // Loaded model names on one host, or null if it did not answer.
+    private Set<String> poll(OllamaEndpoint endpoint) {
+        try {
+            HttpRequest request = HttpRequest.newBuilder()
+                .uri(endpoint.resolve("/api/ps"))
+                .timeout(POLL_TIMEOUT)
+                .GET()
+                .build();
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) return null;
+            Set<String> loaded = new HashSet<>();
+            JsonObject root = JsonParser.parseString(response.body()).getAsJsonObject();
+            if (root.has("models")) {
+                for (JsonElement element : root.getAsJsonArray("models")) {
+                    JsonObject model = element.getAsJsonObject();
+                    String name = model.has("model") ? model.get("model").getAsString()
+                        : model.has("name") ? model.get("name").getAsString() : null;
+                    if (name != null) loaded.add(normalize(name));
+                }
+            }
+            return loaded;
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (Exception exception) {
+            LOGGER.debug("Could not read loaded models from {}: {}", endpoint, exception.toString());
+            return null;
+        }
+    }
+
+    // "granite4" and "granite4:latest" name the same model.
+    private static String normalize(String model) {
+        String name = model.trim().toLowerCase(Locale.ROOT);
+        return name.indexOf(':') < 0 ? name + ":latest" : name;
+    }
+
+    private static boolean isRemote(String model) {
+        String name = model.trim().toLowerCase(Locale.ROOT);
+        return name.endsWith(":cloud") || name.endsWith("-cloud");
+    }
+}
@@ -0,0 +1,312 @@
+package net.kevinthedang.ollamamod.ollama;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Admits outbound Ollama requests to the pooled hosts by priority, fairly between players.
+ *
+ * Each host runs at most a configured number of requests at once (its concurrency limit); requests
+ * beyond that wait here. Waiting requests are admitted strictly by {@link Priority}, so a reply a
+ * player is watching always goes before bulk work, and within a priority class each flow (a player or
+ * conversation) takes turns, so one player's burst cannot hold up another's. Background classes
+ * (memory writes and ingestion) may only fill a smaller share of each host, which keeps slots free for
+ * interactive requests while a large ingestion runs. Queue depth and wait times are tracked per class.
+ */
+public class OllamaScheduler {
+    // Priority classes, most urgent first.
+    public enum Priority {
+        INTERACTIVE,
+        TOOL_LOOP,
+        QUERY_EMBEDDING,
+        MEMORY_WRITE,
+        INGESTION;
+
+        // Bulk work, limited to each host's background share.
+        public boolean isBackground() {
+            return this == MEMORY_WRITE || this == INGESTION;
+        }
+    }
+
+    // What a request is for: its priority class and the flow (player or conversation) it queues under.
+    public record Work(Priority priority, String flow) {
+        public Work {
+            flow = flow == null ? "" : flow;
+        }
+
+        public static Work of(Priority priority, String flow) {
+            return new Work(priority, flow);
+        }
+    }
+
+    public static final int DEFAULT_MAX_CONCURRENT = 4;
+    public static final int DEFAULT_MAX_BACKGROUND = 1;
+
+    private static final ThreadLocal<Work> CURRENT = new ThreadLocal<>();
+
+    private final OllamaEndpointPool pool;
+    private final Map<Priority, LinkedHashMap<String, ArrayDeque<Ticket>>> queues = new EnumMap<>(Priority.class);
+    private final Map<String, Integer> hostLimits = new ConcurrentHashMap<>();
+    private final Stats[] stats = new Stats[Priority.values().length];
+
+    private volatile int maxConcurrent = DEFAULT_MAX_CONCURRENT;
+    private volatile int maxBackground = DEFAULT_MAX_BACKGROUND;
+
+    public OllamaScheduler(OllamaEndpointPool pool) {
+        this.pool = pool;
+        for (Priority priority : Priority.values()) {
+            queues.put(priority, new LinkedHashMap<>());
+            stats[priority.ordinal()] = new Stats();
+        }
+    }
+
+    // Run an action whose Ollama requests are submitted as the given work. For callers that cannot pass
+    // the work down (e.g. through the embedding service); only requests submitted on this thread before
+    // the action returns are covered.
+    public static <T> T submitAs(Work work, Supplier<T> action) {
+        Work previous = CURRENT.get();
+        CURRENT.set(work);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    // Work set by submitAs on this thread, or the fallback.
+    public static Work currentWork(Work fallback) {
+        Work work = CURRENT.get();
+        return work != null ? work : fallback;
+    }
+
+    // Requests each host runs at once, and how many of those may be background work. Hosts listed in
+    // hostLimits (base URL to limit) use their own limit instead of maxConcurrent.
+    public void configure(int maxConcurrent, int maxBackground, Map<String, Integer> hostLimits) {
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.maxBackground = Math.max(1, maxBackground);
+        this.hostLimits.clear();
+        hostLimits.forEach((baseUrl, limit) -> this.hostLimits.put(new OllamaEndpoint(baseUrl).baseUrl(), Math.max(1, limit)));
+        dispatch();
+    }
+
+    // Requests the host runs at once.
+    public int limit(OllamaEndpoint endpoint) {
+        return hostLimits.getOrDefault(endpoint.baseUrl(), maxConcurrent);
+    }
+
+    // Background requests the host runs at once.
+    public int backgroundLimit(OllamaEndpoint endpoint) {
+        return Math.min(maxBackground, limit(endpoint));
+    }
+
+    // Wait for a slot on a host for the work. The future completes with the host, already counted as
+    // busy (pair it with release() or abandon()); cancelling it while queued gives up the place.
+    CompletableFuture<OllamaEndpoint> reserve(Work work, String affinityKey) {
+        Ticket ticket = new Ticket(work, affinityKey);
+        synchronized (this) {
+            queues.get(work.priority()).computeIfAbsent(work.flow(), ignored -> new ArrayDeque<>()).addLast(ticket);
+        }
+        ticket.slot.whenComplete((endpoint, error) -> {
+            if (!ticket.slot.isCancelled()) return;
+            // Cancelled before a host was granted: leave the queue and free a half-open circuit trial
+            boolean removed;
+            synchronized (this) {
+                removed = remove(ticket);
+            }
+            if (removed) pool.circuitBreaker().recordAbandoned();
+        });
+        dispatch();
+        return ticket.slot;
+    }
+
+    // Take a slot on the given host right away, without queueing, if it is free and no waiting request
+    // of the same or a more urgent class is owed it first. Used for hedges.
+    synchronized boolean tryClaim(OllamaEndpoint endpoint, Priority priority) {
+        for (Priority queued : Priority.values()) {
+            if (queued.ordinal() > priority.ordinal()) break;
+            if (!queues.get(queued).isEmpty()) return false;
+        }
+        if (!fits(endpoint, priority)) return false;
+        endpoint.begin(priority.isBackground());
+        return true;
+    }
+
+    // Admit waiting requests while hosts have free slots. Called whenever a slot may have opened.
+    void dispatch() {
+        while (true) {
+            List<Grant> grants = new ArrayList<>();
+            synchronized (this) {
+                Grant grant;
+                while ((grant = next()) != null) {
+                    grants.add(grant);
+                }
+            }
+            if (grants.isEmpty()) return;
+            boolean freed = false;
+            for (Grant grant : grants) {
+                if (!grant.ticket().slot.complete(grant.endpoint())) {
+                    // The caller gave up just as its slot was granted
+                    grant.endpoint().end(grant.ticket().work.priority().isBackground());
+                    pool.circuitBreaker().recordAbandoned();
+                    freed = true;
+                }
+            }
+            if (!freed) return;
+        }
+    }
+
+    // Requests waiting for a slot, in every class.
+    public synchronized int queueDepth() {
+        int depth = 0;
+        for (Priority priority : Priority.values()) {
+            depth += queueDepth(priority);
+        }
+        return depth;
+    }
+
+    // Requests of one class waiting for a slot.
+    public synchronized int queueDepth(Priority priority) {
+        int depth = 0;
+        for (ArrayDeque<Ticket> flow : queues.get(priority).values()) {
+            depth += flow.size();
+        }
+        return depth;
+    }
+
+    // Requests of one class admitted so far.
+    public synchronized long admitted(Priority priority) {
+        return stats[priority.ordinal()].admitted;
+    }
+
+    // Mean time requests of one class waited for a slot.
+    public synchronized long averageWaitMillis(Priority priority) {
+        Stats classStats = stats[priority.ordinal()];
+        return classStats.admitted == 0 ? 0 : classStats.totalWaitNanos / classStats.admitted / 1_000_000;
+    }
+
+    // Longest time a request of one class waited for a slot.
+    public synchronized long maxWaitMillis(Priority priority) {
+        return stats[priority.ordinal()].maxWaitNanos / 1_000_000;
+    }
+
+    // One-line summary of classes that have seen requests, e.g.
+    // "interactive: 0 queued, 12 admitted, wait avg 3ms max 40ms; ingestion: 5 queued, ...".
+    public synchronized String summary() {
+        StringBuilder summary = new StringBuilder();
+        for (Priority priority : Priority.values()) {
+            int depth = queueDepth(priority);
+            long admitted = admitted(priority);
+            if (depth == 0 && admitted == 0) continue;
+            if (!summary.isEmpty()) summary.append("; ");
+            summary.append(priority.name().toLowerCase(Locale.ROOT)).append(": ")
+                .append(depth).append(" queued, ")
+                .append(admitted).append(" admitted, wait avg ")
+                .append(averageWaitMillis(priority)).append("ms max ")
+                .append(maxWaitMillis(priority)).append("ms");
+        }
+        return summary.isEmpty() ? "idle" : summary.toString();
+    }
+
+    // The most urgent waiting request that fits on a host, taken from its queue with the host marked
+    // busy; null if none fits. Classes are strict: if the head of the most urgent class cannot be
+    // placed, nothing less urgent is either, so its slot is not taken by bulk work meanwhile.
+    private Grant next() {
+        for (Priority priority : Priority.values()) {
+            LinkedHashMap<String, ArrayDeque<Ticket>> flows = queues.get(priority);
+            if (flows.isEmpty()) continue;
+            Iterator<Map.Entry<String, ArrayDeque<Ticket>>> iterator = flows.entrySet().iterator();
+            Map.Entry<String, ArrayDeque<Ticket>> first = iterator.next();
+            Ticket ticket = first.getValue().peekFirst();
+            OllamaEndpoint endpoint = place(ticket);
+            if (endpoint == null) return null;
+
+            // Round robin: the flow goes to the back of its class
+            first.getValue().pollFirst();
+            iterator.remove();
+            if (!first.getValue().isEmpty()) flows.put(first.getKey(), first.getValue());
+
+            endpoint.begin(priority.isBackground());
+            Stats classStats = stats[priority.ordinal()];
+            long waited = System.nanoTime() - ticket.enqueuedNanos;
+            classStats.admitted++;
+            classStats.totalWaitNanos += waited;
+            classStats.maxWaitNanos = Math.max(classStats.maxWaitNanos, waited);
+            return new Grant(ticket, endpoint);
+        }
+        return null;
+    }
+
+    // Host for a request: its conversation's host if that has room, otherwise the least-loaded
+    // available host with room (which then becomes the conversation's host if the old one is gone).
+    private OllamaEndpoint place(Ticket ticket) {
+        Priority priority = ticket.work.priority();
+        long now = System.currentTimeMillis();
+        OllamaEndpoint sticky = ticket.affinityKey == null ? null : pool.stickyHost(ticket.affinityKey, now);
+        if (sticky != null && fits(sticky, priority)) return sticky;
+
+        List<OllamaEndpoint> current = pool.endpoints();
+        boolean anyAvailable = false;
+        for (OllamaEndpoint endpoint : current) {
+            anyAvailable |= !endpoint.isEjected(now);
+        }
+        OllamaEndpoint best = null;
+        for (OllamaEndpoint endpoint : current) {
+            // When every host is ejected, any of them may be tried
+            if (anyAvailable && endpoint.isEjected(now)) continue;
+            if (!fits(endpoint, priority)) continue;
+            if (best == null || endpoint.outstanding() < best.outstanding()) {
+                best = endpoint;
+            }
+        }
+        if (best != null && ticket.affinityKey != null && sticky == null) {
+            pool.stick(ticket.affinityKey, best);
+        }
+        return best;
+    }
+
+    private boolean fits(OllamaEndpoint endpoint, Priority priority) {
+        if (endpoint.outstanding() >= limit(endpoint)) return false;
+        return !priority.isBackground() || endpoint.backgroundOutstanding() < backgroundLimit(endpoint);
+    }
+
+    private boolean remove(Ticket ticket) {
+        LinkedHashMap<String, ArrayDeque<Ticket>> flows = queues.get(ticket.work.priority());
+        ArrayDeque<Ticket> flow = flows.get(ticket.work.flow());
+        if (flow == null || !flow.remove(ticket)) return false;
+        if (flow.isEmpty()) flows.remove(ticket.work.flow());
+        return true;
+    }
+
+    private static final class Ticket {
+        final Work work;
+        final String affinityKey;
+        final long enqueuedNanos = System.nanoTime();
+        final CompletableFuture<OllamaEndpoint> slot = new CompletableFuture<>();
+
+        Ticket(Work work, String affinityKey) {
+            this.work = work;
+            this.affinityKey = affinityKey;
+        }
+    }
+
+    private record Grant(Ticket ticket, OllamaEndpoint endpoint) {}
+
+    private static final class Stats {
+        long admitted;
+        long totalWaitNanos;
+        long maxWaitNanos;
+    }
+}
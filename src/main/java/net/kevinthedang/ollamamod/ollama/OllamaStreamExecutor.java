@@ -0,0 +1,22 @@
+package net.kevinthedang.ollamamod.ollama;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs the blocking reads of streamed Ollama replies, one virtual thread per reply.
+ *
+ * A streamed reply spends nearly all its time waiting on the socket, so a virtual thread per reply
+ * costs almost nothing while it waits, instead of a platform thread and its stack per villager.
+ */
+public final class OllamaStreamExecutor {
+    private static final ExecutorService EXECUTOR =
+        Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("Ollama-Stream-", 0).factory());
+
+    // Start a streaming task.
+    public static void submit(Runnable task) {
+        EXECUTOR.execute(task);
+    }
+
+    private OllamaStreamExecutor() {}
+}
@@ -0,0 +1,8 @@
+package net.kevinthedang.ollamamod.ollama;
+
+// Thrown when the Ollama circuit is open and a request is rejected without contacting any host.
+public class OllamaUnavailableException extends RuntimeException {
+    public OllamaUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -13,6 +13,7 @@ import org.jetbrains.annotations.NotNull;
 
 import net.kevinthedang.ollamamod.Config;
 import net.kevinthedang.ollamamod.OllamaMod;
+import net.kevinthedang.ollamamod.chat.Cancellable;
 import net.kevinthedang.ollamamod.chat.ChatMessage;
 import net.kevinthedang.ollamamod.chat.ChatRole;
 import net.kevinthedang.ollamamod.chat.OllamaSettings;
@@ -54,6 +55,8 @@ public class OllamaVillagerChatScreen extends Screen {
     private int thinkingBubbleIndex = -1;
     private boolean isStreaming = false;
     private long streamGeneration = 0;
+    // Aborts the reply in flight, so Ollama stops generating once the player stops waiting
+    private Cancellable currentReply = Cancellable.NONE;
     private long lastMessageSentTime = 0;
     private static final long MESSAGE_COOLDOWN_MS = 3000;
     private final List<ChatMessageBubble> chatMessages = new ArrayList<>();
@@ -315,7 +318,8 @@ public class OllamaVillagerChatScreen extends Screen {
         );
 
         // Pass the villager position so the chat service can play the sound at the correct location
-        OllamaMod.CHAT_SERVICE.sendPlayerMessage(
+        this.currentReply.cancel();
+        this.currentReply = OllamaMod.CHAT_SERVICE.sendPlayerMessage(
                 this.conversationId,
                 context,
                 text,
@@ -564,6 +568,14 @@ public class OllamaVillagerChatScreen extends Screen {
         this.minecraft.setScreen(this.previousScreen);
     }
 
+    @Override
+    public void removed() {
+        // Nobody is left to read the reply once the screen is gone
+        this.currentReply.cancel();
+        this.currentReply = Cancellable.NONE;
+        super.removed();
+    }
+
     @Override
     public boolean isPauseScreen() {
         return false;
@@ -614,7 +626,9 @@ public class OllamaVillagerChatScreen extends Screen {
     }
 
     private void cancelCurrentStream() {
-        // bump generation so any late callbacks from this stream are ignored
+        // abort the request itself, and bump generation so any late callbacks from this stream are ignored
+        this.currentReply.cancel();
+        this.currentReply = Cancellable.NONE;
         this.streamGeneration++;
         this.isStreaming = false;
 
@@ -0,0 +1,67 @@
+package net.kevinthedang.ollamamod.vectorstore;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.nio.file.Path;
+import java.text.Normalizer;
+import java.util.HexFormat;
+
+/**
+ * Content-addressed ids for document chunks: the same text from the same source always gets the
+ * same id, so re-ingesting a file can tell unchanged chunks from new and vanished ones.
+ */
+public final class ChunkIds {
+    private static final int ID_BYTES = 16;
+
+    private ChunkIds() {}
+
+    // Source key of a file under a root directory: the prefix and the file's path relative to the root,
+    // with '/' separators (e.g. "knowledge:mobs/zombie.txt"). Ids then stay the same wherever the
+    // root lives and however the paths are spelled.
+    public static String sourceName(String prefix, Path root, Path file) {
+        Path relative = root.toAbsolutePath().normalize().relativize(file.toAbsolutePath().normalize());
+        StringBuilder name = new StringBuilder(prefix);
+        for (int index = 0; index < relative.getNameCount(); index++) {
+            if (index > 0) name.append('/');
+            name.append(relative.getName(index));
+        }
+        return name.toString();
+    }
+
+    // Id of a chunk: hash of the source key and the normalized chunk text.
+    public static String chunkId(String source, String chunkText) {
+        MessageDigest digest = sha256();
+        digest.update(source.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(normalize(chunkText).getBytes(StandardCharsets.UTF_8));
+        byte[] hash = digest.digest();
+        return "doc-" + HexFormat.of().formatHex(hash, 0, ID_BYTES);
+    }
+
+    // Unicode NFC with whitespace runs collapsed, so reformatting a file does not change its chunk ids.
+    static String normalize(String text) {
+        String composed = Normalizer.normalize(text, Normalizer.Form.NFC);
+        StringBuilder builder = new StringBuilder(composed.length());
+        boolean pendingSpace = false;
+        for (int index = 0; index < composed.length(); index++) {
+            char c = composed.charAt(index);
+            if (Character.isWhitespace(c)) {
+                pendingSpace = builder.length() > 0;
+            } else {
+                if (pendingSpace) builder.append(' ');
+                builder.append(c);
+                pendingSpace = false;
+            }
+        }
+        return builder.toString();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException exception) {
+            throw new IllegalStateException("SHA-256 not available", exception);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package net.kevinthedang.ollamamod.vectorstore;
+
+import net.kevinthedang.ollamamod.vectorstore.embedding.EmbeddingService;
+import net.kevinthedang.ollamamod.vectorstore.model.EmbeddingSpace;
+import net.kevinthedang.ollamamod.vectorstore.model.VectorDocument;
+import net.kevinthedang.ollamamod.vectorstore.store.VectorStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Background job that re-embeds every document of the active store into a new embedding space.
+ *
+ * Documents are embedded in small batches with a pause between batches so the job never competes
+ * with chat traffic. Each pass re-lists the source, so documents written while the job runs are
+ * picked up by the next pass. When a pass finds nothing left to do, the completion callback runs
+ * while holding the shared lock so no write can slip in between the final check and the swap.
+ */
+class EmbeddingMigration {
+    private static final Logger LOGGER = LoggerFactory.getLogger(EmbeddingMigration.class);
+
+    private final VectorStore source;
+    private final VectorStore target;
+    private final EmbeddingService targetService;
+    private final Object lock;
+    private final Consumer<EmbeddingMigration> onComplete;
+    private final Thread worker;
+
+    private volatile boolean cancelled = false;
+    private volatile int dimension;
+    private int migrated = 0;
+
+    EmbeddingMigration(VectorStore source, VectorStore target, EmbeddingService targetService,
+                       Object lock, Consumer<EmbeddingMigration> onComplete) {
+        this.source = source;
+        this.target = target;
+        this.targetService = targetService;
+        this.lock = lock;
+        this.onComplete = onComplete;
+        this.dimension = target.list(null).stream()
+            .findFirst()
+            .map(document -> document.embedding().length)
+            .orElse(0);
+        this.worker = new Thread(this::run, "VectorStore-Migration");
+        this.worker.setDaemon(true);
+    }
+
+    void start() {
+        worker.start();
+    }
+
+    // Stop the job; the partially filled target is left as is.
+    void cancel() {
+        cancelled = true;
+        worker.interrupt();
+    }
+
+    String targetModel() {
+        return targetService.getModel();
+    }
+
+    VectorStore target() {
+        return target;
+    }
+
+    // Space of the target store; the dimension is learned from the first migrated batch.
+    EmbeddingSpace targetSpace() {
+        return new EmbeddingSpace(targetModel(), dimension > 0 ? dimension : targetService.getDimension());
+    }
+
+    private void run() {
+        LOGGER.info("Re-embedding vector store into {} ({} documents already migrated)",
+            targetModel(), target.count(null));
+        while (!cancelled) {
+            List<VectorDocument> pending;
+            synchronized (lock) {
+                if (cancelled) return;
+                pending = pendingDocuments();
+                if (pending.isEmpty()) {
+                    dropDeleted();
+                    LOGGER.info("Re-embedding into {} finished: {} documents migrated", targetModel(), migrated);
+                    onComplete.accept(this);
+                    return;
+                }
+            }
+            if (!migrateBatches(pending) && !sleep(VectorStoreSettings.migrationRetryDelayMillis)) {
+                return;
+            }
+        }
+    }
+
+    // Embed pending documents batch by batch. Returns false if an embedding call failed.
+    private boolean migrateBatches(List<VectorDocument> pending) {
+        int batchSize = VectorStoreSettings.migrationBatchSize;
+        for (int start = 0; start < pending.size() && !cancelled; start += batchSize) {
+            List<VectorDocument> batch = pending.subList(start, Math.min(start + batchSize, pending.size()));
+            List<String> texts = new ArrayList<>(batch.size());
+            for (VectorDocument document : batch) {
+                texts.add(document.content());
+            }
+
+            List<float[]> embeddings;
+            try {
+                embeddings = targetService.embedBatch(texts).join();
+            } catch (RuntimeException exception) {
+                LOGGER.warn("Re-embedding into {} failed, retrying later: {}", targetModel(), exception.getMessage());
+                return false;
+            }
+            if (dimension == 0 && !embeddings.isEmpty()) {
+                dimension = embeddings.get(0).length;
+            }
+
+            List<VectorDocument> migratedBatch = new ArrayList<>(batch.size());
+            for (int index = 0; index < batch.size(); index++) {
+                VectorDocument document = batch.get(index);
+                migratedBatch.add(new VectorDocument(document.id(), document.content(), embeddings.get(index), document.metadata()));
+            }
+            synchronized (lock) {
+                if (cancelled) return true;
+                target.storeAll(migratedBatch);
+            }
+            migrated += migratedBatch.size();
+            LOGGER.debug("Re-embedding into {}: {} documents migrated", targetModel(), migrated);
+
+            if (!sleep(VectorStoreSettings.migrationBatchDelayMillis)) {
+                return true;
+            }
+        }
+        return true;
+    }
+
+    // Source documents without a counterpart in the target.
+    private List<VectorDocument> pendingDocuments() {
+        List<VectorDocument> pending = new ArrayList<>();
+        for (VectorDocument document : source.list(null)) {
+            if (target.getById(document.id()).isEmpty()) {
+                pending.add(document);
+            }
+        }
+        return pending;
+    }
+
+    // Remove target documents that were deleted from the source while the job ran.
+    private void dropDeleted() {
+        Set<String> live = new HashSet<>();
+        for (VectorDocument document : source.list(null)) {
+            live.add(document.id());
+        }
+        for (VectorDocument document : target.list(null)) {
+            if (!live.contains(document.id())) {
+                target.delete(document.id());
+            }
+        }
+    }
+
+    // Sleep between batches; returns false if the job was cancelled.
+    private boolean sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+            return !cancelled;
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package net.kevinthedang.ollamamod.vectorstore;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Watches a knowledge directory and keeps the live vector store in sync with it.
+ *
+ * File events are debounced per path: a file is only ingested once it has been quiet for the
+ * debounce window, so editors that save in several writes trigger one ingestion. Changed files go
+ * through the regular upsert (only new or changed chunks are embedded); deleted files, and every
+ * file under a deleted directory, have their chunks removed. Files deleted while the watcher was not
+ * running are removed when it starts. Files are recorded as "knowledge:" plus their path relative to
+ * the directory, so moving the directory does not re-embed anything. A single background thread ingests one file at a time and pauses between files,
+ * so runtime ingestion never competes with chat for more than one embedding request.
+ */
+public class KnowledgeWatcher {
+    private static final Logger LOGGER = LoggerFactory.getLogger(KnowledgeWatcher.class);
+
+    // Prefix of the source names of knowledge files.
+    public static final String SOURCE_PREFIX = "knowledge:";
+
+    private final VectorStoreService vectorStore;
+    private final long debounceMillis;
+    private final long ingestPauseMillis;
+    private Session session;
+
+    // Watcher with the default debounce and ingestion pause.
+    public KnowledgeWatcher(VectorStoreService vectorStore) {
+        this(vectorStore, VectorStoreSettings.knowledgeDebounceMillis, VectorStoreSettings.knowledgeIngestPauseMillis);
+    }
+
+    // Watcher with explicit timing (useful for testing).
+    public KnowledgeWatcher(VectorStoreService vectorStore, long debounceMillis, long ingestPauseMillis) {
+        this.vectorStore = vectorStore;
+        this.debounceMillis = debounceMillis;
+        this.ingestPauseMillis = ingestPauseMillis;
+    }
+
+    // Start watching a directory; every file already in it is synced first. Restarts if the directory changed.
+    public synchronized void start(Path knowledgeDirectory) throws IOException {
+        Path normalized = knowledgeDirectory.toAbsolutePath().normalize();
+        if (session != null && normalized.equals(session.root)) return;
+        stop();
+        Files.createDirectories(normalized);
+        session = new Session(normalized);
+        session.start();
+        LOGGER.info("Watching knowledge directory {}", normalized);
+    }
+
+    // Stop watching; an ingestion in progress finishes in the background.
+    public synchronized void stop() {
+        if (session == null) return;
+        session.close();
+        LOGGER.info("Stopped watching knowledge directory {}", session.root);
+        session = null;
+    }
+
+    // Whether the watcher is running.
+    public synchronized boolean isRunning() {
+        return session != null;
+    }
+
+    // Whether a file is a knowledge document (same formats as the seed documents).
+    static boolean isKnowledgeFile(Path path) {
+        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        return name.endsWith(".json") || name.endsWith(".txt");
+    }
+
+    // One watch of one directory tree; all state is confined to its thread after start().
+    private final class Session {
+        private final Path root;
+        private final WatchService watchService;
+        private final Thread thread;
+        private final Map<WatchKey, Path> watchedDirectories = new HashMap<>();
+        // Path -> time its debounce window ends
+        private final Map<Path, Long> pending = new HashMap<>();
+        private volatile boolean closed = false;
+
+        private Session(Path root) throws IOException {
+            this.root = root;
+            this.watchService = FileSystems.getDefault().newWatchService();
+            this.thread = new Thread(this::run, "Knowledge-Watcher");
+            this.thread.setDaemon(true);
+        }
+
+        void start() {
+            // Files recorded by absolute path before sources were named relative to the directory
+            for (String legacy : vectorStore.sourceNames(root + root.getFileSystem().getSeparator())) {
+                vectorStore.removeSource(legacy);
+            }
+            registerTree(root);
+            scheduleAll(root, 0);
+            scheduleMissing(root, 0);
+            thread.start();
+        }
+
+        void close() {
+            closed = true;
+            thread.interrupt();
+            try {
+                watchService.close();
+            } catch (IOException exception) {
+                LOGGER.debug("Failed to close knowledge watch service", exception);
+            }
+        }
+
+        private void run() {
+            try {
+                while (!closed) {
+                    WatchKey key = watchService.poll(nextWakeMillis(), TimeUnit.MILLISECONDS);
+                    while (key != null) {
+                        handleEvents(key);
+                        key = watchService.poll();
+                    }
+                    Path due = nextDueFile();
+                    if (due != null && !closed) {
+                        sync(root, due);
+                        if (ingestPauseMillis > 0) Thread.sleep(ingestPauseMillis);
+                    }
+                }
+            } catch (InterruptedException | ClosedWatchServiceException ignored) {
+                // Stopped
+            }
+        }
+
+        private void handleEvents(WatchKey key) {
+            Path parent = watchedDirectories.get(key);
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW || parent == null) {
+                    // Events were lost; fall back to a full rescan (unchanged files cost only a chunking pass)
+                    scheduleAll(root, debounceMillis);
+                    scheduleMissing(root, debounceMillis);
+                    continue;
+                }
+                Path changed = parent.resolve((Path) event.context());
+                if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(changed)) {
+                    registerTree(changed);
+                    scheduleAll(changed, debounceMillis);
+                    continue;
+                }
+                if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                    // Possibly a directory, whose files get no events of their own
+                    scheduleMissing(changed, debounceMillis);
+                }
+                if (isKnowledgeFile(changed)) {
+                    pending.put(changed, System.currentTimeMillis() + debounceMillis);
+                }
+            }
+            if (!key.reset()) {
+                watchedDirectories.remove(key);
+            }
+        }
+
+        // Oldest file whose debounce window has passed, removed from the pending set.
+        private Path nextDueFile() {
+            long now = System.currentTimeMillis();
+            Path due = null;
+            long dueAt = Long.MAX_VALUE;
+            for (Map.Entry<Path, Long> entry : pending.entrySet()) {
+                if (entry.getValue() <= now && entry.getValue() < dueAt) {
+                    due = entry.getKey();
+                    dueAt = entry.getValue();
+                }
+            }
+            if (due != null) pending.remove(due);
+            return due;
+        }
+
+        // How long to wait for events before the next pending file becomes due.
+        private long nextWakeMillis() {
+            long now = System.currentTimeMillis();
+            long wake = Math.max(debounceMillis, 100);
+            for (long dueAt : pending.values()) {
+                wake = Math.min(wake, dueAt - now);
+            }
+            return Math.max(1, wake);
+        }
+
+        private void registerTree(Path directory) {
+            try (Stream<Path> paths = Files.walk(directory)) {
+                for (Path path : paths.filter(Files::isDirectory).toList()) {
+                    WatchKey key = path.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+                    watchedDirectories.put(key, path);
+                }
+            } catch (IOException exception) {
+                LOGGER.warn("Failed to watch {}: {}", directory, exception.getMessage());
+            }
+        }
+
+        // Queue every knowledge file under a directory.
+        private void scheduleAll(Path directory, long delayMillis) {
+            List<Path> files = new ArrayList<>();
+            try (Stream<Path> paths = Files.walk(directory)) {
+                paths.filter(Files::isRegularFile).filter(KnowledgeWatcher::isKnowledgeFile).forEach(files::add);
+            } catch (IOException exception) {
+                LOGGER.warn("Failed to scan {}: {}", directory, exception.getMessage());
+            }
+            long dueAt = System.currentTimeMillis() + delayMillis;
+            for (Path file : files) {
+                pending.put(file, dueAt);
+            }
+        }
+
+        // Queue the removal of every ingested file under a directory that no longer exists.
+        private void scheduleMissing(Path directory, long delayMillis) {
+            long dueAt = System.currentTimeMillis() + delayMillis;
+            String prefix = directory.equals(root)
+                ? SOURCE_PREFIX
+                : ChunkIds.sourceName(SOURCE_PREFIX, root, directory) + "/";
+            for (String source : vectorStore.sourceNames(prefix)) {
+                Path file = root.resolve(source.substring(SOURCE_PREFIX.length()));
+                if (!Files.isRegularFile(file)) pending.put(file, dueAt);
+            }
+        }
+    }
+
+    // Ingest a changed file, or drop its chunks if it no longer exists.
+    private void sync(Path root, Path file) {
+        String source = ChunkIds.sourceName(SOURCE_PREFIX, root, file);
+        try {
+            if (Files.isRegularFile(file)) {
+                vectorStore.storeDocument(source, file).join();
+            } else {
+                vectorStore.removeSource(source);
+            }
+        } catch (RuntimeException exception) {
+            LOGGER.warn("Failed to ingest knowledge file {}: {}", file, exception.getMessage());
+        }
+    }
+}
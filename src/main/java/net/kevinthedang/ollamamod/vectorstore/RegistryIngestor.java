@@ -0,0 +1,87 @@
+package net.kevinthedang.ollamamod.vectorstore;
+
+import net.kevinthedang.ollamamod.knowledge.RegistryEntry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps generated registry documents (one per item, mob or biome of the installed mods) in the vector store.
+ *
+ * Each mod namespace is one source, "registry:&lt;namespace&gt;", so the regular content-hash upsert
+ * applies: an entry whose rendered document is unchanged since the last launch costs a map lookup,
+ * and only new or changed entries are embedded. Embedding runs in the background in small batches
+ * with a pause between them, one namespace at a time, so a large modpack never blocks world load or
+ * crowds out chat requests. Namespaces that are no longer installed are removed.
+ */
+public class RegistryIngestor {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RegistryIngestor.class);
+
+    public static final String SOURCE_PREFIX = "registry:";
+
+    private final VectorStoreService vectorStore;
+    private final int batchSize;
+    private final long batchPauseMillis;
+    private final AtomicInteger generation = new AtomicInteger();
+    private volatile CompletableFuture<Void> running = CompletableFuture.completedFuture(null);
+
+    // Ingestor with the default batch size and pause.
+    public RegistryIngestor(VectorStoreService vectorStore) {
+        this(vectorStore, VectorStoreSettings.registryEmbedBatchSize, VectorStoreSettings.registryBatchPauseMillis);
+    }
+
+    // Ingestor with explicit throttling (useful for testing).
+    public RegistryIngestor(VectorStoreService vectorStore, int batchSize, long batchPauseMillis) {
+        this.vectorStore = vectorStore;
+        this.batchSize = batchSize;
+        this.batchPauseMillis = batchPauseMillis;
+    }
+
+    // Bring the store in line with the given entries in the background. Cancels a sync still running.
+    public synchronized CompletableFuture<Void> sync(List<RegistryEntry> entries) {
+        cancel();
+        int run = generation.get();
+        Map<String, List<String>> documentsBySource = new TreeMap<>();
+        for (RegistryEntry entry : entries) {
+            documentsBySource.computeIfAbsent(SOURCE_PREFIX + entry.namespace(), ignored -> new ArrayList<>())
+                .add(entry.render());
+        }
+        for (String source : vectorStore.sourceNames(SOURCE_PREFIX)) {
+            if (!documentsBySource.containsKey(source)) vectorStore.removeSource(source);
+        }
+
+        CompletableFuture<Void> chain = CompletableFuture.completedFuture(null);
+        for (Map.Entry<String, List<String>> source : documentsBySource.entrySet()) {
+            chain = chain.thenCompose(ignored -> {
+                if (generation.get() != run) return CompletableFuture.<Void>completedFuture(null);
+                return vectorStore.storeChunks(source.getKey(), source.getValue(), batchSize, batchPauseMillis,
+                        () -> generation.get() != run)
+                    .exceptionally(error -> {
+                        if (generation.get() == run) {
+                            LOGGER.warn("Registry ingestion of {} failed: {}", source.getKey(), error.toString());
+                        }
+                        return null;
+                    });
+            });
+        }
+        LOGGER.info("Syncing {} registry documents from {} namespaces", entries.size(), documentsBySource.size());
+        running = chain;
+        return chain;
+    }
+
+    // Stop the running sync after its current batch.
+    public void cancel() {
+        generation.incrementAndGet();
+    }
+
+    // Whether a sync is still embedding.
+    public boolean isRunning() {
+        return !running.isDone();
+    }
+}
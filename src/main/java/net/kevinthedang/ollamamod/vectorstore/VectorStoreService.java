@@ -1,31 +1,72 @@
 package net.kevinthedang.ollamamod.vectorstore;
 
+import net.kevinthedang.ollamamod.knowledge.Gazetteer;
+import net.kevinthedang.ollamamod.ollama.OllamaScheduler;
 import net.kevinthedang.ollamamod.vectorstore.chunker.ConversationChunker;
 import net.kevinthedang.ollamamod.vectorstore.chunker.JsonChunker;
+import net.kevinthedang.ollamamod.vectorstore.chunker.StreamingJsonChunker;
 import net.kevinthedang.ollamamod.vectorstore.chunker.TextChunker;
 import net.kevinthedang.ollamamod.vectorstore.embedding.CachingEmbeddingService;
 import net.kevinthedang.ollamamod.vectorstore.embedding.EmbeddingService;
+import net.kevinthedang.ollamamod.vectorstore.embedding.HashedNgramEmbeddingService;
 import net.kevinthedang.ollamamod.vectorstore.embedding.OllamaEmbeddingService;
+import net.kevinthedang.ollamamod.vectorstore.model.EmbeddingSpace;
 import net.kevinthedang.ollamamod.vectorstore.model.MetadataFilter;
 import net.kevinthedang.ollamamod.vectorstore.model.VectorDocument;
 import net.kevinthedang.ollamamod.vectorstore.model.VectorMetadata;
+import net.kevinthedang.ollamamod.vectorstore.seed.SeedIndex;
+import net.kevinthedang.ollamamod.vectorstore.seed.SeedIndexVectorStore;
 import net.kevinthedang.ollamamod.vectorstore.store.LangChain4jVectorStore;
+import net.kevinthedang.ollamamod.vectorstore.store.SourceManifest;
+import net.kevinthedang.ollamamod.vectorstore.store.SpaceManifest;
 import net.kevinthedang.ollamamod.vectorstore.store.VectorStore;
+import net.kevinthedang.ollamamod.vectorstore.tokenizer.BpeTokenEstimator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.InputStream;
+import java.io.Reader;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
 
 public class VectorStoreService {
-    private final EmbeddingService embeddingService;
-    private final VectorStore store;
+    private static final Logger LOGGER = LoggerFactory.getLogger(VectorStoreService.class);
+
+    // The embedding space queries are answered from, with the service that embeds into it and its store
+    private record Segment(EmbeddingSpace space, EmbeddingService embeddingService, VectorStore store) {}
+
+    private final Object spaceLock = new Object();
+    private volatile EmbeddingService embeddingService;
+    private volatile Segment active;
+    private volatile EmbeddingMigration migration;
+    private volatile Path dataDirectory;
+    private final HashedNgramEmbeddingService localEmbeddingService;
+    private volatile VectorStore localStore;
+    private final SourceManifest sources = new SourceManifest();
     private final TextChunker textChunker;
-    private final JsonChunker jsonChunker;
+    private final StreamingJsonChunker jsonChunker;
     private final ConversationChunker conversationChunker;
+    private volatile Gazetteer gazetteer = Gazetteer.shared();
+    // Packaged seed index, mapped on the first loadSeedData() and kept for the life of the process
+    private Optional<SeedIndex> seedIndex;
 
     // Create a service with default embedding provider, chunkers, and store implementation.
     public VectorStoreService() {
@@ -39,86 +80,319 @@ public class VectorStoreService {
                               TextChunker textChunker,
                               JsonChunker jsonChunker,
                               ConversationChunker conversationChunker) {
+        this(embeddingService, store, textChunker, jsonChunker, conversationChunker,
+            new HashedNgramEmbeddingService(VectorStoreSettings.localEmbeddingDimension), new LangChain4jVectorStore());
+    }
+
+    // Create a service with custom dependencies, including the local fallback embedding and its parallel index.
+    public VectorStoreService(EmbeddingService embeddingService,
+                              VectorStore store,
+                              TextChunker textChunker,
+                              JsonChunker jsonChunker,
+                              ConversationChunker conversationChunker,
+                              HashedNgramEmbeddingService localEmbeddingService,
+                              VectorStore localStore) {
         this.embeddingService = embeddingService;
-        this.store = store;
+        this.active = new Segment(new EmbeddingSpace(embeddingService.getModel(), embeddingService.getDimension()),
+            embeddingService, store);
+        this.localEmbeddingService = localEmbeddingService;
+        this.localStore = localStore;
         this.textChunker = textChunker;
-        this.jsonChunker = jsonChunker;
+        this.jsonChunker = new StreamingJsonChunker(jsonChunker);
         this.conversationChunker = conversationChunker;
     }
 
     // Store a document from a file path by chunking, embedding, and inserting into the store.
-    public CompletableFuture<Void> storeDocument(Path path) {
-        return CompletableFuture.supplyAsync(() -> readFile(path))
-            .thenCompose(content -> {
+    // JSON files are chunked while streaming, so the file is never held in memory as a string or tree.
+    // Re-ingesting a file only embeds new or changed chunks and removes chunks that disappeared.
+    // The source names the file in the manifest and its chunk ids (see ChunkIds.sourceName).
+    public CompletableFuture<Void> storeDocument(String source, Path path) {
+        return CompletableFuture.supplyAsync(() -> {
                 String lower = path.getFileName().toString().toLowerCase();
-                List<String> chunks = lower.endsWith(".json")
-                    ? jsonChunker.chunk(content)
-                    : textChunker.chunk(content);
-                VectorMetadata baseMetadata = VectorMetadata.document();
-                return embedAndStoreChunks(chunks, baseMetadata);
-            });
+                return lower.endsWith(".json")
+                    ? streamJsonChunks(path)
+                    : textChunker.chunk(readFile(path));
+            })
+            .thenCompose(chunks -> upsertSource(source, chunks, VectorStoreSettings.embedBatchSize, 0, () -> false));
+    }
+
+    // Store already rendered chunks under a source name (for example generated registry documents).
+    // Like a re-ingested file, only chunks the store does not have yet are embedded, in batches of
+    // batchSize with a pause between them so background ingestion leaves room for chat requests.
+    // Once cancelled reports true, no further batch starts; batches already stored are kept.
+    public CompletableFuture<Void> storeChunks(String source, List<String> chunks, int batchSize, long batchPauseMillis,
+                                               BooleanSupplier cancelled) {
+        return CompletableFuture.supplyAsync(() -> List.copyOf(chunks))
+            .thenCompose(copy -> upsertSource(source, copy, batchSize, batchPauseMillis, cancelled));
     }
 
     // Store a memory transcript by chunking, embedding, and inserting into the store.
     public CompletableFuture<Void> storeMemory(String content, String villagerId, String playerId) {
         List<String> chunks = conversationChunker.chunk(content);
         VectorMetadata baseMetadata = VectorMetadata.memory(villagerId, playerId);
-        return embedAndStoreChunks(chunks, baseMetadata);
+        int totalChunks = chunks.size();
+        List<String> ids = new ArrayList<>(totalChunks);
+        List<VectorMetadata> metadata = new ArrayList<>(totalChunks);
+        for (int index = 0; index < totalChunks; index++) {
+            ids.add(UUID.randomUUID().toString());
+            metadata.add(baseMetadata.withChunk(index, totalChunks));
+        }
+        return embedAndStoreChunks(chunks, ids, metadata, VectorStoreSettings.embedBatchSize, 0, () -> false,
+            OllamaScheduler.Work.of(OllamaScheduler.Priority.MEMORY_WRITE, playerId));
+    }
+
+    // Remove every chunk stored under a source name (for example after its file was deleted).
+    public void removeSource(String source) {
+        sources.chunkIds(source).ifPresent(ids -> {
+            deleteDocuments(ids);
+            sources.remove(source);
+            LOGGER.info("Removed {}: {} chunks", source, ids.size());
+        });
+    }
+
+    // Names of ingested sources starting with a prefix.
+    public List<String> sourceNames(String prefix) {
+        List<String> names = new ArrayList<>();
+        for (String source : sources.sources()) {
+            if (source.startsWith(prefix)) names.add(source);
+        }
+        return names;
+    }
+
+    // Chunk ids recorded for an ingested source, in chunk order.
+    public Optional<List<String>> sourceChunkIds(String source) {
+        return sources.chunkIds(source);
+    }
+
+    // Start embedding a query in the active space. With a caching embedding service, the document and
+    // memory queries for the same text then share this request instead of each embedding it.
+    public CompletableFuture<float[]> embedQuery(String query) {
+        return active.embeddingService().embed(query);
     }
 
     // Query document chunks using the provided query text.
+    // A query naming known items, mobs or biomes only scores chunks tagged with them, falling back to
+    // the whole knowledge base when none of those chunks clear the score threshold.
     public CompletableFuture<List<VectorDocument>> queryDocuments(String query, int topK) {
-        return embeddingService.embed(query)
-            .thenApply(queryEmbedding -> store.query(
-                queryEmbedding,
-                MetadataFilter.documents(),
-                topK,
-                VectorStoreSettings.defaultMinScore
-            ));
+        List<String> tags = gazetteer.tags(query);
+        if (tags.isEmpty()) {
+            return queryWithFallback(query, MetadataFilter.documents(), topK);
+        }
+        return queryWithFallback(query, MetadataFilter.documents().withAnyTag(tags), topK)
+            .thenCompose(results -> results.isEmpty()
+                ? queryWithFallback(query, MetadataFilter.documents(), topK)
+                : CompletableFuture.completedFuture(results));
     }
 
     // Query memory chunks for a specific villager using the provided query text.
     public CompletableFuture<List<VectorDocument>> queryMemories(String query, String villagerId, int topK) {
-        return embeddingService.embed(query)
-            .thenApply(queryEmbedding -> store.query(
-                queryEmbedding,
-                MetadataFilter.memoriesForVillager(villagerId),
-                topK,
-                VectorStoreSettings.defaultMinScore
-            ));
+        return queryWithFallback(query, MetadataFilter.memoriesForVillager(villagerId), topK);
+    }
+
+    // Replace the entity dictionary used to tag chunks and queries (tests and custom data).
+    public void setGazetteer(Gazetteer gazetteer) {
+        this.gazetteer = gazetteer;
+    }
+
+    // Query only the local fallback index.
+    public List<VectorDocument> queryLocal(String query, MetadataFilter filter, int topK) {
+        return localStore.query(localEmbeddingService.embedNow(query), filter, topK, VectorStoreSettings.localMinScore);
     }
 
     // Persist all stored embeddings and metadata to disk in the provided directory.
+    // The manifest records the embedding space of the main store and of any unfinished migration.
     public void persistAll(Path baseDirectory) {
-        store.persist(resolveStorePath(baseDirectory));
+        Path directory = baseDirectory.resolve(VectorStoreSettings.dataDirectory);
+        Segment segment;
+        EmbeddingMigration pending;
+        synchronized (spaceLock) {
+            segment = active;
+            pending = migration;
+            segment.store().persist(directory.resolve(VectorStoreSettings.storeFile));
+            sources.write(directory.resolve(VectorStoreSettings.sourceManifestFile));
+            if (pending != null) {
+                pending.target().persist(resolveSegmentPath(directory, pending.targetModel()));
+            }
+        }
+        new SpaceManifest(segment.space(), pending == null ? null : pending.targetSpace())
+            .write(directory.resolve(VectorStoreSettings.manifestFile));
+        if (pending == null) {
+            deleteQuietly(resolveSegmentPath(directory, segment.space().model()));
+        }
+        localStore.persist(directory.resolve(VectorStoreSettings.localStoreFile));
+        writeWeights(directory.resolve(VectorStoreSettings.localWeightsFile), localEmbeddingService.idfWeights());
     }
 
     // Load stored embeddings and metadata from disk in the provided directory.
+    // Stores without a manifest predate embedding spaces and were produced by the default model.
     public void loadAll(Path baseDirectory) {
-        store.load(resolveStorePath(baseDirectory));
+        Path directory = baseDirectory.resolve(VectorStoreSettings.dataDirectory);
+        Path storePath = directory.resolve(VectorStoreSettings.storeFile);
+        EmbeddingSpace recorded = SpaceManifest.read(directory.resolve(VectorStoreSettings.manifestFile))
+            .map(SpaceManifest::active)
+            .orElseGet(() -> Files.exists(storePath) ? defaultSpace() : active.space());
+
+        Segment loaded = segmentFor(recorded);
+        loaded.store().load(storePath);
+        sources.load(directory.resolve(VectorStoreSettings.sourceManifestFile));
+        synchronized (spaceLock) {
+            cancelMigration();
+            this.dataDirectory = directory;
+            this.active = loaded;
+        }
+        localStore.load(directory.resolve(VectorStoreSettings.localStoreFile));
+        // The persisted local index is reused with the weights it was embedded with if it still covers
+        // every stored document; otherwise it is refitted and re-embedded
+        Optional<float[]> weights = readWeights(directory.resolve(VectorStoreSettings.localWeightsFile));
+        if (weights.isPresent() && weights.get().length == localEmbeddingService.getDimension() && localIndexCovers(loaded.store())) {
+            localEmbeddingService.setIdfWeights(weights.get());
+            LOGGER.info("Local fallback index loaded: {} documents", localStore.count(null));
+        } else {
+            rebuildLocalIndex();
+        }
+        ensureMigration();
     }
 
-    // Load seed data from the resources folder if present.
-    public void loadSeedData() {
+    // Load seed data from the resources folder if present; call after every loadAll().
+    // A packaged seed index is mapped in place under the loaded store, which only saves its own
+    // additions and deletions; it is extracted to cacheDirectory if it cannot be mapped from the jar,
+    // and mapped only once per process. Otherwise the legacy seed store is read into an empty store.
+    // Seed vectors belong to the default model; an empty store switches back to that space and migrates from there.
+    public void loadSeedData(Path cacheDirectory) {
+        Optional<SeedIndex> packaged = seedIndex(cacheDirectory);
+        if (packaged.isPresent()) {
+            attachSeedIndex(packaged.get());
+            return;
+        }
+        // The legacy seed is saved with the world, so it is only copied into a fresh store
+        if (active.store().count(null) > 0) return;
         try (InputStream seedStream = getClass().getResourceAsStream(VectorStoreSettings.seedStorePath)) {
             if (seedStream != null) {
-                store.loadFromStream(seedStream);
+                if (!switchToSeedSpace(defaultSpace())) return;
+                active.store().loadFromStream(seedStream);
+                rebuildLocalIndex();
+                ensureMigration();
             }
         } catch (java.io.IOException exception) {
             throw new RuntimeException("Failed to load seed data", exception);
         }
     }
 
-    // Clear the per-turn embedding cache if the service supports it.
+    private synchronized Optional<SeedIndex> seedIndex(Path cacheDirectory) {
+        if (seedIndex == null) {
+            seedIndex = SeedIndex.fromResource(VectorStoreSettings.seedIndexPath, cacheDirectory);
+        }
+        return seedIndex;
+    }
+
+    // Serve seed documents straight from a pre-built index. The index carries its own hashed n-gram
+    // vectors and weights, so the local fallback index is only rebuilt when its dimension differs.
+    // Seed documents deleted in the loaded world stay hidden.
+    void attachSeedIndex(SeedIndex seedIndex) {
+        EmbeddingSpace seedSpace = new EmbeddingSpace(seedIndex.model(), seedIndex.vectors().dimension());
+        if (!switchToSeedSpace(seedSpace)) return;
+        Path directory = dataDirectory;
+        synchronized (spaceLock) {
+            Segment segment = active;
+            this.active = new Segment(segment.space(), segment.embeddingService(),
+                withSeedBase(segment.store(), seedIndex.vectors(), directory, VectorStoreSettings.storeFile));
+        }
+        if (seedIndex.localVectors().dimension() == localEmbeddingService.getDimension()) {
+            localEmbeddingService.setIdfWeights(seedIndex.idfWeights());
+            this.localStore = withSeedBase(localStore, seedIndex.localVectors(), directory, VectorStoreSettings.localStoreFile);
+        } else {
+            rebuildLocalIndex();
+        }
+        LOGGER.info("Seed index attached: {} documents ({})", seedIndex.size(), seedIndex.model());
+        ensureMigration();
+    }
+
+    // Make the seed space active unless the store already holds vectors of another space.
+    private boolean switchToSeedSpace(EmbeddingSpace seedSpace) {
+        if (active.space().model().equals(seedSpace.model())) return true;
+        if (active.store().count(null) > 0) {
+            LOGGER.warn("Skipping seed data: store already holds {} vectors", active.space().model());
+            return false;
+        }
+        synchronized (spaceLock) {
+            cancelMigration();
+            this.active = segmentFor(seedSpace);
+        }
+        return true;
+    }
+
+    private static VectorStore withSeedBase(VectorStore store, SeedIndex.View view, Path directory, String storeFile) {
+        SeedIndexVectorStore seedStore;
+        if (store instanceof SeedIndexVectorStore existing) {
+            existing.attach(view);
+            seedStore = existing;
+        } else {
+            seedStore = new SeedIndexVectorStore(view, store);
+        }
+        if (directory != null) seedStore.restoreTombstones(directory.resolve(storeFile));
+        return seedStore;
+    }
+
+    // Switch the configured embedding model. Existing vectors keep serving queries while a
+    // background job re-embeds them; the new space takes over once the job finishes.
+    public void setEmbeddingModel(String model) {
+        if (model.equals(embeddingService.getModel())) return;
+        this.embeddingService = embeddingService.forModel(model);
+        ensureMigration();
+    }
+
+    // Calibrate the shared token estimator against the token counts the embedding model reports for stored chunks.
+    public CompletableFuture<Void> calibrateTokenEstimator() {
+        List<String> samples = active.store().list(MetadataFilter.documents()).stream()
+            .limit(VectorStoreSettings.tokenCalibrationSamples)
+            .map(VectorDocument::content)
+            .toList();
+        if (samples.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        BpeTokenEstimator estimator = BpeTokenEstimator.shared();
+        return embeddingService.countTokens(samples)
+            .thenAccept(actualTokens -> {
+                estimator.calibrate(samples, actualTokens);
+                LOGGER.info("Token estimator calibrated against {}: scale {}", embeddingService.getModel(),
+                    String.format("%.2f", estimator.scale()));
+            })
+            .exceptionally(throwable -> {
+                LOGGER.debug("Token estimator calibration skipped: {}", throwable.getMessage());
+                return null;
+            });
+    }
+
+    // Embedding space currently answering queries.
+    public EmbeddingSpace activeSpace() {
+        return active.space();
+    }
+
+    // Whether a re-embedding migration is running.
+    public boolean isMigrating() {
+        return migration != null;
+    }
+
+    // Clear the cached query embeddings if the service caches them.
     public void clearEmbeddingCache() {
         if (embeddingService instanceof CachingEmbeddingService cachingSvc) {
             cachingSvc.clearCache();
         }
+        if (active.embeddingService() instanceof CachingEmbeddingService cachingSvc) {
+            cachingSvc.clearCache();
+        }
     }
 
     // Delete all memories associated with a specific villager.
     public int deleteMemoriesForVillager(String villagerId) {
-        return store.deleteByFilter(MetadataFilter.memoriesForVillager(villagerId));
+        localStore.deleteByFilter(MetadataFilter.memoriesForVillager(villagerId));
+        synchronized (spaceLock) {
+            EmbeddingMigration pending = migration;
+            if (pending != null) {
+                pending.target().deleteByFilter(MetadataFilter.memoriesForVillager(villagerId));
+            }
+            return active.store().deleteByFilter(MetadataFilter.memoriesForVillager(villagerId));
+        }
     }
 
     // Check whether the embedding service is reachable.
@@ -128,7 +402,172 @@ public class VectorStoreService {
 
     // Count documents matching a metadata filter.
     public int count(MetadataFilter filter) {
-        return store.count(filter);
+        return active.store().count(filter);
+    }
+
+    // Refit the local embedding on the document corpus and re-embed every known document into the local index.
+    // Documents only present locally (stored while Ollama was unreachable) are kept.
+    public void rebuildLocalIndex() {
+        Map<String, VectorDocument> documents = new LinkedHashMap<>();
+        for (VectorDocument document : localStore.list(null)) {
+            documents.put(document.id(), document);
+        }
+        for (VectorDocument document : active.store().list(null)) {
+            documents.put(document.id(), document);
+        }
+
+        List<String> corpus = new ArrayList<>();
+        for (VectorDocument document : documents.values()) {
+            if ("document".equals(document.metadata().type())) {
+                corpus.add(document.content());
+            }
+        }
+        localEmbeddingService.fit(corpus);
+
+        List<VectorDocument> rebuilt = new ArrayList<>(documents.size());
+        for (VectorDocument document : documents.values()) {
+            rebuilt.add(toLocal(document));
+        }
+        localStore.clear();
+        localStore.storeAll(rebuilt);
+        LOGGER.info("Local fallback index rebuilt: {} documents (fitted on {})", rebuilt.size(), corpus.size());
+    }
+
+    // Start, keep, or cancel the background migration so the active space converges on the configured model.
+    private void ensureMigration() {
+        synchronized (spaceLock) {
+            Segment segment = active;
+            EmbeddingService target = embeddingService;
+            EmbeddingMigration current = migration;
+            if (segment.space().model().equals(target.getModel())) {
+                cancelMigration();
+                return;
+            }
+            if (current != null && current.targetModel().equals(target.getModel())) return;
+
+            cancelMigration();
+            VectorStore targetStore = new LangChain4jVectorStore();
+            if (dataDirectory != null) {
+                targetStore.load(resolveSegmentPath(dataDirectory, target.getModel()));
+            }
+            EmbeddingMigration next = new EmbeddingMigration(segment.store(), targetStore, target, spaceLock,
+                this::completeMigration);
+            this.migration = next;
+            LOGGER.info("Embedding model changed from {} to {}; re-embedding in the background",
+                segment.space().model(), target.getModel());
+            next.start();
+        }
+    }
+
+    // Swap the migrated store in as the active space. Runs on the migration thread while holding spaceLock.
+    private void completeMigration(EmbeddingMigration finished) {
+        if (migration != finished) return;
+        this.active = new Segment(finished.targetSpace(), embeddingService, finished.target());
+        this.migration = null;
+    }
+
+    // Stop any running migration. Callers hold spaceLock.
+    private void cancelMigration() {
+        EmbeddingMigration current = migration;
+        if (current != null) {
+            current.cancel();
+            migration = null;
+        }
+    }
+
+    // Segment for a recorded space: reuse the configured service and the current store when the model matches.
+    private Segment segmentFor(EmbeddingSpace space) {
+        EmbeddingService service = space.model().equals(embeddingService.getModel())
+            ? embeddingService
+            : embeddingService.forModel(space.model());
+        VectorStore store = space.model().equals(active.space().model())
+            ? active.store()
+            : new LangChain4jVectorStore();
+        return new Segment(space, service, store);
+    }
+
+    // Space of the shipped seed data and of stores written before spaces were recorded.
+    private static EmbeddingSpace defaultSpace() {
+        return new EmbeddingSpace(VectorStoreSettings.DEFAULT_EMBEDDING_MODEL, VectorStoreSettings.embeddingDimension);
+    }
+
+    // Embed the query remotely; if that fails or is too slow, answer from the local index instead. The
+    // wait is short only while Ollama is known to be unhealthy, so a cold model load still gets to finish.
+    // Queries always use the active space, so a running migration never affects results.
+    private CompletableFuture<List<VectorDocument>> queryWithFallback(String query, MetadataFilter filter, int topK) {
+        Segment segment = active;
+        long timeoutMillis = segment.embeddingService().isHealthy()
+            ? VectorStoreSettings.remoteEmbeddingTimeoutMillis
+            : VectorStoreSettings.unhealthyEmbeddingTimeoutMillis;
+        return segment.embeddingService().embed(query)
+            .copy()
+            .orTimeout(timeoutMillis, TimeUnit.MILLISECONDS)
+            .thenApply(queryEmbedding -> segment.store().query(
+                queryEmbedding,
+                filter,
+                topK,
+                VectorStoreSettings.defaultMinScore
+            ))
+            .exceptionally(error -> {
+                LOGGER.debug("Remote embedding unavailable, using local index: {}", error.toString());
+                return queryLocal(query, filter, topK);
+            });
+    }
+
+    // Whether the local index holds every document of the store.
+    private boolean localIndexCovers(VectorStore store) {
+        if (localStore.count(null) < store.count(null)) return false;
+        for (VectorDocument document : store.list(null)) {
+            if (localStore.getById(document.id()).isEmpty()) return false;
+        }
+        return true;
+    }
+
+    // Write the local embedding's weights next to the local index they were used for.
+    private static void writeWeights(Path path, float[] weights) {
+        try {
+            Files.createDirectories(path.getParent());
+            try (DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+                outputStream.writeInt(weights.length);
+                for (float weight : weights) {
+                    outputStream.writeFloat(weight);
+                }
+            }
+        } catch (java.io.IOException exception) {
+            LOGGER.warn("Could not write local embedding weights to {}", path, exception);
+        }
+    }
+
+    // Weights written by writeWeights, or empty if there are none.
+    private static Optional<float[]> readWeights(Path path) {
+        if (!Files.exists(path)) return Optional.empty();
+        try (DataInputStream inputStream = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            float[] weights = new float[inputStream.readInt()];
+            for (int index = 0; index < weights.length; index++) {
+                weights[index] = inputStream.readFloat();
+            }
+            return Optional.of(weights);
+        } catch (java.io.IOException | NegativeArraySizeException exception) {
+            LOGGER.warn("Could not read local embedding weights from {}", path, exception);
+            return Optional.empty();
+        }
+    }
+
+    // Copy of a document with its embedding replaced by the local fallback embedding.
+    private VectorDocument toLocal(VectorDocument document) {
+        return new VectorDocument(document.id(), document.content(),
+            localEmbeddingService.embedNow(document.content()), document.metadata());
+    }
+
+    // Chunk a JSON file straight from disk.
+    private List<String> streamJsonChunks(Path path) {
+        List<String> chunks = new ArrayList<>();
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            jsonChunker.chunk(reader, chunks::add);
+        } catch (java.io.IOException exception) {
+            throw new RuntimeException("Failed to read file: " + path, exception);
+        }
+        return chunks;
     }
 
     // Read a UTF-8 file into a string.
@@ -140,33 +579,178 @@ public class VectorStoreService {
         }
     }
 
-    // Embed chunks in a batch and store them with metadata.
-    private CompletableFuture<Void> embedAndStoreChunks(List<String> chunks, VectorMetadata baseMetadata) {
+    // Diff a source's chunks against its previous ingestion by content-hash id: embed only chunks the
+    // store does not have yet, re-number or re-tag unchanged ones, and delete vanished ones. Vanished
+    // chunks are only deleted once the new ones are stored, so a failed re-ingestion keeps the old version.
+    private CompletableFuture<Void> upsertSource(String source, List<String> chunks, int batchSize, long batchPauseMillis,
+                                                 BooleanSupplier cancelled) {
+        Map<String, String> chunkById = new LinkedHashMap<>();
+        for (String chunk : chunks) {
+            chunkById.putIfAbsent(ChunkIds.chunkId(source, chunk), chunk);
+        }
+        List<String> ids = new ArrayList<>(chunkById.keySet());
+        Set<String> current = new HashSet<>(ids);
+
+        List<String> previous = sources.chunkIds(source).orElse(List.of());
+        List<String> vanished = new ArrayList<>();
+        for (String previousId : previous) {
+            if (!current.contains(previousId)) vanished.add(previousId);
+        }
+
+        VectorMetadata baseMetadata = VectorMetadata.document();
+        int totalChunks = ids.size();
+        List<String> newChunks = new ArrayList<>();
+        List<String> newIds = new ArrayList<>();
+        List<VectorMetadata> newMetadata = new ArrayList<>();
+        List<VectorDocument> moved = new ArrayList<>();
+        for (int index = 0; index < totalChunks; index++) {
+            String id = ids.get(index);
+            VectorMetadata metadata = baseMetadata.withChunk(index, totalChunks).withTags(gazetteer.tags(chunkById.get(id)));
+            Optional<VectorDocument> existing = active.store().getById(id);
+            if (existing.isEmpty()) {
+                newChunks.add(chunkById.get(id));
+                newIds.add(id);
+                newMetadata.add(metadata);
+            } else if (existing.get().metadata().chunkIndex() != index
+                || existing.get().metadata().chunkTotal() != totalChunks
+                || !existing.get().metadata().tags().equals(metadata.tags())) {
+                VectorDocument document = existing.get();
+                moved.add(new VectorDocument(id, document.content(), document.embedding(), metadata));
+            }
+        }
+        restampDocuments(moved);
+        LOGGER.info("Ingesting {}: {} new chunks, {} unchanged, {} removed",
+            source, newIds.size(), totalChunks - newIds.size(), vanished.size());
+
+        return embedAndStoreChunks(newChunks, newIds, newMetadata, batchSize, batchPauseMillis, cancelled,
+                OllamaScheduler.Work.of(OllamaScheduler.Priority.INGESTION, source))
+            .whenComplete((ignored, error) -> {
+                if (error == null) {
+                    deleteDocuments(vanished);
+                    sources.put(source, ids);
+                } else {
+                    // Keep both versions on record so a later ingestion or removal still finds every chunk
+                    Set<String> recorded = new LinkedHashSet<>(previous);
+                    recorded.addAll(ids);
+                    sources.put(source, new ArrayList<>(recorded));
+                }
+            });
+    }
+
+    // Delete documents by id from every index.
+    private void deleteDocuments(List<String> ids) {
+        if (ids.isEmpty()) return;
+        for (String id : ids) {
+            localStore.delete(id);
+        }
+        synchronized (spaceLock) {
+            EmbeddingMigration pending = migration;
+            for (String id : ids) {
+                active.store().delete(id);
+                if (pending != null) pending.target().delete(id);
+            }
+        }
+    }
+
+    // Replace the metadata of already embedded documents without re-embedding them.
+    private void restampDocuments(List<VectorDocument> documents) {
+        if (documents.isEmpty()) return;
+        for (VectorDocument document : documents) {
+            localStore.getById(document.id()).ifPresent(local -> localStore.store(
+                new VectorDocument(local.id(), local.content(), local.embedding(), document.metadata())));
+        }
+        synchronized (spaceLock) {
+            active.store().storeAll(documents);
+            EmbeddingMigration pending = migration;
+            if (pending != null) {
+                for (VectorDocument document : documents) {
+                    pending.target().getById(document.id()).ifPresent(migrated -> pending.target().store(
+                        new VectorDocument(migrated.id(), migrated.content(), migrated.embedding(), document.metadata())));
+                }
+            }
+        }
+    }
+
+    // Embed chunks in batches and store them under the given ids and metadata, scheduling the embedding
+    // requests as the given work. The local index is updated immediately so the chunks are searchable
+    // even if the remote call fails.
+    private CompletableFuture<Void> embedAndStoreChunks(List<String> chunks, List<String> ids, List<VectorMetadata> metadata,
+                                                        int batchSize, long batchPauseMillis, BooleanSupplier cancelled,
+                                                        OllamaScheduler.Work work) {
         if (chunks.isEmpty()) {
             return CompletableFuture.completedFuture(null);
         }
 
-        return embeddingService.embedBatch(chunks)
-            .thenAccept(embeddings -> {
-                List<VectorDocument> documents = new ArrayList<>(chunks.size());
+        int totalChunks = chunks.size();
+        List<VectorDocument> localDocuments = new ArrayList<>(totalChunks);
+        for (int index = 0; index < totalChunks; index++) {
+            localDocuments.add(new VectorDocument(
+                ids.get(index),
+                chunks.get(index),
+                localEmbeddingService.embedNow(chunks.get(index)),
+                metadata.get(index)
+            ));
+        }
+        localStore.storeAll(localDocuments);
+
+        // One request at a time, so large documents never produce one huge request. Each batch is
+        // stored as soon as it is embedded, so an interrupted ingestion keeps what it finished.
+        CompletableFuture<Void> chain = CompletableFuture.completedFuture(null);
+        for (int start = 0; start < totalChunks; start += batchSize) {
+            int end = Math.min(start + batchSize, totalChunks);
+            if (start > 0 && batchPauseMillis > 0) {
+                chain = chain.thenRunAsync(() -> {},
+                    CompletableFuture.delayedExecutor(batchPauseMillis, TimeUnit.MILLISECONDS));
+            }
+            List<String> batchChunks = chunks.subList(start, end);
+            List<String> batchIds = ids.subList(start, end);
+            List<VectorMetadata> batchMetadata = metadata.subList(start, end);
+            chain = chain.thenCompose(ignored -> {
+                if (cancelled.getAsBoolean()) throw new CancellationException("Ingestion cancelled");
+                return embedIntoActiveSpace(batchChunks, batchIds, batchMetadata, work);
+            });
+        }
+        return chain;
+    }
+
+    // Embed one batch with the active space's model and store it there. A running migration picks
+    // it up on its next pass; if the space is swapped mid-call, embed again for the new space.
+    private CompletableFuture<Void> embedIntoActiveSpace(List<String> chunks, List<String> ids, List<VectorMetadata> metadata,
+                                                         OllamaScheduler.Work work) {
+        Segment segment = active;
+        return OllamaScheduler.submitAs(work, () -> segment.embeddingService().embedBatch(chunks))
+            .thenCompose(embeddings -> {
                 int totalChunks = chunks.size();
+                List<VectorDocument> documents = new ArrayList<>(totalChunks);
                 for (int index = 0; index < totalChunks; index++) {
-                    VectorMetadata metadata = baseMetadata.withChunk(index, totalChunks);
                     VectorDocument document = new VectorDocument(
-                        java.util.UUID.randomUUID().toString(),
+                        ids.get(index),
                         chunks.get(index),
                         embeddings.get(index),
-                        metadata
+                        metadata.get(index)
                     );
                     documents.add(document);
                 }
-                store.storeAll(documents);
+                synchronized (spaceLock) {
+                    if (active == segment) {
+                        segment.store().storeAll(documents);
+                        return CompletableFuture.<Void>completedFuture(null);
+                    }
+                }
+                return embedIntoActiveSpace(chunks, ids, metadata, work);
             });
     }
 
-    // Resolve the on-disk path to the vector store file.
-    private Path resolveStorePath(Path baseDirectory) {
-        return baseDirectory.resolve(VectorStoreSettings.dataDirectory)
-            .resolve(VectorStoreSettings.storeFile);
+    // Resolve the on-disk path of a migration target segment, e.g. vectors.mxbai-embed-large.store.
+    private static Path resolveSegmentPath(Path directory, String model) {
+        return directory.resolve("vectors." + new EmbeddingSpace(model, 0).fileId() + ".store");
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (java.io.IOException exception) {
+            LOGGER.debug("Could not delete {}", path, exception);
+        }
     }
 }
@@ -1,20 +1,61 @@
 package net.kevinthedang.ollamamod.vectorstore;
 
 public final class VectorStoreSettings {
-    public static final String ollamaBaseUrl = "http://localhost:11434";
-
-    public static final String embeddingModel = "nomic-embed-text";
+    // Model the seed data and legacy stores were embedded with, and its dimension
+    public static final String DEFAULT_EMBEDDING_MODEL = "nomic-embed-text";
     public static final int embeddingDimension = 768;
 
-    public static final int chunkSize = 512;
-    public static final int chunkOverlap = 64;
+    // Configured embedding model; changing it triggers a background re-embedding migration
+    public static String embeddingModel = DEFAULT_EMBEDDING_MODEL;
+
+    // Chunk size and overlap in estimated embedding-model tokens, well inside the model's context window
+    public static final int chunkSize = 256;
+    public static final int chunkOverlap = 32;
+    public static final int tokenCalibrationSamples = 16;
+    public static final int embedBatchSize = 64;
 
     public static final int defaultTopK = 3;
     public static final double defaultMinScore = 0.65;
 
+    // Offline fallback: hashed n-gram embeddings kept in a parallel local index
+    public static final int localEmbeddingDimension = 512;
+    public static final double localMinScore = 0.3;
+    // How long a query waits for its remote embedding before answering from the local index: long
+    // enough for a cold model load normally, short while Ollama is known to be unhealthy
+    public static long remoteEmbeddingTimeoutMillis = 10000;
+    public static final long unhealthyEmbeddingTimeoutMillis = 1500;
+    // Duplicate a query embedding on another Ollama host when it runs past its usual p95 latency
+    public static boolean hedgeQueryEmbeddings = true;
+
     public static final String dataDirectory = "ollamamod/vectorstore";
     public static final String storeFile = "vectors.store";
+    public static final String localStoreFile = "vectors.local.store";
+    public static final String localWeightsFile = "vectors.local.idf";
+    public static final String manifestFile = "vectors.manifest.json";
+    public static final String sourceManifestFile = "vectors.sources.json";
+
+    // Re-embedding migration throttling
+    public static final int migrationBatchSize = 32;
+    public static final long migrationBatchDelayMillis = 250;
+    public static final long migrationRetryDelayMillis = 5000;
+    // Optional knowledge directory watched for .json/.txt changes at runtime; empty disables the watcher
+    public static String knowledgeDirectory = "";
+    public static final long knowledgeDebounceMillis = 1000;
+    public static final long knowledgeIngestPauseMillis = 500;
+
+    // Documents generated from the game registries at world load (items, mobs, biomes and recipes of installed mods)
+    public static boolean registryIngestEnabled = true;
+    // Vanilla entries are already covered by the seed data
+    public static boolean registryIncludeVanilla = false;
+    public static final int registryEmbedBatchSize = 16;
+    public static final long registryBatchPauseMillis = 1000;
+
     public static final String seedStorePath = "/ollamamod/seed/documents.store";
+    // Pre-built seed index (see SeedIndex); preferred over seedStorePath when packaged
+    public static final String seedIndexPath = "/ollamamod/seed/seed.index";
+    // Where a seed index packaged in the mod jar is extracted to be memory-mapped (relative to the game directory)
+    public static final String seedCacheDirectory = "ollamamod/cache";
+    public static final int seedIndexProbes = 8;
 
     private VectorStoreSettings() {}
 }
@@ -0,0 +1,29 @@
+package net.kevinthedang.ollamamod.vectorstore.chunker;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A chunk described as a half-open range [start, end) of the source text it was cut from.
+ */
+public record ChunkSpan(int start, int end) {
+
+    // Number of characters covered by the span.
+    public int length() {
+        return end - start;
+    }
+
+    // Copy the span out of the source text.
+    public String text(CharSequence source) {
+        return source.subSequence(start, end).toString();
+    }
+
+    // Copy every span out of the source text, in order.
+    public static List<String> materialize(CharSequence source, List<ChunkSpan> spans) {
+        List<String> chunks = new ArrayList<>(spans.size());
+        for (ChunkSpan span : spans) {
+            chunks.add(span.text(source));
+        }
+        return chunks;
+    }
+}
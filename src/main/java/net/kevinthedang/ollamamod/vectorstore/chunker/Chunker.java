@@ -1,15 +1,25 @@
 package net.kevinthedang.ollamamod.vectorstore.chunker;
 
+import net.kevinthedang.ollamamod.vectorstore.tokenizer.CharacterTokenEstimator;
+import net.kevinthedang.ollamamod.vectorstore.tokenizer.TokenEstimator;
+
 import java.util.List;
 
 public abstract class Chunker {
     protected final int maxChunkSize;
     protected final int overlapSize;
+    protected final TokenEstimator tokenEstimator;
 
-    // Base chunker with size and overlap configuration.
+    // Base chunker with size and overlap configuration, measured in characters.
     public Chunker(int maxChunkSize, int overlapSize) {
+        this(maxChunkSize, overlapSize, CharacterTokenEstimator.INSTANCE);
+    }
+
+    // Base chunker with size and overlap measured in tokens of the given estimator.
+    public Chunker(int maxChunkSize, int overlapSize, TokenEstimator tokenEstimator) {
         this.maxChunkSize = maxChunkSize;
         this.overlapSize = overlapSize;
+        this.tokenEstimator = tokenEstimator;
     }
 
     // Split raw content into chunk strings.
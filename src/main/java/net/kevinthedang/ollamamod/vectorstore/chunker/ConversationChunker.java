@@ -1,86 +1,145 @@
 package net.kevinthedang.ollamamod.vectorstore.chunker;
 
 import net.kevinthedang.ollamamod.vectorstore.VectorStoreSettings;
+import net.kevinthedang.ollamamod.vectorstore.tokenizer.BpeTokenEstimator;
+import net.kevinthedang.ollamamod.vectorstore.tokenizer.TokenEstimator;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
-public class ConversationChunker extends Chunker {
-    private static final Pattern EXCHANGE_PATTERN = Pattern.compile(
-        "(Player|Villager):\\s*[^\\n]+",
-        Pattern.MULTILINE
-    );
+public class ConversationChunker extends Chunker implements SpanChunker {
+    private static final String PLAYER = "Player:";
+    private static final String VILLAGER = "Villager:";
 
-    // Chunker for conversation logs grouped by Player/Villager exchanges.
+    // Chunker for conversation logs grouped by Player/Villager exchanges, sized in estimated model tokens.
     public ConversationChunker() {
-        super(VectorStoreSettings.chunkSize, 0);
+        this(VectorStoreSettings.chunkSize, BpeTokenEstimator.shared());
     }
 
-    // Chunker for conversation logs with explicit size settings.
+    // Chunker for conversation logs with an explicit size in characters.
     public ConversationChunker(int maxChunkSize) {
         super(maxChunkSize, 0);
     }
 
+    // Chunker for conversation logs with a size measured by the given token estimator.
+    public ConversationChunker(int maxChunkSize, TokenEstimator tokenEstimator) {
+        super(maxChunkSize, 0, tokenEstimator);
+    }
+
     // Split conversations into exchange-based chunks.
     @Override
     public List<String> chunk(String content) {
-        if (content.length() <= maxChunkSize) {
+        if (tokenEstimator.count(content) <= maxChunkSize) {
             return List.of(content);
         }
+        return ChunkSpan.materialize(content, spans(content));
+    }
 
-        List<String> exchanges = parseExchanges(content);
-        List<String> chunks = new ArrayList<>();
-        StringBuilder currentChunkBuilder = new StringBuilder();
+    // Report chunk offsets that group whole exchanges. A Player line followed by a Villager line is
+    // one exchange; lines that start with neither speaker continue the line above them.
+    @Override
+    public void spans(CharSequence content, SpanSink sink) {
+        int length = content.length();
+        if (tokenEstimator.count(content, 0, length) <= maxChunkSize) {
+            sink.accept(0, length);
+            return;
+        }
 
-        for (String exchange : exchanges) {
-            if (currentChunkBuilder.length() + exchange.length() > maxChunkSize
-                && currentChunkBuilder.length() > 0) {
-                chunks.add(currentChunkBuilder.toString().trim());
-                currentChunkBuilder = new StringBuilder();
+        ExchangeGrouper grouper = new ExchangeGrouper(content, sink);
+        int exchangeStart = -1;
+        int exchangeEnd = -1;
+        boolean exchangeClosed = false;
+        boolean lastWasPlayer = false;
+
+        int lineStart = 0;
+        while (lineStart < length) {
+            int lineEnd = lineStart;
+            while (lineEnd < length && content.charAt(lineEnd) != '\n') lineEnd++;
+
+            int textStart = skipWhitespace(content, lineStart, lineEnd);
+            int textEnd = trimEnd(content, textStart, lineEnd);
+            boolean player = startsWith(content, textStart, textEnd, PLAYER);
+            boolean villager = !player && startsWith(content, textStart, textEnd, VILLAGER);
+
+            if (player || villager) {
+                if (exchangeStart >= 0 && (exchangeClosed || player)) {
+                    grouper.add(exchangeStart, exchangeEnd);
+                    exchangeStart = -1;
+                    exchangeClosed = false;
+                }
+                if (exchangeStart < 0) {
+                    exchangeStart = textStart;
+                }
+                exchangeEnd = textEnd;
+                if (lastWasPlayer && villager) {
+                    // The reply completes the exchange; it is emitted once the next speaker line shows up
+                    exchangeClosed = true;
+                    lastWasPlayer = false;
+                } else {
+                    lastWasPlayer = player;
+                }
+            } else if (exchangeStart >= 0 && textEnd > textStart) {
+                exchangeEnd = textEnd;
             }
-            currentChunkBuilder.append(exchange).append("\n");
+            lineStart = lineEnd + 1;
         }
 
-        if (currentChunkBuilder.length() > 0) {
-            chunks.add(currentChunkBuilder.toString().trim());
+        if (exchangeStart >= 0) {
+            grouper.add(exchangeStart, exchangeEnd);
         }
-
-        return chunks;
+        grouper.finish();
     }
 
-    // Parse Player/Villager exchanges from the raw transcript.
-    private List<String> parseExchanges(String content) {
-        List<String> exchanges = new ArrayList<>();
-        Matcher matcher = EXCHANGE_PATTERN.matcher(content);
-
-        StringBuilder currentExchangeBuilder = new StringBuilder();
-        String lastSpeaker = null;
-
-        while (matcher.find()) {
-            String line = matcher.group();
-            String speaker = line.startsWith("Player") ? "Player" : "Villager";
-
-            if ("Player".equals(lastSpeaker) && "Villager".equals(speaker)) {
-                currentExchangeBuilder.append(line).append("\n");
-                exchanges.add(currentExchangeBuilder.toString().trim());
-                currentExchangeBuilder = new StringBuilder();
-                lastSpeaker = null;
-            } else {
-                if (currentExchangeBuilder.length() > 0 && "Player".equals(speaker)) {
-                    exchanges.add(currentExchangeBuilder.toString().trim());
-                    currentExchangeBuilder = new StringBuilder();
+    // Packs consecutive exchanges into chunks no larger than maxChunkSize, keeping a running token count.
+    private final class ExchangeGrouper {
+        private final CharSequence content;
+        private final SpanSink sink;
+        private int chunkStart = -1;
+        private int chunkEnd = -1;
+        private int chunkTokens = 0;
+
+        private ExchangeGrouper(CharSequence content, SpanSink sink) {
+            this.content = content;
+            this.sink = sink;
+        }
+
+        void add(int exchangeStart, int exchangeEnd) {
+            if (chunkStart >= 0) {
+                // Counted from the end of the chunk so the line break in between is included
+                int addedTokens = tokenEstimator.count(content, chunkEnd, exchangeEnd);
+                if (chunkTokens + addedTokens <= maxChunkSize) {
+                    chunkEnd = exchangeEnd;
+                    chunkTokens += addedTokens;
+                    return;
                 }
-                currentExchangeBuilder.append(line).append("\n");
-                lastSpeaker = speaker;
+                sink.accept(chunkStart, chunkEnd);
             }
+            chunkStart = exchangeStart;
+            chunkEnd = exchangeEnd;
+            chunkTokens = tokenEstimator.count(content, exchangeStart, exchangeEnd);
         }
 
-        if (currentExchangeBuilder.length() > 0) {
-            exchanges.add(currentExchangeBuilder.toString().trim());
+        void finish() {
+            if (chunkStart >= 0) {
+                sink.accept(chunkStart, chunkEnd);
+            }
         }
+    }
 
-        return exchanges;
+    private static int skipWhitespace(CharSequence text, int start, int end) {
+        while (start < end && Character.isWhitespace(text.charAt(start))) start++;
+        return start;
+    }
+
+    private static int trimEnd(CharSequence text, int start, int end) {
+        while (end > start && Character.isWhitespace(text.charAt(end - 1))) end--;
+        return end;
+    }
+
+    private static boolean startsWith(CharSequence text, int start, int end, String prefix) {
+        if (end - start < prefix.length()) return false;
+        for (int index = 0; index < prefix.length(); index++) {
+            if (text.charAt(start + index) != prefix.charAt(index)) return false;
+        }
+        return true;
     }
 }
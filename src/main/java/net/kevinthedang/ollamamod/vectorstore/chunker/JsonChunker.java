@@ -7,24 +7,32 @@ import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import com.google.gson.JsonSyntaxException;
 import net.kevinthedang.ollamamod.vectorstore.VectorStoreSettings;
+import net.kevinthedang.ollamamod.vectorstore.tokenizer.BpeTokenEstimator;
+import net.kevinthedang.ollamamod.vectorstore.tokenizer.TokenEstimator;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 public class JsonChunker extends Chunker {
     private final Gson gson = new Gson();
 
-    // Chunker for JSON content using object boundaries.
+    // Chunker for JSON content using object boundaries, sized in estimated model tokens.
     public JsonChunker() {
-        super(VectorStoreSettings.chunkSize, 0);
+        this(VectorStoreSettings.chunkSize, BpeTokenEstimator.shared());
     }
 
-    // Chunker for JSON content with explicit size settings.
+    // Chunker for JSON content with an explicit size in characters.
     public JsonChunker(int maxChunkSize) {
         super(maxChunkSize, 0);
     }
 
+    // Chunker for JSON content with a size measured by the given token estimator.
+    public JsonChunker(int maxChunkSize, TokenEstimator tokenEstimator) {
+        super(maxChunkSize, 0, tokenEstimator);
+    }
+
     // Split JSON into object-based chunks without splitting objects.
     @Override
     public List<String> chunk(String content) {
@@ -41,7 +49,7 @@ public class JsonChunker extends Chunker {
     }
 
     // Recursively extract JSON elements, prioritizing nested arrays/objects over large parents.
-    private List<JsonElement> extractChunkElements(JsonElement element) {
+    List<JsonElement> extractChunkElements(JsonElement element) {
         if (element.isJsonArray()) {
             return extractFromArray(element.getAsJsonArray());
         }
@@ -115,7 +123,7 @@ public class JsonChunker extends Chunker {
     }
 
     // Check if the array contains object elements.
-    private boolean arrayContainsObjects(JsonArray array) {
+    boolean arrayContainsObjects(JsonArray array) {
         for (JsonElement child : array) {
             if (child.isJsonObject()) {
                 return true;
@@ -125,12 +133,12 @@ public class JsonChunker extends Chunker {
     }
 
     // Decide whether to drill into a JSON element based on size and structure.
-    private boolean shouldDrillDown(JsonElement element) {
+    boolean shouldDrillDown(JsonElement element) {
         if (!element.isJsonArray() && !element.isJsonObject()) {
             return false;
         }
         String serialized = gson.toJson(element);
-        if (serialized.length() <= maxChunkSize) {
+        if (tokenEstimator.count(serialized) <= maxChunkSize) {
             return false;
         }
         if (element.isJsonArray()) {
@@ -160,28 +168,66 @@ public class JsonChunker extends Chunker {
         if (elements.isEmpty()) return List.of();
 
         List<String> chunks = new ArrayList<>();
-        StringBuilder currentChunkBuilder = new StringBuilder();
+        ChunkGrouper grouper = new ChunkGrouper(maxChunkSize, tokenEstimator, chunks::add);
         for (JsonElement element : elements) {
-            String elementText = labeledText(element);
-            int separatorLen = currentChunkBuilder.length() > 0 ? 1 : 0;
-            if (currentChunkBuilder.length() + separatorLen + elementText.length() > maxChunkSize
+            grouper.add(labeledText(element));
+        }
+        grouper.finish();
+        return chunks;
+    }
+
+    // Packs element texts into newline-separated chunks under the max size, emitting each chunk as soon as it is full.
+    static final class ChunkGrouper {
+        private final int maxChunkSize;
+        private final TokenEstimator tokenEstimator;
+        private final int separatorTokens;
+        private final Consumer<String> sink;
+        private StringBuilder currentChunkBuilder = new StringBuilder();
+        private int currentTokens = 0;
+        private int emitted = 0;
+
+        ChunkGrouper(int maxChunkSize, TokenEstimator tokenEstimator, Consumer<String> sink) {
+            this.maxChunkSize = maxChunkSize;
+            this.tokenEstimator = tokenEstimator;
+            this.separatorTokens = tokenEstimator.count("\n");
+            this.sink = sink;
+        }
+
+        void add(String elementText) {
+            int elementTokens = tokenEstimator.count(elementText);
+            int separator = currentChunkBuilder.length() > 0 ? separatorTokens : 0;
+            if (currentTokens + separator + elementTokens > maxChunkSize
                 && currentChunkBuilder.length() > 0) {
-                chunks.add(currentChunkBuilder.toString());
-                currentChunkBuilder = new StringBuilder();
+                emit();
+                separator = 0;
             }
             if (currentChunkBuilder.length() > 0) {
                 currentChunkBuilder.append("\n");
             }
             currentChunkBuilder.append(elementText);
+            currentTokens += separator + elementTokens;
         }
-        if (currentChunkBuilder.length() > 0) {
-            chunks.add(currentChunkBuilder.toString());
+
+        void finish() {
+            if (currentChunkBuilder.length() > 0) {
+                emit();
+            }
+        }
+
+        int emitted() {
+            return emitted;
+        }
+
+        private void emit() {
+            sink.accept(currentChunkBuilder.toString());
+            currentChunkBuilder = new StringBuilder();
+            currentTokens = 0;
+            emitted++;
         }
-        return chunks;
     }
 
     // Wrap a JSON element with a human-readable label prefix for better embeddings.
-    private String labeledText(JsonElement element) {
+    String labeledText(JsonElement element) {
         String label = extractLabel(element);
         if (label == null) {
             return gson.toJson(element);
@@ -0,0 +1,27 @@
+package net.kevinthedang.ollamamod.vectorstore.chunker;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Chunker that cuts chunks out of its input without copying it: chunks are reported as offsets
+ * into the source, and strings are only created by whoever needs the chunk text.
+ */
+public interface SpanChunker {
+
+    // Receives the offsets of each chunk as it is found.
+    @FunctionalInterface
+    interface SpanSink {
+        void accept(int start, int end);
+    }
+
+    // Report the offsets of every chunk of the content, in order.
+    void spans(CharSequence content, SpanSink sink);
+
+    // Collect the chunk offsets of the content into a list.
+    default List<ChunkSpan> spans(CharSequence content) {
+        List<ChunkSpan> spans = new ArrayList<>();
+        spans(content, (start, end) -> spans.add(new ChunkSpan(start, end)));
+        return spans;
+    }
+}
@@ -0,0 +1,336 @@
+package net.kevinthedang.ollamamod.vectorstore.chunker;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * JSON chunker that reads with a {@link JsonReader} and emits chunks while it reads.
+ *
+ * The top-level array (or the arrays directly under a top-level object) are never materialized:
+ * each of their elements is parsed on its own and run through the same extraction, labeling and
+ * grouping rules as {@link JsonChunker}, so objects are never split and chunks are packed the same
+ * way. Memory use is bounded by the largest single element rather than by the file.
+ */
+public class StreamingJsonChunker extends Chunker {
+    private final Gson gson = new Gson();
+    private final JsonChunker elementChunker;
+
+    // Streaming chunker using the default chunk size in estimated model tokens.
+    public StreamingJsonChunker() {
+        this(new JsonChunker());
+    }
+
+    // Streaming chunker with an explicit chunk size in characters.
+    public StreamingJsonChunker(int maxChunkSize) {
+        this(new JsonChunker(maxChunkSize));
+    }
+
+    // Streaming chunker that shares the size settings and element rules of an existing JsonChunker.
+    public StreamingJsonChunker(JsonChunker elementChunker) {
+        super(elementChunker.maxChunkSize, 0, elementChunker.tokenEstimator);
+        this.elementChunker = elementChunker;
+    }
+
+    // Split JSON content into chunks; same result as JsonChunker.
+    @Override
+    public List<String> chunk(String content) {
+        List<String> chunks = new ArrayList<>();
+        chunk(new StringReader(content), chunks::add);
+        if (chunks.isEmpty()) {
+            return List.of(content);
+        }
+        return chunks;
+    }
+
+    // Read JSON from the reader and pass each finished chunk to the sink. The reader is not closed.
+    public void chunk(Reader source, Consumer<String> sink) {
+        JsonChunker.ChunkGrouper grouper = new JsonChunker.ChunkGrouper(maxChunkSize, tokenEstimator, sink);
+        Consumer<JsonElement> elements = element -> grouper.add(elementChunker.labeledText(element));
+        try {
+            JsonReader reader = new JsonReader(source);
+            reader.setLenient(true);
+            JsonToken root = reader.peek();
+            if (root == JsonToken.BEGIN_ARRAY) {
+                streamRootArray(reader, elements);
+            } else if (root == JsonToken.BEGIN_OBJECT) {
+                streamRootObject(reader, elements);
+            } else {
+                elements.accept(JsonParser.parseReader(reader));
+            }
+            if (reader.peek() != JsonToken.END_DOCUMENT) {
+                throw new IllegalArgumentException("Invalid JSON content: trailing data after root element");
+            }
+        } catch (JsonSyntaxException | IllegalStateException | JsonIOException exception) {
+            throw new IllegalArgumentException("Invalid JSON content", exception);
+        } catch (IOException exception) {
+            if (exception instanceof com.google.gson.stream.MalformedJsonException || exception instanceof java.io.EOFException) {
+                throw new IllegalArgumentException("Invalid JSON content", exception);
+            }
+            throw new UncheckedIOException(exception);
+        }
+        grouper.finish();
+    }
+
+    // Root array: every element is handled as JsonChunker.extractFromArray would.
+    private void streamRootArray(JsonReader reader, Consumer<JsonElement> elements) throws IOException {
+        ArrayStreamer array = new ArrayStreamer(elements);
+        reader.beginArray();
+        while (reader.hasNext()) {
+            array.accept(JsonParser.parseReader(reader));
+        }
+        reader.endArray();
+        array.finish();
+    }
+
+    // Root object: mirror JsonChunker.extractChunkElements without building the whole object.
+    // Members are buffered only until it is clear the object will be drilled into (larger than one
+    // chunk and holding nested structure); after that, elements of object arrays stream straight out.
+    private void streamRootObject(JsonReader reader, Consumer<JsonElement> elements) throws IOException {
+        RootObject root = new RootObject(elements);
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String key = reader.nextName();
+            if (reader.peek() == JsonToken.BEGIN_ARRAY) {
+                root.beginArray(key);
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    root.arrayElement(JsonParser.parseReader(reader));
+                }
+                reader.endArray();
+                root.endArray();
+            } else {
+                root.member(key, JsonParser.parseReader(reader));
+            }
+        }
+        reader.endObject();
+        root.finish();
+    }
+
+    // Streaming version of JsonChunker.extractFromArray. Whether children get drilled into depends on
+    // the array containing any object, so children that would be drilled wait until that is known.
+    private final class ArrayStreamer {
+        private final Consumer<JsonElement> out;
+        private final List<JsonElement> undecided = new ArrayList<>();
+        private boolean hasObject = false;
+
+        private ArrayStreamer(Consumer<JsonElement> out) {
+            this.out = out;
+        }
+
+        void accept(JsonElement child) {
+            if (child.isJsonObject() && !hasObject) {
+                hasObject = true;
+                flushUndecided();
+            }
+            if (hasObject) {
+                emit(child);
+            } else if (!undecided.isEmpty() || elementChunker.shouldDrillDown(child)) {
+                undecided.add(child);
+            } else {
+                out.accept(child);
+            }
+        }
+
+        void finish() {
+            flushUndecided();
+        }
+
+        boolean hasObject() {
+            return hasObject;
+        }
+
+        private void flushUndecided() {
+            for (JsonElement child : undecided) {
+                emit(child);
+            }
+            undecided.clear();
+        }
+
+        private void emit(JsonElement child) {
+            if (hasObject && elementChunker.shouldDrillDown(child)) {
+                elementChunker.extractChunkElements(child).forEach(out);
+            } else {
+                out.accept(child);
+            }
+        }
+    }
+
+    // Tracks the top-level object. Output order follows JsonChunker: elements of arrays containing
+    // objects; otherwise elements of all arrays; otherwise the extracted object members; otherwise the
+    // object itself.
+    private final class RootObject {
+        private final Consumer<JsonElement> out;
+        private final List<String> bufferedKeys = new ArrayList<>();
+        private final List<JsonElement> bufferedValues = new ArrayList<>();
+        private final List<JsonElement> plainArrayElements = new ArrayList<>();
+        private final List<JsonElement> objectMembers = new ArrayList<>();
+
+        // Estimated tokens of the object serialized so far; estimates add up across JSON punctuation
+        private long serializedTokens = tokens("{");
+        private int memberCount = 0;
+        private boolean complex = false;
+        private boolean drilling = false;
+        private boolean sawArray = false;
+        private boolean sawObjectArray = false;
+
+        private JsonArray currentArray;
+        private int currentArraySize = 0;
+        private ArrayStreamer currentStreamer;
+        private List<JsonElement> currentOutput;
+
+        private RootObject(Consumer<JsonElement> out) {
+            this.out = out;
+        }
+
+        void member(String key, JsonElement value) {
+            addKeyLength(key);
+            serializedTokens += tokens(gson.toJson(value));
+            if (value.isJsonObject()) {
+                complex = true;
+            }
+            if (drilling) {
+                if (value.isJsonObject() && !sawObjectArray) objectMembers.add(value);
+            } else {
+                bufferedKeys.add(key);
+                bufferedValues.add(value);
+                maybeStartDrilling();
+            }
+        }
+
+        void beginArray(String key) {
+            addKeyLength(key);
+            serializedTokens += tokens("[");
+            sawArray = true;
+            currentArray = new JsonArray();
+            currentArraySize = 0;
+            if (drilling) {
+                startArrayStreamer();
+            } else {
+                bufferedKeys.add(key);
+                bufferedValues.add(currentArray);
+            }
+        }
+
+        void arrayElement(JsonElement element) {
+            serializedTokens += tokens(gson.toJson(element)) + (currentArraySize > 0 ? tokens(",") : 0);
+            currentArraySize++;
+            if (element.isJsonObject()) {
+                complex = true;
+            }
+            if (drilling) {
+                currentStreamer.accept(element);
+                routeArrayOutput();
+            } else {
+                currentArray.add(element);
+                maybeStartDrilling();
+            }
+        }
+
+        void endArray() {
+            serializedTokens += tokens("]");
+            if (drilling) {
+                finishArrayStreamer();
+            }
+            currentArray = null;
+        }
+
+        void finish() {
+            if (!drilling) {
+                JsonObject whole = new JsonObject();
+                for (int index = 0; index < bufferedKeys.size(); index++) {
+                    whole.add(bufferedKeys.get(index), bufferedValues.get(index));
+                }
+                elementChunker.extractChunkElements(whole).forEach(out);
+                return;
+            }
+            if (sawObjectArray) return;
+            if (sawArray) {
+                plainArrayElements.forEach(out);
+                return;
+            }
+            for (JsonElement member : objectMembers) {
+                elementChunker.extractChunkElements(member).forEach(out);
+            }
+        }
+
+        private void addKeyLength(String key) {
+            serializedTokens += tokens(gson.toJson(key)) + tokens(":") + (memberCount > 0 ? tokens(",") : 0);
+            memberCount++;
+        }
+
+        // Once the object is known to exceed one chunk and to hold nested structure, replay the buffer.
+        private void maybeStartDrilling() {
+            if (!complex || serializedTokens + tokens("}") <= maxChunkSize) return;
+            drilling = true;
+
+            JsonArray inProgress = currentArray;
+            for (int index = 0; index < bufferedKeys.size(); index++) {
+                JsonElement value = bufferedValues.get(index);
+                if (value == inProgress) continue;
+                if (value.isJsonArray()) {
+                    startArrayStreamer();
+                    for (JsonElement element : value.getAsJsonArray()) {
+                        currentStreamer.accept(element);
+                    }
+                    finishArrayStreamer();
+                } else if (value.isJsonObject() && !sawObjectArray) {
+                    objectMembers.add(value);
+                }
+            }
+            bufferedKeys.clear();
+            bufferedValues.clear();
+
+            if (inProgress != null) {
+                startArrayStreamer();
+                for (JsonElement element : inProgress) {
+                    currentStreamer.accept(element);
+                }
+                routeArrayOutput();
+            }
+        }
+
+        private int tokens(String text) {
+            return tokenEstimator.count(text);
+        }
+
+        private void startArrayStreamer() {
+            currentOutput = new ArrayList<>();
+            currentStreamer = new ArrayStreamer(currentOutput::add);
+        }
+
+        private void finishArrayStreamer() {
+            currentStreamer.finish();
+            routeArrayOutput();
+            if (!currentStreamer.hasObject() && !sawObjectArray) {
+                plainArrayElements.addAll(currentOutput);
+            }
+            currentStreamer = null;
+            currentOutput = null;
+        }
+
+        // Elements of an array holding objects go straight out; others wait to see if any object array exists.
+        private void routeArrayOutput() {
+            if (!currentStreamer.hasObject()) return;
+            sawObjectArray = true;
+            plainArrayElements.clear();
+            objectMembers.clear();
+            currentOutput.forEach(out);
+            currentOutput.clear();
+        }
+    }
+}
@@ -1,66 +1,86 @@
 package net.kevinthedang.ollamamod.vectorstore.chunker;
 
 import net.kevinthedang.ollamamod.vectorstore.VectorStoreSettings;
+import net.kevinthedang.ollamamod.vectorstore.tokenizer.BpeTokenEstimator;
+import net.kevinthedang.ollamamod.vectorstore.tokenizer.TokenEstimator;
 
-import java.util.ArrayList;
 import java.util.List;
 
-public class TextChunker extends Chunker {
-    // Chunker for plain text with sentence boundary awareness.
+public class TextChunker extends Chunker implements SpanChunker {
+    // Chunker for plain text with sentence boundary awareness, sized in estimated model tokens.
     public TextChunker() {
-        super(VectorStoreSettings.chunkSize, VectorStoreSettings.chunkOverlap);
+        this(VectorStoreSettings.chunkSize, VectorStoreSettings.chunkOverlap, BpeTokenEstimator.shared());
     }
 
-    // Chunker for plain text with explicit size and overlap settings.
+    // Chunker for plain text with explicit size and overlap settings in characters.
     public TextChunker(int maxChunkSize, int overlapSize) {
         super(maxChunkSize, overlapSize);
     }
 
+    // Chunker for plain text with size and overlap measured by the given token estimator.
+    public TextChunker(int maxChunkSize, int overlapSize, TokenEstimator tokenEstimator) {
+        super(maxChunkSize, overlapSize, tokenEstimator);
+    }
+
     // Split content into sentence-aligned chunks with overlap.
     @Override
     public List<String> chunk(String content) {
-        if (content.length() <= maxChunkSize) {
+        if (tokenEstimator.count(content) <= maxChunkSize) {
             return List.of(content);
         }
+        return ChunkSpan.materialize(content, spans(content));
+    }
 
-        List<String> chunks = new ArrayList<>();
-        int startIndex = 0;
+    // Report sentence-aligned, whitespace-trimmed chunk offsets with overlap.
+    @Override
+    public void spans(CharSequence content, SpanSink sink) {
+        int length = content.length();
+        if (tokenEstimator.count(content, 0, length) <= maxChunkSize) {
+            sink.accept(0, length);
+            return;
+        }
 
-        while (startIndex < content.length()) {
-            int endIndex = Math.min(startIndex + maxChunkSize, content.length());
+        int startIndex = 0;
+        while (startIndex < length) {
+            int endIndex = tokenEstimator.fit(content, startIndex, length, maxChunkSize);
 
-            if (endIndex < content.length()) {
+            if (endIndex < length) {
                 int sentenceEndIndex = findSentenceBoundary(content, startIndex, endIndex);
                 if (sentenceEndIndex > startIndex) {
                     endIndex = sentenceEndIndex;
                 }
             }
-
             if (endIndex <= startIndex) {
-                endIndex = Math.min(startIndex + maxChunkSize, content.length());
-                if (endIndex <= startIndex) {
-                    break;
-                }
+                break;
             }
 
-            String chunk = content.substring(startIndex, endIndex).trim();
-            if (!chunk.isEmpty()) {
-                chunks.add(chunk);
+            int trimmedStart = startIndex;
+            int trimmedEnd = endIndex;
+            while (trimmedStart < trimmedEnd && content.charAt(trimmedStart) <= ' ') trimmedStart++;
+            while (trimmedEnd > trimmedStart && content.charAt(trimmedEnd - 1) <= ' ') trimmedEnd--;
+            if (trimmedEnd > trimmedStart) {
+                sink.accept(trimmedStart, trimmedEnd);
             }
-            int nextStart = endIndex - overlapSize;
+
+            int nextStart = endIndex - overlapChars(content, startIndex, endIndex);
             if (nextStart <= startIndex) {
                 startIndex = endIndex;
             } else {
                 startIndex = nextStart;
             }
         }
+    }
 
-        return chunks;
+    // Convert the token overlap to characters using the density of the chunk just cut.
+    private int overlapChars(CharSequence content, int startIndex, int endIndex) {
+        if (overlapSize <= 0) return 0;
+        int tokens = Math.max(1, tokenEstimator.count(content, startIndex, endIndex));
+        return (int) ((long) overlapSize * (endIndex - startIndex) / tokens);
     }
 
-    // Find a sentence boundary to avoid cutting mid-sentence.
-    private int findSentenceBoundary(String text, int startIndex, int endIndex) {
-        int minimumIndex = startIndex + maxChunkSize / 2;
+    // Find a sentence boundary in the back half of the window to avoid cutting mid-sentence.
+    private int findSentenceBoundary(CharSequence text, int startIndex, int endIndex) {
+        int minimumIndex = startIndex + (endIndex - startIndex) / 2;
         for (int index = endIndex; index > minimumIndex; index--) {
             char character = text.charAt(index - 1);
             if ((character == '.' || character == '!' || character == '?') &&
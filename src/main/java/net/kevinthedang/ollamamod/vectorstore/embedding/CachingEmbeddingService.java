@@ -1,22 +1,58 @@
 package net.kevinthedang.ollamamod.vectorstore.embedding;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
 
-// Decorator that caches embedding results per conversation turn to avoid redundant HTTP calls.
+// Decorator that caches recent embedding results to avoid redundant HTTP calls. The cache is shared
+// by concurrent turns: it keeps the most recently used texts, concurrent requests for one text share
+// a single call, and a failed call is dropped so the next request retries.
 public class CachingEmbeddingService implements EmbeddingService {
 
+	public static final int DEFAULT_CAPACITY = 256;
+
 	private final EmbeddingService delegate;
-	private final ConcurrentHashMap<String, CompletableFuture<float[]>> cache = new ConcurrentHashMap<>();
+	private final Map<String, CompletableFuture<float[]>> cache;
 
 	public CachingEmbeddingService(EmbeddingService delegate) {
+		this(delegate, DEFAULT_CAPACITY);
+	}
+
+	public CachingEmbeddingService(EmbeddingService delegate, int capacity) {
 		this.delegate = delegate;
+		this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CompletableFuture<float[]>> eldest) {
+				return size() > capacity;
+			}
+		};
 	}
 
 	@Override
 	public CompletableFuture<float[]> embed(String text) {
-		return cache.computeIfAbsent(text, delegate::embed);
+		CompletableFuture<float[]> pending = new CompletableFuture<>();
+		synchronized (cache) {
+			CompletableFuture<float[]> existing = cache.putIfAbsent(text, pending);
+			if (existing != null) return existing;
+		}
+		CompletableFuture<float[]> call;
+		try {
+			call = delegate.embed(text);
+		} catch (RuntimeException e) {
+			call = CompletableFuture.failedFuture(e);
+		}
+		call.whenComplete((vector, error) -> {
+			if (error != null) {
+				synchronized (cache) {
+					cache.remove(text, pending);
+				}
+				pending.completeExceptionally(error);
+			} else {
+				pending.complete(vector);
+			}
+		});
+		return pending;
 	}
 
 	@Override
@@ -34,8 +70,32 @@ public class CachingEmbeddingService implements EmbeddingService {
 		return delegate.isHealthy();
 	}
 
-	// Clear the per-turn cache. Call at the start of each conversation turn.
+	@Override
+	public String getModel() {
+		return delegate.getModel();
+	}
+
+	@Override
+	public CompletableFuture<Integer> countTokens(List<String> texts) {
+		return delegate.countTokens(texts);
+	}
+
+	@Override
+	public EmbeddingService forModel(String model) {
+		return model.equals(getModel()) ? this : new CachingEmbeddingService(delegate.forModel(model));
+	}
+
+	// Number of cached texts, including calls still in flight.
+	public int size() {
+		synchronized (cache) {
+			return cache.size();
+		}
+	}
+
+	// Drop every cached embedding.
 	public void clearCache() {
-		cache.clear();
+		synchronized (cache) {
+			cache.clear();
+		}
 	}
 }
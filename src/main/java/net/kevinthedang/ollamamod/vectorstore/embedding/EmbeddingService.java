@@ -12,4 +12,15 @@ public interface EmbeddingService {
     int getDimension();
     // Health check for the embedding provider.
     boolean isHealthy();
+
+    // Name of the model producing the vectors; vectors from different models are not comparable.
+    default String getModel() {
+        return getClass().getSimpleName();
+    }
+
+    // Total number of tokens the model splits the texts into, as reported by the provider.
+    CompletableFuture<Integer> countTokens(List<String> texts);
+
+    // Return an equivalent service that embeds with a different model (this service for its own model).
+    EmbeddingService forModel(String model);
 }
@@ -0,0 +1,205 @@
+package net.kevinthedang.ollamamod.vectorstore.embedding;
+
+import net.kevinthedang.ollamamod.vectorstore.tokenizer.BpeTokenEstimator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * In-process embedding based on hashed character n-grams (the "hashing trick").
+ *
+ * Each word is padded with boundary markers and split into character 3..5-grams plus the whole
+ * word; every feature is hashed into a fixed number of signed buckets. Bucket weights are scaled by
+ * an inverse document frequency table fitted on a corpus (normally the seed documents), then the
+ * vector is L2-normalized. Quality is far below a neural model, but it needs no server, is fully
+ * deterministic, and embeds a query in microseconds, which makes it a usable offline fallback.
+ */
+public class HashedNgramEmbeddingService implements EmbeddingService {
+    public static final int DEFAULT_DIMENSION = 512;
+    private static final String MODEL_PREFIX = "hashed-ngram-";
+    private static final int MIN_GRAM = 3;
+    private static final int MAX_GRAM = 5;
+
+    private final int dimension;
+    private volatile float[] idf;
+
+    // Embedding with the default dimension and uniform weights until fit() is called.
+    public HashedNgramEmbeddingService() {
+        this(DEFAULT_DIMENSION);
+    }
+
+    // Embedding with an explicit number of hash buckets.
+    public HashedNgramEmbeddingService(int dimension) {
+        this.dimension = dimension;
+        this.idf = uniformWeights(dimension);
+    }
+
+    // Fit inverse document frequency weights on a corpus of texts.
+    public void fit(Collection<String> corpus) {
+        if (corpus.isEmpty()) {
+            this.idf = uniformWeights(dimension);
+            return;
+        }
+        int[] documentFrequency = new int[dimension];
+        boolean[] seen = new boolean[dimension];
+        for (String text : corpus) {
+            Arrays.fill(seen, false);
+            forEachFeature(text, (bucket, sign) -> seen[bucket] = true);
+            for (int bucket = 0; bucket < dimension; bucket++) {
+                if (seen[bucket]) documentFrequency[bucket]++;
+            }
+        }
+        float[] weights = new float[dimension];
+        int documents = corpus.size();
+        for (int bucket = 0; bucket < dimension; bucket++) {
+            weights[bucket] = (float) (Math.log((documents + 1.0) / (documentFrequency[bucket] + 1.0)) + 1.0);
+        }
+        this.idf = weights;
+    }
+
+    // Current inverse document frequency weights, one per bucket.
+    public float[] idfWeights() {
+        return idf.clone();
+    }
+
+    // Use weights fitted elsewhere (for example stored in a pre-built seed index) instead of calling fit().
+    public void setIdfWeights(float[] weights) {
+        if (weights.length != dimension) {
+            throw new IllegalArgumentException("Expected " + dimension + " weights, got " + weights.length);
+        }
+        this.idf = weights.clone();
+    }
+
+    // Embed a single text synchronously.
+    public float[] embedNow(String text) {
+        float[] weights = idf;
+        float[] vector = new float[dimension];
+        forEachFeature(text, (bucket, sign) -> vector[bucket] += sign);
+
+        double norm = 0.0;
+        for (int bucket = 0; bucket < dimension; bucket++) {
+            float count = vector[bucket];
+            if (count == 0f) continue;
+            // Sublinear term frequency keeps repeated words from dominating
+            float scaled = (float) (Math.signum(count) * (1.0 + Math.log(Math.abs(count)))) * weights[bucket];
+            vector[bucket] = scaled;
+            norm += scaled * scaled;
+        }
+        if (norm > 0.0) {
+            float inverse = (float) (1.0 / Math.sqrt(norm));
+            for (int bucket = 0; bucket < dimension; bucket++) {
+                vector[bucket] *= inverse;
+            }
+        }
+        return vector;
+    }
+
+    @Override
+    public CompletableFuture<float[]> embed(String text) {
+        return CompletableFuture.completedFuture(embedNow(text));
+    }
+
+    @Override
+    public CompletableFuture<List<float[]>> embedBatch(List<String> texts) {
+        List<float[]> vectors = new ArrayList<>(texts.size());
+        for (String text : texts) {
+            vectors.add(embedNow(text));
+        }
+        return CompletableFuture.completedFuture(vectors);
+    }
+
+    @Override
+    public int getDimension() {
+        return dimension;
+    }
+
+    @Override
+    public String getModel() {
+        return MODEL_PREFIX + dimension;
+    }
+
+    // There is no model tokenizer here, so this is the shared estimate.
+    @Override
+    public CompletableFuture<Integer> countTokens(List<String> texts) {
+        BpeTokenEstimator estimator = BpeTokenEstimator.shared();
+        int tokens = 0;
+        for (String text : texts) {
+            tokens += estimator.count(text);
+        }
+        return CompletableFuture.completedFuture(tokens);
+    }
+
+    // Models are named by their bucket count; another count gets a new service with uniform weights.
+    @Override
+    public EmbeddingService forModel(String model) {
+        if (model.equals(getModel())) return this;
+        if (model.startsWith(MODEL_PREFIX)) {
+            try {
+                int otherDimension = Integer.parseInt(model.substring(MODEL_PREFIX.length()));
+                if (otherDimension > 0) return new HashedNgramEmbeddingService(otherDimension);
+            } catch (NumberFormatException ignored) {
+                // Falls through to the error below
+            }
+        }
+        throw new IllegalArgumentException("Not a hashed n-gram model: " + model);
+    }
+
+    // Always available: runs in-process.
+    @Override
+    public boolean isHealthy() {
+        return true;
+    }
+
+    private interface FeatureSink {
+        void accept(int bucket, float sign);
+    }
+
+    // Visit the hashed bucket and sign of every word and character n-gram in the text.
+    private void forEachFeature(String text, FeatureSink sink) {
+        if (text == null || text.isEmpty()) return;
+        String lower = text.toLowerCase(Locale.ROOT);
+        int length = lower.length();
+        StringBuilder word = new StringBuilder();
+        for (int index = 0; index <= length; index++) {
+            char c = index < length ? lower.charAt(index) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                word.append(c);
+            } else if (word.length() > 0) {
+                emitWord(word, sink);
+                word.setLength(0);
+            }
+        }
+    }
+
+    private void emitWord(StringBuilder word, FeatureSink sink) {
+        emit(word, 0, word.length(), 'w', sink);
+        word.insert(0, '<').append('>');
+        int length = word.length();
+        for (int gram = MIN_GRAM; gram <= MAX_GRAM; gram++) {
+            for (int start = 0; start + gram <= length; start++) {
+                emit(word, start, start + gram, 'g', sink);
+            }
+        }
+    }
+
+    // FNV-1a over the feature characters; the top bit picks the sign to reduce collision bias.
+    private void emit(CharSequence chars, int start, int end, char kind, FeatureSink sink) {
+        int hash = 0x811c9dc5;
+        hash = (hash ^ kind) * 0x01000193;
+        for (int index = start; index < end; index++) {
+            hash = (hash ^ chars.charAt(index)) * 0x01000193;
+        }
+        int bucket = Math.floorMod(hash, dimension);
+        sink.accept(bucket, hash < 0 ? -1f : 1f);
+    }
+
+    private static float[] uniformWeights(int dimension) {
+        float[] weights = new float[dimension];
+        Arrays.fill(weights, 1f);
+        return weights;
+    }
+}
@@ -5,9 +5,12 @@ import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import net.kevinthedang.ollamamod.chat.OllamaSettings;
+import net.kevinthedang.ollamamod.ollama.OllamaEndpoint;
+import net.kevinthedang.ollamamod.ollama.OllamaEndpointPool;
+import net.kevinthedang.ollamamod.ollama.OllamaScheduler;
 import net.kevinthedang.ollamamod.vectorstore.VectorStoreSettings;
 
-import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
@@ -18,50 +21,48 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 
 public class OllamaEmbeddingService implements EmbeddingService {
     private final HttpClient httpClient;
-    private final URI embedEndpoint;
+    private final OllamaEndpointPool endpointPool;
+    private final String model;
     private final Gson gson = new Gson();
+    private volatile int dimension;
 
-    // Uses VectorStoreSettings defaults for base URL and model.
+    // Uses the primary Ollama host (OllamaSettings.baseUrl) and the configured embedding model.
     public OllamaEmbeddingService() {
-        this(VectorStoreSettings.ollamaBaseUrl, VectorStoreSettings.embeddingModel);
+        this(OllamaSettings.baseUrl, VectorStoreSettings.embeddingModel);
     }
 
     // Creates an embedding service targeting a specific Ollama base URL and model.
     public OllamaEmbeddingService(String baseUrl, String model) {
+        this(OllamaEndpointPool.single(baseUrl), model);
+    }
+
+    // Creates an embedding service that spreads requests over a pool of Ollama hosts.
+    public OllamaEmbeddingService(OllamaEndpointPool endpointPool, String model) {
         this.httpClient = HttpClient.newBuilder()
             .connectTimeout(Duration.ofSeconds(5))
             .build();
-        this.embedEndpoint = URI.create(baseUrl + "/api/embed");
+        this.endpointPool = endpointPool;
         this.model = model;
+        this.dimension = model.equals(VectorStoreSettings.DEFAULT_EMBEDDING_MODEL) ? VectorStoreSettings.embeddingDimension : 0;
     }
 
-    private final String model;
-
     // Embed a single text input using Ollama's /api/embed endpoint.
     @Override
     public CompletableFuture<float[]> embed(String text) {
         Map<String, Object> requestBody = new HashMap<>();
         requestBody.put("model", model);
+        endpointPool.residency().putKeepAlive(requestBody);
         requestBody.put("input", text);
         String json = gson.toJson(requestBody);
 
-        HttpRequest request = HttpRequest.newBuilder()
-            .uri(embedEndpoint)
-            .timeout(Duration.ofSeconds(30))
-            .header("Content-Type", "application/json")
-            .POST(HttpRequest.BodyPublishers.ofString(json, StandardCharsets.UTF_8))
-            .build();
-
-        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
-            .thenApply(response -> {
-                if (response.statusCode() != 200) {
-                    throw new RuntimeException("Ollama HTTP " + response.statusCode() + ": " + response.body());
-                }
-                return parseFirstEmbedding(response.body());
-            });
+        return sendEmbedRequest(json, Duration.ofSeconds(30), OllamaScheduler.Priority.QUERY_EMBEDDING,
+                VectorStoreSettings.hedgeQueryEmbeddings)
+            .thenApply(OllamaEmbeddingService::parseFirstEmbedding)
+            .thenApply(this::recordDimension);
     }
 
     // Embed a batch of text inputs using Ollama's /api/embed endpoint.
@@ -69,45 +70,91 @@ public class OllamaEmbeddingService implements EmbeddingService {
     public CompletableFuture<List<float[]>> embedBatch(List<String> texts) {
         Map<String, Object> requestBody = new HashMap<>();
         requestBody.put("model", model);
+        endpointPool.residency().putKeepAlive(requestBody);
         requestBody.put("input", texts);
         String json = gson.toJson(requestBody);
 
-        HttpRequest request = HttpRequest.newBuilder()
-            .uri(embedEndpoint)
-            .timeout(Duration.ofSeconds(60))
-            .header("Content-Type", "application/json")
-            .POST(HttpRequest.BodyPublishers.ofString(json, StandardCharsets.UTF_8))
-            .build();
+        return sendEmbedRequest(json, Duration.ofSeconds(60), OllamaScheduler.Priority.INGESTION, false)
+            .thenApply(OllamaEmbeddingService::parseEmbeddings)
+            .thenApply(vectors -> {
+                if (!vectors.isEmpty()) recordDimension(vectors.get(0));
+                return vectors;
+            });
+    }
 
-        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
-            .thenApply(response -> {
-                if (response.statusCode() != 200) {
-                    throw new RuntimeException("Ollama HTTP " + response.statusCode() + ": " + response.body());
+    // Count tokens by embedding the texts and reading prompt_eval_count from the /api/embed response.
+    @Override
+    public CompletableFuture<Integer> countTokens(List<String> texts) {
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("model", model);
+        endpointPool.residency().putKeepAlive(requestBody);
+        requestBody.put("input", texts);
+        String json = gson.toJson(requestBody);
+
+        return sendEmbedRequest(json, Duration.ofSeconds(60), OllamaScheduler.Priority.INGESTION, false)
+            .thenApply(body -> {
+                JsonObject root = JsonParser.parseString(body).getAsJsonObject();
+                if (!root.has("prompt_eval_count")) {
+                    throw new IllegalArgumentException("No prompt_eval_count field in response");
                 }
-                return parseEmbeddings(response.body());
+                return root.get("prompt_eval_count").getAsInt();
             });
     }
 
-    // Return the configured embedding dimension.
+    // Return the embedding dimension: known for the default model, otherwise learned from the first response.
     @Override
     public int getDimension() {
-        return VectorStoreSettings.embeddingDimension;
+        return dimension > 0 ? dimension : VectorStoreSettings.embeddingDimension;
+    }
+
+    @Override
+    public String getModel() {
+        return model;
+    }
+
+    // Same hosts, different model.
+    @Override
+    public EmbeddingService forModel(String otherModel) {
+        return otherModel.equals(model) ? this : new OllamaEmbeddingService(endpointPool, otherModel);
     }
 
-    // Check Ollama availability by hitting /api/tags.
+    // Check Ollama availability by hitting /api/tags on the pooled hosts.
     @Override
     public boolean isHealthy() {
-        try {
+        return endpointPool.isHealthy();
+    }
+
+    // POST a request body to /api/embed on the least-loaded pooled host. The request is scheduled in the
+    // given class unless the caller set its own work (e.g. a memory write, see OllamaScheduler.submitAs).
+    // Hedged requests (single query embeddings, which a player waits on) are duplicated on another host
+    // when they run past their p95; batches are not, since hedging bulk work would only add load.
+    private CompletableFuture<String> sendEmbedRequest(String json, Duration timeout, OllamaScheduler.Priority priority,
+                                                       boolean hedged) {
+        OllamaScheduler.Work work = OllamaScheduler.currentWork(OllamaScheduler.Work.of(priority, null));
+        Function<OllamaEndpoint, CompletableFuture<String>> call = endpoint -> {
             HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(VectorStoreSettings.ollamaBaseUrl + "/api/tags"))
-                .timeout(Duration.ofSeconds(2))
-                .GET()
+                .uri(endpoint.resolve("/api/embed"))
+                .timeout(timeout)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json, StandardCharsets.UTF_8))
                 .build();
-            httpClient.send(request, HttpResponse.BodyHandlers.discarding());
-            return true;
-        } catch (Exception e) {
-            return false;
-        }
+
+            CompletableFuture<HttpResponse<String>> exchange = httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+            return OllamaEndpointPool.cancelling(exchange.thenApply(response -> {
+                if (response.statusCode() != 200) {
+                    throw new RuntimeException("Ollama HTTP " + response.statusCode() + ": " + response.body());
+                }
+                return response.body();
+            }), exchange);
+        };
+        return hedged
+            ? endpointPool.executeHedged("embed:" + model, work, null, call, null)
+            : endpointPool.execute(work, null, call);
+    }
+
+    private float[] recordDimension(float[] vector) {
+        dimension = vector.length;
+        return vector;
     }
 
     // Extract the first embedding vector from the response JSON.
@@ -0,0 +1,9 @@
+package net.kevinthedang.ollamamod.vectorstore.model;
+
+// The vector space a set of embeddings lives in: the model that produced them and their dimension.
+public record EmbeddingSpace(String model, int dimension) {
+    // File-name-safe form of the model name, e.g. "mxbai-embed-large_latest".
+    public String fileId() {
+        return model.replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+}
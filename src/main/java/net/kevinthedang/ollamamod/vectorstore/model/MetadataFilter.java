@@ -1,12 +1,25 @@
 package net.kevinthedang.ollamamod.vectorstore.model;
 
+import java.util.Collection;
+import java.util.Set;
+
 public record MetadataFilter(
     String type,
     String villagerId,
     String playerId,
     Long timestampAfter,
-    Long timestampBefore
+    Long timestampBefore,
+    // Matches documents carrying at least one of these entity tags; null matches any
+    Set<String> anyTags
 ) {
+    public MetadataFilter {
+        anyTags = anyTags == null || anyTags.isEmpty() ? null : Set.copyOf(anyTags);
+    }
+
+    public MetadataFilter(String type, String villagerId, String playerId, Long timestampAfter, Long timestampBefore) {
+        this(type, villagerId, playerId, timestampAfter, timestampBefore, null);
+    }
+
     public static MetadataFilter documents() {
         return new MetadataFilter("document", null, null, null, null);
     }
@@ -28,10 +41,31 @@ public record MetadataFilter(
     }
 
     public MetadataFilter after(long timestamp) {
-        return new MetadataFilter(type, villagerId, playerId, timestamp, timestampBefore);
+        return new MetadataFilter(type, villagerId, playerId, timestamp, timestampBefore, anyTags);
     }
 
     public MetadataFilter before(long timestamp) {
-        return new MetadataFilter(type, villagerId, playerId, timestampAfter, timestamp);
+        return new MetadataFilter(type, villagerId, playerId, timestampAfter, timestamp, anyTags);
+    }
+
+    public MetadataFilter withAnyTag(Collection<String> tags) {
+        return new MetadataFilter(type, villagerId, playerId, timestampAfter, timestampBefore,
+            tags == null ? null : Set.copyOf(tags));
+    }
+
+    // Whether document metadata satisfies every set field of this filter.
+    public boolean matches(VectorMetadata metadata) {
+        if (type != null && !type.equals(metadata.type())) return false;
+        if (villagerId != null && !villagerId.equals(metadata.villagerId())) return false;
+        if (playerId != null && !playerId.equals(metadata.playerId())) return false;
+        if (timestampAfter != null && metadata.timestamp() <= timestampAfter) return false;
+        if (timestampBefore != null && metadata.timestamp() >= timestampBefore) return false;
+        if (anyTags != null) {
+            for (String tag : metadata.tags()) {
+                if (anyTags.contains(tag)) return true;
+            }
+            return false;
+        }
+        return true;
     }
 }
@@ -3,6 +3,8 @@ package net.kevinthedang.ollamamod.vectorstore.model;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 public record VectorDocument(
     String id,
@@ -10,6 +12,32 @@ public record VectorDocument(
     float[] embedding,
     VectorMetadata metadata
 ) {
+    // Record layout written by writeTo; version 2 appended entity tags to the metadata
+    public static final int FORMAT_VERSION = 2;
+
+    // Layout version and document count at the start of a store file.
+    public record StoreHeader(int version, int count) {}
+
+    // Write a store header. Version 1 stores began with the bare count, so later versions store
+    // the negated version first to stay distinguishable.
+    public static void writeStoreHeader(DataOutputStream outputStream, int count) throws IOException {
+        outputStream.writeInt(-FORMAT_VERSION);
+        outputStream.writeInt(count);
+    }
+
+    // Read a store header written by any version.
+    public static StoreHeader readStoreHeader(DataInputStream inputStream) throws IOException {
+        int first = inputStream.readInt();
+        if (first >= 0) {
+            return new StoreHeader(1, first);
+        }
+        int version = -first;
+        if (version > FORMAT_VERSION) {
+            throw new IOException("Unsupported vector store format version " + version);
+        }
+        return new StoreHeader(version, inputStream.readInt());
+    }
+
     // Serialize this document in the shared vector store binary format.
     public void writeTo(DataOutputStream outputStream) throws IOException {
         outputStream.writeUTF(id);
@@ -26,10 +54,19 @@ public record VectorDocument(
         outputStream.writeLong(metadata.timestamp());
         outputStream.writeInt(metadata.chunkIndex());
         outputStream.writeInt(metadata.chunkTotal());
+        outputStream.writeShort(metadata.tags().size());
+        for (String tag : metadata.tags()) {
+            outputStream.writeUTF(tag);
+        }
     }
 
-    // Deserialize a document from the shared vector store binary format.
+    // Deserialize a document written with the current format.
     public static VectorDocument readFrom(DataInputStream inputStream) throws IOException {
+        return readFrom(inputStream, FORMAT_VERSION);
+    }
+
+    // Deserialize a document from the shared vector store binary format of the given version.
+    public static VectorDocument readFrom(DataInputStream inputStream, int version) throws IOException {
         String id = inputStream.readUTF();
         String content = inputStream.readUTF();
         int embeddingLength = inputStream.readInt();
@@ -49,13 +86,22 @@ public record VectorDocument(
         long timestamp = inputStream.readLong();
         int chunkIndex = inputStream.readInt();
         int chunkTotal = inputStream.readInt();
+        List<String> tags = List.of();
+        if (version >= 2) {
+            int tagCount = inputStream.readUnsignedShort();
+            tags = new ArrayList<>(tagCount);
+            for (int index = 0; index < tagCount; index++) {
+                tags.add(inputStream.readUTF());
+            }
+        }
         VectorMetadata metadata = new VectorMetadata(
             type,
             villagerId,
             playerId,
             timestamp,
             chunkIndex,
-            chunkTotal
+            chunkTotal,
+            tags
         );
         return new VectorDocument(id, content, embedding, metadata);
     }
@@ -1,13 +1,25 @@
 package net.kevinthedang.ollamamod.vectorstore.model;
 
+import java.util.List;
+
 public record VectorMetadata(
     String type,
     String villagerId,
     String playerId,
     long timestamp,
     int chunkIndex,
-    int chunkTotal
+    int chunkTotal,
+    // Gazetteer entity ids mentioned in the chunk, e.g. "item:piston" or "biome:plains"
+    List<String> tags
 ) {
+    public VectorMetadata {
+        tags = tags == null ? List.of() : List.copyOf(tags);
+    }
+
+    public VectorMetadata(String type, String villagerId, String playerId, long timestamp, int chunkIndex, int chunkTotal) {
+        this(type, villagerId, playerId, timestamp, chunkIndex, chunkTotal, List.of());
+    }
+
     public static VectorMetadata document() {
         return new VectorMetadata("document", null, null, System.currentTimeMillis(), 0, 1);
     }
@@ -17,6 +29,10 @@ public record VectorMetadata(
     }
 
     public VectorMetadata withChunk(int index, int total) {
-        return new VectorMetadata(type, villagerId, playerId, timestamp, index, total);
+        return new VectorMetadata(type, villagerId, playerId, timestamp, index, total, tags);
+    }
+
+    public VectorMetadata withTags(List<String> entityTags) {
+        return new VectorMetadata(type, villagerId, playerId, timestamp, chunkIndex, chunkTotal, entityTags);
     }
 }
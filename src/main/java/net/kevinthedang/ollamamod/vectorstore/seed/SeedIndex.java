@@ -0,0 +1,575 @@
+package net.kevinthedang.ollamamod.vectorstore.seed;
+
+import net.kevinthedang.ollamamod.vectorstore.embedding.HashedNgramEmbeddingService;
+import net.kevinthedang.ollamamod.vectorstore.model.VectorDocument;
+import net.kevinthedang.ollamamod.vectorstore.model.VectorMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.function.IntPredicate;
+
+/**
+ * Pre-built, read-only seed index in one flat little-endian file that can be memory-mapped.
+ *
+ * Layout after a small header (magic, version, counts, embedding model name):
+ * remote vectors and their norms, IVF centroids with per-centroid posting lists, hashed n-gram
+ * ("lexical") vectors with their norms and IDF weights, document ids in sorted order, and the
+ * document records (id, content, metadata) behind an offset table. Everything is located by
+ * arithmetic on the header counts, so opening the index does no parsing and builds no structures.
+ */
+public final class SeedIndex {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SeedIndex.class);
+    private static final int MAGIC = 0x4F4D5349;
+    private static final int VERSION = 2;
+    private static final int KMEANS_ITERATIONS = 8;
+    private static final int MAX_CENTROIDS = 1024;
+    // Below this size a full scan is as fast as probing centroids
+    private static final int BRUTE_FORCE_LIMIT = 2048;
+
+    private final ByteBuffer buffer;
+    private final String model;
+    private final int count;
+    private final int centroidCount;
+    private final View vectors;
+    private final View localVectors;
+    private final int centroidsOffset;
+    private final int postingStartsOffset;
+    private final int postingsOffset;
+    private final int idfOffset;
+    private final int idOrderOffset;
+    private final int recordOffsetsOffset;
+
+    // A scored search hit: document position in the index and relevance in [0, 1].
+    public record Hit(int index, double score) {}
+
+    private SeedIndex(ByteBuffer source) {
+        this.buffer = source.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IllegalArgumentException("Not a seed index (or unsupported version)");
+        }
+        this.count = buffer.getInt(8);
+        int dimension = buffer.getInt(12);
+        int localDimension = buffer.getInt(16);
+        this.centroidCount = buffer.getInt(20);
+        int modelLength = buffer.getInt(24);
+        byte[] modelBytes = new byte[modelLength];
+        buffer.get(28, modelBytes);
+        this.model = new String(modelBytes, StandardCharsets.UTF_8);
+
+        int offset = align(28 + modelLength);
+        int vectorsOffset = offset;
+        offset += count * dimension * Float.BYTES;
+        int normsOffset = offset;
+        offset += count * Float.BYTES;
+        this.centroidsOffset = offset;
+        offset += centroidCount * dimension * Float.BYTES;
+        this.postingStartsOffset = offset;
+        offset += (centroidCount + 1) * Integer.BYTES;
+        this.postingsOffset = offset;
+        offset += count * Integer.BYTES;
+        int localVectorsOffset = offset;
+        offset += count * localDimension * Float.BYTES;
+        int localNormsOffset = offset;
+        offset += count * Float.BYTES;
+        this.idfOffset = offset;
+        offset += localDimension * Float.BYTES;
+        this.idOrderOffset = offset;
+        offset += count * Integer.BYTES;
+        this.recordOffsetsOffset = offset;
+
+        this.vectors = new View(dimension, vectorsOffset, normsOffset, true);
+        this.localVectors = new View(localDimension, localVectorsOffset, localNormsOffset, false);
+    }
+
+    // Map an index file read-only.
+    public static SeedIndex open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new SeedIndex(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    // Read an index from a stream into one buffer (for sources that cannot be mapped, such as jar entries).
+    public static SeedIndex read(InputStream stream) throws IOException {
+        return new SeedIndex(ByteBuffer.wrap(stream.readAllBytes()));
+    }
+
+    // Load a classpath resource, memory-mapped. A resource that is not a plain file (inside the mod jar,
+    // served from Forge's union filesystem) is first extracted to cacheDirectory under a name keyed by
+    // its content hash, so later loads map the same file; only if that fails is it read into memory.
+    public static Optional<SeedIndex> fromResource(String resourcePath, Path cacheDirectory) {
+        URL url = SeedIndex.class.getResource(resourcePath);
+        if (url == null) return Optional.empty();
+        try {
+            if ("file".equals(url.getProtocol())) {
+                Path path = Path.of(url.toURI());
+                if (path.getFileSystem() == FileSystems.getDefault()) {
+                    return Optional.of(open(path));
+                }
+            }
+            try {
+                return Optional.of(open(extract(url, cacheDirectory)));
+            } catch (IOException exception) {
+                LOGGER.warn("Could not cache seed index in {}, reading it into memory: {}", cacheDirectory, exception.toString());
+            }
+            try (InputStream stream = url.openStream()) {
+                return Optional.of(read(stream));
+            }
+        } catch (IOException | URISyntaxException exception) {
+            throw new RuntimeException("Failed to load seed index " + resourcePath, exception);
+        }
+    }
+
+    // Copy a resource to "seed-<hash>.index" in the directory unless that file is already there, and
+    // delete copies of other versions.
+    static Path extract(URL url, Path directory) throws IOException {
+        Files.createDirectories(directory);
+        Path temporary = Files.createTempFile(directory, "seed-", ".tmp");
+        try {
+            MessageDigest digest = sha256();
+            try (InputStream stream = new DigestInputStream(url.openStream(), digest)) {
+                Files.copy(stream, temporary, StandardCopyOption.REPLACE_EXISTING);
+            }
+            String name = "seed-" + HexFormat.of().formatHex(digest.digest(), 0, 16) + ".index";
+            Path cached = directory.resolve(name);
+            if (!Files.exists(cached)) {
+                Files.move(temporary, cached, StandardCopyOption.ATOMIC_MOVE);
+            }
+            try (DirectoryStream<Path> stale = Files.newDirectoryStream(directory, "seed-*.index")) {
+                for (Path path : stale) {
+                    if (path.equals(cached)) continue;
+                    try {
+                        Files.deleteIfExists(path);
+                    } catch (IOException exception) {
+                        // Still mapped by another instance (Windows); removed on a later start
+                    }
+                }
+            }
+            return cached;
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException exception) {
+            throw new IllegalStateException("SHA-256 not available", exception);
+        }
+    }
+
+    public String model() {
+        return model;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    // Vectors in the embedding model's space.
+    public View vectors() {
+        return vectors;
+    }
+
+    // Hashed n-gram vectors for the offline fallback index.
+    public View localVectors() {
+        return localVectors;
+    }
+
+    // IDF weights the hashed n-gram vectors were computed with.
+    public float[] idfWeights() {
+        float[] weights = new float[localVectors.dimension];
+        for (int bucket = 0; bucket < weights.length; bucket++) {
+            weights[bucket] = buffer.getFloat(idfOffset + bucket * Float.BYTES);
+        }
+        return weights;
+    }
+
+    // Position of a document id, or -1; binary search over the sorted id table.
+    public int indexOf(String id) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int index = buffer.getInt(idOrderOffset + middle * Integer.BYTES);
+            int comparison = recordId(index).compareTo(id);
+            if (comparison == 0) return index;
+            if (comparison < 0) low = middle + 1;
+            else high = middle - 1;
+        }
+        return -1;
+    }
+
+    // Id of the document at a position.
+    public String recordId(int index) {
+        return new RecordReader(index).string();
+    }
+
+    // Metadata of the document at a position.
+    public VectorMetadata metadata(int index) {
+        RecordReader reader = new RecordReader(index);
+        reader.skipString();
+        reader.skipString();
+        return reader.metadata();
+    }
+
+    // Vectors of one embedding space inside the index.
+    public final class View {
+        private final int dimension;
+        private final int vectorsOffset;
+        private final int normsOffset;
+        private final boolean clustered;
+
+        private View(int dimension, int vectorsOffset, int normsOffset, boolean clustered) {
+            this.dimension = dimension;
+            this.vectorsOffset = vectorsOffset;
+            this.normsOffset = normsOffset;
+            this.clustered = clustered;
+        }
+
+        public SeedIndex index() {
+            return SeedIndex.this;
+        }
+
+        public int dimension() {
+            return dimension;
+        }
+
+        // Full document at a position, with this view's vector as its embedding.
+        public VectorDocument document(int index) {
+            RecordReader reader = new RecordReader(index);
+            String id = reader.string();
+            String content = reader.string();
+            return new VectorDocument(id, content, vector(index), reader.metadata());
+        }
+
+        // Best matches for a query; probes the closest centroids when the index is large enough.
+        // Relevance is (cosine + 1) / 2, the same scale the in-memory store filters minScore on.
+        public List<Hit> search(float[] query, int topK, double minScore, int probes, IntPredicate accept) {
+            if (query.length != dimension || topK <= 0) return List.of();
+            double queryNorm = norm(query);
+            if (queryNorm == 0.0) return List.of();
+
+            PriorityQueue<Hit> best = new PriorityQueue<>(Comparator.comparingDouble(Hit::score));
+            if (!clustered || centroidCount <= 1 || count <= BRUTE_FORCE_LIMIT) {
+                for (int index = 0; index < count; index++) {
+                    offer(best, index, query, queryNorm, topK, minScore, accept);
+                }
+            } else {
+                for (int centroid : closestCentroids(query, queryNorm, probes)) {
+                    int start = buffer.getInt(postingStartsOffset + centroid * Integer.BYTES);
+                    int end = buffer.getInt(postingStartsOffset + (centroid + 1) * Integer.BYTES);
+                    for (int posting = start; posting < end; posting++) {
+                        offer(best, buffer.getInt(postingsOffset + posting * Integer.BYTES), query, queryNorm, topK, minScore, accept);
+                    }
+                }
+            }
+            List<Hit> hits = new ArrayList<>(best);
+            hits.sort(Comparator.comparingDouble(Hit::score).reversed());
+            return hits;
+        }
+
+        private void offer(PriorityQueue<Hit> best, int index, float[] query, double queryNorm,
+                           int topK, double minScore, IntPredicate accept) {
+            float storedNorm = buffer.getFloat(normsOffset + index * Float.BYTES);
+            if (storedNorm == 0f) return;
+            double score = (dot(query, vectorsOffset + index * dimension * Float.BYTES) / (queryNorm * storedNorm) + 1.0) / 2.0;
+            if (score < minScore) return;
+            if (best.size() >= topK && score <= best.peek().score()) return;
+            // The predicate may decode metadata, so it only runs for hits that would make the cut
+            if (!accept.test(index)) return;
+            best.offer(new Hit(index, score));
+            if (best.size() > topK) best.poll();
+        }
+
+        private int[] closestCentroids(float[] query, double queryNorm, int probes) {
+            int wanted = Math.min(Math.max(1, probes), centroidCount);
+            double[] scores = new double[centroidCount];
+            Integer[] order = new Integer[centroidCount];
+            for (int centroid = 0; centroid < centroidCount; centroid++) {
+                scores[centroid] = dot(query, centroidsOffset + centroid * dimension * Float.BYTES) / queryNorm;
+                order[centroid] = centroid;
+            }
+            Arrays.sort(order, (left, right) -> Double.compare(scores[right], scores[left]));
+            int[] closest = new int[wanted];
+            for (int index = 0; index < wanted; index++) {
+                closest[index] = order[index];
+            }
+            return closest;
+        }
+
+        private float[] vector(int index) {
+            float[] vector = new float[dimension];
+            int base = vectorsOffset + index * dimension * Float.BYTES;
+            for (int component = 0; component < dimension; component++) {
+                vector[component] = buffer.getFloat(base + component * Float.BYTES);
+            }
+            return vector;
+        }
+
+        private double dot(float[] query, int base) {
+            double sum = 0.0;
+            for (int component = 0; component < dimension; component++) {
+                sum += query[component] * buffer.getFloat(base + component * Float.BYTES);
+            }
+            return sum;
+        }
+    }
+
+    // Sequential reader over one document record.
+    private final class RecordReader {
+        private int position;
+
+        private RecordReader(int index) {
+            int relative = buffer.getInt(recordOffsetsOffset + index * Integer.BYTES);
+            this.position = recordOffsetsOffset + (count + 1) * Integer.BYTES + relative;
+        }
+
+        String string() {
+            int length = buffer.getInt(position);
+            if (length < 0) {
+                position += Integer.BYTES;
+                return null;
+            }
+            byte[] bytes = new byte[length];
+            buffer.get(position + Integer.BYTES, bytes);
+            position += Integer.BYTES + length;
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        void skipString() {
+            int length = buffer.getInt(position);
+            position += Integer.BYTES + Math.max(0, length);
+        }
+
+        VectorMetadata metadata() {
+            String type = string();
+            String villagerId = string();
+            String playerId = string();
+            long timestamp = buffer.getLong(position);
+            int chunkIndex = buffer.getInt(position + Long.BYTES);
+            int chunkTotal = buffer.getInt(position + Long.BYTES + Integer.BYTES);
+            int tagCount = buffer.getInt(position + Long.BYTES + 2 * Integer.BYTES);
+            position += Long.BYTES + 3 * Integer.BYTES;
+            List<String> tags = new ArrayList<>(tagCount);
+            for (int tag = 0; tag < tagCount; tag++) {
+                tags.add(string());
+            }
+            return new VectorMetadata(type, villagerId, playerId, timestamp, chunkIndex, chunkTotal, tags);
+        }
+    }
+
+    // Build an index for documents embedded with the given model. The lexical section is produced by
+    // fitting the hashed n-gram embedding on the document contents.
+    public static void write(Path output, String model, List<VectorDocument> documents,
+                             HashedNgramEmbeddingService lexical) throws IOException {
+        int count = documents.size();
+        int dimension = count == 0 ? 0 : documents.get(0).embedding().length;
+        for (VectorDocument document : documents) {
+            if (document.embedding().length != dimension) {
+                throw new IllegalArgumentException("Mixed embedding dimensions in seed documents");
+            }
+        }
+        List<String> corpus = new ArrayList<>(count);
+        for (VectorDocument document : documents) {
+            if ("document".equals(document.metadata().type())) corpus.add(document.content());
+        }
+        lexical.fit(corpus);
+        int localDimension = lexical.getDimension();
+
+        float[][] normalized = new float[count][];
+        for (int index = 0; index < count; index++) {
+            normalized[index] = normalize(documents.get(index).embedding());
+        }
+        int centroidCount = count == 0 ? 0 : Math.min(MAX_CENTROIDS, Math.max(1, (int) Math.round(Math.sqrt(count))));
+        float[][] centroids = kMeans(normalized, centroidCount, dimension);
+        int[] assignment = assign(normalized, centroids);
+
+        byte[] modelBytes = model.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        int[] recordOffsets = new int[count + 1];
+        for (int index = 0; index < count; index++) {
+            recordOffsets[index] = records.size();
+            writeRecord(records, documents.get(index));
+        }
+        recordOffsets[count] = records.size();
+
+        long size = align(28 + modelBytes.length)
+            + (long) count * dimension * Float.BYTES + (long) count * Float.BYTES
+            + (long) centroidCount * dimension * Float.BYTES + (centroidCount + 1L) * Integer.BYTES + (long) count * Integer.BYTES
+            + (long) count * localDimension * Float.BYTES + (long) count * Float.BYTES + (long) localDimension * Float.BYTES
+            + (long) count * Integer.BYTES + (count + 1L) * Integer.BYTES + records.size();
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Seed index would exceed 2 GiB");
+        }
+        ByteBuffer out = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(MAGIC).putInt(VERSION).putInt(count).putInt(dimension).putInt(localDimension).putInt(centroidCount);
+        out.putInt(modelBytes.length).put(modelBytes);
+        out.position(align(out.position()));
+
+        for (VectorDocument document : documents) {
+            for (float value : document.embedding()) out.putFloat(value);
+        }
+        for (VectorDocument document : documents) {
+            out.putFloat((float) norm(document.embedding()));
+        }
+        for (float[] centroid : centroids) {
+            for (float value : centroid) out.putFloat(value);
+        }
+        int[] postingStarts = new int[centroidCount + 1];
+        for (int cluster : assignment) postingStarts[cluster + 1]++;
+        for (int cluster = 0; cluster < centroidCount; cluster++) postingStarts[cluster + 1] += postingStarts[cluster];
+        for (int start : postingStarts) out.putInt(start);
+        int[] fill = Arrays.copyOf(postingStarts, centroidCount);
+        int[] postings = new int[count];
+        for (int index = 0; index < count; index++) {
+            postings[fill[assignment[index]]++] = index;
+        }
+        for (int posting : postings) out.putInt(posting);
+
+        List<float[]> lexicalVectors = new ArrayList<>(count);
+        for (VectorDocument document : documents) {
+            float[] vector = lexical.embedNow(document.content());
+            lexicalVectors.add(vector);
+            for (float value : vector) out.putFloat(value);
+        }
+        for (float[] vector : lexicalVectors) {
+            out.putFloat((float) norm(vector));
+        }
+        for (float weight : lexical.idfWeights()) out.putFloat(weight);
+
+        Integer[] idOrder = new Integer[count];
+        for (int index = 0; index < count; index++) idOrder[index] = index;
+        Arrays.sort(idOrder, Comparator.comparing(index -> documents.get(index).id()));
+        for (int index : idOrder) out.putInt(index);
+        for (int recordOffset : recordOffsets) out.putInt(recordOffset);
+        out.put(records.toByteArray());
+
+        Files.createDirectories(output.toAbsolutePath().getParent());
+        Path temporary = output.resolveSibling(output.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            out.flip();
+            while (out.hasRemaining()) channel.write(out);
+        }
+        Files.move(temporary, output, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static void writeRecord(ByteArrayOutputStream records, VectorDocument document) {
+        ByteBuffer scratch = ByteBuffer.allocate(Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        writeString(records, document.id());
+        writeString(records, document.content());
+        VectorMetadata metadata = document.metadata();
+        writeString(records, metadata.type());
+        writeString(records, metadata.villagerId());
+        writeString(records, metadata.playerId());
+        records.write(scratch.putLong(0, metadata.timestamp()).array(), 0, Long.BYTES);
+        records.write(scratch.putInt(0, metadata.chunkIndex()).array(), 0, Integer.BYTES);
+        records.write(scratch.putInt(0, metadata.chunkTotal()).array(), 0, Integer.BYTES);
+        records.write(scratch.putInt(0, metadata.tags().size()).array(), 0, Integer.BYTES);
+        for (String tag : metadata.tags()) {
+            writeString(records, tag);
+        }
+    }
+
+    private static void writeString(ByteArrayOutputStream records, String value) {
+        byte[] length = new byte[Integer.BYTES];
+        if (value == null) {
+            ByteBuffer.wrap(length).order(ByteOrder.LITTLE_ENDIAN).putInt(-1);
+            records.write(length, 0, length.length);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer.wrap(length).order(ByteOrder.LITTLE_ENDIAN).putInt(bytes.length);
+        records.write(length, 0, length.length);
+        records.write(bytes, 0, bytes.length);
+    }
+
+    // Spherical k-means with deterministic, evenly spaced seeds so builds are reproducible.
+    private static float[][] kMeans(float[][] vectors, int centroidCount, int dimension) {
+        float[][] centroids = new float[centroidCount][];
+        for (int cluster = 0; cluster < centroidCount; cluster++) {
+            centroids[cluster] = vectors[(int) ((long) cluster * vectors.length / centroidCount)].clone();
+        }
+        for (int iteration = 0; iteration < KMEANS_ITERATIONS; iteration++) {
+            int[] assignment = assign(vectors, centroids);
+            float[][] sums = new float[centroidCount][dimension];
+            int[] sizes = new int[centroidCount];
+            for (int index = 0; index < vectors.length; index++) {
+                int cluster = assignment[index];
+                sizes[cluster]++;
+                for (int component = 0; component < dimension; component++) {
+                    sums[cluster][component] += vectors[index][component];
+                }
+            }
+            for (int cluster = 0; cluster < centroidCount; cluster++) {
+                // An empty cluster keeps its previous centroid
+                if (sizes[cluster] > 0) centroids[cluster] = normalize(sums[cluster]);
+            }
+        }
+        return centroids;
+    }
+
+    private static int[] assign(float[][] vectors, float[][] centroids) {
+        int[] assignment = new int[vectors.length];
+        for (int index = 0; index < vectors.length; index++) {
+            double bestScore = Double.NEGATIVE_INFINITY;
+            for (int cluster = 0; cluster < centroids.length; cluster++) {
+                double score = 0.0;
+                for (int component = 0; component < vectors[index].length; component++) {
+                    score += vectors[index][component] * centroids[cluster][component];
+                }
+                if (score > bestScore) {
+                    bestScore = score;
+                    assignment[index] = cluster;
+                }
+            }
+        }
+        return assignment;
+    }
+
+    private static float[] normalize(float[] vector) {
+        double length = norm(vector);
+        float[] normalized = new float[vector.length];
+        if (length == 0.0) return normalized;
+        for (int component = 0; component < vector.length; component++) {
+            normalized[component] = (float) (vector[component] / length);
+        }
+        return normalized;
+    }
+
+    private static double norm(float[] vector) {
+        double sum = 0.0;
+        for (float value : vector) sum += value * value;
+        return Math.sqrt(sum);
+    }
+
+    private static int align(int offset) {
+        return (offset + 3) & ~3;
+    }
+}
@@ -0,0 +1,307 @@
+package net.kevinthedang.ollamamod.vectorstore.seed;
+
+import net.kevinthedang.ollamamod.vectorstore.VectorStoreSettings;
+import net.kevinthedang.ollamamod.vectorstore.model.MetadataFilter;
+import net.kevinthedang.ollamamod.vectorstore.model.VectorDocument;
+import net.kevinthedang.ollamamod.vectorstore.store.LangChain4jVectorStore;
+import net.kevinthedang.ollamamod.vectorstore.store.VectorStore;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Vector store answering from a read-only {@link SeedIndex} view plus a writable overlay store.
+ *
+ * Seed documents stay in the (mapped) index and are only decoded when they are returned. Writes go
+ * to the overlay; a document stored or deleted under a seed id hides the seed copy through a
+ * tombstone bit. Persisting writes only the overlay, in the regular store format, plus the ids of
+ * deleted seed documents in a tombstone file next to it; the seed itself is mapped again on every
+ * load. Load and clear drop the seed base until it is attached again.
+ *
+ * The tombstone bits are copy-on-write: writers replace the set under the store's lock, so queries
+ * read a consistent snapshot without locking.
+ */
+public class SeedIndexVectorStore implements VectorStore {
+    private final VectorStore overlay;
+    private volatile SeedIndex.View base;
+    private volatile BitSet tombstones = new BitSet();
+    // Seed ids deleted outright, persisted so the seed copy stays hidden after a reload; guarded by this
+    private final Set<String> deletedSeedIds = new HashSet<>();
+
+    // Seed view with an empty in-memory overlay.
+    public SeedIndexVectorStore(SeedIndex.View base) {
+        this(base, new LangChain4jVectorStore());
+    }
+
+    // Seed view on top of an existing store; documents already in the overlay hide seed documents with the same id.
+    public SeedIndexVectorStore(SeedIndex.View base, VectorStore overlay) {
+        this.overlay = overlay;
+        attach(base);
+    }
+
+    // Replace the seed base, keeping the overlay and the deleted seed ids.
+    public synchronized void attach(SeedIndex.View view) {
+        this.base = view;
+        BitSet hidden = new BitSet();
+        if (view != null) {
+            for (VectorDocument document : overlay.list(null)) {
+                setTombstone(view, hidden, document.id());
+            }
+            for (String documentId : deletedSeedIds) {
+                setTombstone(view, hidden, documentId);
+            }
+        }
+        this.tombstones = hidden;
+    }
+
+    // Hide the seed documents deleted in a previous session, read from the tombstone file persist()
+    // wrote next to the store file. Missing files leave the current tombstones alone.
+    public void restoreTombstones(Path storePath) {
+        Path path = tombstonePath(storePath);
+        if (!Files.exists(path)) return;
+        List<String> documentIds;
+        try {
+            documentIds = Files.readAllLines(path, StandardCharsets.UTF_8);
+        } catch (IOException exception) {
+            throw new RuntimeException("Failed to read seed tombstones", exception);
+        }
+        synchronized (this) {
+            for (String documentId : documentIds) {
+                if (!documentId.isEmpty()) deletedSeedIds.add(documentId);
+            }
+            attach(base);
+        }
+    }
+
+    // Current seed base, or null once it has been dropped.
+    public SeedIndex.View base() {
+        return base;
+    }
+
+    @Override
+    public void store(VectorDocument document) {
+        overlay.store(document);
+        hideSeedCopies(List.of(document.id()), false);
+    }
+
+    @Override
+    public void storeAll(List<VectorDocument> documents) {
+        overlay.storeAll(documents);
+        List<String> documentIds = new ArrayList<>(documents.size());
+        for (VectorDocument document : documents) {
+            documentIds.add(document.id());
+        }
+        hideSeedCopies(documentIds, false);
+    }
+
+    // Merge the best seed matches with the best overlay matches by relevance.
+    @Override
+    public List<VectorDocument> query(float[] queryEmbedding, MetadataFilter filter, int topK, double minScore) {
+        List<VectorDocument> overlayMatches = overlay.query(queryEmbedding, filter, topK, minScore);
+        SeedIndex.View view = base;
+        if (view == null) return overlayMatches;
+
+        BitSet hidden = tombstones;
+        List<SeedIndex.Hit> seedHits = view.search(queryEmbedding, topK, minScore, VectorStoreSettings.seedIndexProbes,
+            index -> !hidden.get(index) && (filter == null || filter.matches(view.index().metadata(index))));
+        if (seedHits.isEmpty()) return overlayMatches;
+
+        record Scored(VectorDocument document, double score) {}
+        List<Scored> merged = new ArrayList<>(overlayMatches.size() + seedHits.size());
+        for (VectorDocument document : overlayMatches) {
+            merged.add(new Scored(document, relevance(queryEmbedding, document.embedding())));
+        }
+        for (SeedIndex.Hit hit : seedHits) {
+            merged.add(new Scored(view.document(hit.index()), hit.score()));
+        }
+        merged.sort(Comparator.comparingDouble(Scored::score).reversed());
+        List<VectorDocument> results = new ArrayList<>(Math.min(topK, merged.size()));
+        for (int index = 0; index < merged.size() && index < topK; index++) {
+            results.add(merged.get(index).document());
+        }
+        return results;
+    }
+
+    @Override
+    public List<VectorDocument> list(MetadataFilter filter) {
+        List<VectorDocument> results = new ArrayList<>();
+        SeedIndex.View view = base;
+        if (view != null) {
+            BitSet hidden = tombstones;
+            for (int index = 0; index < view.index().size(); index++) {
+                if (!hidden.get(index) && (filter == null || filter.matches(view.index().metadata(index)))) {
+                    results.add(view.document(index));
+                }
+            }
+        }
+        results.addAll(overlay.list(filter));
+        return results;
+    }
+
+    @Override
+    public Optional<VectorDocument> getById(String documentId) {
+        Optional<VectorDocument> stored = overlay.getById(documentId);
+        if (stored.isPresent()) return stored;
+        SeedIndex.View view = base;
+        if (view == null) return Optional.empty();
+        int index = view.index().indexOf(documentId);
+        if (index < 0 || tombstones.get(index)) return Optional.empty();
+        return Optional.of(view.document(index));
+    }
+
+    @Override
+    public boolean delete(String documentId) {
+        boolean removed = overlay.delete(documentId);
+        return hideSeedCopies(List.of(documentId), true) > 0 || removed;
+    }
+
+    @Override
+    public int deleteByFilter(MetadataFilter filter) {
+        if (filter == null) {
+            int removed = count(null);
+            clear();
+            return removed;
+        }
+        int removed = overlay.deleteByFilter(filter);
+        SeedIndex.View view = base;
+        if (view != null) {
+            BitSet hidden = tombstones;
+            List<String> matching = new ArrayList<>();
+            for (int index = 0; index < view.index().size(); index++) {
+                if (!hidden.get(index) && filter.matches(view.index().metadata(index))) {
+                    matching.add(view.index().recordId(index));
+                }
+            }
+            removed += hideSeedCopies(matching, true);
+        }
+        return removed;
+    }
+
+    @Override
+    public int count(MetadataFilter filter) {
+        int count = overlay.count(filter);
+        SeedIndex.View view = base;
+        if (view == null) return count;
+        BitSet hidden = tombstones;
+        if (filter == null) return count + view.index().size() - hidden.cardinality();
+        for (int index = 0; index < view.index().size(); index++) {
+            if (!hidden.get(index) && filter.matches(view.index().metadata(index))) count++;
+        }
+        return count;
+    }
+
+    // Write the overlay in the regular store format and the deleted seed ids next to it; the seed
+    // documents themselves are never copied into the save.
+    @Override
+    public void persist(Path path) {
+        overlay.persist(path);
+        List<String> documentIds;
+        synchronized (this) {
+            documentIds = new ArrayList<>(deletedSeedIds);
+        }
+        Path tombstonePath = tombstonePath(path);
+        try {
+            if (documentIds.isEmpty()) {
+                Files.deleteIfExists(tombstonePath);
+            } else {
+                documentIds.sort(null);
+                Files.write(tombstonePath, documentIds, StandardCharsets.UTF_8);
+            }
+        } catch (IOException exception) {
+            throw new RuntimeException("Failed to persist seed tombstones", exception);
+        }
+    }
+
+    // Load replaces all content, including the seed base and its tombstones; attach the seed and
+    // restore its tombstones again afterwards.
+    @Override
+    public void load(Path path) {
+        if (!Files.exists(path)) return;
+        synchronized (this) {
+            deletedSeedIds.clear();
+            attach(null);
+        }
+        overlay.load(path);
+    }
+
+    // Tombstone file kept next to a store file, e.g. vectors.store.tombstones.
+    public static Path tombstonePath(Path storePath) {
+        return storePath.resolveSibling(storePath.getFileName() + ".tombstones");
+    }
+
+    @Override
+    public void loadFromStream(InputStream stream) {
+        Set<String> existing = new HashSet<>();
+        for (VectorDocument document : overlay.list(null)) {
+            existing.add(document.id());
+        }
+        overlay.loadFromStream(stream);
+        if (base == null) return;
+        List<String> added = new ArrayList<>();
+        for (VectorDocument document : overlay.list(null)) {
+            if (!existing.contains(document.id())) added.add(document.id());
+        }
+        hideSeedCopies(added, false);
+    }
+
+    @Override
+    public void clear() {
+        synchronized (this) {
+            deletedSeedIds.clear();
+            attach(null);
+        }
+        overlay.clear();
+    }
+
+    // Tombstone the seed copies of ids, publishing a new tombstone set; returns how many visible seed
+    // documents were hidden. Deleted ids are remembered for persist(); stored ids are covered by the
+    // overlay copy instead.
+    private synchronized int hideSeedCopies(List<String> documentIds, boolean deleted) {
+        if (!deleted) documentIds.forEach(deletedSeedIds::remove);
+        SeedIndex.View view = base;
+        if (view == null || documentIds.isEmpty()) return 0;
+        BitSet hidden = (BitSet) tombstones.clone();
+        int newlyHidden = 0;
+        for (String documentId : documentIds) {
+            int index = view.index().indexOf(documentId);
+            if (index < 0) continue;
+            if (deleted) deletedSeedIds.add(documentId);
+            if (!hidden.get(index)) {
+                hidden.set(index);
+                newlyHidden++;
+            }
+        }
+        if (newlyHidden > 0) this.tombstones = hidden;
+        return newlyHidden;
+    }
+
+    private static void setTombstone(SeedIndex.View view, BitSet hidden, String documentId) {
+        int index = view.index().indexOf(documentId);
+        if (index >= 0) hidden.set(index);
+    }
+
+    // Cosine relevance on the same (cos + 1) / 2 scale as the seed index and the in-memory store.
+    private static double relevance(float[] left, float[] right) {
+        if (left.length != right.length) return 0.0;
+        double dot = 0.0;
+        double leftNorm = 0.0;
+        double rightNorm = 0.0;
+        for (int index = 0; index < left.length; index++) {
+            dot += left[index] * right[index];
+            leftNorm += left[index] * left[index];
+            rightNorm += right[index] * right[index];
+        }
+        if (leftNorm == 0.0 || rightNorm == 0.0) return 0.0;
+        return (dot / Math.sqrt(leftNorm * rightNorm) + 1.0) / 2.0;
+    }
+}
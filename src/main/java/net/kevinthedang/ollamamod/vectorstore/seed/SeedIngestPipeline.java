@@ -0,0 +1,385 @@
+package net.kevinthedang.ollamamod.vectorstore.seed;
+
+import net.kevinthedang.ollamamod.knowledge.Gazetteer;
+import net.kevinthedang.ollamamod.ollama.OllamaEndpointPool;
+import net.kevinthedang.ollamamod.vectorstore.ChunkIds;
+import net.kevinthedang.ollamamod.vectorstore.chunker.JsonChunker;
+import net.kevinthedang.ollamamod.vectorstore.chunker.StreamingJsonChunker;
+import net.kevinthedang.ollamamod.vectorstore.chunker.TextChunker;
+import net.kevinthedang.ollamamod.vectorstore.embedding.EmbeddingService;
+import net.kevinthedang.ollamamod.vectorstore.embedding.OllamaEmbeddingService;
+import net.kevinthedang.ollamamod.vectorstore.model.VectorDocument;
+import net.kevinthedang.ollamamod.vectorstore.model.VectorMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pipelined ingester that turns knowledge files into a seed store.
+ *
+ * The calling thread reads and chunks files and cuts the chunks into batches. Batches are embedded
+ * concurrently, with at most maxInFlight batches outstanding. A writer thread appends finished
+ * batches, in input order, to a journal next to the store and flushes after each batch; the
+ * journal is the checkpoint. Chunk ids are content hashes of the text and the file's path relative to
+ * the ingested root (see ChunkIds.sourceName), so they do not depend on the build machine, and a rerun after a crash skips every
+ * chunk already in the store or the journal. When all files are done, the store and journal are
+ * merged into a new store file, which replaces the old one atomically.
+ */
+public class SeedIngestPipeline {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SeedIngestPipeline.class);
+    private static final String JOURNAL_SUFFIX = ".journal";
+
+    // Prefix of the source names of seed documents.
+    public static final String SOURCE_PREFIX = "seed:";
+    private static final long PROGRESS_INTERVAL_MILLIS = 5000;
+
+    public record Settings(int batchSize, int maxInFlight, int maxAttempts, long retryDelayMillis) {
+        public static Settings defaults() {
+            return new Settings(32, 4, 3, 1000);
+        }
+    }
+
+    public record Report(int files, int embedded, int skipped, long elapsedMillis) {
+        // Embedding throughput of this run.
+        public double chunksPerSecond() {
+            return elapsedMillis == 0 ? 0.0 : embedded * 1000.0 / elapsedMillis;
+        }
+    }
+
+    private record Chunk(String id, String text, VectorMetadata metadata) {}
+
+    private record EmbeddedBatch(long sequence, List<VectorDocument> documents, Throwable failure) {}
+
+    private final EmbeddingService embeddingService;
+    private final TextChunker textChunker;
+    private final StreamingJsonChunker jsonChunker;
+    private final Settings settings;
+    private final Gazetteer gazetteer;
+
+    // Pipeline with the default chunkers and settings.
+    public SeedIngestPipeline(EmbeddingService embeddingService) {
+        this(embeddingService, new TextChunker(), new JsonChunker(), Settings.defaults());
+    }
+
+    // Pipeline with explicit chunkers and settings.
+    public SeedIngestPipeline(EmbeddingService embeddingService, TextChunker textChunker,
+                              JsonChunker jsonChunker, Settings settings) {
+        this(embeddingService, textChunker, jsonChunker, settings, Gazetteer.shared());
+    }
+
+    // Pipeline with explicit chunkers, settings and the entity dictionary chunks are tagged with.
+    public SeedIngestPipeline(EmbeddingService embeddingService, TextChunker textChunker,
+                              JsonChunker jsonChunker, Settings settings, Gazetteer gazetteer) {
+        this.embeddingService = embeddingService;
+        this.textChunker = textChunker;
+        this.jsonChunker = new StreamingJsonChunker(jsonChunker);
+        this.settings = settings;
+        this.gazetteer = gazetteer;
+    }
+
+    // Ollama embeddings for an offline run. Batches are ingestion work, which the shared scheduler holds
+    // to one request per host to keep villager turns responsive; an offline run has no turns, so its own
+    // pool lets all maxInFlight batches through at once.
+    public static OllamaEmbeddingService ollamaEmbeddings(String baseUrl, String model, Settings settings) {
+        OllamaEndpointPool endpointPool = OllamaEndpointPool.single(baseUrl);
+        endpointPool.scheduler().configure(settings.maxInFlight(), settings.maxInFlight(), Map.of());
+        return new OllamaEmbeddingService(endpointPool, model);
+    }
+
+    // Journal that checkpoints a run writing to the given store.
+    public static Path journalPath(Path storePath) {
+        return storePath.resolveSibling(storePath.getFileName() + JOURNAL_SUFFIX);
+    }
+
+    // Ingest the files, which lie under root, into the store, resuming from the journal of an
+    // interrupted run. Throws if embedding keeps failing; everything embedded so far stays in the journal.
+    public Report run(Path root, List<Path> files, Path storePath) throws IOException {
+        long startedAt = System.currentTimeMillis();
+        Path journal = journalPath(storePath);
+        Set<String> done = new HashSet<>();
+        int existingCount = scanIds(storePath, done);
+        int resumed = compactJournal(journal, done);
+        if (resumed > 0) {
+            LOGGER.info("Resuming seed ingestion: {} chunks already embedded in {}", resumed, journal);
+        }
+
+        JournalWriter writer = new JournalWriter(journal);
+        writer.start();
+        int skipped = 0;
+        int fileCount = 0;
+        try {
+            List<Chunk> batch = new ArrayList<>(settings.batchSize());
+            for (Path file : files) {
+                if (writer.failure != null) break;
+                List<String> chunks = chunkFile(file);
+                if (chunks == null) continue;
+                fileCount++;
+                String source = ChunkIds.sourceName(SOURCE_PREFIX, root, file);
+                VectorMetadata baseMetadata = VectorMetadata.document();
+                for (int index = 0; index < chunks.size(); index++) {
+                    String text = chunks.get(index);
+                    String id = ChunkIds.chunkId(source, text);
+                    if (!done.add(id)) {
+                        skipped++;
+                        continue;
+                    }
+                    batch.add(new Chunk(id, text,
+                        baseMetadata.withChunk(index, chunks.size()).withTags(gazetteer.tags(text))));
+                    if (batch.size() == settings.batchSize()) {
+                        writer.submit(batch);
+                        batch = new ArrayList<>(settings.batchSize());
+                    }
+                }
+            }
+            if (!batch.isEmpty() && writer.failure == null) {
+                writer.submit(batch);
+            }
+        } finally {
+            writer.finish();
+        }
+        if (writer.failure != null) {
+            throw new IOException("Seed ingestion stopped after " + writer.written
+                + " chunks; rerun to resume from " + journal, writer.failure);
+        }
+
+        mergeInto(storePath, journal, existingCount, resumed + writer.written);
+        long elapsed = System.currentTimeMillis() - startedAt;
+        return new Report(fileCount, writer.written, skipped, elapsed);
+    }
+
+    // Chunk one file; null if the file type is not supported or it cannot be read.
+    private List<String> chunkFile(Path file) {
+        String lowerCaseName = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        try {
+            if (lowerCaseName.endsWith(".json")) {
+                List<String> chunks = new ArrayList<>();
+                try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                    jsonChunker.chunk(reader, chunks::add);
+                }
+                return chunks;
+            }
+            if (lowerCaseName.endsWith(".txt")) {
+                return textChunker.chunk(Files.readString(file, StandardCharsets.UTF_8));
+            }
+            LOGGER.info("Skipping unsupported file: {}", file);
+        } catch (IOException | UncheckedIOException | IllegalArgumentException exception) {
+            LOGGER.warn("Failed to read {}: {}", file, exception.getMessage());
+        }
+        return null;
+    }
+
+    // Record the ids of a store file; returns its document count.
+    private static int scanIds(Path storePath, Set<String> ids) throws IOException {
+        if (!Files.exists(storePath)) return 0;
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(storePath)))) {
+            VectorDocument.StoreHeader header = VectorDocument.readStoreHeader(input);
+            for (int index = 0; index < header.count(); index++) {
+                ids.add(VectorDocument.readFrom(input, header.version()).id());
+            }
+            return header.count();
+        }
+    }
+
+    // Keep the complete records of a journal, dropping a record cut off by a crash; returns how many remain.
+    private static int compactJournal(Path journal, Set<String> ids) throws IOException {
+        if (!Files.exists(journal)) return 0;
+        List<VectorDocument> records = new ArrayList<>();
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(journal)))) {
+            while (true) {
+                VectorDocument document = VectorDocument.readFrom(input);
+                if (ids.add(document.id())) records.add(document);
+            }
+        } catch (EOFException endOfJournal) {
+            // Either the end of the journal or a partially written last record
+        }
+        Path compacted = journal.resolveSibling(journal.getFileName() + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(compacted)))) {
+            for (VectorDocument document : records) {
+                document.writeTo(output);
+            }
+        }
+        Files.move(compacted, journal, StandardCopyOption.REPLACE_EXISTING);
+        return records.size();
+    }
+
+    // Write store records followed by journal records to a new store file, then swap it in and drop the journal.
+    private static void mergeInto(Path storePath, Path journal, int existingCount, int journalCount) throws IOException {
+        if (journalCount == 0) {
+            Files.deleteIfExists(journal);
+            return;
+        }
+        Path parent = storePath.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path merged = storePath.resolveSibling(storePath.getFileName() + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(merged)))) {
+            VectorDocument.writeStoreHeader(output, existingCount + journalCount);
+            if (existingCount > 0) {
+                try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(storePath)))) {
+                    VectorDocument.StoreHeader header = VectorDocument.readStoreHeader(input);
+                    for (int index = 0; index < existingCount; index++) {
+                        VectorDocument.readFrom(input, header.version()).writeTo(output);
+                    }
+                }
+            }
+            try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(journal)))) {
+                for (int index = 0; index < journalCount; index++) {
+                    VectorDocument.readFrom(input).writeTo(output);
+                }
+            }
+        }
+        try {
+            Files.move(merged, storePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException atomicMoveUnsupported) {
+            Files.move(merged, storePath, StandardCopyOption.REPLACE_EXISTING);
+        }
+        Files.deleteIfExists(journal);
+    }
+
+    // Embeds submitted batches concurrently and appends them to the journal in submission order.
+    private final class JournalWriter {
+        private final Path journal;
+        private final Semaphore inFlight = new Semaphore(settings.maxInFlight());
+        private final BlockingQueue<EmbeddedBatch> completed = new LinkedBlockingQueue<>();
+        private final Thread thread;
+        private long submitted = 0;
+        private volatile long expected = -1;
+        private volatile Throwable failure;
+        private volatile int written = 0;
+
+        private JournalWriter(Path journal) {
+            this.journal = journal;
+            this.thread = new Thread(this::writeLoop, "SeedIngest-Writer");
+            this.thread.setDaemon(true);
+        }
+
+        void start() {
+            thread.start();
+        }
+
+        // Hand a batch to the embedding stage, blocking while maxInFlight batches are outstanding.
+        void submit(List<Chunk> batch) {
+            try {
+                while (!inFlight.tryAcquire(200, TimeUnit.MILLISECONDS)) {
+                    if (failure != null) return;
+                }
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                failure = exception;
+                return;
+            }
+            if (failure != null) {
+                inFlight.release();
+                return;
+            }
+            long sequence = submitted++;
+            embed(batch, 1).whenComplete((documents, throwable) ->
+                completed.add(new EmbeddedBatch(sequence, documents, throwable)));
+        }
+
+        // Wait until every submitted batch is written or the run failed.
+        void finish() {
+            expected = submitted;
+            completed.add(new EmbeddedBatch(-1, List.of(), null));
+            try {
+                thread.join();
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                if (failure == null) failure = exception;
+            }
+        }
+
+        private CompletableFuture<List<VectorDocument>> embed(List<Chunk> batch, int attempt) {
+            List<String> texts = new ArrayList<>(batch.size());
+            for (Chunk chunk : batch) {
+                texts.add(chunk.text());
+            }
+            return embeddingService.embedBatch(texts)
+                .thenApply(vectors -> {
+                    List<VectorDocument> documents = new ArrayList<>(batch.size());
+                    for (int index = 0; index < batch.size(); index++) {
+                        Chunk chunk = batch.get(index);
+                        documents.add(new VectorDocument(chunk.id(), chunk.text(), vectors.get(index), chunk.metadata()));
+                    }
+                    return documents;
+                })
+                .handle((documents, throwable) -> {
+                    if (throwable == null) return CompletableFuture.completedFuture(documents);
+                    if (attempt >= settings.maxAttempts() || failure != null) {
+                        return CompletableFuture.<List<VectorDocument>>failedFuture(throwable);
+                    }
+                    LOGGER.warn("Embedding batch failed (attempt {}), retrying: {}", attempt, throwable.getMessage());
+                    return CompletableFuture.supplyAsync(() -> null,
+                            CompletableFuture.delayedExecutor(settings.retryDelayMillis() * attempt, TimeUnit.MILLISECONDS))
+                        .thenCompose(ignored -> embed(batch, attempt + 1));
+                })
+                .thenCompose(future -> future);
+        }
+
+        private void writeLoop() {
+            Map<Long, EmbeddedBatch> pending = new TreeMap<>();
+            long next = 0;
+            long lastProgressAt = System.currentTimeMillis();
+            long startedAt = lastProgressAt;
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(journal, StandardOpenOption.CREATE, StandardOpenOption.APPEND)))) {
+                while (expected < 0 || next < expected) {
+                    EmbeddedBatch batch = completed.take();
+                    if (batch.sequence() < 0) continue;
+                    pending.put(batch.sequence(), batch);
+                    EmbeddedBatch ready;
+                    while ((ready = pending.remove(next)) != null) {
+                        next++;
+                        inFlight.release();
+                        if (ready.failure() != null) {
+                            if (failure == null) failure = ready.failure();
+                            continue;
+                        }
+                        if (failure != null) continue;
+                        for (VectorDocument document : ready.documents()) {
+                            document.writeTo(output);
+                        }
+                        // Flushing per batch makes every written batch survive a crash
+                        output.flush();
+                        written += ready.documents().size();
+                    }
+                    long now = System.currentTimeMillis();
+                    if (now - lastProgressAt >= PROGRESS_INTERVAL_MILLIS) {
+                        lastProgressAt = now;
+                        LOGGER.info("Seed ingestion: {} chunks embedded ({} chunks/s)", written,
+                            String.format(Locale.ROOT, "%.1f", written * 1000.0 / Math.max(1, now - startedAt)));
+                    }
+                }
+            } catch (IOException exception) {
+                if (failure == null) failure = exception;
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                if (failure == null) failure = exception;
+            }
+        }
+    }
+}
@@ -3,12 +3,14 @@ package net.kevinthedang.ollamamod.vectorstore.store;
 import dev.langchain4j.data.document.Metadata;
 import dev.langchain4j.data.embedding.Embedding;
 import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.CosineSimilarity;
 import dev.langchain4j.store.embedding.EmbeddingMatch;
 import dev.langchain4j.store.embedding.filter.Filter;
 import dev.langchain4j.store.embedding.filter.MetadataFilterBuilder;
 import dev.langchain4j.store.embedding.filter.logical.And;
 import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
 import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.RelevanceScore;
 import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
 import net.kevinthedang.ollamamod.vectorstore.model.MetadataFilter;
 import net.kevinthedang.ollamamod.vectorstore.model.VectorDocument;
@@ -26,31 +28,50 @@ import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class LangChain4jVectorStore implements VectorStore {
     private static final Logger LOGGER = LoggerFactory.getLogger(LangChain4jVectorStore.class);
     private final InMemoryEmbeddingStore<TextSegment> embeddingStore;
     private final Map<String, VectorDocument> documentIndex;
     private final Map<String, String> embeddingIdIndex;
+    // Entity tag -> ids of documents carrying it, so tag-filtered queries only score those documents.
+    // The indexes are concurrent maps: queries run on chat threads while ingestion writes.
+    private final Map<String, Set<String>> tagIndex;
 
     // Initialize an empty in-memory store and index.
     public LangChain4jVectorStore() {
         this.embeddingStore = new InMemoryEmbeddingStore<>();
-        this.documentIndex = new HashMap<>();
-        this.embeddingIdIndex = new HashMap<>();
+        this.documentIndex = new ConcurrentHashMap<>();
+        this.embeddingIdIndex = new ConcurrentHashMap<>();
+        this.tagIndex = new ConcurrentHashMap<>();
     }
 
-    // Store a single document in the embedding store and index.
+    // Store a single document in the embedding store and index, replacing any document with the same id.
     @Override
     public void store(VectorDocument document) {
+        String previousEmbeddingId = embeddingIdIndex.get(document.id());
+        if (previousEmbeddingId != null) {
+            embeddingStore.remove(previousEmbeddingId);
+        }
         TextSegment segment = toSegment(document);
         String embeddingId = embeddingStore.add(Embedding.from(document.embedding()), segment);
-        documentIndex.put(document.id(), document);
+        VectorDocument previous = documentIndex.put(document.id(), document);
         embeddingIdIndex.put(document.id(), embeddingId);
+        if (previous != null) untag(previous);
+        for (String tag : document.metadata().tags()) {
+            tagIndex.compute(tag, (ignored, ids) -> {
+                Set<String> tagged = ids != null ? ids : ConcurrentHashMap.newKeySet();
+                tagged.add(document.id());
+                return tagged;
+            });
+        }
     }
 
     // Store multiple documents in the embedding store and index.
@@ -65,6 +86,9 @@ public class LangChain4jVectorStore implements VectorStore {
     @Override
     public List<VectorDocument> query(float[] queryEmbedding, MetadataFilter filter,
                                       int topK, double minScore) {
+        if (filter != null && filter.anyTags() != null) {
+            return queryTagged(queryEmbedding, filter, topK, minScore);
+        }
         Filter metadataFilter = toLangChainFilter(filter);
         EmbeddingSearchRequest request = EmbeddingSearchRequest.builder()
             .queryEmbedding(Embedding.from(queryEmbedding))
@@ -87,6 +111,43 @@ public class LangChain4jVectorStore implements VectorStore {
         return results;
     }
 
+    // Score only the documents carrying one of the filter's tags.
+    private List<VectorDocument> queryTagged(float[] queryEmbedding, MetadataFilter filter, int topK, double minScore) {
+        Set<String> candidates = new HashSet<>();
+        for (String tag : filter.anyTags()) {
+            candidates.addAll(tagIndex.getOrDefault(tag, Set.of()));
+        }
+        Embedding query = Embedding.from(queryEmbedding);
+        List<EmbeddingMatch<VectorDocument>> matches = new ArrayList<>();
+        for (String id : candidates) {
+            VectorDocument document = documentIndex.get(id);
+            if (document == null || !filter.matches(document.metadata())) continue;
+            double score = RelevanceScore.fromCosineSimilarity(
+                CosineSimilarity.between(query, Embedding.from(document.embedding())));
+            if (score >= minScore) {
+                matches.add(new EmbeddingMatch<>(score, id, null, document));
+            }
+        }
+        matches.sort(Comparator.comparingDouble((EmbeddingMatch<VectorDocument> match) -> match.score()).reversed());
+        List<VectorDocument> results = new ArrayList<>(Math.min(topK, matches.size()));
+        for (int index = 0; index < matches.size() && index < topK; index++) {
+            results.add(matches.get(index).embedded());
+        }
+        return results;
+    }
+
+    // List stored documents matching the filter.
+    @Override
+    public List<VectorDocument> list(MetadataFilter filter) {
+        List<VectorDocument> results = new ArrayList<>();
+        for (VectorDocument document : documentIndex.values()) {
+            if (matchesFilter(document, filter)) {
+                results.add(document);
+            }
+        }
+        return results;
+    }
+
     // Retrieve a stored document by id.
     @Override
     public Optional<VectorDocument> getById(String documentId) {
@@ -100,6 +161,7 @@ public class LangChain4jVectorStore implements VectorStore {
         if (document == null) {
             return false;
         }
+        untag(document);
         String embeddingId = embeddingIdIndex.remove(documentId);
         if (embeddingId != null) {
             embeddingStore.removeAll(List.of(embeddingId));
@@ -114,9 +176,7 @@ public class LangChain4jVectorStore implements VectorStore {
     public int deleteByFilter(MetadataFilter filter) {
         if (filter == null) {
             int removed = documentIndex.size();
-            documentIndex.clear();
-            embeddingStore.removeAll();
-            embeddingIdIndex.clear();
+            clear();
             return removed;
         }
 
@@ -129,7 +189,7 @@ public class LangChain4jVectorStore implements VectorStore {
             }
         }
         for (String id : toRemove) {
-            documentIndex.remove(id);
+            untag(documentIndex.remove(id));
             String embeddingId = embeddingIdIndex.remove(id);
             if (embeddingId != null) {
                 embeddingIdsToRemove.add(embeddingId);
@@ -164,7 +224,7 @@ public class LangChain4jVectorStore implements VectorStore {
             Files.createDirectories(path.toAbsolutePath().getParent());
             try (DataOutputStream outputStream = new DataOutputStream(
                 new BufferedOutputStream(Files.newOutputStream(path)))) {
-                outputStream.writeInt(documentIndex.size());
+                VectorDocument.writeStoreHeader(outputStream, documentIndex.size());
                 for (VectorDocument document : documentIndex.values()) {
                     document.writeTo(outputStream);
                 }
@@ -180,11 +240,10 @@ public class LangChain4jVectorStore implements VectorStore {
         if (!Files.exists(path)) return;
         try (DataInputStream inputStream = new DataInputStream(
             new BufferedInputStream(Files.newInputStream(path)))) {
-            int documentCount = inputStream.readInt();
-            documentIndex.clear();
-            embeddingStore.removeAll();
-            for (int index = 0; index < documentCount; index++) {
-                VectorDocument document = VectorDocument.readFrom(inputStream);
+            VectorDocument.StoreHeader header = VectorDocument.readStoreHeader(inputStream);
+            clear();
+            for (int index = 0; index < header.count(); index++) {
+                VectorDocument document = VectorDocument.readFrom(inputStream, header.version());
                 store(document);
             }
         } catch (EOFException eof) {
@@ -198,9 +257,9 @@ public class LangChain4jVectorStore implements VectorStore {
     @Override
     public void loadFromStream(InputStream stream) {
         try (DataInputStream inputStream = new DataInputStream(new BufferedInputStream(stream))) {
-            int documentCount = inputStream.readInt();
-            for (int index = 0; index < documentCount; index++) {
-                VectorDocument document = VectorDocument.readFrom(inputStream);
+            VectorDocument.StoreHeader header = VectorDocument.readStoreHeader(inputStream);
+            for (int index = 0; index < header.count(); index++) {
+                VectorDocument document = VectorDocument.readFrom(inputStream, header.version());
                 store(document);
             }
         } catch (EOFException eof) {
@@ -216,6 +275,17 @@ public class LangChain4jVectorStore implements VectorStore {
         documentIndex.clear();
         embeddingStore.removeAll();
         embeddingIdIndex.clear();
+        tagIndex.clear();
+    }
+
+    // Drop a document from the tag index.
+    private void untag(VectorDocument document) {
+        for (String tag : document.metadata().tags()) {
+            tagIndex.computeIfPresent(tag, (ignored, ids) -> {
+                ids.remove(document.id());
+                return ids.isEmpty() ? null : ids;
+            });
+        }
     }
 
     // Convert a VectorDocument into a LangChain4j TextSegment with metadata.
@@ -238,16 +308,7 @@ public class LangChain4jVectorStore implements VectorStore {
 
     // Evaluate whether a document matches the metadata filter.
     private static boolean matchesFilter(VectorDocument document, MetadataFilter filter) {
-        if (filter == null) return true;
-        VectorMetadata metadata = document.metadata();
-
-        if (filter.type() != null && !filter.type().equals(metadata.type())) return false;
-        if (filter.villagerId() != null && !filter.villagerId().equals(metadata.villagerId())) return false;
-        if (filter.playerId() != null && !filter.playerId().equals(metadata.playerId())) return false;
-        if (filter.timestampAfter() != null && metadata.timestamp() <= filter.timestampAfter()) return false;
-        if (filter.timestampBefore() != null && metadata.timestamp() >= filter.timestampBefore()) return false;
-
-        return true;
+        return filter == null || filter.matches(document.metadata());
     }
 
     // Convert MetadataFilter to a LangChain4j Filter for server-side filtering.
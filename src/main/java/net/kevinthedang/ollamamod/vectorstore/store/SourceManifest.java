@@ -0,0 +1,82 @@
+package net.kevinthedang.ollamamod.vectorstore.store;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// On-disk record of the chunk ids each ingested source file produced, in chunk order.
+public class SourceManifest {
+    private final Map<String, List<String>> chunkIdsBySource = new ConcurrentHashMap<>();
+
+    // Chunk ids recorded for a source, if it was ingested before.
+    public Optional<List<String>> chunkIds(String source) {
+        return Optional.ofNullable(chunkIdsBySource.get(source));
+    }
+
+    // Record the chunk ids a source produced on its latest ingestion.
+    public void put(String source, List<String> chunkIds) {
+        chunkIdsBySource.put(source, List.copyOf(chunkIds));
+    }
+
+    // Names of every recorded source.
+    public Set<String> sources() {
+        return Set.copyOf(chunkIdsBySource.keySet());
+    }
+
+    // Forget a source.
+    public void remove(String source) {
+        chunkIdsBySource.remove(source);
+    }
+
+    // Forget every source.
+    public void clear() {
+        chunkIdsBySource.clear();
+    }
+
+    // Replace the contents with the manifest at the path; a missing file leaves it empty.
+    public void load(Path path) {
+        chunkIdsBySource.clear();
+        if (!Files.exists(path)) return;
+        try {
+            JsonObject root = JsonParser.parseString(Files.readString(path, StandardCharsets.UTF_8)).getAsJsonObject();
+            for (Map.Entry<String, JsonElement> entry : root.entrySet()) {
+                List<String> ids = new ArrayList<>();
+                for (JsonElement id : entry.getValue().getAsJsonArray()) {
+                    ids.add(id.getAsString());
+                }
+                chunkIdsBySource.put(entry.getKey(), List.copyOf(ids));
+            }
+        } catch (IOException | RuntimeException exception) {
+            throw new RuntimeException("Failed to read source manifest: " + path, exception);
+        }
+    }
+
+    // Write the manifest to disk.
+    public void write(Path path) {
+        JsonObject root = new JsonObject();
+        for (Map.Entry<String, List<String>> entry : chunkIdsBySource.entrySet()) {
+            JsonArray ids = new JsonArray();
+            entry.getValue().forEach(ids::add);
+            root.add(entry.getKey(), ids);
+        }
+        try {
+            Files.createDirectories(path.toAbsolutePath().getParent());
+            Files.writeString(path, new GsonBuilder().setPrettyPrinting().create().toJson(root), StandardCharsets.UTF_8);
+        } catch (IOException exception) {
+            throw new RuntimeException("Failed to write source manifest", exception);
+        }
+    }
+}
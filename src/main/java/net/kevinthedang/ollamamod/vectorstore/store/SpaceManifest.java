@@ -0,0 +1,58 @@
+package net.kevinthedang.ollamamod.vectorstore.store;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import net.kevinthedang.ollamamod.vectorstore.model.EmbeddingSpace;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+// On-disk record of which embedding space each store segment belongs to.
+// migrationTarget is null unless a re-embedding migration was in progress when the store was saved.
+public record SpaceManifest(EmbeddingSpace active, EmbeddingSpace migrationTarget) {
+
+    // Read a manifest if one exists next to the store.
+    public static Optional<SpaceManifest> read(Path path) {
+        if (!Files.exists(path)) return Optional.empty();
+        try {
+            JsonObject root = JsonParser.parseString(Files.readString(path, StandardCharsets.UTF_8)).getAsJsonObject();
+            EmbeddingSpace active = readSpace(root.getAsJsonObject("active"));
+            EmbeddingSpace target = root.has("migrationTarget")
+                ? readSpace(root.getAsJsonObject("migrationTarget"))
+                : null;
+            return Optional.of(new SpaceManifest(active, target));
+        } catch (IOException | RuntimeException exception) {
+            throw new RuntimeException("Failed to read vector store manifest: " + path, exception);
+        }
+    }
+
+    // Write this manifest to disk.
+    public void write(Path path) {
+        JsonObject root = new JsonObject();
+        root.add("active", writeSpace(active));
+        if (migrationTarget != null) {
+            root.add("migrationTarget", writeSpace(migrationTarget));
+        }
+        try {
+            Files.createDirectories(path.toAbsolutePath().getParent());
+            Files.writeString(path, new GsonBuilder().setPrettyPrinting().create().toJson(root), StandardCharsets.UTF_8);
+        } catch (IOException exception) {
+            throw new RuntimeException("Failed to write vector store manifest", exception);
+        }
+    }
+
+    private static EmbeddingSpace readSpace(JsonObject json) {
+        return new EmbeddingSpace(json.get("model").getAsString(), json.get("dimension").getAsInt());
+    }
+
+    private static JsonObject writeSpace(EmbeddingSpace space) {
+        JsonObject json = new JsonObject();
+        json.addProperty("model", space.model());
+        json.addProperty("dimension", space.dimension());
+        return json;
+    }
+}
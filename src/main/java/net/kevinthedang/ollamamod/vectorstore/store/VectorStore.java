@@ -9,15 +9,18 @@ import java.util.List;
 import java.util.Optional;
 
 public interface VectorStore {
-    // Store a single document.
+    // Store a single document, replacing any document with the same id.
     void store(VectorDocument document);
-    // Store multiple documents.
+    // Store multiple documents, replacing documents with the same ids.
     void storeAll(List<VectorDocument> documents);
 
     // Query the store with an embedding and optional metadata filter.
     List<VectorDocument> query(float[] queryEmbedding, MetadataFilter filter,
                                int topK, double minScore);
 
+    // List every document matching a filter (null matches all).
+    List<VectorDocument> list(MetadataFilter filter);
+
     // Retrieve a document by its id.
     Optional<VectorDocument> getById(String documentId);
     // Delete a document by id.
@@ -0,0 +1,125 @@
+package net.kevinthedang.ollamamod.vectorstore.tokenizer;
+
+import java.util.List;
+
+/**
+ * Fast approximation of a BPE / WordPiece tokenizer that never builds a vocabulary.
+ *
+ * Text is split the way BPE pre-tokenizers split it: runs of letters, runs of digits, single
+ * punctuation or symbol characters, and whitespace. Punctuation, symbols, ideographs and line
+ * breaks cost one token each, spaces cost nothing (they merge into the next word), and letter and
+ * digit runs cost one token per few characters. The characters-per-token ratios start at typical
+ * English values and can be calibrated against the token counts the real model reports.
+ */
+public class BpeTokenEstimator implements TokenEstimator {
+    private static final double LETTERS_PER_TOKEN = 4.0;
+    private static final double DIGITS_PER_TOKEN = 3.0;
+    private static final double MIN_SCALE = 0.5;
+    private static final double MAX_SCALE = 2.0;
+
+    private static final BpeTokenEstimator SHARED = new BpeTokenEstimator();
+
+    // Tokens per character of letter/digit runs relative to the defaults; raised when the model splits words finer
+    private volatile double scale = 1.0;
+
+    // Estimator shared by the default chunkers; calibrated once the embedding model is reachable.
+    public static BpeTokenEstimator shared() {
+        return SHARED;
+    }
+
+    @Override
+    public int count(CharSequence text, int start, int end) {
+        double currentScale = scale;
+        int tokens = 0;
+        int index = start;
+        while (index < end) {
+            int pieceEnd = pieceEnd(text, index, end);
+            tokens += pieceCost(text, index, pieceEnd, currentScale);
+            index = pieceEnd;
+        }
+        return tokens;
+    }
+
+    // Walk whole pieces until the budget runs out; a single run longer than the budget is cut inside.
+    @Override
+    public int fit(CharSequence text, int start, int limit, int budget) {
+        double currentScale = scale;
+        int tokens = 0;
+        int index = start;
+        while (index < limit) {
+            int pieceEnd = pieceEnd(text, index, limit);
+            int cost = pieceCost(text, index, pieceEnd, currentScale);
+            if (tokens + cost > budget) {
+                if (index > start) return index;
+                double perToken = charsPerToken(text.charAt(index), currentScale);
+                int partial = (int) Math.floor(Math.max(1, budget) * perToken);
+                return Math.min(pieceEnd, index + Math.max(1, partial));
+            }
+            tokens += cost;
+            index = pieceEnd;
+        }
+        return limit;
+    }
+
+    // Fit the ratio so the estimate for the samples matches the token count the model reported for them.
+    public void calibrate(List<? extends CharSequence> samples, int actualTokens) {
+        int fixedTokens = 0;
+        double runTokens = 0.0;
+        for (CharSequence sample : samples) {
+            int index = 0;
+            int length = sample.length();
+            while (index < length) {
+                int pieceEnd = pieceEnd(sample, index, length);
+                char first = sample.charAt(index);
+                if (isRunChar(first)) {
+                    runTokens += (pieceEnd - index) / charsPerToken(first, 1.0);
+                } else {
+                    fixedTokens += pieceCost(sample, index, pieceEnd, 1.0);
+                }
+                index = pieceEnd;
+            }
+        }
+        if (runTokens <= 0.0 || actualTokens <= fixedTokens) return;
+        double fitted = (actualTokens - fixedTokens) / runTokens;
+        scale = Math.max(MIN_SCALE, Math.min(MAX_SCALE, fitted));
+    }
+
+    // Current calibration factor (1.0 until calibrated).
+    public double scale() {
+        return scale;
+    }
+
+    // End of the pre-token starting at index.
+    private static int pieceEnd(CharSequence text, int index, int end) {
+        char first = text.charAt(index);
+        int next = index + 1;
+        if (Character.isLetter(first) && !Character.isIdeographic(first)) {
+            while (next < end && Character.isLetter(text.charAt(next)) && !Character.isIdeographic(text.charAt(next))) next++;
+        } else if (Character.isDigit(first)) {
+            while (next < end && Character.isDigit(text.charAt(next))) next++;
+        } else if (first == ' ' || first == '\t') {
+            while (next < end && (text.charAt(next) == ' ' || text.charAt(next) == '\t')) next++;
+        } else if (Character.isHighSurrogate(first) && next < end && Character.isLowSurrogate(text.charAt(next))) {
+            next++;
+        }
+        return next;
+    }
+
+    private static int pieceCost(CharSequence text, int start, int end, double currentScale) {
+        char first = text.charAt(start);
+        if (first == ' ' || first == '\t') return 0;
+        if (isRunChar(first)) {
+            return (int) Math.ceil((end - start) / charsPerToken(first, currentScale));
+        }
+        // Punctuation, symbols, ideographs, line breaks and other characters: one token each
+        return 1;
+    }
+
+    private static boolean isRunChar(char c) {
+        return Character.isDigit(c) || (Character.isLetter(c) && !Character.isIdeographic(c));
+    }
+
+    private static double charsPerToken(char first, double currentScale) {
+        return (Character.isDigit(first) ? DIGITS_PER_TOKEN : LETTERS_PER_TOKEN) / currentScale;
+    }
+}
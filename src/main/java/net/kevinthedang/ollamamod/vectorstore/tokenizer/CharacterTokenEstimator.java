@@ -0,0 +1,20 @@
+package net.kevinthedang.ollamamod.vectorstore.tokenizer;
+
+/**
+ * Counts every character as one token, so chunk sizes are plain character counts.
+ */
+public final class CharacterTokenEstimator implements TokenEstimator {
+    public static final CharacterTokenEstimator INSTANCE = new CharacterTokenEstimator();
+
+    private CharacterTokenEstimator() {}
+
+    @Override
+    public int count(CharSequence text, int start, int end) {
+        return end - start;
+    }
+
+    @Override
+    public int fit(CharSequence text, int start, int limit, int budget) {
+        return Math.min(limit, start + Math.max(1, budget));
+    }
+}
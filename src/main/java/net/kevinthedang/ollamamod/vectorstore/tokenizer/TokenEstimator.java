@@ -0,0 +1,34 @@
+package net.kevinthedang.ollamamod.vectorstore.tokenizer;
+
+/**
+ * Estimates how many model tokens a piece of text turns into.
+ *
+ * Estimates must be additive where the text is split between two pre-tokens (for example at
+ * whitespace or punctuation), so chunkers can keep running totals instead of re-counting.
+ */
+public interface TokenEstimator {
+
+    // Estimated token count of text[start, end).
+    int count(CharSequence text, int start, int end);
+
+    // Estimated token count of the whole text.
+    default int count(CharSequence text) {
+        return count(text, 0, text.length());
+    }
+
+    // Largest end offset in (start, limit] whose text fits the token budget; always advances by at least one char.
+    default int fit(CharSequence text, int start, int limit, int budget) {
+        if (count(text, start, limit) <= budget) return limit;
+        int low = start + 1;
+        int high = limit;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (count(text, start, middle) <= budget) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+}
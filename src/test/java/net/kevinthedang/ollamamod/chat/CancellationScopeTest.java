@@ -0,0 +1,75 @@
+package net.kevinthedang.ollamamod.chat;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CancellationScopeTest {
+
+	// Hooks run once on cancel; hooks registered afterwards run right away.
+	@Test
+	public void runsHooksOnceAndLateHooksImmediately() {
+		CancellationScope scope = new CancellationScope();
+		AtomicInteger aborted = new AtomicInteger();
+		scope.onCancel(aborted::incrementAndGet);
+		CompletableFuture<String> exchange = scope.track(new CompletableFuture<>());
+
+		scope.cancel();
+		scope.cancel();
+		assertEquals(1, aborted.get());
+		assertTrue(exchange.isCancelled());
+		assertThrows(CancellationException.class, scope::throwIfCancelled);
+
+		scope.onCancel(aborted::incrementAndGet);
+		assertEquals(2, aborted.get());
+	}
+
+	// Guarded callbacks go quiet after cancel, so an aborted reply reports neither text nor errors.
+	@Test
+	public void guardedCallbacksStopAfterCancel() {
+		CancellationScope scope = new CancellationScope();
+		List<String> events = new ArrayList<>();
+		VillagerBrain.StreamCallbacks guarded = scope.guard(new VillagerBrain.StreamCallbacks() {
+			@Override
+			public void onDelta(String delta) {
+				events.add("delta:" + delta);
+			}
+
+			@Override
+			public void onCompleted(String fullReply) {
+				events.add("done:" + fullReply);
+			}
+
+			@Override
+			public void onError(Throwable t) {
+				events.add("error");
+			}
+		});
+
+		guarded.onDelta("Hello");
+		scope.cancel();
+		guarded.onDelta(" there");
+		guarded.onError(new CancellationException());
+		guarded.onCompleted("Hello there");
+		assertEquals(List.of("delta:Hello"), events);
+	}
+
+	// Cancellation is recognised through future wrappers.
+	@Test
+	public void recognisesWrappedCancellation() {
+		assertTrue(CancellationScope.isCancellation(new CompletionException(new CancellationException())));
+		assertTrue(CancellationScope.isCancellation(new CancellationException()));
+		assertFalse(CancellationScope.isCancellation(new CompletionException(new IllegalStateException())));
+		assertFalse(CancellationScope.isCancellation(null));
+	}
+}
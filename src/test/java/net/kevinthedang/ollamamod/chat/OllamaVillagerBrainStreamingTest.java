@@ -0,0 +1,82 @@
+package net.kevinthedang.ollamamod.chat;
+
+import com.sun.net.httpserver.HttpServer;
+import net.kevinthedang.ollamamod.ollama.OllamaEndpointPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OllamaVillagerBrainStreamingTest {
+	private HttpServer server;
+
+	@AfterEach
+	public void stopServer() {
+		if (server != null) server.stop(0);
+	}
+
+	// Cancelling a streaming reply closes the connection, so the server stops generating.
+	@Test
+	public void cancelAbortsTheStreamingExchange() throws Exception {
+		CountDownLatch firstChunkSent = new CountDownLatch(1);
+		CountDownLatch serverStopped = new CountDownLatch(1);
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/api/chat", exchange -> {
+			exchange.getRequestBody().readAllBytes();
+			exchange.sendResponseHeaders(200, 0);
+			try (OutputStream out = exchange.getResponseBody()) {
+				// Generate "forever" until the client goes away
+				for (int chunk = 0; chunk < 600; chunk++) {
+					out.write("{\"message\":{\"content\":\"word \"},\"done\":false}\n".getBytes(StandardCharsets.UTF_8));
+					out.flush();
+					firstChunkSent.countDown();
+					Thread.sleep(50);
+				}
+			} catch (IOException | InterruptedException expected) {
+				// Client disconnected
+			} finally {
+				serverStopped.countDown();
+			}
+		});
+		server.start();
+
+		OllamaEndpointPool pool = OllamaEndpointPool.single("http://127.0.0.1:" + server.getAddress().getPort());
+		OllamaVillagerBrain brain = new OllamaVillagerBrain(pool);
+		AtomicBoolean reportedAfterCancel = new AtomicBoolean();
+		Cancellable reply = brain.getReplyStreaming(new VillagerBrain.Context(UUID.randomUUID(), "Bob", "farmer", "overworld"),
+			List.of(), "hello", new VillagerBrain.StreamCallbacks() {
+				@Override
+				public void onDelta(String delta) {
+				}
+
+				@Override
+				public void onCompleted(String fullReply) {
+					reportedAfterCancel.set(true);
+				}
+
+				@Override
+				public void onError(Throwable t) {
+					reportedAfterCancel.set(true);
+				}
+			});
+
+		assertTrue(firstChunkSent.await(5, TimeUnit.SECONDS));
+		reply.cancel();
+
+		assertTrue(serverStopped.await(5, TimeUnit.SECONDS), "Server should see the client disconnect");
+		assertFalse(reportedAfterCancel.get(), "A cancelled reply neither completes nor fails");
+		assertEquals(0, pool.endpoints().get(0).consecutiveFailures(), "Cancelling is not a host failure");
+	}
+}
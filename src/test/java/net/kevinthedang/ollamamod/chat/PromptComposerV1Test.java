@@ -0,0 +1,81 @@
+package net.kevinthedang.ollamamod.chat;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PromptComposerV1Test {
+
+	private static final VillagerBrain.Context CONTEXT =
+		new VillagerBrain.Context(UUID.randomUUID(), "Bob", "farmer", "Overworld");
+
+	private static WorldFactBundle facts(String weather, String position) {
+		return new WorldFactBundle(List.of(
+			WorldFact.of("Weather: " + weather, "test", 1.0),
+			WorldFact.of("Player position: " + position, "test", 1.0)));
+	}
+
+	@Test
+	void stablePrefixKeepsWeatherOutOfSystemPrompt() {
+		PromptComposerV1 composer = new PromptComposerV1(PromptComposerV1.Layout.STABLE_PREFIX);
+		List<Map<String, String>> sunny = composer.buildMessages(CONTEXT, List.of(), "hello", facts("clear", "1 2 3"));
+		List<Map<String, String>> rainy = composer.buildMessages(CONTEXT, List.of(), "hello", facts("rain", "4 5 6"));
+
+		assertEquals(sunny.get(0), rainy.get(0));
+		assertFalse(sunny.get(0).get("content").contains("Weather:"));
+		// Persona, one volatile block, then the player's message
+		assertEquals(3, sunny.size());
+		String tail = sunny.get(1).get("content");
+		assertTrue(tail.startsWith("CURRENT WEATHER:"));
+		assertTrue(tail.contains("WORLD INFO"));
+		assertTrue(tail.contains("REMINDER"));
+		assertEquals("user", sunny.get(2).get("role"));
+	}
+
+	@Test
+	void legacyAnchorsWeatherInSystemPrompt() {
+		PromptComposerV1 composer = new PromptComposerV1(PromptComposerV1.Layout.LEGACY);
+		List<Map<String, String>> messages = composer.buildMessages(CONTEXT, List.of(), "hello", facts("rain", "1 2 3"));
+
+		assertTrue(messages.get(0).get("content").contains("CURRENT WEATHER:"));
+		assertEquals(4, messages.size());
+	}
+
+	@Test
+	void historyWindowDropsInSteps() {
+		assertEquals(0, PromptComposerV1.historyWindowStart(12));
+		assertEquals(6, PromptComposerV1.historyWindowStart(13));
+		assertEquals(6, PromptComposerV1.historyWindowStart(18));
+		assertEquals(12, PromptComposerV1.historyWindowStart(19));
+	}
+
+	@Test
+	void stablePrefixIsReusedAcrossTurnsWhileLegacyIsNot() {
+		double stable = replayConversation(PromptComposerV1.Layout.STABLE_PREFIX);
+		double legacy = replayConversation(PromptComposerV1.Layout.LEGACY);
+
+		// Stable prefix only misses when the full history window drops a step, once every three turns
+		assertTrue(stable >= 0.7, "stable hit rate " + stable);
+		assertTrue(legacy < 0.5, "legacy hit rate " + legacy);
+	}
+
+	// Twenty turns with changing weather and position; returns the prefix hit rate.
+	private static double replayConversation(PromptComposerV1.Layout layout) {
+		PromptComposerV1 composer = new PromptComposerV1(layout);
+		PromptPrefixTracker tracker = new PromptPrefixTracker();
+		List<ChatMessage> history = new ArrayList<>();
+		for (int turn = 0; turn < 20; turn++) {
+			String question = "question " + turn;
+			WorldFactBundle world = facts(turn % 3 == 0 ? "rain" : "clear", turn + " 64 0");
+			tracker.record("conversation", composer.buildMessages(CONTEXT, history, question, world));
+			history.add(new ChatMessage(ChatRole.PLAYER, question));
+			history.add(new ChatMessage(ChatRole.VILLAGER, "answer " + turn));
+		}
+		return tracker.hitRate();
+	}
+}
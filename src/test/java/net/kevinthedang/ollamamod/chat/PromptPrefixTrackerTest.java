@@ -0,0 +1,70 @@
+package net.kevinthedang.ollamamod.chat;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PromptPrefixTrackerTest {
+
+	private static Map<String, String> message(String role, String content) {
+		return Map.of("role", role, "content", content);
+	}
+
+	@Test
+	void firstPromptIsNotAFollowUp() {
+		PromptPrefixTracker tracker = new PromptPrefixTracker();
+		PromptPrefixTracker.Reuse reuse = tracker.record("a", List.of(message("system", "persona"), message("user", "hi")));
+
+		assertFalse(reuse.followUp());
+		assertEquals(0, reuse.reusedMessages());
+		assertEquals(0.0, tracker.hitRate());
+	}
+
+	@Test
+	void followUpReusingHistoryIsAHit() {
+		PromptPrefixTracker tracker = new PromptPrefixTracker();
+		tracker.record("a", List.of(message("system", "persona"), message("system", "facts 1"), message("user", "hi")));
+		PromptPrefixTracker.Reuse second = tracker.record("a", List.of(message("system", "persona"),
+			message("user", "hi"), message("assistant", "hello"), message("system", "facts 2"), message("user", "bye")));
+
+		assertTrue(second.followUp());
+		assertTrue(second.hit());
+		assertEquals(1, second.reusedMessages());
+		assertEquals("persona".length(), second.reusedChars());
+		assertEquals(1.0, tracker.hitRate());
+	}
+
+	@Test
+	void changedSystemPromptIsAMiss() {
+		PromptPrefixTracker tracker = new PromptPrefixTracker();
+		tracker.record("a", List.of(message("system", "persona, sunny"), message("user", "hi")));
+		PromptPrefixTracker.Reuse second = tracker.record("a", List.of(message("system", "persona, rain"), message("user", "hi")));
+
+		assertFalse(second.hit());
+		assertEquals(0, second.reusedMessages());
+		assertEquals(0.0, tracker.hitRate());
+	}
+
+	@Test
+	void conversationsAreTrackedSeparately() {
+		PromptPrefixTracker tracker = new PromptPrefixTracker();
+		tracker.record("a", List.of(message("system", "persona a"), message("user", "hi")));
+		PromptPrefixTracker.Reuse other = tracker.record("b", List.of(message("system", "persona a"), message("user", "hi")));
+
+		assertFalse(other.followUp());
+	}
+
+	@Test
+	void fingerprintCoversOnlyTheStablePart() {
+		PromptPrefixTracker tracker = new PromptPrefixTracker();
+		PromptPrefixTracker.Reuse first = tracker.record("a", List.of(message("system", "persona"),
+			message("user", "hi"), message("assistant", "hello"), message("system", "facts 1"), message("user", "q1")));
+		PromptPrefixTracker.Reuse second = tracker.record("b", List.of(message("system", "persona"),
+			message("user", "hi"), message("assistant", "hello"), message("system", "facts 2"), message("user", "q2")));
+
+		assertEquals(first.fingerprint(), second.fingerprint());
+	}
+}
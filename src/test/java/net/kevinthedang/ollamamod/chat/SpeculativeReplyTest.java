@@ -0,0 +1,98 @@
+package net.kevinthedang.ollamamod.chat;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SpeculativeReplyTest {
+
+	// Held deltas are replayed on commit, and later output is forwarded as it arrives.
+	@Test
+	public void commitReplaysHeldDeltasThenForwards() {
+		SpeculativeReply speculation = new SpeculativeReply();
+		RecordingCallbacks player = new RecordingCallbacks();
+		speculation.onDelta("Hello");
+		speculation.onDelta(", traveler");
+		assertEquals(15, speculation.heldLength());
+
+		assertTrue(speculation.commit(player));
+		speculation.onDelta("!");
+		speculation.onCompleted("Hello, traveler!");
+		assertEquals(List.of("delta:Hello, traveler", "delta:!", "done:Hello, traveler!"), player.events);
+	}
+
+	// A reply that finished while held is delivered whole on commit.
+	@Test
+	public void commitDeliversAnAlreadyFinishedReply() {
+		SpeculativeReply speculation = new SpeculativeReply();
+		RecordingCallbacks player = new RecordingCallbacks();
+		speculation.onDelta("Hi");
+		speculation.onCompleted("Hi");
+
+		assertTrue(speculation.commit(player));
+		assertEquals(List.of("delta:Hi", "done:Hi"), player.events);
+	}
+
+	// A failed or discarded speculation cannot be committed, and shows nothing.
+	@Test
+	public void failedOrDiscardedSpeculationIsNotCommitted() {
+		SpeculativeReply failed = new SpeculativeReply();
+		failed.onDelta("Hal");
+		failed.onError(new IllegalStateException("model unloaded"));
+		RecordingCallbacks player = new RecordingCallbacks();
+		assertFalse(failed.commit(player));
+
+		SpeculativeReply discarded = new SpeculativeReply();
+		discarded.onDelta("Hal");
+		discarded.discard();
+		assertTrue(discarded.cancellation().isCancelled());
+		assertFalse(discarded.commit(player));
+		assertTrue(player.events.isEmpty());
+	}
+
+	// A turn whose retrieval fails after speculation started cancels the speculative stream; one that
+	// succeeds leaves it for the reply stage to commit.
+	@Test
+	public void failedRetrievalCancelsSpeculation() {
+		TurnGraph graph = new TurnGraph();
+		TurnGraph.Stage<SpeculativeReply> speculation = graph.run("speculate", SpeculativeReply::new);
+		CompletableFuture<List<String>> retrieval = new CompletableFuture<>();
+		CompletableFuture<List<String>> turn = SpeculativeReply.discardOnFailure(
+				retrieval.thenCombine(speculation.future(), (docs, started) -> docs), speculation.future());
+		speculation.join().onDelta("Hal");
+
+		retrieval.completeExceptionally(new IllegalStateException("vector store unavailable"));
+		assertTrue(turn.isCompletedExceptionally());
+		assertTrue(speculation.join().cancellation().isCancelled());
+		assertFalse(speculation.join().commit(new RecordingCallbacks()));
+
+		SpeculativeReply kept = new SpeculativeReply();
+		SpeculativeReply.discardOnFailure(CompletableFuture.completedFuture(List.of()), CompletableFuture.completedFuture(kept));
+		assertFalse(kept.cancellation().isCancelled());
+	}
+
+	private static final class RecordingCallbacks implements VillagerBrain.StreamCallbacks {
+		private final List<String> events = new ArrayList<>();
+
+		@Override
+		public void onDelta(String delta) {
+			events.add("delta:" + delta);
+		}
+
+		@Override
+		public void onCompleted(String fullReply) {
+			events.add("done:" + fullReply);
+		}
+
+		@Override
+		public void onError(Throwable t) {
+			events.add("error");
+		}
+	}
+}
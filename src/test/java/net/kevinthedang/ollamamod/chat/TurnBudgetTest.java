@@ -0,0 +1,69 @@
+package net.kevinthedang.ollamamod.chat;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TurnBudgetTest {
+
+	@Test
+	void stageDeadlinesAreSharesOfTheBudget() {
+		TurnBudget budget = new TurnBudget(1000);
+
+		assertEquals(200, budget.deadlineMillis(TurnBudget.Stage.EMBED));
+		assertEquals(350, budget.deadlineMillis(TurnBudget.Stage.RETRIEVE));
+		assertEquals(1000, budget.deadlineMillis(TurnBudget.Stage.FIRST_TOKEN));
+		assertTrue(budget.remainingMillis(TurnBudget.Stage.EMBED) <= 200);
+	}
+
+	@Test
+	void unlimitedBudgetNeverBounds() {
+		TurnBudget budget = TurnBudget.unlimited();
+		CompletableFuture<String> stage = new CompletableFuture<>();
+
+		assertSame(stage, budget.bound(TurnBudget.Stage.EMBED, stage, "fallback", "skipped"));
+		assertEquals(Long.MAX_VALUE, budget.remainingMillis(TurnBudget.Stage.FIRST_TOKEN));
+	}
+
+	@Test
+	void stageWithinDeadlineKeepsItsResult() {
+		TurnBudget budget = new TurnBudget(10_000);
+		CompletableFuture<List<String>> bounded = budget.bound(TurnBudget.Stage.RETRIEVE,
+			CompletableFuture.completedFuture(List.of("doc")), List.of(), "skipped retrieval");
+
+		assertEquals(List.of("doc"), bounded.join());
+		assertFalse(budget.overran(TurnBudget.Stage.RETRIEVE));
+		assertTrue(budget.degradations().isEmpty());
+	}
+
+	@Test
+	void overrunningStageFallsBackAndIsReported() {
+		TurnBudget budget = new TurnBudget(500);
+		CompletableFuture<float[]> slowEmbedding = new CompletableFuture<>();
+
+		long start = System.nanoTime();
+		float[] result = budget.bound(TurnBudget.Stage.EMBED, slowEmbedding, null, "skipped memories").join();
+		long waited = (System.nanoTime() - start) / 1_000_000;
+
+		assertNull(result);
+		assertTrue(waited < 1000, "Should give up at the 100ms embed deadline, waited " + waited + "ms");
+		assertTrue(budget.overran(TurnBudget.Stage.EMBED));
+		assertEquals(1, budget.degradations().size());
+		assertTrue(budget.degradations().get(0).startsWith("skipped memories"));
+		// The stage itself is left running for anyone else sharing it
+		assertFalse(slowEmbedding.isDone());
+	}
+
+	@Test
+	void failedStageIsNotAnOverrun() {
+		TurnBudget budget = new TurnBudget(10_000);
+		CompletableFuture<String> bounded = budget.bound(TurnBudget.Stage.EMBED,
+			CompletableFuture.failedFuture(new IllegalStateException("down")), "fallback", "skipped");
+
+		assertThrows(Exception.class, bounded::join);
+		assertFalse(budget.overran(TurnBudget.Stage.EMBED));
+	}
+}
@@ -0,0 +1,59 @@
+package net.kevinthedang.ollamamod.chat;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TurnGraphTest {
+
+	// Independent stages run while an asynchronous one is still in flight; dependents wait for it.
+	@Test
+	public void overlapsIndependentStagesAndJoinsDependents() {
+		TurnGraph graph = new TurnGraph();
+		CompletableFuture<String> embedding = new CompletableFuture<>();
+		TurnGraph.Stage<String> embed = graph.start("embed", () -> embedding);
+		AtomicBoolean searched = new AtomicBoolean();
+		TurnGraph.Stage<String> docs = graph.after("docs", List.of(embed), () -> {
+			searched.set(true);
+			return CompletableFuture.completedFuture("docs for " + embed.join());
+		});
+		TurnGraph.Stage<Integer> world = graph.run("world", () -> 3);
+
+		assertEquals(3, world.join());
+		assertFalse(searched.get(), "A dependent stage waits for its dependency");
+		assertFalse(docs.future().isDone());
+		assertEquals(-1, graph.timings().get("embed").durationMillis(), "Still running");
+
+		embedding.complete("vector");
+		assertEquals("docs for vector", docs.join());
+		assertEquals(List.of("embed", "world", "docs"), List.copyOf(graph.timings().keySet()));
+		assertTrue(graph.summary().startsWith("embed=0+"), graph.summary());
+	}
+
+	// A failed dependency still releases its dependents, which see the error when they read it.
+	@Test
+	public void dependentsRunAfterFailedDependencies() {
+		TurnGraph graph = new TurnGraph();
+		TurnGraph.Stage<String> embed = graph.start("embed",
+			() -> CompletableFuture.failedFuture(new IllegalStateException("Ollama is down")));
+		TurnGraph.Stage<String> docs = graph.after("docs", List.of(embed), () ->
+			CompletableFuture.completedFuture(embed.future().isCompletedExceptionally() ? "local" : "remote"));
+		TurnGraph.Stage<String> broken = graph.run("broken", () -> {
+			throw new IllegalArgumentException("scan failed");
+		});
+
+		assertEquals("local", docs.join());
+		assertThrows(CompletionException.class, broken::join);
+		assertTrue(graph.timings().containsKey("broken"));
+		assertEquals("skipped", TurnGraph.Stage.of("skipped").join());
+		assertFalse(graph.timings().containsKey("skipped"));
+	}
+}
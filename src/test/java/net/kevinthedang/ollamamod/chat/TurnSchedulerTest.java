@@ -0,0 +1,90 @@
+package net.kevinthedang.ollamamod.chat;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TurnSchedulerTest {
+
+	// Turns beyond the concurrency limit wait, and start as soon as a running turn finishes.
+	@Test
+	public void boundsConcurrentTurnsAndStartsWaitingTurnsWhenASlotFrees() {
+		TurnScheduler scheduler = new TurnScheduler(2, 4);
+		List<CompletableFuture<String>> replies = new ArrayList<>();
+		List<String> started = new ArrayList<>();
+		for (int turn = 0; turn < 3; turn++) {
+			String key = "villager-" + turn;
+			CompletableFuture<String> reply = new CompletableFuture<>();
+			replies.add(reply);
+			scheduler.submit(key, () -> {
+				started.add(key);
+				return reply;
+			});
+		}
+
+		assertEquals(List.of("villager-0", "villager-1"), started);
+		assertEquals(2, scheduler.running());
+		assertEquals(1, scheduler.queued());
+
+		replies.get(1).complete("done");
+		assertEquals(List.of("villager-0", "villager-1", "villager-2"), started);
+		assertEquals(2, scheduler.running());
+		assertEquals(0, scheduler.queued());
+	}
+
+	// A conversation's next turn starts only after its previous turn, even with free slots.
+	@Test
+	public void runsTurnsOfOneConversationInOrder() {
+		TurnScheduler scheduler = new TurnScheduler(4, 4);
+		CompletableFuture<String> first = new CompletableFuture<>();
+		List<String> started = new ArrayList<>();
+		CompletableFuture<String> firstResult = scheduler.submit("villager", () -> {
+			started.add("first");
+			return first;
+		});
+		CompletableFuture<String> secondResult = scheduler.submit("villager", () -> {
+			started.add("second");
+			return CompletableFuture.completedFuture("second reply");
+		});
+
+		assertEquals(List.of("first"), started);
+		assertFalse(secondResult.isDone());
+
+		first.completeExceptionally(new IllegalStateException("boom"));
+		assertThrows(CompletionException.class, firstResult::join);
+		assertEquals("second reply", secondResult.join(), "A failed turn does not block the next one");
+		assertEquals(List.of("first", "second"), started);
+		assertEquals(0, scheduler.running());
+	}
+
+	// Turns beyond the running and queued capacity are rejected without starting.
+	@Test
+	public void rejectsTurnsBeyondCapacity() {
+		TurnScheduler scheduler = new TurnScheduler(1, 1);
+		CompletableFuture<String> blocked = new CompletableFuture<>();
+		scheduler.submit("a", () -> blocked);
+		CompletableFuture<String> waiting = scheduler.submit("b", () -> CompletableFuture.completedFuture("b"));
+		CompletableFuture<String> rejected = scheduler.submit("c", () -> {
+			throw new AssertionError("A rejected turn never starts");
+		});
+
+		CompletionException error = assertThrows(CompletionException.class, rejected::join);
+		assertInstanceOf(RejectedExecutionException.class, error.getCause());
+		assertFalse(waiting.isDone());
+
+		blocked.complete("a");
+		assertEquals("b", waiting.join());
+		assertTrue(scheduler.submit("c", () -> CompletableFuture.completedFuture("c")).isDone(),
+			"Capacity frees up once turns finish");
+	}
+}
@@ -0,0 +1,46 @@
+package net.kevinthedang.ollamamod.knowledge;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class GazetteerTest {
+
+    // Items, mobs and biomes in the seed data are tagged by id and by display name.
+    @Test
+    public void tagsSeedEntities() throws IOException {
+        Gazetteer gazetteer = Gazetteer.fromDirectory(Path.of("tools/seed-documents"));
+
+        assertEquals(List.of("item:sticky_piston", "entity:creeper", "biome:plains"),
+            gazetteer.tags("Can a Sticky Piston push a creeper across the plains?"));
+        assertEquals(List.of("item:chicken", "entity:chicken"), gazetteer.tags("where do chickens spawn"));
+        assertTrue(gazetteer.tags("tell me a story about air").isEmpty());
+    }
+
+    // Creature-less entity kinds are left out, and a text mentioning many things carries every tag.
+    @Test
+    public void skipsObjectEntitiesAndKeepsEveryTag() {
+        Gazetteer gazetteer = Gazetteer.load(
+            new StringReader("[]"),
+            new StringReader("[{\"name\":\"zombie\",\"type\":\"hostile\"},{\"name\":\"marker\",\"type\":\"other\"}]"),
+            new StringReader("[]"));
+        assertEquals(List.of("entity:zombie"), gazetteer.tags("a zombie near the marker"));
+
+        StringBuilder items = new StringBuilder("[");
+        StringBuilder text = new StringBuilder();
+        for (int index = 0; index < 20; index++) {
+            if (index > 0) items.append(',');
+            items.append("{\"name\":\"thing").append(index).append("\"}");
+            text.append("thing").append(index).append(' ');
+        }
+        Gazetteer many = Gazetteer.load(new StringReader(items.append(']').toString()),
+            new StringReader("[]"), new StringReader("[]"));
+        assertEquals(20, many.tags(text.toString()).size());
+    }
+}
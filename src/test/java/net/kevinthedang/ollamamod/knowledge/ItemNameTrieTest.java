@@ -0,0 +1,40 @@
+package net.kevinthedang.ollamamod.knowledge;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class ItemNameTrieTest {
+
+    // The longest name wins at each position and matching resumes after it.
+    @Test
+    public void findsLongestNonOverlappingNames() {
+        ItemNameTrie trie = new ItemNameTrie();
+        trie.add("piston", "piston");
+        trie.add("Sticky Piston", "sticky_piston");
+        trie.add("iron_ingot", "iron_ingot");
+        trie.add("Iron Block", "iron_block");
+
+        List<ItemNameTrie.Match> matches = trie.findAll("Can a sticky piston push an iron block? I have iron ingots.");
+        assertEquals(List.of("sticky_piston", "iron_block", "iron_ingot"),
+            matches.stream().map(ItemNameTrie.Match::itemId).toList());
+        assertEquals(2, matches.get(0).endWord() - matches.get(0).startWord());
+    }
+
+    // Whole-name lookup accepts ids, display names and plurals, but not partial names.
+    @Test
+    public void looksUpWholeNames() {
+        ItemNameTrie trie = new ItemNameTrie();
+        trie.add("torch", "torch");
+        trie.add("Sticky Piston", "sticky_piston");
+
+        assertEquals("sticky_piston", trie.lookup("sticky_piston"));
+        assertEquals("sticky_piston", trie.lookup("Sticky-Pistons"));
+        assertEquals("torch", trie.lookup("torches"));
+        assertNull(trie.lookup("sticky"));
+        assertNull(trie.lookup("torch and piston"));
+    }
+}
@@ -0,0 +1,80 @@
+package net.kevinthedang.ollamamod.knowledge;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RecipeBookTest {
+
+    // The seed recipes are indexed by result and by ingredient.
+    @Test
+    public void indexesSeedRecipes() throws IOException {
+        RecipeBook book = RecipeBook.fromDirectory(Path.of("tools/seed-documents"));
+
+        List<Recipe> pistons = book.recipesFor("piston");
+        assertEquals(1, pistons.size());
+        assertEquals(Map.of("planks", 3, "cobblestone", 4, "iron_ingot", 1, "redstone", 1),
+            pistons.get(0).ingredientCounts());
+        assertTrue(book.usesOf("piston").stream().anyMatch(recipe -> recipe.result().equals("sticky_piston")));
+        assertEquals("Iron Ingot", book.displayName("iron_ingot"));
+        assertTrue(book.recipesFor("air").isEmpty());
+    }
+
+    // Item mentions in a player's message resolve to exact recipe lines.
+    @Test
+    public void describesItemsMentionedInMessage() throws IOException {
+        RecipeBook book = RecipeBook.fromDirectory(Path.of("tools/seed-documents"));
+
+        assertEquals(List.of("sticky_piston"), book.findItems("how do I craft a sticky piston?"));
+        String facts = book.describeMentioned("how do I craft a piston?", 3);
+        assertTrue(facts.startsWith("- Piston: 3 Planks, 4 Cobblestone, 1 Iron Ingot, 1 Redstone"), facts);
+        assertTrue(facts.contains("[Planks | Planks | Planks]"), facts);
+        assertTrue(RecipeBook.isCraftingQuestion("how do I craft a piston?"));
+        assertFalse(RecipeBook.isCraftingQuestion("where do pistons spawn"));
+        assertEquals("", book.describeMentioned("hello there", 3));
+    }
+
+    // Crafting words match whole words, and only items a crafting phrase acts on count as asked for.
+    @Test
+    public void findsItemsACraftingQuestionAsksFor() throws IOException {
+        RecipeBook book = RecipeBook.fromDirectory(Path.of("tools/seed-documents"));
+
+        assertFalse(RecipeBook.isCraftingQuestion("is this a remake of the old village?"));
+        assertFalse(RecipeBook.isCraftingQuestion("what is the recreated spawn?"));
+        assertEquals(List.of("piston"), book.craftedItems("how do I make a piston?"));
+        assertEquals(List.of("piston"), book.craftedItems("what do I need for a piston"));
+        assertEquals(List.of("piston"), book.craftedItems("show me the piston recipe"));
+        assertTrue(book.answersCraftingQuestion("how do I craft a few pistons"));
+        assertFalse(book.answersCraftingQuestion("where do pistons go after I craft something?"),
+            "A piston merely mentioned next to a crafting word still needs the knowledge base");
+        assertFalse(book.answersCraftingQuestion("what can I make with a piston?"));
+
+        String uses = book.describeMentioned("what can I make with a piston?", 3);
+        assertTrue(uses.contains("Piston is used to craft: Sticky Piston"), uses);
+    }
+
+    // Shapeless recipes, counts and uses are described; unknown items resolve to nothing.
+    @Test
+    public void describesShapelessRecipesAndUses() {
+        RecipeBook book = RecipeBook.load(new StringReader("""
+            [{"resultingItem":{"item":"andesite","itemCount":2},"type":"shapeless","ingredients":["diorite","cobblestone"]},
+             {"resultingItem":{"item":"polished_andesite","itemCount":4},"type":"shaped",
+              "pattern":[["andesite","andesite"],["andesite","andesite"]]}]
+            """), new StringReader("""
+            [{"name":"andesite","displayName":"Andesite","stackSize":64}]
+            """));
+
+        String description = book.describe(book.resolve("Andesite").orElseThrow());
+        assertTrue(description.contains("Andesite (makes 2): 1 Diorite, 1 Cobblestone (shapeless, any arrangement)"), description);
+        assertTrue(description.contains("Andesite is used to craft: Polished Andesite"), description);
+        assertTrue(book.resolve("netherite pickaxe").isEmpty());
+    }
+}
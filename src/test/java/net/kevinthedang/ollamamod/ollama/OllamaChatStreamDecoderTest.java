@@ -0,0 +1,156 @@
+package net.kevinthedang.ollamamod.ollama;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OllamaChatStreamDecoderTest {
+    private static final String STREAM = String.join("\n",
+        "{\"model\":\"granite4\",\"created_at\":\"2025-01-01T00:00:00Z\",\"message\":{\"role\":\"assistant\",\"content\":\"Hello\"},\"done\":false}",
+        "",
+        "{\"model\":\"granite4\",\"message\":{\"role\":\"assistant\",\"content\":\", \\\"traveler\\\"\\n\",\"images\":null},\"done\":false}",
+        "{\"message\":{\"tool_calls\":[{\"function\":{\"name\":\"x\",\"arguments\":{\"q\":\"}]\"}}}],\"content\":\"caf\u00e9 \u2603 \\u00e9 \\ud83d\\ude00 \uD83C\uDF32\"},\"done\":false}",
+        "{\"model\":\"granite4\",\"message\":{\"role\":\"assistant\",\"content\":\"\"},\"done\":true,\"done_reason\":\"stop\","
+            + "\"total_duration\":5000000000,\"prompt_eval_count\":120,\"prompt_eval_duration\":250000000,"
+            + "\"eval_count\":40,\"eval_duration\":2000000000}");
+
+    // Content deltas, the done flag and the final counters are picked out of each line.
+    @Test
+    public void decodesContentDoneAndCounters() throws IOException {
+        OllamaChatStreamDecoder decoder = new OllamaChatStreamDecoder(stream(STREAM));
+        StringBuilder reply = new StringBuilder();
+
+        assertEquals(5, decoder.next(reply));
+        assertEquals("Hello", reply.toString());
+        assertFalse(decoder.done());
+        assertEquals(-1, decoder.evalCount());
+
+        assertEquals(13, decoder.next(reply));
+        assertEquals("Hello, \"traveler\"\n", reply.toString());
+
+        decoder.next(reply);
+        assertTrue(reply.toString().endsWith("caf\u00e9 \u2603 \u00e9 \uD83D\uDE00 \uD83C\uDF32"), reply.toString());
+
+        assertEquals(0, decoder.next(reply));
+        assertTrue(decoder.done());
+        assertEquals(40, decoder.evalCount());
+        assertEquals(2_000_000_000L, decoder.evalDurationNanos());
+        assertEquals(120, decoder.promptEvalCount());
+        assertEquals(250_000_000L, decoder.promptEvalDurationNanos());
+        assertEquals(20.0, decoder.tokensPerSecond(), 1e-9);
+
+        assertEquals(-1, decoder.next(reply));
+    }
+
+    // readReply hands on each delta and stops at the final chunk; an error chunk fails the reply.
+    @Test
+    public void readReplyPassesDeltasAndFailsOnErrors() throws IOException {
+        List<String> deltas = new ArrayList<>();
+        String reply = new OllamaChatStreamDecoder(stream(STREAM + "\n{\"message\":{\"content\":\"ignored\"}}"))
+            .readReply(deltas::add);
+        assertEquals(3, deltas.size());
+        assertEquals(String.join("", deltas), reply);
+
+        IOException error = assertThrows(IOException.class, () -> new OllamaChatStreamDecoder(
+            stream("{\"message\":{\"content\":\"Hi\"}}\n{\"error\":\"out of memory\"}")).readReply(deltas::add));
+        assertEquals("Ollama error: out of memory", error.getMessage());
+    }
+
+    // Tool calls are located in the chunk that carries them and reported as raw JSON.
+    @Test
+    public void reportsToolCallsOfTheCurrentChunk() throws IOException {
+        OllamaChatStreamDecoder decoder = new OllamaChatStreamDecoder(stream(STREAM));
+        StringBuilder reply = new StringBuilder();
+
+        decoder.next(reply);
+        assertNull(decoder.toolCallsJson());
+        decoder.next(reply);
+        decoder.next(reply);
+        assertEquals("[{\"function\":{\"name\":\"x\",\"arguments\":{\"q\":\"}]\"}}}]", decoder.toolCallsJson());
+        decoder.next(reply);
+        assertNull(decoder.toolCallsJson());
+    }
+
+    // Lines split across reads, and lines longer than the buffer, decode the same.
+    @Test
+    public void handlesShortReadsAndLongLines() throws IOException {
+        String longWord = "a".repeat(5000);
+        String stream = STREAM + "\n{\"message\":{\"content\":\"" + longWord + "\"},\"done\":false}";
+        InputStream trickle = new ByteArrayInputStream(stream.getBytes(StandardCharsets.UTF_8)) {
+            @Override
+            public synchronized int read(byte[] bytes, int offset, int length) {
+                return super.read(bytes, offset, Math.min(length, 3));
+            }
+        };
+        OllamaChatStreamDecoder decoder = new OllamaChatStreamDecoder(trickle, 16);
+        StringBuilder reply = new StringBuilder();
+        while (decoder.next(reply) >= 0) {
+            // drain
+        }
+        assertTrue(reply.toString().startsWith("Hello, \"traveler\"\ncaf\u00e9"));
+        assertTrue(reply.toString().endsWith(longWord));
+    }
+
+    // An error chunk is reported; a broken line fails instead of being half-read.
+    @Test
+    public void reportsErrorsAndRejectsMalformedLines() throws IOException {
+        OllamaChatStreamDecoder decoder = new OllamaChatStreamDecoder(stream(
+            "{\"error\":\"model \\\"nope\\\" not found\"}\n{\"message\":{\"content\":\"unterminated}"));
+        StringBuilder reply = new StringBuilder();
+
+        assertEquals(0, decoder.next(reply));
+        assertTrue(decoder.hasError());
+        assertEquals("model \"nope\" not found", decoder.error());
+        assertThrows(IOException.class, () -> decoder.next(reply));
+
+        OllamaChatStreamDecoder clean = new OllamaChatStreamDecoder(stream("{\"done\":false}"));
+        clean.next(reply);
+        assertNull(clean.error());
+    }
+
+    // Decoding a chunk allocates nothing once the buffer and sink are sized.
+    @Test
+    public void decodingChunksDoesNotAllocate() throws IOException {
+        String chunk = "{\"model\":\"granite4\",\"created_at\":\"2025-01-01T00:00:00.000Z\","
+            + "\"message\":{\"role\":\"assistant\",\"content\":\" word\\n\"},\"done\":false}\n";
+        byte[] bytes = chunk.repeat(20_000).getBytes(StandardCharsets.UTF_8);
+        StringBuilder sink = new StringBuilder(200_000);
+        // Warm up so the measured run is not charged for class loading
+        drain(new OllamaChatStreamDecoder(new ByteArrayInputStream(bytes)), sink);
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        InputStream in = new ByteArrayInputStream(bytes);
+        OllamaChatStreamDecoder decoder = new OllamaChatStreamDecoder(in);
+        sink.setLength(0);
+        long before = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        int chunks = drain(decoder, sink);
+        long allocated = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+
+        assertEquals(20_000, chunks);
+        assertTrue(allocated < 20_000, "Allocated " + allocated + " bytes for " + chunks + " chunks");
+    }
+
+    private static int drain(OllamaChatStreamDecoder decoder, StringBuilder sink) throws IOException {
+        int chunks = 0;
+        while (decoder.next(sink) >= 0) {
+            chunks++;
+        }
+        return chunks;
+    }
+
+    private static InputStream stream(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
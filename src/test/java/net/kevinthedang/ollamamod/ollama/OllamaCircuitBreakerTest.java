@@ -0,0 +1,72 @@
+package net.kevinthedang.ollamamod.ollama;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OllamaCircuitBreakerTest {
+
+    // Consecutive failures open the circuit; a success before the threshold resets the count.
+    @Test
+    public void opensAfterConsecutiveFailures() {
+        OllamaCircuitBreaker breaker = new OllamaCircuitBreaker(3, Duration.ofMinutes(1));
+
+        breaker.recordFailure();
+        breaker.recordFailure();
+        breaker.recordSuccess();
+        breaker.recordFailure();
+        breaker.recordFailure();
+        assertEquals(OllamaCircuitBreaker.State.CLOSED, breaker.state());
+
+        breaker.recordFailure();
+        assertTrue(breaker.isOpen());
+        assertFalse(breaker.tryAcquire());
+    }
+
+    // After the cool-down only one trial request is let through; its outcome decides the next state.
+    @Test
+    public void halfOpenAllowsSingleTrial() throws InterruptedException {
+        OllamaCircuitBreaker breaker = new OllamaCircuitBreaker(1, Duration.ofMillis(20));
+        breaker.recordFailure();
+        assertTrue(breaker.isOpen());
+
+        Thread.sleep(40);
+        assertEquals(OllamaCircuitBreaker.State.HALF_OPEN, breaker.state());
+        assertTrue(breaker.tryAcquire());
+        assertFalse(breaker.tryAcquire(), "Only one trial request while half-open");
+
+        breaker.recordFailure();
+        assertTrue(breaker.isOpen(), "Failed trial re-opens the circuit");
+
+        Thread.sleep(40);
+        assertTrue(breaker.tryAcquire());
+        breaker.recordSuccess();
+        assertEquals(OllamaCircuitBreaker.State.CLOSED, breaker.state());
+    }
+
+    // An open circuit makes pooled calls fail immediately without invoking the call.
+    @Test
+    public void openCircuitFailsPoolCallsFast() {
+        OllamaCircuitBreaker breaker = new OllamaCircuitBreaker(1, Duration.ofMinutes(1));
+        OllamaEndpointPool pool = new OllamaEndpointPool(List.of("http://a:1"), 3, Duration.ofMinutes(1), breaker);
+
+        pool.release(pool.acquire(), false);
+        assertFalse(pool.isHealthy());
+
+        CompletableFuture<String> result = pool.execute(null, endpoint -> {
+            throw new AssertionError("Call should not run while the circuit is open");
+        });
+        CompletionException thrown = assertThrows(CompletionException.class, result::join);
+        assertInstanceOf(OllamaUnavailableException.class, thrown.getCause());
+        assertThrows(OllamaUnavailableException.class, pool::acquire);
+    }
+}
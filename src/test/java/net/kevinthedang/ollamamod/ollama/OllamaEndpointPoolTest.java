@@ -0,0 +1,352 @@
+package net.kevinthedang.ollamamod.ollama;
+
+import com.sun.net.httpserver.HttpServer;
+import net.kevinthedang.ollamamod.vectorstore.embedding.OllamaEmbeddingService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OllamaEndpointPoolTest {
+    private final List<StandInOllama> servers = new ArrayList<>();
+
+    @AfterEach
+    public void stopServers() {
+        servers.forEach(StandInOllama::stop);
+    }
+
+    // New requests go to the host with the fewest in-flight requests.
+    @Test
+    public void acquirePrefersLeastOutstandingHost() {
+        OllamaEndpointPool pool = new OllamaEndpointPool(List.of("http://a:1", "http://b:2"));
+
+        OllamaEndpoint first = pool.acquire();
+        OllamaEndpoint second = pool.acquire();
+        assertNotSame(first, second, "Second request should go to the idle host");
+
+        pool.release(first, true);
+        assertSame(first, pool.acquire(), "Released host should be least loaded again");
+    }
+
+    // A conversation keeps using the same host across turns.
+    @Test
+    public void affinityKeyPinsConversationToHost() {
+        OllamaEndpointPool pool = new OllamaEndpointPool(List.of("http://a:1", "http://b:2"));
+
+        OllamaEndpoint pinned = pool.acquire("conversation-1");
+        pool.release(pinned, true);
+        OllamaEndpoint other = pool.acquire("conversation-2");
+
+        for (int turn = 0; turn < 5; turn++) {
+            OllamaEndpoint endpoint = pool.acquire("conversation-1");
+            assertSame(pinned, endpoint);
+            pool.release(endpoint, true);
+        }
+        pool.release(other, true);
+    }
+
+    // Repeated failures eject a host and move its conversations elsewhere.
+    @Test
+    public void failingHostIsEjectedAndAffinityRemapped() {
+        OllamaEndpointPool pool = new OllamaEndpointPool(List.of("http://a:1", "http://b:2"), 2, Duration.ofMinutes(1));
+
+        OllamaEndpoint pinned = pool.acquire("conversation-1");
+        pool.release(pinned, false);
+        assertFalse(pinned.isEjected(System.currentTimeMillis()));
+        pool.release(pool.acquire("conversation-1"), false);
+        assertTrue(pinned.isEjected(System.currentTimeMillis()));
+
+        OllamaEndpoint remapped = pool.acquire("conversation-1");
+        assertNotSame(pinned, remapped);
+        pool.release(remapped, true);
+    }
+
+    // A call its caller cancelled frees the host without counting as a failure.
+    @Test
+    public void cancelledCallIsNotAFailure() {
+        OllamaEndpointPool pool = new OllamaEndpointPool(List.of("http://a:1"), 1, Duration.ofMinutes(1));
+        OllamaEndpoint endpoint = pool.endpoints().get(0);
+
+        CompletableFuture<String> call = new CompletableFuture<>();
+        CompletableFuture<String> result = pool.execute(null, ignored -> call);
+        assertEquals(1, endpoint.outstanding());
+        call.cancel(true);
+
+        assertTrue(result.isCompletedExceptionally());
+        assertEquals(0, endpoint.outstanding());
+        assertEquals(0, endpoint.consecutiveFailures());
+        assertFalse(endpoint.isEjected(System.currentTimeMillis()));
+        assertFalse(pool.circuitBreaker().isOpen());
+    }
+
+    // An HTTP error (e.g. a missing model) is the request's problem, not an outage; an unreachable host is.
+    @Test
+    public void onlyOutagesCountAsFailures() {
+        OllamaEndpointPool pool = new OllamaEndpointPool(List.of("http://a:1"), 1, Duration.ofMinutes(1));
+        OllamaEndpoint endpoint = pool.endpoints().get(0);
+
+        for (int attempt = 0; attempt < 3; attempt++) {
+            CompletableFuture<String> result = pool.execute(null, ignored ->
+                CompletableFuture.failedFuture(new RuntimeException("Ollama HTTP 404: model not found")));
+            assertTrue(result.isCompletedExceptionally());
+        }
+        assertEquals(0, endpoint.consecutiveFailures());
+        assertFalse(endpoint.isEjected(System.currentTimeMillis()));
+        assertFalse(pool.circuitBreaker().isOpen());
+
+        pool.execute(null, ignored -> CompletableFuture.failedFuture(new ConnectException("Connection refused")));
+        assertTrue(endpoint.isEjected(System.currentTimeMillis()));
+        assertTrue(OllamaEndpointPool.isOutage(new CompletionException(new HttpTimeoutException("timed out"))));
+    }
+
+    // A call still unanswered at its route's p95 is duplicated on the other host; the first answer wins.
+    @Test
+    public void stalledCallIsHedgedOnAnotherHost() {
+        OllamaEndpointPool pool = new OllamaEndpointPool(List.of("http://a:1", "http://b:2"));
+        warmUp(pool, "route");
+
+        List<OllamaEndpoint> used = new ArrayList<>();
+        CompletableFuture<String> stalled = new CompletableFuture<>();
+        CompletableFuture<String> result = pool.executeHedged("route", null, endpoint -> {
+            synchronized (used) {
+                used.add(endpoint);
+                return used.size() == 1 ? stalled : CompletableFuture.completedFuture("hedge");
+            }
+        }, null);
+
+        assertEquals("hedge", result.join());
+        assertEquals(2, used.size());
+        assertNotSame(used.get(0), used.get(1), "Hedge should go to the other host");
+        assertTrue(stalled.isCancelled(), "Losing attempt should be cancelled");
+        assertEquals(1, pool.hedging().hedgesWon());
+        assertEquals(0, used.get(0).outstanding() + used.get(1).outstanding());
+        assertEquals(0, used.get(0).consecutiveFailures(), "Cancelled loser is not a failure");
+    }
+
+    // With a single host, the hedge uses the alternate call on that host.
+    @Test
+    public void singleHostHedgesWithAlternateCall() {
+        OllamaEndpointPool pool = new OllamaEndpointPool(List.of("http://a:1"));
+        warmUp(pool, "route");
+
+        CompletableFuture<String> result = pool.executeHedged("route", null,
+            endpoint -> new CompletableFuture<>(), endpoint -> CompletableFuture.completedFuture("alternate"));
+
+        assertEquals("alternate", result.join());
+    }
+
+    // Hedges are rate-limited: once the credit is spent, stalled calls just wait.
+    @Test
+    public void hedgingIsRateLimited() throws Exception {
+        OllamaEndpointPool pool = new OllamaEndpointPool(List.of("http://a:1", "http://b:2"));
+        warmUp(pool, "route");
+
+        List<CompletableFuture<String>> stalled = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            stalled.add(pool.executeHedged("route", null, endpoint -> new CompletableFuture<>(), null));
+        }
+        Thread.sleep(300);
+
+        assertEquals(2, pool.hedging().hedgesSent(), "Twenty warm-up calls earn two hedges");
+        stalled.forEach(future -> future.cancel(true));
+        assertEquals(0, pool.endpoints().get(0).outstanding() + pool.endpoints().get(1).outstanding());
+    }
+
+    // Until a route has enough samples it is never hedged.
+    @Test
+    public void unknownRouteIsNotHedged() throws Exception {
+        OllamaEndpointPool pool = new OllamaEndpointPool(List.of("http://a:1", "http://b:2"));
+        warmUp(pool, "other-route");
+
+        CompletableFuture<String> result = pool.executeHedged("route", null, endpoint -> new CompletableFuture<>(), null);
+        Thread.sleep(200);
+
+        assertFalse(result.isDone());
+        assertEquals(0, pool.hedging().hedgesSent());
+        result.cancel(true);
+    }
+
+    // Time spent queued for a slot does not count towards the hedge delay: a call is only hedged once
+    // it has been sent and then stalls for the route's p95.
+    @Test
+    public void hedgeTimerStartsWhenTheCallIsSent() throws Exception {
+        OllamaEndpointPool pool = new OllamaEndpointPool(List.of("http://a:1", "http://b:2"));
+        for (int i = 0; i < 20; i++) {
+            pool.hedging().onRequest();
+            pool.hedging().record("route", 300);
+        }
+        pool.scheduler().configure(1, 1, Map.of());
+        CompletableFuture<String> busyA = new CompletableFuture<>();
+        CompletableFuture<String> busyB = new CompletableFuture<>();
+        pool.execute("busy-a", endpoint -> busyA);
+        pool.execute("busy-b", endpoint -> busyB);
+
+        List<OllamaEndpoint> used = new CopyOnWriteArrayList<>();
+        CompletableFuture<String> stalled = new CompletableFuture<>();
+        CompletableFuture<String> result = pool.executeHedged("route", null, endpoint -> {
+            used.add(endpoint);
+            return used.size() == 1 ? stalled : CompletableFuture.completedFuture("hedge");
+        }, null);
+        Thread.sleep(500);
+        assertTrue(used.isEmpty(), "Every host is busy, so the call is still queued");
+        assertEquals(0, pool.hedging().hedgesSent(), "A call that has not been sent is not hedged");
+
+        busyA.complete("done");
+        busyB.complete("done");
+        Thread.sleep(100);
+        assertEquals(1, used.size(), "The hedge waits for the p95 after the call is sent");
+        assertEquals("hedge", result.get(2, TimeUnit.SECONDS));
+        assertEquals(1, pool.hedging().hedgesSent());
+    }
+
+    // The hedged call fails only once both attempts have failed.
+    @Test
+    public void hedgedCallFailsWhenEveryAttemptFails() throws Exception {
+        OllamaEndpointPool pool = new OllamaEndpointPool(List.of("http://a:1", "http://b:2"), 10, Duration.ofMinutes(1));
+        warmUp(pool, "route");
+
+        List<CompletableFuture<String>> attempts = new CopyOnWriteArrayList<>();
+        CompletableFuture<String> result = pool.executeHedged("route", null, endpoint -> {
+            CompletableFuture<String> attempt = new CompletableFuture<>();
+            attempts.add(attempt);
+            return attempt;
+        }, null);
+        long deadline = System.currentTimeMillis() + 2000;
+        while (attempts.size() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, attempts.size());
+
+        attempts.get(0).completeExceptionally(new RuntimeException("first"));
+        assertFalse(result.isDone(), "Hedge is still running");
+        attempts.get(1).completeExceptionally(new RuntimeException("second"));
+        assertTrue(result.isCompletedExceptionally());
+    }
+
+    // A successful /api/tags probe returns an ejected host to rotation.
+    @Test
+    public void probeRestoresEjectedHost() throws IOException {
+        StandInOllama server = start();
+        OllamaEndpointPool pool = new OllamaEndpointPool(List.of(server.baseUrl()), 1, Duration.ofMinutes(1));
+        OllamaEndpoint endpoint = pool.endpoints().get(0);
+
+        pool.release(pool.acquire(), false);
+        assertTrue(endpoint.isEjected(System.currentTimeMillis()));
+
+        assertTrue(pool.probe(endpoint));
+        assertFalse(endpoint.isEjected(System.currentTimeMillis()));
+        assertTrue(server.tagRequests.get() > 0);
+    }
+
+    // Embedding requests spread across hosts and skip a dead one.
+    @Test
+    public void embeddingServiceSpreadsAcrossHostsAndSkipsDeadHost() throws IOException {
+        StandInOllama live = start();
+        OllamaEndpointPool pool = new OllamaEndpointPool(
+            List.of("http://127.0.0.1:1", live.baseUrl()), 1, Duration.ofMinutes(1));
+        OllamaEmbeddingService service = new OllamaEmbeddingService(pool, "test-embed");
+
+        int succeeded = 0;
+        for (int i = 0; i < 4; i++) {
+            try {
+                float[] vector = service.embed("hello " + i).join();
+                assertEquals(3, vector.length);
+                succeeded++;
+            } catch (RuntimeException ignored) {
+                // First request may hit the dead host before it is ejected
+            }
+        }
+        assertTrue(succeeded >= 3, "Dead host should be ejected after its first failure");
+        assertTrue(pool.endpoints().get(0).isEjected(System.currentTimeMillis()));
+        assertTrue(service.isHealthy());
+    }
+
+    // Failures on one dead host eject it without opening the circuit for the healthy host.
+    @Test
+    public void deadHostDoesNotOpenCircuitForHealthyHost() throws IOException {
+        StandInOllama live = start();
+        OllamaEndpointPool pool = new OllamaEndpointPool(List.of("http://127.0.0.1:1", live.baseUrl()));
+        OllamaEmbeddingService service = new OllamaEmbeddingService(pool, "test-embed");
+        OllamaEndpoint dead = pool.endpoints().get(0);
+
+        for (int i = 0; i < OllamaCircuitBreaker.DEFAULT_FAILURE_THRESHOLD; i++) {
+            dead.begin(false);
+            pool.release(dead, new HttpTimeoutException("timed out"));
+        }
+        assertTrue(dead.isEjected(System.currentTimeMillis()));
+        assertFalse(pool.circuitBreaker().isOpen());
+
+        for (int i = 0; i < 4; i++) {
+            assertEquals(3, service.embed("hello " + i).join().length);
+        }
+        assertFalse(pool.circuitBreaker().isOpen());
+    }
+
+    // Twenty fast calls on a route: enough samples for its p95, and credit for two hedges.
+    private static void warmUp(OllamaEndpointPool pool, String route) {
+        for (int i = 0; i < 20; i++) {
+            pool.executeHedged(route, null, endpoint -> CompletableFuture.completedFuture("ok"), null).join();
+        }
+    }
+
+    private StandInOllama start() throws IOException {
+        StandInOllama server = new StandInOllama();
+        servers.add(server);
+        return server;
+    }
+
+    // Minimal local stand-in for the Ollama HTTP API.
+    private static class StandInOllama {
+        private final HttpServer server;
+        private final AtomicInteger tagRequests = new AtomicInteger();
+
+        private StandInOllama() throws IOException {
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.createContext("/api/tags", exchange -> {
+                tagRequests.incrementAndGet();
+                respond(exchange, "{\"models\":[]}");
+            });
+            server.createContext("/api/embed", exchange -> {
+                exchange.getRequestBody().readAllBytes();
+                respond(exchange, "{\"embeddings\":[[0.1,0.2,0.3]]}");
+            });
+            server.start();
+        }
+
+        private String baseUrl() {
+            return "http://127.0.0.1:" + server.getAddress().getPort();
+        }
+
+        private void stop() {
+            server.stop(0);
+        }
+
+        private static void respond(com.sun.net.httpserver.HttpExchange exchange, String body) throws IOException {
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+}
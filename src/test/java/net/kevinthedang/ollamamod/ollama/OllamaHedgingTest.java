@@ -0,0 +1,70 @@
+package net.kevinthedang.ollamamod.ollama;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OllamaHedgingTest {
+
+    // The p95 is only reported once a route has enough samples.
+    @Test
+    public void p95NeedsEnoughSamples() {
+        OllamaHedging hedging = new OllamaHedging();
+        for (int i = 1; i <= 19; i++) {
+            hedging.record("route", i * 10);
+        }
+        assertEquals(-1, hedging.p95Millis("route"));
+        assertEquals(-1, hedging.hedgeDelayMillis("route"));
+
+        hedging.record("route", 200);
+        assertEquals(190, hedging.p95Millis("route"));
+        assertEquals(190, hedging.hedgeDelayMillis("route"));
+    }
+
+    // Only the most recent window of latencies counts.
+    @Test
+    public void oldLatenciesAgeOut() {
+        OllamaHedging hedging = new OllamaHedging();
+        for (int i = 0; i < 128; i++) {
+            hedging.record("route", 5000);
+        }
+        for (int i = 0; i < 128; i++) {
+            hedging.record("route", 100);
+        }
+        assertEquals(100, hedging.p95Millis("route"));
+    }
+
+    // Hedges are limited to the ratio of requests, with a small burst allowance.
+    @Test
+    public void hedgesAreLimitedToTheRatio() {
+        OllamaHedging hedging = new OllamaHedging(0.1);
+        for (int i = 0; i < 9; i++) {
+            hedging.onRequest();
+        }
+        assertFalse(hedging.tryHedge());
+        hedging.onRequest();
+        assertTrue(hedging.tryHedge());
+        assertFalse(hedging.tryHedge());
+
+        for (int i = 0; i < 1000; i++) {
+            hedging.onRequest();
+        }
+        int burst = 0;
+        while (hedging.tryHedge()) burst++;
+        assertEquals(5, burst);
+        assertEquals(6, hedging.hedgesSent());
+    }
+
+    // A disabled hedger never asks for a hedge.
+    @Test
+    public void disabledHedgingNeverHedges() {
+        OllamaHedging hedging = new OllamaHedging();
+        for (int i = 0; i < 20; i++) {
+            hedging.record("route", 10);
+        }
+        hedging.setEnabled(false);
+        assertEquals(-1, hedging.hedgeDelayMillis("route"));
+    }
+}
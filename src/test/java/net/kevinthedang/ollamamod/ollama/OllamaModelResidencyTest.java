@@ -0,0 +1,236 @@
+package net.kevinthedang.ollamamod.ollama;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OllamaModelResidencyTest {
+    private static final long LOAD_MILLIS = 300;
+
+    private final List<StandInOllama> servers = new ArrayList<>();
+
+    @AfterEach
+    public void stopServers() {
+        servers.forEach(StandInOllama::stop);
+    }
+
+    // /api/ps answers which models are loaded; untagged names mean ":latest".
+    @Test
+    public void refreshReadsLoadedModels() throws IOException {
+        StandInOllama server = start(2);
+        server.loaded.add("granite4:latest");
+        OllamaModelResidency residency = new OllamaEndpointPool(List.of(server.baseUrl())).residency();
+
+        assertFalse(residency.isKnown());
+        assertTrue(residency.refresh());
+        assertTrue(residency.isKnown());
+        assertTrue(residency.isLoaded("granite4"));
+        assertFalse(residency.isLoaded("qwen3:8b"));
+    }
+
+    // Routing keeps the preferred model unless only the alternative is loaded.
+    @Test
+    public void choosePrefersLoadedModel() throws IOException {
+        StandInOllama server = start(2);
+        OllamaModelResidency residency = new OllamaEndpointPool(List.of(server.baseUrl())).residency();
+        assertEquals("chat", residency.choose("chat", "tool"), "Unknown residency keeps the preferred model");
+
+        server.loaded.add("tool:latest");
+        residency.refresh();
+        assertEquals("tool", residency.choose("chat", "tool"));
+        assertEquals("tool", residency.choose("tool", "chat"));
+
+        server.loaded.clear();
+        residency.refresh();
+        assertEquals("chat", residency.choose("chat", "tool"), "Nothing loaded keeps the preferred model");
+    }
+
+    // Cloud models never need loading, so they always count as resident.
+    @Test
+    public void cloudModelsCountAsLoaded() throws IOException {
+        StandInOllama server = start(2);
+        OllamaModelResidency residency = new OllamaEndpointPool(List.of(server.baseUrl())).residency();
+        residency.refresh();
+
+        assertTrue(residency.isLoaded("minimax-m2.5:cloud"));
+        assertEquals("minimax-m2.5:cloud", residency.choose("minimax-m2.5:cloud", "granite4"));
+    }
+
+    // Pre-warming pays the load latency up front and sends the keep_alive hint.
+    @Test
+    public void prewarmLoadsModelsAheadOfTime() throws IOException {
+        StandInOllama server = start(2);
+        OllamaModelResidency residency = new OllamaEndpointPool(List.of(server.baseUrl())).residency();
+        residency.setKeepAlive("45m");
+
+        long start = System.nanoTime();
+        residency.prewarm(List.of("tool", "chat")).join();
+        long firstMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertTrue(firstMillis >= 2 * LOAD_MILLIS, "Both models should have been loaded, took " + firstMillis + "ms");
+        assertTrue(residency.isLoaded("tool") && residency.isLoaded("chat"));
+        assertEquals(List.of("45m", "45m"), server.keepAlives);
+
+        start = System.nanoTime();
+        residency.prewarm(List.of("tool", "chat")).join();
+        long secondMillis = (System.nanoTime() - start) / 1_000_000;
+        assertTrue(secondMillis < LOAD_MILLIS, "Resident models should not load again, took " + secondMillis + "ms");
+    }
+
+    // On a host with room for one model, the refresh after pre-warming shows which one survived,
+    // and routing sticks to it instead of swapping.
+    @Test
+    public void singleSlotHostRoutesToSurvivingModel() throws IOException {
+        StandInOllama server = start(1);
+        OllamaModelResidency residency = new OllamaEndpointPool(List.of(server.baseUrl())).residency();
+
+        residency.prewarm(List.of("tool", "chat")).join();
+
+        assertFalse(residency.isLoaded("tool"));
+        assertTrue(residency.isLoaded("chat"));
+        assertEquals("chat", residency.choose("tool", "chat"));
+    }
+
+    // A successful request marks its model resident on that host before the next poll.
+    @Test
+    public void markLoadedRecordsResidency() {
+        OllamaEndpointPool pool = new OllamaEndpointPool(List.of("http://a:1"));
+        OllamaModelResidency residency = pool.residency();
+
+        residency.markLoaded(pool.endpoints().get(0), "granite4:latest");
+        assertTrue(residency.isLoaded("granite4"));
+    }
+
+    // Loading another model may evict the others, so only it counts as resident until the host,
+    // polled right away, says otherwise.
+    @Test
+    public void markLoadedOfNewModelRefreshesHost() throws Exception {
+        StandInOllama server = start(2);
+        server.loaded.add("tool:latest");
+        OllamaEndpointPool pool = new OllamaEndpointPool(List.of(server.baseUrl()));
+        OllamaModelResidency residency = pool.residency();
+        residency.refresh();
+
+        synchronized (server.loaded) {
+            server.loaded.clear();
+            server.loaded.add("chat:latest");
+        }
+        residency.markLoaded(pool.endpoints().get(0), "chat");
+        assertTrue(residency.isLoaded("chat"));
+        assertFalse(residency.isLoaded("tool"));
+        // Let that poll finish so it cannot land after the next one
+        Thread.sleep(200);
+
+        server.loaded.add("embed:latest");
+        residency.markLoaded(pool.endpoints().get(0), "tool");
+        long deadline = System.currentTimeMillis() + 2000;
+        while (!residency.isLoaded("embed") && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(residency.isLoaded("embed"), "The host was polled after the new model loaded");
+    }
+
+    // An empty keep_alive sends none, leaving the server's default.
+    @Test
+    public void blankKeepAliveIsNotSent() throws IOException {
+        StandInOllama server = start(2);
+        OllamaModelResidency residency = new OllamaEndpointPool(List.of(server.baseUrl())).residency();
+        residency.setKeepAlive("");
+
+        Map<String, Object> body = new HashMap<>();
+        residency.putKeepAlive(body);
+        assertFalse(body.containsKey("keep_alive"));
+        residency.prewarm(List.of("tool")).join();
+        assertTrue(server.keepAlives.isEmpty());
+    }
+
+    private StandInOllama start(int capacity) throws IOException {
+        StandInOllama server = new StandInOllama(capacity);
+        servers.add(server);
+        return server;
+    }
+
+    // Ollama stand-in holding up to capacity models; loading one takes LOAD_MILLIS and evicts the oldest.
+    private static class StandInOllama {
+        private final HttpServer server;
+        private final int capacity;
+        private final LinkedHashSet<String> loaded = new LinkedHashSet<>();
+        private final List<String> keepAlives = new CopyOnWriteArrayList<>();
+
+        private StandInOllama(int capacity) throws IOException {
+            this.capacity = capacity;
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.createContext("/api/ps", exchange -> {
+                StringBuilder models = new StringBuilder();
+                synchronized (loaded) {
+                    for (String model : loaded) {
+                        if (models.length() > 0) models.append(',');
+                        models.append("{\"name\":\"").append(model).append("\",\"model\":\"").append(model).append("\"}");
+                    }
+                }
+                respond(exchange, "{\"models\":[" + models + "]}");
+            });
+            server.createContext("/api/generate", exchange -> {
+                JsonObject body = JsonParser.parseString(
+                    new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8)).getAsJsonObject();
+                String model = body.get("model").getAsString();
+                if (model.indexOf(':') < 0) model += ":latest";
+                if (body.has("keep_alive")) keepAlives.add(body.get("keep_alive").getAsString());
+                load(model);
+                respond(exchange, "{\"model\":\"" + model + "\",\"response\":\"\",\"done\":true,\"done_reason\":\"load\"}");
+            });
+            server.start();
+        }
+
+        private void load(String model) {
+            synchronized (loaded) {
+                if (loaded.contains(model)) return;
+            }
+            try {
+                Thread.sleep(LOAD_MILLIS);
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+            synchronized (loaded) {
+                while (loaded.size() >= capacity) {
+                    loaded.remove(loaded.iterator().next());
+                }
+                loaded.add(model);
+            }
+        }
+
+        private String baseUrl() {
+            return "http://127.0.0.1:" + server.getAddress().getPort();
+        }
+
+        private void stop() {
+            server.stop(0);
+        }
+
+        private static void respond(HttpExchange exchange, String body) throws IOException {
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package net.kevinthedang.ollamamod.ollama;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OllamaSchedulerTest {
+    private final List<String> started = new CopyOnWriteArrayList<>();
+    private final List<CompletableFuture<String>> running = new CopyOnWriteArrayList<>();
+
+    // Requests beyond a host's limit wait until a slot frees up.
+    @Test
+    public void requestsBeyondTheLimitWait() {
+        OllamaEndpointPool pool = pool(2, 1);
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        for (String name : List.of("a", "b", "c")) {
+            results.add(submit(pool, OllamaScheduler.Priority.INTERACTIVE, "player", name));
+        }
+
+        assertEquals(List.of("a", "b"), started);
+        assertEquals(1, pool.scheduler().queueDepth(OllamaScheduler.Priority.INTERACTIVE));
+        assertEquals(2, pool.endpoints().get(0).outstanding());
+
+        running.get(0).complete("done");
+        assertEquals("done", results.get(0).join());
+        assertEquals(List.of("a", "b", "c"), started);
+        assertEquals(0, pool.scheduler().queueDepth());
+    }
+
+    // A chat reply queued behind ingestion is admitted before the ingestion that queued first.
+    @Test
+    public void interactiveGoesBeforeQueuedBulkWork() {
+        OllamaEndpointPool pool = pool(1, 1);
+        submit(pool, OllamaScheduler.Priority.INGESTION, "seed", "ingest-1");
+        submit(pool, OllamaScheduler.Priority.INGESTION, "seed", "ingest-2");
+        submit(pool, OllamaScheduler.Priority.MEMORY_WRITE, "player", "memory");
+        submit(pool, OllamaScheduler.Priority.TOOL_LOOP, "player", "tools");
+        submit(pool, OllamaScheduler.Priority.INTERACTIVE, "player", "reply");
+
+        finishAll();
+        assertEquals(List.of("ingest-1", "reply", "tools", "memory", "ingest-2"), started);
+    }
+
+    // Within a class, players take turns instead of one player's burst going first.
+    @Test
+    public void playersTakeTurnsWithinAClass() {
+        OllamaEndpointPool pool = pool(1, 1);
+        submit(pool, OllamaScheduler.Priority.INTERACTIVE, "blocker", "blocker");
+        submit(pool, OllamaScheduler.Priority.INTERACTIVE, "alex", "alex-1");
+        submit(pool, OllamaScheduler.Priority.INTERACTIVE, "alex", "alex-2");
+        submit(pool, OllamaScheduler.Priority.INTERACTIVE, "alex", "alex-3");
+        submit(pool, OllamaScheduler.Priority.INTERACTIVE, "sam", "sam-1");
+
+        finishAll();
+        assertEquals(List.of("blocker", "alex-1", "sam-1", "alex-2", "alex-3"), started);
+    }
+
+    // Bulk work only fills the background share of a host, so chat starts at once during an ingestion.
+    @Test
+    public void bulkWorkLeavesSlotsForChat() {
+        OllamaEndpointPool pool = pool(4, 1);
+        for (int index = 0; index < 3; index++) {
+            submit(pool, OllamaScheduler.Priority.INGESTION, "seed", "ingest-" + index);
+        }
+        assertEquals(List.of("ingest-0"), started);
+        assertEquals(2, pool.scheduler().queueDepth(OllamaScheduler.Priority.INGESTION));
+
+        submit(pool, OllamaScheduler.Priority.INTERACTIVE, "player", "reply");
+        assertEquals(List.of("ingest-0", "reply"), started);
+        assertEquals(0, pool.scheduler().averageWaitMillis(OllamaScheduler.Priority.INTERACTIVE));
+        assertEquals(1, pool.endpoints().get(0).backgroundOutstanding());
+    }
+
+    // Cancelling a queued request gives up its place without ever sending it.
+    @Test
+    public void cancelledQueuedRequestNeverRuns() {
+        OllamaEndpointPool pool = pool(1, 1);
+        submit(pool, OllamaScheduler.Priority.INTERACTIVE, "player", "first");
+        CompletableFuture<String> queued = submit(pool, OllamaScheduler.Priority.INTERACTIVE, "player", "second");
+
+        assertTrue(queued.cancel(true));
+        assertEquals(0, pool.scheduler().queueDepth());
+        finishAll();
+        assertEquals(List.of("first"), started);
+        assertEquals(0, pool.endpoints().get(0).outstanding());
+    }
+
+    // Hosts can have their own limit; the others use the default.
+    @Test
+    public void hostsCanHaveTheirOwnLimit() {
+        OllamaEndpointPool pool = new OllamaEndpointPool(List.of("http://a:1", "http://b:2"));
+        pool.scheduler().configure(1, 1, Map.of("http://b:2/", 3));
+
+        assertEquals(1, pool.scheduler().limit(pool.endpoints().get(0)));
+        assertEquals(3, pool.scheduler().limit(pool.endpoints().get(1)));
+        for (int index = 0; index < 5; index++) {
+            submit(pool, OllamaScheduler.Priority.INTERACTIVE, "player", "reply-" + index);
+        }
+        assertEquals(4, started.size());
+        assertEquals(1, pool.scheduler().queueDepth());
+    }
+
+    // Waits are measured per class.
+    @Test
+    public void waitTimesAreRecorded() throws Exception {
+        OllamaEndpointPool pool = pool(1, 1);
+        submit(pool, OllamaScheduler.Priority.INTERACTIVE, "player", "first");
+        submit(pool, OllamaScheduler.Priority.QUERY_EMBEDDING, "player", "embed");
+        Thread.sleep(50);
+        finishAll();
+
+        assertEquals(1, pool.scheduler().admitted(OllamaScheduler.Priority.QUERY_EMBEDDING));
+        assertTrue(pool.scheduler().maxWaitMillis(OllamaScheduler.Priority.QUERY_EMBEDDING) >= 40);
+        assertTrue(pool.scheduler().summary().contains("query_embedding: 0 queued, 1 admitted"), pool.scheduler().summary());
+    }
+
+    // Work set with submitAs applies to requests submitted on the thread while the action runs.
+    @Test
+    public void submitAsSetsTheWorkForNestedRequests() {
+        OllamaScheduler.Work fallback = OllamaScheduler.Work.of(OllamaScheduler.Priority.INGESTION, null);
+        OllamaScheduler.Work memory = OllamaScheduler.Work.of(OllamaScheduler.Priority.MEMORY_WRITE, "player");
+
+        assertSame(memory, OllamaScheduler.submitAs(memory, () -> OllamaScheduler.currentWork(fallback)));
+        assertSame(fallback, OllamaScheduler.currentWork(fallback));
+        assertEquals("", fallback.flow());
+        assertFalse(OllamaScheduler.Priority.QUERY_EMBEDDING.isBackground());
+    }
+
+    private static OllamaEndpointPool pool(int maxConcurrent, int maxBackground) {
+        OllamaEndpointPool pool = OllamaEndpointPool.single("http://a:1");
+        pool.scheduler().configure(maxConcurrent, maxBackground, Map.of());
+        return pool;
+    }
+
+    // Submit a call that records when it starts and stays in flight until finished.
+    private CompletableFuture<String> submit(OllamaEndpointPool pool, OllamaScheduler.Priority priority, String flow, String name) {
+        Function<OllamaEndpoint, CompletableFuture<String>> call = endpoint -> {
+            started.add(name);
+            CompletableFuture<String> future = new CompletableFuture<>();
+            running.add(future);
+            return future;
+        };
+        return pool.execute(OllamaScheduler.Work.of(priority, flow), null, call);
+    }
+
+    // Finish in-flight calls one at a time until nothing is left running or queued.
+    private void finishAll() {
+        for (int index = 0; index < running.size(); index++) {
+            running.get(index).complete("done");
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package net.kevinthedang.ollamamod.vectorstore;
+
+import net.kevinthedang.ollamamod.vectorstore.chunker.ConversationChunker;
+import net.kevinthedang.ollamamod.vectorstore.chunker.JsonChunker;
+import net.kevinthedang.ollamamod.vectorstore.chunker.TextChunker;
+import net.kevinthedang.ollamamod.vectorstore.model.MetadataFilter;
+import net.kevinthedang.ollamamod.vectorstore.store.LangChain4jVectorStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class KnowledgeWatcherTest {
+
+    @TempDir
+    Path tempDir;
+
+    // Existing files are synced on start; later edits, new files and deletions reach the live store.
+    @Test
+    public void keepsStoreInSyncWithDirectory() throws Exception {
+        RecordingEmbeddingService embeddings = new RecordingEmbeddingService();
+        VectorStoreService service = new VectorStoreService(embeddings, new LangChain4jVectorStore(),
+            new TextChunker(), new JsonChunker(30), new ConversationChunker());
+        Path knowledge = tempDir.resolve("knowledge");
+        Files.createDirectories(knowledge.resolve("nested"));
+        Path items = knowledge.resolve("items.json");
+        Files.writeString(items, "[{\"name\":\"a\",\"v\":1},{\"name\":\"b\",\"v\":1}]");
+        Files.writeString(knowledge.resolve("ignored.md"), "Not a knowledge format");
+
+        KnowledgeWatcher watcher = new KnowledgeWatcher(service, 100, 0);
+        try {
+            watcher.start(knowledge);
+            awaitTrue(() -> service.count(MetadataFilter.documents()) == 2, "initial sync");
+
+            embeddings.embeddedTexts.clear();
+            Files.writeString(items, "[{\"name\":\"a\",\"v\":1},{\"name\":\"b\",\"v\":2}]");
+            // The replaced chunk is removed only once the new one is stored
+            awaitTrue(() -> embeddings.embeddedTexts.size() == 1 && service.count(MetadataFilter.documents()) == 2,
+                "edited file re-ingested");
+
+            Path notes = knowledge.resolve("nested").resolve("notes.txt");
+            Files.writeString(notes, "Iron golems protect villages.");
+            awaitTrue(() -> service.sourceChunkIds("knowledge:nested/notes.txt").isPresent(), "new nested file ingested");
+            assertEquals(3, service.count(MetadataFilter.documents()));
+
+            Files.delete(items);
+            awaitTrue(() -> service.count(MetadataFilter.documents()) == 1, "deleted file removed");
+            assertFalse(service.sourceChunkIds("knowledge:items.json").isPresent());
+        } finally {
+            watcher.stop();
+        }
+        assertFalse(watcher.isRunning());
+    }
+
+    // Several quick writes to one file are ingested once, after the file goes quiet.
+    @Test
+    public void debouncesBurstsOfWrites() throws Exception {
+        RecordingEmbeddingService embeddings = new RecordingEmbeddingService();
+        VectorStoreService service = new VectorStoreService(embeddings, new LangChain4jVectorStore(),
+            new TextChunker(), new JsonChunker(), new ConversationChunker());
+        Path knowledge = tempDir.resolve("knowledge");
+        Files.createDirectories(knowledge);
+
+        KnowledgeWatcher watcher = new KnowledgeWatcher(service, 300, 0);
+        try {
+            watcher.start(knowledge);
+            Path file = knowledge.resolve("tips.txt");
+            for (int version = 0; version < 5; version++) {
+                Files.writeString(file, "Tip version " + version);
+                Thread.sleep(20);
+            }
+            awaitTrue(() -> !embeddings.embeddedTexts.isEmpty(), "file ingested");
+            Thread.sleep(400);
+            assertEquals(List.of("Tip version 4"), embeddings.embeddedTexts);
+        } finally {
+            watcher.stop();
+        }
+    }
+
+    // Deleting a directory removes every file under it, and files deleted while stopped are removed on start.
+    @Test
+    public void removesDeletedDirectoriesAndFilesMissingAtStart() throws Exception {
+        VectorStoreService service = new VectorStoreService(new RecordingEmbeddingService(), new LangChain4jVectorStore(),
+            new TextChunker(), new JsonChunker(), new ConversationChunker());
+        Path knowledge = tempDir.resolve("knowledge");
+        Path nested = knowledge.resolve("nested").resolve("deeper");
+        Files.createDirectories(nested);
+        Path kept = knowledge.resolve("kept.txt");
+        Path gone = knowledge.resolve("gone.txt");
+        Files.writeString(kept, "Villagers sleep at night.");
+        Files.writeString(gone, "Zombies burn in daylight.");
+        Files.writeString(nested.resolve("deep.txt"), "Iron golems protect villages.");
+
+        KnowledgeWatcher watcher = new KnowledgeWatcher(service, 100, 0);
+        try {
+            watcher.start(knowledge);
+            awaitTrue(() -> service.count(MetadataFilter.documents()) == 3, "initial sync");
+
+            try (Stream<Path> paths = Files.walk(knowledge.resolve("nested"))) {
+                for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(path);
+                }
+            }
+            awaitTrue(() -> service.count(MetadataFilter.documents()) == 2, "deleted directory removed");
+        } finally {
+            watcher.stop();
+        }
+
+        Files.delete(gone);
+        KnowledgeWatcher restarted = new KnowledgeWatcher(service, 100, 0);
+        try {
+            restarted.start(knowledge);
+            awaitTrue(() -> service.count(MetadataFilter.documents()) == 1, "file deleted while stopped removed");
+            assertTrue(service.sourceChunkIds("knowledge:kept.txt").isPresent());
+        } finally {
+            restarted.stop();
+        }
+    }
+
+    private static void awaitTrue(BooleanSupplier condition, String description) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertTrue(condition.getAsBoolean(), "Timed out waiting for: " + description);
+    }
+}
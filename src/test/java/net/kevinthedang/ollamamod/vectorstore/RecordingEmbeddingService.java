@@ -0,0 +1,82 @@
+package net.kevinthedang.ollamamod.vectorstore;
+
+import net.kevinthedang.ollamamod.vectorstore.embedding.EmbeddingService;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+// Fake embedding service shared by the tests: every text maps to the same unit vector, and the calls
+// are recorded. A deferred service leaves single-text embeds pending until the test completes them.
+public class RecordingEmbeddingService implements EmbeddingService {
+    // Texts passed to embedBatch, in order.
+    public final List<String> embeddedTexts = Collections.synchronizedList(new ArrayList<>());
+    // Number of texts in each embedBatch call.
+    public final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+    // Futures returned by embed() on a deferred service.
+    public final List<CompletableFuture<float[]>> embedCalls = Collections.synchronizedList(new ArrayList<>());
+
+    private final int dimension;
+    private final boolean deferred;
+
+    // Four-dimensional vectors, returned immediately.
+    public RecordingEmbeddingService() {
+        this(4, false);
+    }
+
+    private RecordingEmbeddingService(int dimension, boolean deferred) {
+        this.dimension = dimension;
+        this.deferred = deferred;
+    }
+
+    // One-dimensional vectors; embed() calls stay pending in embedCalls.
+    public static RecordingEmbeddingService deferred() {
+        return new RecordingEmbeddingService(1, true);
+    }
+
+    @Override
+    public CompletableFuture<float[]> embed(String text) {
+        if (!deferred) return CompletableFuture.completedFuture(vector());
+        CompletableFuture<float[]> call = new CompletableFuture<>();
+        embedCalls.add(call);
+        return call;
+    }
+
+    @Override
+    public CompletableFuture<List<float[]>> embedBatch(List<String> texts) {
+        embeddedTexts.addAll(texts);
+        batchSizes.add(texts.size());
+        List<float[]> vectors = new ArrayList<>(texts.size());
+        for (int i = 0; i < texts.size(); i++) {
+            vectors.add(vector());
+        }
+        return CompletableFuture.completedFuture(vectors);
+    }
+
+    @Override
+    public int getDimension() {
+        return dimension;
+    }
+
+    @Override
+    public boolean isHealthy() {
+        return true;
+    }
+
+    @Override
+    public EmbeddingService forModel(String model) {
+        throw new UnsupportedOperationException(model);
+    }
+
+    @Override
+    public CompletableFuture<Integer> countTokens(List<String> texts) {
+        return CompletableFuture.failedFuture(new UnsupportedOperationException());
+    }
+
+    private float[] vector() {
+        float[] vector = new float[dimension];
+        vector[0] = 1f;
+        return vector;
+    }
+}
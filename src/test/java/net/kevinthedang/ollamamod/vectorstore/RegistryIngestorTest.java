@@ -0,0 +1,50 @@
+package net.kevinthedang.ollamamod.vectorstore;
+
+import net.kevinthedang.ollamamod.knowledge.RegistryEntry;
+import net.kevinthedang.ollamamod.vectorstore.chunker.ConversationChunker;
+import net.kevinthedang.ollamamod.vectorstore.chunker.JsonChunker;
+import net.kevinthedang.ollamamod.vectorstore.chunker.TextChunker;
+import net.kevinthedang.ollamamod.vectorstore.model.MetadataFilter;
+import net.kevinthedang.ollamamod.vectorstore.store.LangChain4jVectorStore;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RegistryIngestorTest {
+
+    // Only new or changed entries are embedded, in throttled batches, and uninstalled mods are removed.
+    @Test
+    public void embedsOnlyMissingEntries() {
+        RecordingEmbeddingService embeddings = new RecordingEmbeddingService();
+        VectorStoreService service = new VectorStoreService(embeddings, new LangChain4jVectorStore(),
+            new TextChunker(), new JsonChunker(), new ConversationChunker());
+        RegistryIngestor ingestor = new RegistryIngestor(service, 2, 10);
+
+        List<RegistryEntry> entries = new ArrayList<>();
+        for (int index = 0; index < 5; index++) {
+            entries.add(new RegistryEntry("create:part_" + index, "Item", "Part " + index, List.of("Stacks to 64")));
+        }
+        entries.add(new RegistryEntry("farmersdelight:tomato", "Item", "Tomato", List.of("Edible")));
+        ingestor.sync(entries).join();
+        assertEquals(6, embeddings.embeddedTexts.size());
+        assertEquals(List.of(2, 2, 1, 1), embeddings.batchSizes);
+        assertEquals(6, service.count(MetadataFilter.documents()));
+        assertEquals(List.of("registry:create", "registry:farmersdelight"),
+            service.sourceNames(RegistryIngestor.SOURCE_PREFIX).stream().sorted().toList());
+
+        embeddings.embeddedTexts.clear();
+        ingestor.sync(entries).join();
+        assertTrue(embeddings.embeddedTexts.isEmpty(), "Unchanged entries are not re-embedded");
+
+        List<RegistryEntry> updated = new ArrayList<>(entries.subList(0, 5));
+        updated.set(0, new RegistryEntry("create:part_0", "Item", "Part 0", List.of("Stacks to 16")));
+        ingestor.sync(updated).join();
+        assertEquals(List.of("Item: Part 0 (create:part_0)\nStacks to 16"), embeddings.embeddedTexts);
+        assertEquals(5, service.count(MetadataFilter.documents()), "The stale version and the uninstalled mod are removed");
+        assertEquals(List.of("registry:create"), service.sourceNames(RegistryIngestor.SOURCE_PREFIX));
+    }
+}
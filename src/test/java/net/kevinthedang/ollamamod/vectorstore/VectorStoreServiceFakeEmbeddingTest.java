@@ -1,22 +1,36 @@
 package net.kevinthedang.ollamamod.vectorstore;
 
+import net.kevinthedang.ollamamod.knowledge.Gazetteer;
 import net.kevinthedang.ollamamod.vectorstore.chunker.ConversationChunker;
 import net.kevinthedang.ollamamod.vectorstore.chunker.JsonChunker;
 import net.kevinthedang.ollamamod.vectorstore.chunker.TextChunker;
 import net.kevinthedang.ollamamod.vectorstore.embedding.EmbeddingService;
 import net.kevinthedang.ollamamod.vectorstore.model.VectorDocument;
 import net.kevinthedang.ollamamod.vectorstore.store.LangChain4jVectorStore;
+import net.kevinthedang.ollamamod.vectorstore.model.MetadataFilter;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class VectorStoreServiceFakeEmbeddingTest {
 
+    @TempDir
+    Path tempDir;
+
     // Store and query memories using deterministic fake embeddings.
     @Test
     public void storeAndQueryMemoryUsingFakeEmbeddings() {
@@ -37,8 +51,184 @@ public class VectorStoreServiceFakeEmbeddingTest {
         assertTrue(results.get(0).metadata().villagerId().equals("villager-1"));
     }
 
+    // When the remote embedding fails, queries are answered from the local fallback index.
+    @Test
+    public void queryFallsBackToLocalIndexWhenEmbeddingFails() {
+        VectorStoreService service = new VectorStoreService(
+            new UnavailableEmbeddingService(),
+            new LangChain4jVectorStore(),
+            new TextChunker(),
+            new JsonChunker(),
+            new ConversationChunker()
+        );
+
+        String memory = "Player: Where can I find diamonds?\nVillager: Dig deep near lava lakes.";
+        service.storeMemory(memory, "villager-1", "player-1").exceptionally(error -> null).join();
+
+        List<VectorDocument> results = service.queryMemories("where are diamonds", "villager-1", 3).join();
+        assertFalse(results.isEmpty(), "Expected local fallback results");
+        assertTrue(results.get(0).content().contains("diamonds"));
+    }
+
+    // Re-ingesting a file embeds only new or changed chunks and removes the ones that disappeared.
+    @Test
+    public void reingestOnlyEmbedsChangedChunks() throws IOException {
+        FakeEmbeddingService embeddings = new FakeEmbeddingService(VectorStoreSettings.embeddingDimension);
+        VectorStoreService service = new VectorStoreService(embeddings, new LangChain4jVectorStore(),
+            new TextChunker(), new JsonChunker(30), new ConversationChunker());
+        Path file = tempDir.resolve("items.json");
+
+        Files.writeString(file, "[{\"name\":\"a\",\"v\":1},{\"name\":\"b\",\"v\":1},{\"name\":\"c\",\"v\":1}]");
+        service.storeDocument("items.json", file).join();
+        assertEquals(3, embeddings.embeddedTexts.size());
+        assertEquals(3, service.count(MetadataFilter.documents()));
+
+        embeddings.embeddedTexts.clear();
+        Files.writeString(file, "[{\"name\":\"a\",\"v\":1},\n  {\"name\":\"b\",\"v\":2},{\"name\":\"d\",\"v\":1}]");
+        service.storeDocument("items.json", file).join();
+        assertEquals(2, embeddings.embeddedTexts.size(), "Only the changed and the new chunk are embedded");
+        assertEquals(3, service.count(MetadataFilter.documents()), "The vanished chunk is removed");
+        assertTrue(service.queryLocal("c", MetadataFilter.documents(), 10).stream()
+            .noneMatch(document -> document.content().startsWith("c:")));
+
+        embeddings.embeddedTexts.clear();
+        service.storeDocument("items.json", file).join();
+        assertTrue(embeddings.embeddedTexts.isEmpty(), "Unchanged file embeds nothing");
+        assertEquals(3, service.sourceChunkIds("items.json").orElseThrow().size());
+    }
+
+    // A re-ingestion that fails to embed keeps the previous version of the file searchable.
+    @Test
+    public void failedReingestKeepsPreviousChunks() throws IOException {
+        FakeEmbeddingService embeddings = new FakeEmbeddingService(VectorStoreSettings.embeddingDimension);
+        VectorStoreService service = new VectorStoreService(embeddings, new LangChain4jVectorStore(),
+            new TextChunker(), new JsonChunker(30), new ConversationChunker());
+        Path file = tempDir.resolve("items.json");
+        Files.writeString(file, "[{\"name\":\"a\",\"v\":1},{\"name\":\"b\",\"v\":1}]");
+        service.storeDocument("items.json", file).join();
+
+        embeddings.failing = true;
+        Files.writeString(file, "[{\"name\":\"a\",\"v\":1},{\"name\":\"c\",\"v\":1}]");
+        assertThrows(CompletionException.class, () -> service.storeDocument("items.json", file).join());
+        assertEquals(2, service.count(MetadataFilter.documents()), "The chunk missing from the new version is kept");
+
+        embeddings.failing = false;
+        service.storeDocument("items.json", file).join();
+        assertEquals(2, service.count(MetadataFilter.documents()));
+        assertTrue(service.queryLocal("b", MetadataFilter.documents(), 10).stream()
+            .noneMatch(document -> document.content().startsWith("b:")));
+    }
+
+    // Files are named by their path under a root, so the same file under another root (another
+    // checkout or machine) gets the same source and chunk ids and is not embedded again.
+    @Test
+    public void sourcesAreNamedRelativeToTheirRoot() throws IOException {
+        FakeEmbeddingService embeddings = new FakeEmbeddingService(VectorStoreSettings.embeddingDimension);
+        VectorStoreService service = new VectorStoreService(embeddings,
+            new LangChain4jVectorStore(), new TextChunker(), new JsonChunker(30), new ConversationChunker());
+        Path first = tempDir.resolve("first");
+        Path second = tempDir.resolve("second");
+        Files.createDirectories(first.resolve("nested"));
+        Files.createDirectories(second.resolve("nested"));
+        Files.writeString(first.resolve("nested").resolve("notes.txt"), "Creepers explode near players.");
+        Files.writeString(second.resolve("nested").resolve("notes.txt"), "Creepers explode near players.");
+
+        Path relativeRoot = Path.of("").toAbsolutePath().relativize(first.toAbsolutePath());
+        String source = ChunkIds.sourceName("knowledge:", relativeRoot, first.resolve("nested").resolve("notes.txt"));
+        assertEquals("knowledge:nested/notes.txt", source);
+        assertEquals(source, ChunkIds.sourceName("knowledge:", second, second.resolve("nested").resolve("notes.txt")));
+
+        service.storeDocument(source, first.resolve("nested").resolve("notes.txt")).join();
+        List<String> ids = service.sourceChunkIds(source).orElseThrow();
+        embeddings.embeddedTexts.clear();
+        service.storeDocument(source, second.resolve("nested").resolve("notes.txt")).join();
+        assertTrue(embeddings.embeddedTexts.isEmpty());
+        assertEquals(ids, service.sourceChunkIds(source).orElseThrow());
+
+        service.removeSource(source);
+        assertEquals(0, service.count(MetadataFilter.documents()));
+    }
+
+    // Chunks are tagged with the entities they mention, and queries naming one only see those chunks.
+    @Test
+    public void tagsChunksAndPreFiltersQueriesByEntity() throws IOException {
+        VectorStoreService service = new VectorStoreService(new FakeEmbeddingService(VectorStoreSettings.embeddingDimension),
+            new LangChain4jVectorStore(), new TextChunker(), new JsonChunker(30), new ConversationChunker());
+        service.setGazetteer(Gazetteer.load(new StringReader("[{\"name\":\"piston\",\"displayName\":\"Piston\"}]"),
+            new StringReader("[]"), new StringReader("[{\"name\":\"plains\"},{\"name\":\"desert\"}]")));
+        Path file = tempDir.resolve("notes.json");
+        Files.writeString(file, "[{\"name\":\"piston\"},{\"name\":\"plains\"},{\"name\":\"other\"}]");
+        service.storeDocument("notes.json", file).join();
+
+        List<VectorDocument> pistons = service.queryDocuments("how do pistons work?", 10).join();
+        assertEquals(1, pistons.size());
+        assertEquals(List.of("item:piston"), pistons.get(0).metadata().tags());
+        assertEquals(3, service.queryDocuments("tell me something", 10).join().size());
+        assertEquals(3, service.queryDocuments("what about the desert?", 10).join().size(),
+            "A tag with no chunks falls back to the whole knowledge base");
+    }
+
+    // A saved local index is loaded back as is, and rebuilt only when it no longer covers the store.
+    @Test
+    public void loadReusesPersistedLocalIndex() throws IOException {
+        Path file = tempDir.resolve("notes.txt");
+        Files.writeString(file, "Creepers explode near players.");
+        Path saved = tempDir.resolve("saved");
+        VectorStoreService first = new VectorStoreService(new FakeEmbeddingService(VectorStoreSettings.embeddingDimension),
+            new LangChain4jVectorStore(), new TextChunker(), new JsonChunker(30), new ConversationChunker());
+        first.storeDocument("notes.txt", file).join();
+        first.persistAll(saved);
+        assertTrue(Files.exists(saved.resolve(VectorStoreSettings.dataDirectory).resolve(VectorStoreSettings.localWeightsFile)));
+
+        VectorStoreService reloaded = new VectorStoreService(new FakeEmbeddingService(VectorStoreSettings.embeddingDimension),
+            new LangChain4jVectorStore(), new TextChunker(), new JsonChunker(30), new ConversationChunker());
+        reloaded.loadAll(saved);
+        assertEquals(1, reloaded.queryLocal("creepers explode", MetadataFilter.documents(), 5).size());
+
+        // Without its weights the local index is rebuilt from the store
+        Files.delete(saved.resolve(VectorStoreSettings.dataDirectory).resolve(VectorStoreSettings.localWeightsFile));
+        VectorStoreService rebuilt = new VectorStoreService(new FakeEmbeddingService(VectorStoreSettings.embeddingDimension),
+            new LangChain4jVectorStore(), new TextChunker(), new JsonChunker(30), new ConversationChunker());
+        rebuilt.loadAll(saved);
+        assertEquals(1, rebuilt.queryLocal("creepers explode", MetadataFilter.documents(), 5).size());
+    }
+
+    private static class UnavailableEmbeddingService implements EmbeddingService {
+        @Override
+        public CompletableFuture<float[]> embed(String text) {
+            return CompletableFuture.failedFuture(new RuntimeException("Ollama is down"));
+        }
+
+        @Override
+        public CompletableFuture<List<float[]>> embedBatch(List<String> texts) {
+            return CompletableFuture.failedFuture(new RuntimeException("Ollama is down"));
+        }
+
+        @Override
+        public int getDimension() {
+            return VectorStoreSettings.embeddingDimension;
+        }
+
+        @Override
+        public boolean isHealthy() {
+            return false;
+        }
+
+        @Override
+        public CompletableFuture<Integer> countTokens(List<String> texts) {
+            return CompletableFuture.failedFuture(new UnsupportedOperationException());
+        }
+
+        @Override
+        public EmbeddingService forModel(String model) {
+            throw new UnsupportedOperationException(model);
+        }
+    }
+
     private static class FakeEmbeddingService implements EmbeddingService {
         private final int dimension;
+        private final List<String> embeddedTexts = Collections.synchronizedList(new ArrayList<>());
+        private volatile boolean failing;
 
         private FakeEmbeddingService(int dimension) {
             this.dimension = dimension;
@@ -51,6 +241,8 @@ public class VectorStoreServiceFakeEmbeddingTest {
 
         @Override
         public CompletableFuture<List<float[]>> embedBatch(List<String> texts) {
+            if (failing) return CompletableFuture.failedFuture(new RuntimeException("Ollama is down"));
+            embeddedTexts.addAll(texts);
             List<float[]> vectors = new ArrayList<>(texts.size());
             for (int i = 0; i < texts.size(); i++) {
                 vectors.add(makeVector(1.0f));
@@ -68,6 +260,16 @@ public class VectorStoreServiceFakeEmbeddingTest {
             return true;
         }
 
+        @Override
+        public CompletableFuture<Integer> countTokens(List<String> texts) {
+            return CompletableFuture.failedFuture(new UnsupportedOperationException());
+        }
+
+        @Override
+        public EmbeddingService forModel(String model) {
+            throw new UnsupportedOperationException(model);
+        }
+
         private float[] makeVector(float value) {
             float[] vector = new float[dimension];
             for (int i = 0; i < dimension; i++) {
@@ -1,5 +1,6 @@
 package net.kevinthedang.ollamamod.vectorstore;
 
+import net.kevinthedang.ollamamod.chat.OllamaSettings;
 import net.kevinthedang.ollamamod.vectorstore.chunker.ConversationChunker;
 import net.kevinthedang.ollamamod.vectorstore.chunker.JsonChunker;
 import net.kevinthedang.ollamamod.vectorstore.chunker.TextChunker;
@@ -23,7 +24,7 @@ public class VectorStoreServiceIntegrationTest {
         OllamaEmbeddingService embeddingService = new OllamaEmbeddingService();
         Assumptions.assumeTrue(
             embeddingService.isHealthy(),
-            "Ollama is not running at " + VectorStoreSettings.ollamaBaseUrl
+            "Ollama is not running at " + OllamaSettings.baseUrl
                 + " (run: ollama pull nomic-embed-text)"
         );
 
@@ -0,0 +1,156 @@
+package net.kevinthedang.ollamamod.vectorstore;
+
+import net.kevinthedang.ollamamod.vectorstore.chunker.ConversationChunker;
+import net.kevinthedang.ollamamod.vectorstore.chunker.JsonChunker;
+import net.kevinthedang.ollamamod.vectorstore.chunker.TextChunker;
+import net.kevinthedang.ollamamod.vectorstore.embedding.EmbeddingService;
+import net.kevinthedang.ollamamod.vectorstore.model.VectorDocument;
+import net.kevinthedang.ollamamod.vectorstore.store.LangChain4jVectorStore;
+import net.kevinthedang.ollamamod.vectorstore.store.SpaceManifest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class VectorStoreServiceMigrationTest {
+
+    @TempDir
+    Path tempDir;
+
+    // Queries keep using the old space while re-embedding runs, then the new space takes over.
+    @Test
+    public void queriesUseOldSpaceUntilMigrationFinishes() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        VectorStoreService service = newService(new FakeModelService("model-a", 4, null, release));
+        service.storeMemory("Player: Hi\nVillager: Hello", "villager-1", "player-1").join();
+
+        service.setEmbeddingModel("model-b");
+        assertTrue(service.isMigrating());
+        assertEquals("model-a", service.activeSpace().model());
+        List<VectorDocument> duringMigration = service.queryMemories("hello", "villager-1", 3).join();
+        assertFalse(duringMigration.isEmpty());
+        assertEquals(4, duringMigration.get(0).embedding().length);
+
+        release.countDown();
+        awaitMigration(service);
+
+        assertEquals("model-b", service.activeSpace().model());
+        assertEquals(6, service.activeSpace().dimension());
+        List<VectorDocument> afterMigration = service.queryMemories("hello", "villager-1", 3).join();
+        assertFalse(afterMigration.isEmpty());
+        assertEquals(6, afterMigration.get(0).embedding().length);
+    }
+
+    // The manifest records the space of persisted vectors; loading with another model migrates them.
+    @Test
+    public void manifestRecordsSpaceAndLoadTriggersMigration() throws InterruptedException {
+        VectorStoreService original = newService(new FakeModelService("model-a", 4, null, null));
+        original.storeMemory("Player: Hi\nVillager: Hello", "villager-1", "player-1").join();
+        original.persistAll(tempDir);
+
+        SpaceManifest manifest = SpaceManifest.read(
+            tempDir.resolve(VectorStoreSettings.dataDirectory).resolve(VectorStoreSettings.manifestFile)).orElseThrow();
+        assertEquals("model-a", manifest.active().model());
+        assertEquals(4, manifest.active().dimension());
+
+        VectorStoreService reloaded = newService(new FakeModelService("model-b", 6, null, null));
+        reloaded.loadAll(tempDir);
+        assertEquals("model-a", reloaded.activeSpace().model());
+
+        awaitMigration(reloaded);
+        assertEquals("model-b", reloaded.activeSpace().model());
+        assertEquals(1, reloaded.count(null));
+    }
+
+    private static VectorStoreService newService(EmbeddingService embeddingService) {
+        return new VectorStoreService(embeddingService, new LangChain4jVectorStore(),
+            new TextChunker(), new JsonChunker(), new ConversationChunker());
+    }
+
+    private static void awaitMigration(VectorStoreService service) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (service.isMigrating() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertFalse(service.isMigrating(), "Migration did not finish in time");
+    }
+
+    // Fake embedding model; a latch can hold back batch embedding to keep a migration in flight.
+    private static class FakeModelService implements EmbeddingService {
+        private final String model;
+        private final int dimension;
+        private final CountDownLatch batchGate;
+        private final CountDownLatch otherGate;
+
+        private FakeModelService(String model, int dimension, CountDownLatch batchGate, CountDownLatch otherGate) {
+            this.model = model;
+            this.dimension = dimension;
+            this.batchGate = batchGate;
+            this.otherGate = otherGate;
+        }
+
+        @Override
+        public CompletableFuture<float[]> embed(String text) {
+            return CompletableFuture.completedFuture(vector());
+        }
+
+        @Override
+        public CompletableFuture<List<float[]>> embedBatch(List<String> texts) {
+            if (batchGate != null) {
+                try {
+                    batchGate.await();
+                } catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                    return CompletableFuture.failedFuture(exception);
+                }
+            }
+            List<float[]> vectors = new ArrayList<>(texts.size());
+            for (int i = 0; i < texts.size(); i++) {
+                vectors.add(vector());
+            }
+            return CompletableFuture.completedFuture(vectors);
+        }
+
+        @Override
+        public int getDimension() {
+            return dimension;
+        }
+
+        @Override
+        public boolean isHealthy() {
+            return true;
+        }
+
+        @Override
+        public CompletableFuture<Integer> countTokens(List<String> texts) {
+            return CompletableFuture.failedFuture(new UnsupportedOperationException());
+        }
+
+        @Override
+        public String getModel() {
+            return model;
+        }
+
+        // "model-a" and "model-b" differ in dimension; otherGate is handed to the switched-to model.
+        @Override
+        public EmbeddingService forModel(String otherModel) {
+            if (otherModel.equals(model)) return this;
+            int otherDimension = otherModel.equals("model-a") ? 4 : 6;
+            return new FakeModelService(otherModel, otherDimension, otherGate, null);
+        }
+
+        private float[] vector() {
+            float[] vector = new float[dimension];
+            vector[0] = 1f;
+            return vector;
+        }
+    }
+}
@@ -4,6 +4,7 @@ import org.junit.jupiter.api.Test;
 
 import java.util.List;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class ConversationChunkerTest {
@@ -18,4 +19,14 @@ public class ConversationChunkerTest {
             assertTrue(chunk.contains("Villager:"), "Chunk should contain Villager line");
         }
     }
+
+    // Multi-line replies stay with their exchange and chunks are cut between exchanges.
+    @Test
+    public void continuationLinesStayWithExchange() {
+        ConversationChunker chunker = new ConversationChunker(50);
+        String content = "Player: Hello\nVillager: Hi there\nsecond line\nPlayer: Trade?\nVillager: Sure";
+        List<String> chunks = chunker.chunk(content);
+        assertEquals(List.of("Player: Hello\nVillager: Hi there\nsecond line", "Player: Trade?\nVillager: Sure"), chunks);
+        assertEquals(chunks, ChunkSpan.materialize(content, chunker.spans(content)));
+    }
 }
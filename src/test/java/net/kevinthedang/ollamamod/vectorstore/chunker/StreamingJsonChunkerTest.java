@@ -0,0 +1,84 @@
+package net.kevinthedang.ollamamod.vectorstore.chunker;
+
+import net.kevinthedang.ollamamod.vectorstore.tokenizer.BpeTokenEstimator;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class StreamingJsonChunkerTest {
+    private static final int[] CHUNK_SIZES = {40, 60, 200, 512, 2048};
+
+    // Invalid JSON should throw an error, including data after the root value.
+    @Test
+    public void invalidJsonThrows() {
+        StreamingJsonChunker chunker = new StreamingJsonChunker(50);
+        assertThrows(IllegalArgumentException.class, () -> chunker.chunk("{ invalid"));
+        assertThrows(IllegalArgumentException.class, () -> chunker.chunk("[1,2] [3]"));
+    }
+
+    // Streaming output should match the tree-based chunker for every shape it handles.
+    @Test
+    public void matchesTreeChunkerOnSmallShapes() {
+        List<String> inputs = List.of(
+            "{\"recipes\":[{\"name\":\"a\",\"inputs\":[1,2]},{\"name\":\"b\",\"inputs\":[3,4]}],\"meta\":{\"version\":1}}",
+            "{\"name\":\"small\",\"inputs\":[1,2],\"meta\":{\"version\":1}}",
+            "{\"meta\":{\"version\":1},\"tags\":[\"a\",\"b\",\"c\"],\"more\":{\"x\":[1,2,3,4,5,6,7,8,9,10]}}",
+            "{\"first\":{\"displayName\":\"Stone\",\"id\":1},\"second\":{\"displayName\":\"Dirt\",\"id\":2}}",
+            "{\"numbers\":[1,2,3,4,5,6,7,8,9,10,11,12],\"words\":[\"alpha\",\"beta\",\"gamma\"],\"flag\":true}",
+            "[[1,2,3],[4,5,6],{\"displayName\":\"Oak Log\",\"stackSize\":64},[7,8,9]]",
+            "[\"plain\",\"strings\",\"only\",1,2,3]",
+            "[{\"name\":\"a\",\"drops\":[{\"item\":\"x\"},{\"item\":\"y\"}]},{\"name\":\"b\"}]",
+            "\"just a string\"",
+            "42");
+        for (String input : inputs) {
+            for (int size : CHUNK_SIZES) {
+                assertSameChunks(input, size);
+            }
+        }
+    }
+
+    // Streaming output should match the tree-based chunker on the bundled seed documents.
+    @Test
+    public void matchesTreeChunkerOnSeedDocuments() throws IOException {
+        Path directory = Path.of("tools", "seed-documents");
+        if (!Files.isDirectory(directory)) return;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.json")) {
+            for (Path file : files) {
+                String content = Files.readString(file, StandardCharsets.UTF_8);
+                assertSameChunks(content, 512);
+                assertSameChunks(content, 2048);
+            }
+        }
+    }
+
+    // The reader variant emits chunks through the sink in order.
+    @Test
+    public void readerVariantEmitsInOrder() {
+        String content = "[{\"displayName\":\"A\"},{\"displayName\":\"B\"},{\"displayName\":\"C\"}]";
+        List<String> emitted = new ArrayList<>();
+        new StreamingJsonChunker(20).chunk(new StringReader(content), emitted::add);
+        assertEquals(new JsonChunker(20).chunk(content), emitted);
+    }
+
+    private static void assertSameChunks(String content, int size) {
+        assertEquals(new JsonChunker(size).chunk(content), new StreamingJsonChunker(size).chunk(content),
+            "Chunks differ at size " + size + " for " + abbreviate(content));
+        JsonChunker tokenChunker = new JsonChunker(size / 4, new BpeTokenEstimator());
+        assertEquals(tokenChunker.chunk(content), new StreamingJsonChunker(tokenChunker).chunk(content),
+            "Chunks differ at " + size / 4 + " tokens for " + abbreviate(content));
+    }
+
+    private static String abbreviate(String content) {
+        return content.length() <= 80 ? content : content.substring(0, 80) + "...";
+    }
+}
@@ -4,6 +4,7 @@ import org.junit.jupiter.api.Test;
 
 import java.util.List;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -28,4 +29,17 @@ public class TextChunkerTest {
             assertFalse(chunk.isEmpty(), "Chunk should not be empty");
         }
     }
+
+    // Spans point into the source and are trimmed of surrounding whitespace.
+    @Test
+    public void spansMatchMaterializedChunks() {
+        TextChunker chunker = new TextChunker(40, 5);
+        String content = "  Sentence one. Sentence two.  Sentence three. Sentence four.  ";
+        List<ChunkSpan> spans = chunker.spans(content);
+        assertEquals(chunker.chunk(content), ChunkSpan.materialize(content, spans));
+        for (ChunkSpan span : spans) {
+            assertFalse(Character.isWhitespace(content.charAt(span.start())), "Span should start on text");
+            assertFalse(Character.isWhitespace(content.charAt(span.end() - 1)), "Span should end on text");
+        }
+    }
 }
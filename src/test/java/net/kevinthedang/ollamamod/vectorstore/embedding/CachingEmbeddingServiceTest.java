@@ -0,0 +1,64 @@
+package net.kevinthedang.ollamamod.vectorstore.embedding;
+
+import net.kevinthedang.ollamamod.vectorstore.RecordingEmbeddingService;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class CachingEmbeddingServiceTest {
+
+    // Concurrent requests for one text share a single call, and later requests hit the cache.
+    @Test
+    public void sharesInFlightCallsAndCachesResults() {
+        RecordingEmbeddingService delegate = RecordingEmbeddingService.deferred();
+        CachingEmbeddingService cache = new CachingEmbeddingService(delegate);
+
+        CompletableFuture<float[]> first = cache.embed("diamond");
+        CompletableFuture<float[]> second = cache.embed("diamond");
+        assertSame(first, second);
+        assertEquals(1, delegate.embedCalls.size());
+
+        delegate.embedCalls.get(0).complete(new float[] {1f});
+        assertEquals(1f, cache.embed("diamond").join()[0]);
+        assertEquals(1, delegate.embedCalls.size());
+    }
+
+    // A failed call is not cached, so the next request retries.
+    @Test
+    public void dropsFailedCalls() {
+        RecordingEmbeddingService delegate = RecordingEmbeddingService.deferred();
+        CachingEmbeddingService cache = new CachingEmbeddingService(delegate);
+
+        CompletableFuture<float[]> failed = cache.embed("diamond");
+        delegate.embedCalls.get(0).completeExceptionally(new IllegalStateException("offline"));
+        assertThrows(CompletionException.class, failed::join);
+        assertEquals(0, cache.size());
+
+        cache.embed("diamond");
+        assertEquals(2, delegate.embedCalls.size());
+    }
+
+    // The least recently used text is evicted once the cache is full.
+    @Test
+    public void evictsLeastRecentlyUsedText() {
+        RecordingEmbeddingService delegate = RecordingEmbeddingService.deferred();
+        CachingEmbeddingService cache = new CachingEmbeddingService(delegate, 2);
+
+        cache.embed("a");
+        cache.embed("b");
+        cache.embed("a");
+        cache.embed("c");
+        assertEquals(2, cache.size());
+        assertEquals(3, delegate.embedCalls.size());
+
+        cache.embed("a");
+        assertEquals(3, delegate.embedCalls.size(), "Recently used text stays cached");
+        cache.embed("b");
+        assertEquals(4, delegate.embedCalls.size(), "Evicted text is embedded again");
+    }
+}
@@ -0,0 +1,70 @@
+package net.kevinthedang.ollamamod.vectorstore.embedding;
+
+import net.kevinthedang.ollamamod.vectorstore.tokenizer.BpeTokenEstimator;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HashedNgramEmbeddingServiceTest {
+
+    // Same text always produces the same unit-length vector.
+    @Test
+    public void embeddingIsDeterministicAndNormalized() {
+        HashedNgramEmbeddingService service = new HashedNgramEmbeddingService(256);
+        float[] first = service.embedNow("Craft a diamond pickaxe");
+        float[] second = service.embed("Craft a diamond pickaxe").join();
+
+        assertEquals(256, first.length);
+        assertArrayEquals(first, second);
+        assertEquals(1.0, dot(first, first), 1e-4);
+    }
+
+    // Switching model names a bucket count; unknown model names are rejected.
+    @Test
+    public void forModelSwitchesDimension() {
+        HashedNgramEmbeddingService service = new HashedNgramEmbeddingService(256);
+        assertSame(service, service.forModel("hashed-ngram-256"));
+        assertEquals(128, service.forModel("hashed-ngram-128").getDimension());
+        assertThrows(IllegalArgumentException.class, () -> service.forModel("nomic-embed-text"));
+    }
+
+    // Token counts come from the shared estimator, since there is no model tokenizer.
+    @Test
+    public void countTokensUsesSharedEstimate() {
+        BpeTokenEstimator estimator = BpeTokenEstimator.shared();
+        int expected = estimator.count("Craft a diamond pickaxe") + estimator.count("with sticks");
+        assertEquals(expected, new HashedNgramEmbeddingService().countTokens(List.of("Craft a diamond pickaxe", "with sticks")).join());
+    }
+
+    // Texts sharing words and word fragments score higher than unrelated ones.
+    @Test
+    public void relatedTextsAreCloserThanUnrelatedTexts() {
+        HashedNgramEmbeddingService service = new HashedNgramEmbeddingService();
+        service.fit(List.of(
+            "diamond pickaxe recipe: 3 diamonds and 2 sticks",
+            "iron sword recipe: 2 iron ingots and 1 stick",
+            "plains biome in the overworld",
+            "creeper is a hostile mob that explodes"
+        ));
+
+        float[] query = service.embedNow("how do I make a diamond pickaxe");
+        float[] related = service.embedNow("diamond pickaxe recipe: 3 diamonds and 2 sticks");
+        float[] unrelated = service.embedNow("plains biome in the overworld");
+
+        assertTrue(dot(query, related) > dot(query, unrelated));
+    }
+
+    private static double dot(float[] a, float[] b) {
+        double sum = 0.0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+}
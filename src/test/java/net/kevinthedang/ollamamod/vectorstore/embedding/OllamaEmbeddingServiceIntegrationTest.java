@@ -1,5 +1,6 @@
 package net.kevinthedang.ollamamod.vectorstore.embedding;
 
+import net.kevinthedang.ollamamod.chat.OllamaSettings;
 import net.kevinthedang.ollamamod.vectorstore.VectorStoreSettings;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
@@ -19,7 +20,7 @@ public class OllamaEmbeddingServiceIntegrationTest {
         OllamaEmbeddingService service = new OllamaEmbeddingService();
         Assumptions.assumeTrue(
             service.isHealthy(),
-            "Ollama is not running at " + VectorStoreSettings.ollamaBaseUrl
+            "Ollama is not running at " + OllamaSettings.baseUrl
                 + " (run: ollama pull nomic-embed-text)"
         );
         float[] embedding = service.embed("hello world").join();
@@ -32,7 +33,7 @@ public class OllamaEmbeddingServiceIntegrationTest {
         OllamaEmbeddingService service = new OllamaEmbeddingService();
         Assumptions.assumeTrue(
             service.isHealthy(),
-            "Ollama is not running at " + VectorStoreSettings.ollamaBaseUrl
+            "Ollama is not running at " + OllamaSettings.baseUrl
                 + " (run: ollama pull nomic-embed-text)"
         );
         List<float[]> embeddings = service.embedBatch(List.of("a", "b", "c")).join();
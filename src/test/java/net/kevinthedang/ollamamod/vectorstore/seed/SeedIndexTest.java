@@ -0,0 +1,189 @@
+package net.kevinthedang.ollamamod.vectorstore.seed;
+
+import net.kevinthedang.ollamamod.vectorstore.embedding.HashedNgramEmbeddingService;
+import net.kevinthedang.ollamamod.vectorstore.model.MetadataFilter;
+import net.kevinthedang.ollamamod.vectorstore.model.VectorDocument;
+import net.kevinthedang.ollamamod.vectorstore.model.VectorMetadata;
+import net.kevinthedang.ollamamod.vectorstore.store.LangChain4jVectorStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SeedIndexTest {
+
+    @TempDir
+    Path tempDir;
+
+    // Documents, ids and metadata read back from the index match what was written.
+    @Test
+    public void roundTripsDocuments() throws IOException {
+        List<VectorDocument> documents = randomDocuments(50, 8, 1);
+        SeedIndex index = write(documents);
+
+        assertEquals("test-model", index.model());
+        assertEquals(50, index.size());
+        for (int position = 0; position < documents.size(); position++) {
+            VectorDocument expected = documents.get(position);
+            assertEquals(position, index.indexOf(expected.id()));
+            VectorDocument actual = index.vectors().document(position);
+            assertEquals(expected.content(), actual.content());
+            assertEquals(expected.metadata(), actual.metadata());
+            assertArrayEquals(expected.embedding(), actual.embedding());
+        }
+        assertEquals(-1, index.indexOf("missing"));
+    }
+
+    // Exhaustive probing over the clustered index returns the same ranking as the in-memory store.
+    @Test
+    public void searchMatchesInMemoryStore() throws IOException {
+        List<VectorDocument> documents = randomDocuments(2500, 8, 2);
+        SeedIndex index = write(documents);
+        LangChain4jVectorStore reference = new LangChain4jVectorStore();
+        reference.storeAll(documents);
+
+        Random random = new Random(3);
+        for (int query = 0; query < 10; query++) {
+            float[] embedding = randomVector(random, 8);
+            List<String> expected = reference.query(embedding, null, 5, 0.0).stream().map(VectorDocument::id).toList();
+            List<String> actual = index.vectors().search(embedding, 5, 0.0, Integer.MAX_VALUE, position -> true).stream()
+                .map(hit -> index.recordId(hit.index()))
+                .toList();
+            assertEquals(expected, actual);
+        }
+    }
+
+    // A document's own vector finds it through the default number of probes.
+    @Test
+    public void probedSearchFindsExactMatch() throws IOException {
+        List<VectorDocument> documents = randomDocuments(2500, 8, 4);
+        SeedIndexVectorStore store = new SeedIndexVectorStore(write(documents).vectors());
+        for (int position = 0; position < documents.size(); position += 250) {
+            VectorDocument document = documents.get(position);
+            assertEquals(document.id(), store.query(document.embedding(), null, 1, 0.0).get(0).id());
+        }
+    }
+
+    // Lexical vectors are stored with the weights they were fitted with and answer fallback queries.
+    @Test
+    public void localVectorsAnswerLexicalQueries() throws IOException {
+        List<VectorDocument> documents = List.of(
+            document("a", "Crafting a diamond pickaxe needs three diamonds and two sticks.", 0),
+            document("b", "Wheat grows on farmland and can be bonemealed.", 1),
+            document("c", "Villagers restock trades at their job site block.", 2));
+        SeedIndex index = write(documents);
+
+        HashedNgramEmbeddingService local = new HashedNgramEmbeddingService(HashedNgramEmbeddingService.DEFAULT_DIMENSION);
+        local.setIdfWeights(index.idfWeights());
+        SeedIndexVectorStore store = new SeedIndexVectorStore(index.localVectors());
+        List<VectorDocument> results = store.query(local.embedNow("how do I craft a diamond pickaxe"), null, 1, 0.0);
+        assertEquals("a", results.get(0).id());
+    }
+
+    // Overlay writes hide seed copies, filters apply to both halves, and persist writes only the overlay
+    // and the deleted seed ids, which hide the seed copies again once the seed is attached to the reload.
+    @Test
+    public void overlayShadowsAndPersistsOnlyOverlay() throws IOException {
+        List<VectorDocument> documents = randomDocuments(20, 4, 5);
+        SeedIndex index = write(documents);
+        SeedIndexVectorStore store = new SeedIndexVectorStore(index.vectors());
+
+        VectorDocument replaced = documents.get(0);
+        store.store(new VectorDocument(replaced.id(), "updated", replaced.embedding(), replaced.metadata()));
+        store.store(new VectorDocument("memory-1", "Player: hi", new float[] {1, 0, 0, 0},
+            VectorMetadata.memory("villager-1", "player-1")));
+        assertTrue(store.delete(documents.get(1).id()));
+        assertFalse(store.delete(documents.get(1).id()));
+
+        assertEquals(20, store.count(null));
+        assertEquals(19, store.count(MetadataFilter.documents()));
+        assertEquals("updated", store.getById(replaced.id()).orElseThrow().content());
+        assertTrue(store.getById(documents.get(1).id()).isEmpty());
+        assertEquals("memory-1", store.query(new float[] {1, 0, 0, 0}, MetadataFilter.memories(), 3, 0.0).get(0).id());
+
+        Path persisted = tempDir.resolve("overlay.store");
+        store.persist(persisted);
+        LangChain4jVectorStore saved = new LangChain4jVectorStore();
+        saved.load(persisted);
+        assertEquals(2, saved.count(null), "Seed documents are not copied into the save");
+        assertEquals("updated", saved.getById(replaced.id()).orElseThrow().content());
+
+        SeedIndexVectorStore reloaded = new SeedIndexVectorStore(index.vectors(), saved);
+        reloaded.restoreTombstones(persisted);
+        assertEquals(20, reloaded.count(null));
+        assertTrue(reloaded.getById(documents.get(1).id()).isEmpty(), "A deleted seed document stays deleted");
+
+        store.load(persisted);
+        assertEquals(null, store.base());
+        assertEquals(2, store.count(null));
+    }
+
+    // A resource inside a jar is extracted once under its content hash and mapped from there; a different
+    // index replaces the stale copy.
+    @Test
+    public void jarResourceIsExtractedToHashedCacheFile() throws IOException {
+        write(randomDocuments(20, 4, 6));
+        Path jar = tempDir.resolve("mod.jar");
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(jar))) {
+            zip.putNextEntry(new ZipEntry("ollamamod/seed/seed.index"));
+            Files.copy(tempDir.resolve("seed.index"), zip);
+        }
+        URL url = new URL("jar:" + jar.toUri() + "!/ollamamod/seed/seed.index");
+        Path cache = tempDir.resolve("cache");
+
+        Path first = SeedIndex.extract(url, cache);
+        Path second = SeedIndex.extract(url, cache);
+        assertEquals(first, second);
+        assertTrue(first.getFileName().toString().matches("seed-[0-9a-f]{32}\\.index"));
+        assertEquals(20, SeedIndex.open(first).size());
+
+        Path stale = cache.resolve("seed-00000000000000000000000000000000.index");
+        Files.writeString(stale, "old");
+        SeedIndex.extract(url, cache);
+        try (Stream<Path> files = Files.list(cache)) {
+            assertEquals(List.of(first), files.toList());
+        }
+    }
+
+    private SeedIndex write(List<VectorDocument> documents) throws IOException {
+        Path path = tempDir.resolve("seed.index");
+        SeedIndex.write(path, "test-model", documents, new HashedNgramEmbeddingService());
+        return SeedIndex.open(path);
+    }
+
+    private static List<VectorDocument> randomDocuments(int count, int dimension, long seed) {
+        Random random = new Random(seed);
+        List<VectorDocument> documents = new ArrayList<>(count);
+        for (int position = 0; position < count; position++) {
+            documents.add(new VectorDocument("doc-" + position, "Document number " + position,
+                randomVector(random, dimension), VectorMetadata.document().withChunk(position, count)));
+        }
+        return documents;
+    }
+
+    private static VectorDocument document(String id, String content, int chunk) {
+        return new VectorDocument(id, content, new float[] {chunk + 1f, 1f}, VectorMetadata.document().withChunk(chunk, 3));
+    }
+
+    private static float[] randomVector(Random random, int dimension) {
+        float[] vector = new float[dimension];
+        for (int component = 0; component < dimension; component++) {
+            vector[component] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,210 @@
+package net.kevinthedang.ollamamod.vectorstore.seed;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import net.kevinthedang.ollamamod.vectorstore.chunker.JsonChunker;
+import net.kevinthedang.ollamamod.vectorstore.chunker.TextChunker;
+import net.kevinthedang.ollamamod.vectorstore.model.VectorDocument;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SeedIngestPipelineTest {
+    private static final int ITEMS = 40;
+
+    @TempDir
+    Path tempDir;
+
+    private StandInEmbedServer server;
+
+    @BeforeEach
+    public void startServer() throws IOException {
+        server = new StandInEmbedServer();
+    }
+
+    @AfterEach
+    public void stopServer() {
+        server.stop();
+    }
+
+    // Every chunk is embedded once, in batches, and written to the store.
+    @Test
+    public void ingestsAllChunksInBatches() throws IOException {
+        Path file = writeItems("items.json");
+        Path store = tempDir.resolve("documents.store");
+
+        SeedIngestPipeline.Report report = newPipeline().run(tempDir, List.of(file), store);
+
+        assertEquals(ITEMS, report.embedded());
+        assertEquals(ITEMS, readStore(store).size());
+        assertEquals(ITEMS, server.embeddedInputs.get());
+        assertTrue(server.requests.get() <= ITEMS / 4, "Chunks should be embedded in batches");
+        assertTrue(report.chunksPerSecond() > 0);
+        assertFalse(Files.exists(SeedIngestPipeline.journalPath(store)));
+
+        SeedIngestPipeline.Report rerun = newPipeline().run(tempDir, List.of(file), store);
+        assertEquals(0, rerun.embedded());
+        assertEquals(ITEMS, rerun.skipped());
+    }
+
+    // A run that dies mid-way keeps its progress in the journal and the next run only embeds the rest.
+    @Test
+    public void interruptedRunResumesFromJournal() throws IOException {
+        Path file = writeItems("items.json");
+        Path store = tempDir.resolve("documents.store");
+        server.failAfterRequests = 3;
+
+        assertThrows(IOException.class, () -> newPipeline().run(tempDir, List.of(file), store));
+        int checkpointed = countJournal(SeedIngestPipeline.journalPath(store));
+        assertTrue(checkpointed > 0, "Batches finished before the failure are checkpointed");
+
+        server.failAfterRequests = Integer.MAX_VALUE;
+        server.embeddedInputs.set(0);
+        SeedIngestPipeline.Report report = newPipeline().run(tempDir, List.of(file), store);
+
+        List<VectorDocument> documents = readStore(store);
+        assertEquals(ITEMS, documents.size());
+        Set<String> ids = new HashSet<>();
+        documents.forEach(document -> ids.add(document.id()));
+        assertEquals(ITEMS, ids.size(), "No chunk is stored twice");
+        assertEquals(ITEMS - checkpointed, report.embedded());
+        assertEquals(ITEMS - checkpointed, server.embeddedInputs.get());
+    }
+
+    // Batches are embedded concurrently up to maxInFlight, even though ingestion is background work.
+    @Test
+    public void embedsBatchesConcurrently() throws IOException {
+        Path file = writeItems("items.json");
+        server.delayMillis = 100;
+
+        SeedIngestPipeline.Report report = newPipeline().run(tempDir, List.of(file), tempDir.resolve("documents.store"));
+
+        assertEquals(ITEMS, report.embedded());
+        assertEquals(2, server.maxInFlight.get(), "maxInFlight batches are sent at once");
+    }
+
+    private static int countJournal(Path journal) throws IOException {
+        int count = 0;
+        try (DataInputStream input = new DataInputStream(Files.newInputStream(journal))) {
+            while (input.available() > 0) {
+                VectorDocument.readFrom(input);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private SeedIngestPipeline newPipeline() {
+        SeedIngestPipeline.Settings settings = new SeedIngestPipeline.Settings(4, 2, 1, 10);
+        return new SeedIngestPipeline(SeedIngestPipeline.ollamaEmbeddings(server.baseUrl(), "stand-in", settings),
+            new TextChunker(), new JsonChunker(40), settings);
+    }
+
+    private Path writeItems(String name) throws IOException {
+        StringBuilder json = new StringBuilder("[");
+        for (int index = 0; index < ITEMS; index++) {
+            if (index > 0) json.append(',');
+            json.append("{\"name\":\"item").append(index).append("\",\"id\":").append(index).append('}');
+        }
+        json.append(']');
+        Path file = tempDir.resolve(name);
+        Files.writeString(file, json.toString());
+        return file;
+    }
+
+    private static List<VectorDocument> readStore(Path store) throws IOException {
+        try (DataInputStream input = new DataInputStream(Files.newInputStream(store))) {
+            VectorDocument.StoreHeader header = VectorDocument.readStoreHeader(input);
+            VectorDocument[] documents = new VectorDocument[header.count()];
+            for (int index = 0; index < header.count(); index++) {
+                documents[index] = VectorDocument.readFrom(input, header.version());
+            }
+            return List.of(documents);
+        }
+    }
+
+    // Local stand-in for Ollama's /api/embed that returns one small vector per input.
+    private static class StandInEmbedServer {
+        private final HttpServer server;
+        private final AtomicInteger requests = new AtomicInteger();
+        private final AtomicInteger embeddedInputs = new AtomicInteger();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger maxInFlight = new AtomicInteger();
+        private volatile int failAfterRequests = Integer.MAX_VALUE;
+        private volatile long delayMillis;
+
+        private StandInEmbedServer() throws IOException {
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.createContext("/api/embed", this::handleEmbed);
+            server.setExecutor(Executors.newCachedThreadPool());
+            server.start();
+        }
+
+        private void handleEmbed(HttpExchange exchange) throws IOException {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                if (delayMillis > 0) Thread.sleep(delayMillis);
+                respondToEmbed(exchange);
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }
+
+        private void respondToEmbed(HttpExchange exchange) throws IOException {
+            JsonObject request = JsonParser.parseString(
+                new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8)).getAsJsonObject();
+            if (requests.incrementAndGet() > failAfterRequests) {
+                respond(exchange, 500, "{\"error\":\"stand-in failure\"}");
+                return;
+            }
+            int inputs = request.get("input").isJsonArray() ? request.getAsJsonArray("input").size() : 1;
+            embeddedInputs.addAndGet(inputs);
+            StringBuilder body = new StringBuilder("{\"embeddings\":[");
+            for (int index = 0; index < inputs; index++) {
+                if (index > 0) body.append(',');
+                body.append("[0.1,0.2,0.3]");
+            }
+            body.append("]}");
+            respond(exchange, 200, body.toString());
+        }
+
+        private String baseUrl() {
+            return "http://127.0.0.1:" + server.getAddress().getPort();
+        }
+
+        private void stop() {
+            server.stop(0);
+        }
+
+        private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+}
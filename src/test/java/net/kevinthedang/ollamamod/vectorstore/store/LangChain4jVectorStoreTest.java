@@ -6,7 +6,12 @@ import net.kevinthedang.ollamamod.vectorstore.model.VectorMetadata;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -61,4 +66,60 @@ public class LangChain4jVectorStoreTest {
         assertEquals(1, reloaded.count(MetadataFilter.all()));
         assertTrue(reloaded.getById("doc").isPresent(), "Document should be loaded");
     }
+
+    // A tag filter scores only the documents carrying one of its tags.
+    @Test
+    public void tagFilterScansOnlyTaggedDocuments() {
+        LangChain4jVectorStore store = new LangChain4jVectorStore();
+        store.storeAll(List.of(
+            new VectorDocument("piston", "piston recipe", new float[] { 0.6f, 0.8f },
+                VectorMetadata.document().withTags(List.of("item:piston"))),
+            new VectorDocument("closer", "unrelated", new float[] { 1.0f, 0.0f }, VectorMetadata.document()),
+            new VectorDocument("plains", "plains biome", new float[] { 0.8f, 0.6f },
+                VectorMetadata.document().withTags(List.of("biome:plains")))
+        ));
+        float[] query = new float[] { 1.0f, 0.0f };
+
+        List<VectorDocument> tagged = store.query(query, MetadataFilter.documents().withAnyTag(List.of("item:piston")), 5, 0.0);
+        assertEquals(List.of("piston"), tagged.stream().map(VectorDocument::id).toList());
+
+        List<VectorDocument> either = store.query(query,
+            MetadataFilter.documents().withAnyTag(List.of("item:piston", "biome:plains")), 5, 0.0);
+        assertEquals(List.of("plains", "piston"), either.stream().map(VectorDocument::id).toList());
+
+        store.delete("piston");
+        assertTrue(store.query(query, MetadataFilter.documents().withAnyTag(List.of("item:piston")), 5, 0.0).isEmpty());
+    }
+
+    // Tags survive persist and load, and stores written before tags existed still load.
+    @Test
+    public void persistsTagsAndReadsLegacyStores(@TempDir Path tempDir) throws IOException {
+        LangChain4jVectorStore store = new LangChain4jVectorStore();
+        store.store(new VectorDocument("doc", "content", new float[] { 0.1f, 0.2f },
+            VectorMetadata.document().withTags(List.of("entity:creeper"))));
+        Path storePath = tempDir.resolve("vector.store");
+        store.persist(storePath);
+
+        LangChain4jVectorStore reloaded = new LangChain4jVectorStore();
+        reloaded.load(storePath);
+        assertEquals(List.of("entity:creeper"), reloaded.getById("doc").orElseThrow().metadata().tags());
+
+        // Version 1 layout: a bare count, and records without the trailing tag list
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        new VectorDocument("old", "legacy", new float[] { 0.3f }, VectorMetadata.document())
+            .writeTo(new DataOutputStream(record));
+        byte[] recordBytes = record.toByteArray();
+        ByteArrayOutputStream legacy = new ByteArrayOutputStream();
+        DataOutputStream legacyOut = new DataOutputStream(legacy);
+        legacyOut.writeInt(1);
+        legacyOut.write(Arrays.copyOf(recordBytes, recordBytes.length - Short.BYTES));
+        Path legacyPath = tempDir.resolve("legacy.store");
+        Files.write(legacyPath, legacy.toByteArray());
+
+        LangChain4jVectorStore legacyStore = new LangChain4jVectorStore();
+        legacyStore.load(legacyPath);
+        VectorDocument old = legacyStore.getById("old").orElseThrow();
+        assertEquals("legacy", old.content());
+        assertTrue(old.metadata().tags().isEmpty());
+    }
 }
@@ -0,0 +1,69 @@
+package net.kevinthedang.ollamamod.vectorstore.tokenizer;
+
+import net.kevinthedang.ollamamod.vectorstore.chunker.TextChunker;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BpeTokenEstimatorTest {
+
+    // Short words are one token, long words several, punctuation one each, spaces free.
+    @Test
+    public void countsPiecesLikeBpe() {
+        BpeTokenEstimator estimator = new BpeTokenEstimator();
+        assertEquals(0, estimator.count(""));
+        assertEquals(3, estimator.count("the cat sat"));
+        assertEquals(5, estimator.count("diamond_pickaxe"));
+        assertEquals(5, estimator.count("{\"a\":"));
+        assertEquals(2, estimator.count("123456"));
+    }
+
+    // Counts add up when text is split between pieces, which chunkers rely on for running totals.
+    @Test
+    public void countsAreAdditiveAtPieceBoundaries() {
+        BpeTokenEstimator estimator = new BpeTokenEstimator();
+        String text = "{\"displayName\":\"Oak Log\",\"stackSize\":64}";
+        int split = text.indexOf(',');
+        assertEquals(estimator.count(text), estimator.count(text, 0, split) + estimator.count(text, split, text.length()));
+    }
+
+    // fit() never exceeds the budget unless a single character already does.
+    @Test
+    public void fitStaysWithinBudget() {
+        BpeTokenEstimator estimator = new BpeTokenEstimator();
+        String text = "Creepers explode when they get close. Iron golems protect villages from zombies.";
+        for (int budget = 1; budget < 25; budget++) {
+            int end = estimator.fit(text, 0, text.length(), budget);
+            assertTrue(end > 0);
+            assertTrue(estimator.count(text, 0, end) <= budget, "Over budget at " + budget);
+        }
+    }
+
+    // Calibration moves the estimate towards the count the model reported.
+    @Test
+    public void calibrationMatchesReportedCount() {
+        BpeTokenEstimator estimator = new BpeTokenEstimator();
+        List<String> samples = List.of("Villagers trade emeralds for wheat and carrots in most biomes");
+        int before = estimator.count(samples.get(0));
+        estimator.calibrate(samples, before * 3 / 2);
+        assertTrue(estimator.scale() > 1.0);
+        assertTrue(estimator.count(samples.get(0)) > before);
+    }
+
+    // Token-sized text chunks stay within the token budget.
+    @Test
+    public void textChunkerSizesByTokens() {
+        BpeTokenEstimator estimator = new BpeTokenEstimator();
+        TextChunker chunker = new TextChunker(20, 4, estimator);
+        String content = "Sentence one is here. Sentence two follows it. Sentence three is longer than the others. "
+            + "Sentence four ends the paragraph. Sentence five starts another thought.";
+        List<String> chunks = chunker.chunk(content);
+        assertTrue(chunks.size() > 1);
+        for (String chunk : chunks) {
+            assertTrue(estimator.count(chunk) <= 20, "Chunk over budget: " + chunk);
+        }
+    }
+}
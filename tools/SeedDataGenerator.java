@@ -1,19 +1,17 @@
 package net.kevinthedang.ollamamod.tools;
 
+import net.kevinthedang.ollamamod.knowledge.Gazetteer;
 import net.kevinthedang.ollamamod.vectorstore.chunker.JsonChunker;
 import net.kevinthedang.ollamamod.vectorstore.chunker.TextChunker;
-import net.kevinthedang.ollamamod.vectorstore.embedding.EmbeddingService;
-import net.kevinthedang.ollamamod.vectorstore.embedding.OllamaEmbeddingService;
+import net.kevinthedang.ollamamod.vectorstore.embedding.HashedNgramEmbeddingService;
 import net.kevinthedang.ollamamod.vectorstore.model.VectorDocument;
-import net.kevinthedang.ollamamod.vectorstore.model.VectorMetadata;
+import net.kevinthedang.ollamamod.vectorstore.seed.SeedIndex;
+import net.kevinthedang.ollamamod.vectorstore.seed.SeedIngestPipeline;
 
 import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.EOFException;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -23,7 +21,6 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Set;
-import java.util.UUID;
 
 public class SeedDataGenerator {
     private static final String DEFAULT_STORE_PATH =
@@ -31,10 +28,10 @@ public class SeedDataGenerator {
 
     private static final String DEFAULT_MODEL = "nomic-embed-text";
     private static final String DEFAULT_OLLAMA_BASE_URL = "http://localhost:11434";
+    // Item, mob and biome lists the ingested chunks are tagged from
+    private static final Path GAZETTEER_DIRECTORY = Paths.get("tools", "seed-documents");
 
-    private final EmbeddingService embeddingService;
-    private final TextChunker textChunker;
-    private final JsonChunker jsonChunker;
+    private final SeedIngestPipeline pipeline;
 
     // Entry point for CLI usage (also used by the Gradle seedData task).
     public static void main(String[] arguments) throws Exception {
@@ -60,95 +57,52 @@ public class SeedDataGenerator {
         if (!parsedArguments.ingestTargets.isEmpty()) {
             SeedDataGenerator generator = new SeedDataGenerator(
                 parsedArguments.ollamaBaseUrl,
-                parsedArguments.embeddingModel
+                parsedArguments.embeddingModel,
+                parsedArguments.pipelineSettings
             );
 
             List<Path> ingestFiles = expandPaths(parsedArguments.ingestTargets);
             if (ingestFiles.isEmpty()) {
-                System.err.println("No ingestable files found.");
-                return;
+                throw new IllegalArgumentException("No ingestable files found in " + parsedArguments.ingestTargets);
             }
 
-            List<VectorDocument> storeDocuments = loadStore(storePath);
-            int totalChunksAdded = 0;
-            for (Path ingestFile : ingestFiles) {
-                totalChunksAdded += generator.ingestFile(ingestFile, storeDocuments);
-            }
+            // Failures propagate out of main, so the JVM (and a Gradle task running it) exits non-zero
+            SeedIngestPipeline.Report report = generator.pipeline.run(
+                ingestRoot(parsedArguments.ingestTargets), ingestFiles, storePath);
+            System.out.println("Ingest complete. Added " + report.embedded() + " chunks from "
+                + report.files() + " files (" + report.skipped() + " already present) in "
+                + String.format(Locale.ROOT, "%.1fs, %.1f chunks/s", report.elapsedMillis() / 1000.0, report.chunksPerSecond()));
+        }
 
-            persistStore(storePath, storeDocuments);
-            System.out.println("Ingest complete. Added " + totalChunksAdded
-                + " chunks. Store size=" + storeDocuments.size());
+        if (parsedArguments.indexPath != null) {
+            writeIndex(storePath, Paths.get(parsedArguments.indexPath), parsedArguments.embeddingModel);
             return;
         }
+        if (!parsedArguments.ingestTargets.isEmpty()) return;
 
-        System.err.println("No action specified. Use --ingest, --clear, or --list.");
+        System.err.println("No action specified. Use --ingest, --index, --clear, or --list.");
         printUsage();
     }
 
     // Creates a generator with the target Ollama base URL and embedding model.
     public SeedDataGenerator(String ollamaBaseUrl, String embeddingModel) {
-        this.embeddingService = new OllamaEmbeddingService(ollamaBaseUrl, embeddingModel);
-        this.textChunker = new TextChunker();
-        this.jsonChunker = new JsonChunker();
+        this(ollamaBaseUrl, embeddingModel, SeedIngestPipeline.Settings.defaults());
     }
 
-    // Reads a file, chunks it, embeds each chunk, and appends to the store list.
-    private int ingestFile(Path inputFile, List<VectorDocument> storeDocuments) {
-        String lowerCaseName = inputFile.getFileName().toString().toLowerCase(Locale.ROOT);
-        if (!(lowerCaseName.endsWith(".txt") || lowerCaseName.endsWith(".json"))) {
-            System.out.println("Skipping unsupported file: " + inputFile);
-            return 0;
-        }
+    // Creates a generator with explicit batching and concurrency settings.
+    public SeedDataGenerator(String ollamaBaseUrl, String embeddingModel, SeedIngestPipeline.Settings settings) {
+        this.pipeline = new SeedIngestPipeline(SeedIngestPipeline.ollamaEmbeddings(ollamaBaseUrl, embeddingModel, settings),
+            new TextChunker(), new JsonChunker(), settings, loadGazetteer());
+    }
 
-        String fileContent;
+    // Gazetteer from the seed documents next to the tool; the packaged one when run elsewhere.
+    private static Gazetteer loadGazetteer() {
+        if (!Files.isDirectory(GAZETTEER_DIRECTORY)) return Gazetteer.shared();
         try {
-            fileContent = Files.readString(inputFile, StandardCharsets.UTF_8);
+            return Gazetteer.fromDirectory(GAZETTEER_DIRECTORY);
         } catch (IOException ioException) {
-            System.err.println("Failed to read file: " + inputFile + " - " + ioException.getMessage());
-            return 0;
-        }
-
-        List<String> contentChunks = lowerCaseName.endsWith(".json")
-            ? jsonChunker.chunk(fileContent)
-            : textChunker.chunk(fileContent);
-
-        int chunksAdded = 0;
-        for (int chunkIndex = 0; chunkIndex < contentChunks.size(); chunkIndex++) {
-            String chunkContent = contentChunks.get(chunkIndex);
-            float[] embeddingVector;
-            try {
-                embeddingVector = embeddingService.embed(chunkContent).join();
-            } catch (Exception exception) {
-                System.err.println("Embedding failed for " + inputFile + " chunk "
-                    + chunkIndex + ": " + exception.getMessage());
-                continue;
-            }
-
-            VectorMetadata metadata = VectorMetadata.document()
-                .withChunk(chunkIndex, contentChunks.size());
-            VectorDocument seedDocument = new VectorDocument(
-                UUID.randomUUID().toString(),
-                chunkContent,
-                embeddingVector,
-                metadata
-            );
-            storeDocuments.add(seedDocument);
-            chunksAdded++;
-        }
-
-        System.out.println("Ingested " + inputFile + " -> " + chunksAdded + " chunks");
-        return chunksAdded;
-    }
-
-    // Writes the in-memory store list to disk in a compact binary format.
-    private static void persistStore(Path storePath, List<VectorDocument> storeDocuments) throws IOException {
-        Files.createDirectories(storePath.toAbsolutePath().getParent());
-        try (DataOutputStream outputStream = new DataOutputStream(
-            new BufferedOutputStream(Files.newOutputStream(storePath)))) {
-            outputStream.writeInt(storeDocuments.size());
-            for (VectorDocument document : storeDocuments) {
-                document.writeTo(outputStream);
-            }
+            System.err.println("Could not read gazetteer data: " + ioException.getMessage());
+            return Gazetteer.empty();
         }
     }
 
@@ -159,9 +113,9 @@ public class SeedDataGenerator {
         List<VectorDocument> storeDocuments = new ArrayList<>();
         try (DataInputStream inputStream = new DataInputStream(
             new BufferedInputStream(Files.newInputStream(storePath)))) {
-            int documentCount = inputStream.readInt();
-            for (int index = 0; index < documentCount; index++) {
-                storeDocuments.add(VectorDocument.readFrom(inputStream));
+            VectorDocument.StoreHeader header = VectorDocument.readStoreHeader(inputStream);
+            for (int index = 0; index < header.count(); index++) {
+                storeDocuments.add(VectorDocument.readFrom(inputStream, header.version()));
             }
         } catch (EOFException eofException) {
             System.err.println("Store file appears truncated; loading what we can.");
@@ -171,11 +125,27 @@ public class SeedDataGenerator {
         return storeDocuments;
     }
 
-    // Deletes the store file if it exists.
+    // Deletes the store file and any unfinished ingestion journal.
     private static void clearStore(Path storePath) throws IOException {
         if (Files.exists(storePath)) {
             Files.delete(storePath);
         }
+        Files.deleteIfExists(SeedIngestPipeline.journalPath(storePath));
+    }
+
+    // Builds the pre-computed seed index from the store; no embedding calls are needed beyond the ingest.
+    private static void writeIndex(Path storePath, Path indexPath, String embeddingModel) throws IOException {
+        List<VectorDocument> storeDocuments = loadStore(storePath);
+        if (storeDocuments.isEmpty()) {
+            throw new IllegalStateException("Store is empty, nothing to index: " + storePath);
+        }
+        storeDocuments.sort(Comparator.comparing(VectorDocument::id));
+        long start = System.nanoTime();
+        SeedIndex.write(indexPath, embeddingModel, storeDocuments,
+            new HashedNgramEmbeddingService(HashedNgramEmbeddingService.DEFAULT_DIMENSION));
+        System.out.println("Wrote seed index " + indexPath + " (" + storeDocuments.size() + " documents, "
+            + Files.size(indexPath) / 1024 + " KiB) in "
+            + String.format(Locale.ROOT, "%.1fs", (System.nanoTime() - start) / 1e9));
     }
 
     // Prints store size and a small sample of contents.
@@ -261,19 +231,43 @@ public class SeedDataGenerator {
         return sortedFiles;
     }
 
+    // Directory the ingested files are named relative to: the deepest directory containing every target
+    // (a directory target itself, a file target's parent).
+    private static Path ingestRoot(List<String> rawPaths) {
+        Path root = null;
+        for (String rawPath : rawPaths) {
+            Path inputPath = Paths.get(rawPath).toAbsolutePath().normalize();
+            Path directory = Files.isDirectory(inputPath) ? inputPath : inputPath.getParent();
+            if (root == null) {
+                root = directory;
+                continue;
+            }
+            while (!directory.startsWith(root)) {
+                root = root.getParent();
+            }
+        }
+        return root;
+    }
+
     // Prints CLI usage instructions (including the Gradle task wrapper).
     private static void printUsage() {
         System.out.println("SeedDataGenerator usage:");
         System.out.println("  --ingest <file|dir> [file|dir ...]  Ingest .txt/.json files (dirs are recursive)");
         System.out.println("  --clear                             Delete the store file");
         System.out.println("  --list                              List store contents");
+        System.out.println("  --index <path>                      Write a pre-built seed index from the store (after --ingest)");
         System.out.println("  --output <path>                     Override output path");
         System.out.println("  --model <name>                      Embedding model (default nomic-embed-text)");
         System.out.println("  --ollama <url>                      Ollama base URL (default http://localhost:11434)");
+        System.out.println("  --batch-size <n>                    Chunks per embedding request (default 32)");
+        System.out.println("  --concurrency <n>                   Embedding requests in flight (default 4)");
+        System.out.println();
+        System.out.println("An interrupted --ingest resumes from <output>.journal when run again.");
         System.out.println();
         System.out.println("Gradle wrapper:");
         System.out.println("  ./gradlew seedData --args=\"--ingest tools/seed-documents\"");
         System.out.println("  ./gradlew seedData -PseedArgs=\"--ingest tools/seed-documents/crafting_recipes.json\"");
+        System.out.println("  ./gradlew seedIndex -PseedOllama=http://localhost:11434");
     }
 
     private static class ParsedArguments {
@@ -283,15 +277,20 @@ public class SeedDataGenerator {
         private final String embeddingModel;
         private final String ollamaBaseUrl;
         private final List<String> ingestTargets;
+        private final String indexPath;
+        private final SeedIngestPipeline.Settings pipelineSettings;
 
         private ParsedArguments(boolean shouldClear, boolean shouldList, String outputPath,
-                                String embeddingModel, String ollamaBaseUrl, List<String> ingestTargets) {
+                                String embeddingModel, String ollamaBaseUrl, List<String> ingestTargets,
+                                String indexPath, SeedIngestPipeline.Settings pipelineSettings) {
             this.shouldClear = shouldClear;
             this.shouldList = shouldList;
             this.outputPath = outputPath;
             this.embeddingModel = embeddingModel;
             this.ollamaBaseUrl = ollamaBaseUrl;
             this.ingestTargets = ingestTargets;
+            this.indexPath = indexPath;
+            this.pipelineSettings = pipelineSettings;
         }
 
         // Parses CLI arguments into a structured configuration object.
@@ -307,6 +306,16 @@ public class SeedDataGenerator {
 
             List<String> ingestTargets = getOptionValues(arguments, "--ingest");
 
+            SeedIngestPipeline.Settings defaults = SeedIngestPipeline.Settings.defaults();
+            String batchSize = getOptionValue(arguments, "--batch-size");
+            String concurrency = getOptionValue(arguments, "--concurrency");
+            SeedIngestPipeline.Settings pipelineSettings = new SeedIngestPipeline.Settings(
+                batchSize == null ? defaults.batchSize() : Integer.parseInt(batchSize),
+                concurrency == null ? defaults.maxInFlight() : Integer.parseInt(concurrency),
+                defaults.maxAttempts(),
+                defaults.retryDelayMillis()
+            );
+
             boolean shouldClear = hasFlag(arguments, "--clear");
             boolean shouldList = hasFlag(arguments, "--list");
 
@@ -316,7 +325,9 @@ public class SeedDataGenerator {
                 outputPath,
                 embeddingModel,
                 ollamaBaseUrl,
-                ingestTargets
+                ingestTargets,
+                getOptionValue(arguments, "--index"),
+                pipelineSettings
             );
         }
     }